@@ -0,0 +1,225 @@
+package hello.jdbc.admission;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 적응형 동시 처리 한도 (gradient 방식)
+ *
+ * 동시에 처리 중인 요청 수를 limit 이하로 제한하고, limit 은 측정한 응답 시간으로 계속 조절한다.
+ * - longRtt : 응답 시간의 장기 평균 (평소 응답 시간)
+ * - gradient = min(1, TOLERANCE * longRtt / rtt) (0.5 이상)
+ *   응답 시간이 평소의 TOLERANCE 배를 넘으면 1 보다 작아져서 limit 이 줄어든다. (대기열이 쌓이기 시작)
+ * - newLimit = limit * gradient + sqrt(limit)
+ *   응답 시간이 평소와 같으면 sqrt(limit) 만큼 늘려서 여유를 확인한다.
+ * - 한 번에 크게 흔들리지 않도록 SMOOTHING 비율만큼만 반영
+ * - 처리 중인 요청이 limit 의 절반도 안 되면 한도를 시험한 것이 아니므로 늘리지 않는다.
+ * - 데드라인 초과, 잠금 대기 시간 초과처럼 과부하로 실패한 요청(onDropped)은 limit 을 DROP_FACTOR 배로 줄인다.
+ *
+ * 데이터베이스가 느려지면 limit 이 줄어서 초과 요청은 풀 앞에서 기다리지 않고 바로 거절된다.
+ */
+@Slf4j
+public class ConcurrencyLimiter {
+
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double DROP_FACTOR = 0.9;
+    private static final double MIN_GRADIENT = 0.5;
+
+    /**
+     * 장기 평균 응답 시간의 지수 이동 평균 기간 (요청 수)
+     */
+    private static final int LONG_WINDOW = 600;
+    private static final int WARMUP_SAMPLES = 10;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    private volatile double limit;
+
+    private double longRttNanos;
+    private long samples;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+
+            throw new IllegalArgumentException("invalid limit bounds. initial = " + initialLimit + ", min = " + minLimit + ", max = " + maxLimit);
+        }
+
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * 처리 허가
+     *
+     * @return 한도를 넘으면 null, 허가를 받았으면 처리 후 반드시 onSuccess, onDropped, onIgnore 중 하나를 호출
+     */
+    public Permit tryAcquire() {
+
+        while (true) {
+
+            int current = inflight.get();
+
+            if (current >= getLimit()) {
+
+                rejected.increment();
+
+                return null;
+            }
+
+            if (inflight.compareAndSet(current, current + 1)) {
+
+                accepted.increment();
+
+                return new Permit(System.nanoTime(), current + 1);
+            }
+        }
+    }
+
+    /**
+     * 응답 시간 샘플 반영
+     *
+     * @param rttNanos
+     * @param inflightAtStart 요청을 시작할 때 처리 중이던 요청 수 (자신 포함)
+     */
+    synchronized void onSample(long rttNanos, int inflightAtStart) {
+
+        samples++;
+
+        if (samples <= WARMUP_SAMPLES) {
+
+            // 초기에는 단순 평균
+            longRttNanos += (rttNanos - longRttNanos) / samples;
+
+            return;
+        }
+
+        longRttNanos += (rttNanos - longRttNanos) * 2 / (LONG_WINDOW + 1);
+
+        // 일시적으로 느려진 뒤 평균이 높게 남아 있으면 빨리 원래대로 돌아오도록 줄임
+        if (longRttNanos / rttNanos > 2) {
+
+            longRttNanos *= 0.95;
+        }
+
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, TOLERANCE * longRttNanos / rttNanos));
+
+        // 한도를 채우지 않은 상태에서는 늘리지 않는다.
+        if (gradient >= 1.0 && inflightAtStart < limit / 2) {
+
+            return;
+        }
+
+        double newLimit = limit * gradient + Math.sqrt(limit);
+
+        update(limit * (1 - SMOOTHING) + newLimit * SMOOTHING);
+    }
+
+    synchronized void onDrop() {
+
+        dropped.increment();
+
+        update(limit * DROP_FACTOR);
+    }
+
+    private void update(double newLimit) {
+
+        int before = getLimit();
+
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+
+        if (getLimit() != before) {
+
+            log.debug("concurrency limit {} -> {}, longRtt = {}us", before, getLimit(), (long) longRttNanos / 1000);
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * 처리 허가 - 처리 결과를 한 번만 반영
+     */
+    public final class Permit {
+
+        private final long startNanos;
+        private final int inflightAtStart;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(long startNanos, int inflightAtStart) {
+            this.startNanos = startNanos;
+            this.inflightAtStart = inflightAtStart;
+        }
+
+        /**
+         * 처리 완료 - 응답 시간을 limit 계산에 반영 (비즈니스 예외로 실패한 경우도 포함)
+         */
+        public void onSuccess() {
+
+            if (release()) {
+
+                onSample(System.nanoTime() - startNanos, inflightAtStart);
+            }
+        }
+
+        /**
+         * 과부하로 실패 - limit 감소
+         */
+        public void onDropped() {
+
+            if (release()) {
+
+                onDrop();
+            }
+        }
+
+        /**
+         * limit 계산에 반영하지 않음
+         */
+        public void onIgnore() {
+
+            release();
+        }
+
+        private boolean release() {
+
+            if (!released.compareAndSet(false, true)) {
+
+                return false;
+            }
+
+            inflight.decrementAndGet();
+
+            return true;
+        }
+    }
+}
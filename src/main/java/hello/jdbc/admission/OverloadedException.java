@@ -0,0 +1,42 @@
+package hello.jdbc.admission;
+
+/**
+ * 동시 처리 한도 초과로 요청을 거절
+ *
+ * 요청을 처리하지 않았으므로 잠시 후 다시 요청해도 된다. (재시도 가능)
+ * 과부하 상황에서 많이 발생하므로 스택 트레이스를 채우지 않고, 메시지는 getMessage() 를 호출할 때 만든다.
+ */
+public class OverloadedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int limit;
+    private final int inflight;
+
+    public OverloadedException(int limit, int inflight) {
+        this.limit = limit;
+        this.inflight = inflight;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInflight() {
+        return inflight;
+    }
+
+    public boolean isRetryable() {
+        return true;
+    }
+
+    @Override
+    public String getMessage() {
+        return "overloaded. limit = " + limit + ", inflight = " + inflight;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,528 @@
+package hello.jdbc.aggregate;
+
+import hello.jdbc.cdc.MemberChange;
+import hello.jdbc.cdc.MemberChangeFeed;
+import hello.jdbc.cdc.MemberChangeListener;
+import hello.jdbc.connection.Workload;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * 전체 잔액 합계와 잔액 상위 N 명을 메모리에서 유지하는 집계 서비스
+ *
+ * 대시보드가 몇 초마다 SUM(money), ORDER BY money DESC LIMIT 100 을 실행하지 않도록
+ * 시작할 때 한 번만 병렬로 스캔하고, 이후에는 회원 변경 피드(MemberChangeFeed)의 이벤트로 증분 갱신한다.
+ * 피드는 커밋된 변경만 전달하므로 save, update, delete, 이체 등 어떤 경로의 변경이든 반영된다.
+ *
+ * - 합계 : LongAdder
+ * - 순위 : 잔액 내림차순 ConcurrentSkipListSet (상위 회원이 빠져도 다시 스캔할 필요가 없도록 전체 회원을 정렬해서 보관)
+ *
+ * 이벤트는 변경 후 잔액(절대값)으로 반영하므로 스캔과 겹치는 이벤트가 다시 반영되어도 최종 값은 같다.
+ * 갱신은 피드 쓰레드 하나에서만 하고, 조회는 어느 쓰레드에서나 락 없이 할 수 있다.
+ */
+@Slf4j
+public class BalanceAggregateService implements MemberChangeListener, AutoCloseable {
+
+    /**
+     * 키 범위 스캔, 기본 키 인덱스로 범위만 읽는다. (마지막 범위는 상한 없음)
+     */
+    public static final String SCAN_RANGE_SQL = "SELECT memberId, money FROM member WHERE memberId >= ? AND memberId < ?";
+    public static final String SCAN_TAIL_SQL = "SELECT memberId, money FROM member WHERE memberId >= ?";
+
+    /**
+     * 메모리에 회원이 없을 때 경계를 정하기 위한 키만 읽는 인덱스 스캔
+     */
+    public static final String COUNT_SQL = "SELECT COUNT(*) FROM member";
+    public static final String KEYS_SQL = "SELECT memberId FROM member ORDER BY memberId";
+
+    /**
+     * 메모리의 회원으로 경계를 정할 때 범위마다 뽑는 표본 수
+     */
+    private static final int SAMPLES_PER_RANGE = 64;
+
+    private static final Comparator<Member> RICHEST_FIRST =
+            Comparator.comparingInt(Member::getMoney).reversed().thenComparing(Member::getMemberId);
+
+    private final DataSource dataSource;
+    private final MemberChangeFeed feed;
+
+    private final Map<String, Integer> balances = new ConcurrentHashMap<>();
+    private final NavigableSet<Member> ranking = new ConcurrentSkipListSet<>(RICHEST_FIRST);
+    private final LongAdder total = new LongAdder();
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param dataSource
+     * @param feed 초기 스캔보다 먼저 생성한 피드 (스캔 중에 일어난 변경을 놓치지 않도록)
+     */
+    public BalanceAggregateService(DataSource dataSource, MemberChangeFeed feed) {
+
+        this.dataSource = dataSource;
+        this.feed = feed;
+
+        feed.addListener(this);
+    }
+
+    /**
+     * member 테이블을 memberId 범위로 나눠서 parallelism 개 커넥션으로 동시에 스캔
+     *
+     * 범위마다 기본 키 인덱스로 자기 범위만 읽으므로 전체를 합쳐도 테이블을 한 번 읽는 것과 같다.
+     * 범위 경계는 메모리에 회원이 있으면 (웜 스타트, 다시 스캔) 그 표본으로, 없으면 키 인덱스를 한 번 읽어서 정한다.
+     *
+     * 스캔 중에 피드가 전달한 이벤트가 있으면 이 서비스에만 다시 전달받는다. (피드를 공유하는 다른 리스너는 다시 받지 않는다.)
+     *
+     * @param parallelism
+     * @throws SQLException
+     */
+    public void initialize(int parallelism) throws SQLException {
+
+        long fromSeq = feed.getLastSeq();
+
+        scanAll(parallelism);
+
+        // 스캔하는 동안 전달된 이벤트는 스캔 결과로 덮어썼을 수 있으므로 다시 전달받는다. (절대값이므로 중복 반영해도 같음)
+        feed.replay(fromSeq, this);
+    }
+
+    private synchronized void scanAll(int parallelism) throws SQLException {
+
+        long start = System.nanoTime();
+
+        // 기존 값을 비우지 않고 스캔 결과로 맞춰서 다시 스캔하는 동안에도 조회할 수 있도록 유지
+        Set<String> scanned = new HashSet<>(balances.size() * 4 / 3 + 1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+
+        try {
+
+            List<String> bounds = boundaries(parallelism);
+            List<Future<List<Member>>> partitions = new ArrayList<>(bounds.size());
+
+            for (int i = 0; i < bounds.size(); i++) {
+
+                String lower = bounds.get(i);
+                String upper = i + 1 < bounds.size() ? bounds.get(i + 1) : null;
+
+                partitions.add(executor.submit(() -> scan(lower, upper)));
+            }
+
+            for (Future<List<Member>> partition : partitions) {
+
+                for (Member member : partition.get()) {
+
+                    apply(member.getMemberId(), member.getMoney());
+
+                    scanned.add(member.getMemberId());
+                }
+            }
+
+            // 스캔에 없는 회원은 삭제된 회원
+            for (String memberId : new ArrayList<>(balances.keySet())) {
+
+                if (!scanned.contains(memberId)) {
+
+                    apply(memberId, null);
+                }
+            }
+        }
+        catch (ExecutionException e) {
+
+            if (e.getCause() instanceof SQLException) {
+
+                throw (SQLException) e.getCause();
+            }
+
+            throw new IllegalStateException(e.getCause());
+        }
+        catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+            throw new IllegalStateException(e);
+        }
+        finally {
+
+            executor.shutdown();
+        }
+
+        log.info("balance aggregates initialized. members = {}, total = {}, elapsed = {}ms",
+                balances.size(), total.sum(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 스캔 없이 저장해둔 잔액으로 먼저 채움 (웜 스타트)
+     *
+     * 저장한 이후의 변경은 반영되어 있지 않으므로 initialize() 로 데이터베이스와 맞춰야 한다.
+     *
+     * @param memberId
+     * @param money
+     */
+    public synchronized void preload(String memberId, int money) {
+
+        apply(memberId, money);
+    }
+
+    /**
+     * 메모리에 있는 회원 잔액을 모두 전달 (잔액 내림차순)
+     *
+     * @param consumer memberId, money
+     */
+    public void forEachBalance(ObjIntConsumer<String> consumer) {
+
+        for (Member member : ranking) {
+
+            consumer.accept(member.getMemberId(), member.getMoney());
+        }
+    }
+
+    @Override
+    public synchronized void onChanges(List<MemberChange> changes) {
+
+        for (MemberChange change : changes) {
+
+            apply(change.getMemberId(), change.getMoneyAfter());
+        }
+    }
+
+    public long getTotal() {
+
+        return total.sum();
+    }
+
+    public int getMemberCount() {
+
+        return balances.size();
+    }
+
+    /**
+     * 잔액 상위 n 명 (잔액이 같으면 memberId 순)
+     *
+     * @param n
+     * @return
+     */
+    public List<Member> topN(int n) {
+
+        List<Member> top = new ArrayList<>(n);
+
+        for (Member member : ranking) {
+
+            if (top.size() == n) {
+
+                break;
+            }
+
+            top.add(member);
+        }
+
+        return top;
+    }
+
+    /**
+     * 데이터베이스의 SUM(money), COUNT(*) 와 비교
+     *
+     * 먼저 피드를 읽어서 따라잡은 뒤 비교하지만, 비교하는 사이에 커밋된 변경이 있으면 일시적으로 다를 수 있다.
+     *
+     * @return 일치 여부
+     * @throws SQLException
+     */
+    public boolean verify() throws SQLException {
+
+        feed.poll();
+
+        String sql = "SELECT COUNT(*), COALESCE(SUM(money), 0) FROM member";
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+
+            conn = getConnection();
+            pstmt = conn.prepareStatement(sql);
+
+            rs = pstmt.executeQuery();
+
+            rs.next();
+
+            long count = rs.getLong(1);
+            long sum = rs.getLong(2);
+
+            boolean consistent = count == balances.size() && sum == total.sum();
+
+            if (!consistent) {
+
+                log.warn("balance aggregates mismatch. db count = {}, sum = {} / memory count = {}, sum = {}",
+                        count, sum, balances.size(), total.sum());
+            }
+
+            return consistent;
+        }
+        catch (SQLException e) {
+
+            log.error("DB Error = {}", e);
+
+            throw e;
+        }
+        finally {
+
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(pstmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    /**
+     * 주기적으로 일관성 검사, 연속 두 번 다르면 다시 스캔
+     *
+     * @param interval
+     * @param parallelism 다시 스캔할 때 사용할 병렬도
+     */
+    public synchronized void startConsistencyCheck(Duration interval, int parallelism) {
+
+        if (scheduler != null) {
+
+            throw new IllegalStateException("already started");
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+
+            Thread thread = new Thread(r, "balance-aggregate-check");
+
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        long millis = interval.toMillis();
+
+        scheduler.scheduleWithFixedDelay(() -> checkQuietly(parallelism), millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+
+        if (scheduler != null) {
+
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * 회원 잔액 반영
+     *
+     * @param memberId
+     * @param money 변경 후 잔액, 삭제된 회원이면 null
+     */
+    private void apply(String memberId, Integer money) {
+
+        Integer old = money == null ? balances.remove(memberId) : balances.put(memberId, money);
+
+        if (old != null) {
+
+            ranking.remove(new Member(memberId, old));
+            total.add(-old);
+        }
+
+        if (money != null) {
+
+            ranking.add(new Member(memberId, money));
+            total.add(money);
+        }
+    }
+
+    /**
+     * 범위의 하한 목록 (첫 번째는 빈 문자열, 모든 memberId 보다 작다.)
+     *
+     * @param parallelism
+     * @return 오름차순, 중복 없음
+     */
+    private List<String> boundaries(int parallelism) throws SQLException {
+
+        TreeSet<String> bounds = new TreeSet<>();
+
+        bounds.add("");
+
+        if (parallelism <= 1) {
+
+            return new ArrayList<>(bounds);
+        }
+
+        List<String> sample = new ArrayList<>(parallelism * SAMPLES_PER_RANGE);
+
+        // ConcurrentHashMap 의 순회 순서는 해시 순서이므로 앞에서부터 꺼내도 키 순서와 무관한 표본이 된다.
+        for (String memberId : balances.keySet()) {
+
+            if (sample.size() == parallelism * SAMPLES_PER_RANGE) {
+
+                break;
+            }
+
+            sample.add(memberId);
+        }
+
+        if (sample.size() >= parallelism) {
+
+            Collections.sort(sample);
+
+            for (int i = 1; i < parallelism; i++) {
+
+                bounds.add(sample.get(sample.size() * i / parallelism));
+            }
+        }
+        else {
+
+            bounds.addAll(indexBoundaries(parallelism));
+        }
+
+        return new ArrayList<>(bounds);
+    }
+
+    /**
+     * 기본 키 인덱스의 키만 순서대로 읽어서 건수가 같아지는 경계를 고름
+     */
+    private List<String> indexBoundaries(int parallelism) throws SQLException {
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+
+            conn = getConnection();
+            pstmt = conn.prepareStatement(COUNT_SQL);
+
+            rs = pstmt.executeQuery();
+            rs.next();
+
+            long count = rs.getLong(1);
+
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(pstmt);
+
+            List<String> bounds = new ArrayList<>(parallelism - 1);
+
+            if (count < parallelism) {
+
+                return bounds;
+            }
+
+            pstmt = conn.prepareStatement(KEYS_SQL);
+            pstmt.setFetchSize(1000);
+
+            rs = pstmt.executeQuery();
+
+            long next = count / parallelism;
+
+            for (long row = 0; bounds.size() < parallelism - 1 && rs.next(); row++) {
+
+                if (row == next) {
+
+                    bounds.add(rs.getString(1));
+
+                    next = count * (bounds.size() + 1) / parallelism;
+                }
+            }
+
+            return bounds;
+        }
+        catch (SQLException e) {
+
+            log.error("DB Error = {}", e);
+
+            throw e;
+        }
+        finally {
+
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(pstmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    /**
+     * memberId 범위 스캔
+     *
+     * @param lower 포함
+     * @param upper 제외, null 이면 상한 없음
+     */
+    private List<Member> scan(String lower, String upper) throws SQLException {
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+
+            conn = getConnection();
+            pstmt = conn.prepareStatement(upper == null ? SCAN_TAIL_SQL : SCAN_RANGE_SQL);
+            pstmt.setFetchSize(1000);
+
+            pstmt.setString(1, lower);
+
+            if (upper != null) {
+
+                pstmt.setString(2, upper);
+            }
+
+            rs = pstmt.executeQuery();
+
+            List<Member> members = new ArrayList<>();
+
+            while (rs.next()) {
+
+                members.add(new Member(rs.getString("memberId"), rs.getInt("money")));
+            }
+
+            return members;
+        }
+        catch (SQLException e) {
+
+            log.error("DB Error = {}", e);
+
+            throw e;
+        }
+        finally {
+
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(pstmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    /**
+     * 전체 스캔, 검사 쿼리는 REPORTING 풀의 커넥션을 사용 (WorkloadRoutingDataSource)
+     */
+    private Connection getConnection() throws SQLException {
+
+        return Workload.REPORTING.call(dataSource::getConnection);
+    }
+
+    private void checkQuietly(int parallelism) {
+
+        try {
+
+            if (!verify() && !verify()) {
+
+                initialize(parallelism);
+            }
+        }
+        catch (Exception e) {
+
+            log.error("balance aggregate check failed", e);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package hello.jdbc.cdc;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 회원 잔액 변경 이벤트 (member_change 테이블의 한 행)
+ *
+ * - INSERT : moneyBefore 는 null
+ * - DELETE : moneyAfter 는 null
+ * - memberId 변경 : 이전 memberId 의 DELETE 와 새 memberId 의 INSERT 두 이벤트
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class MemberChange {
+
+    public enum Type {
+        INSERT, UPDATE, DELETE
+    }
+
+    private final long seq;
+    private final Type type;
+    private final String memberId;
+    private final Integer moneyBefore;
+    private final Integer moneyAfter;
+}
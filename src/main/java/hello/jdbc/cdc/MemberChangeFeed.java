@@ -0,0 +1,572 @@
+package hello.jdbc.cdc;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 회원 잔액 변경 피드 (CDC)
+ *
+ * member 테이블을 직접 폴링하는 대신 MemberChangeTrigger 가 기록한 member_change 테이블(outbox)을
+ * seq 순서로 읽어서 리스너에 묶음으로 전달한다.
+ * 데이터베이스를 공유하는 JVM 마다 피드를 하나씩 두면 다른 JVM 에서 일어난 변경으로 캐시를 무효화할 수 있다.
+ *
+ * seq 는 INSERT 시점에 발급되므로 커밋 순서와 다를 수 있다.
+ * - 빈 seq 를 만나면 앞선 트랜잭션이 커밋될 때까지 그 뒤의 이벤트는 전달하지 않는다. (커밋 순서 보장)
+ * - 빈 seq 가 gapTimeout 동안 채워지지 않으면 건너뛰고, 건너뛴 범위를 기록해둔다.
+ *   gapTimeout 보다 오래 걸린 트랜잭션이 나중에 커밋하면 다음 폴링에서 그 범위의 이벤트를 찾아서 늦게라도 전달한다.
+ *   커밋되지 않은 세션이 하나도 없으면 남은 빈 seq 는 모두 롤백된 것이므로 기록을 지운다.
+ * 같은 회원의 변경은 행 락으로 직렬화되므로 회원별 이벤트 순서는 항상 커밋 순서와 같다.
+ * (늦게 커밋된 변경은 같은 폴링의 새 변경보다 먼저 전달)
+ */
+@Slf4j
+public class MemberChangeFeed implements AutoCloseable {
+
+    private static final String CREATE_TABLE_SQL = "CREATE TABLE IF NOT EXISTS member_change (" +
+            "seq BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+            "memberId VARCHAR(10) NOT NULL, " +
+            "type VARCHAR(6) NOT NULL, " +
+            "moneyBefore INTEGER, " +
+            "moneyAfter INTEGER, " +
+            "changedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP)";
+
+    private static final String CREATE_TRIGGER_SQL = "CREATE TRIGGER IF NOT EXISTS member_change_trigger " +
+            "AFTER INSERT, UPDATE, DELETE ON member FOR EACH ROW CALL \"" + MemberChangeTrigger.class.getName() + "\"";
+
+    public static final String READ_SQL = "SELECT seq, type, memberId, moneyBefore, moneyAfter FROM member_change WHERE seq > ? ORDER BY seq LIMIT ?";
+    public static final String READ_RANGE_SQL = "SELECT seq, type, memberId, moneyBefore, moneyAfter FROM member_change WHERE seq BETWEEN ? AND ? ORDER BY seq";
+    public static final String PURGE_SQL = "DELETE FROM member_change WHERE seq <= ?";
+    public static final String LATEST_SEQ_SQL = "SELECT COALESCE(MAX(seq), 0) FROM member_change";
+    public static final String UNCOMMITTED_SESSIONS_SQL = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SESSIONS WHERE CONTAINS_UNCOMMITTED AND ID <> SESSION_ID()";
+
+    /**
+     * 기록해두는 건너뛴 범위 최대 개수, 넘으면 가장 오래된 범위부터 포기
+     */
+    private static final int MAX_SKIPPED_RANGES = 1024;
+
+    private final DataSource dataSource;
+    private final int batchSize;
+    private final long gapTimeoutNanos;
+
+    private final List<MemberChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * 마지막으로 전달한 seq
+     */
+    private long lastSeq;
+
+    /**
+     * 기다리고 있는 빈 seq 와 처음 발견한 시각
+     */
+    private long gapSeq = -1;
+    private long gapSinceNanos;
+
+    /**
+     * 건너뛴 seq 범위 {from, to}, 늦게 커밋되는 변경을 찾기 위해 기록
+     */
+    private final List<long[]> skipped = new ArrayList<>();
+
+    /**
+     * 피드 생성, 생성 이후의 변경부터 전달
+     *
+     * @param dataSource
+     * @param batchSize 한 번에 읽는 최대 이벤트 수
+     * @param gapTimeout 빈 seq 를 기다리는 최대 시간 (가장 긴 트랜잭션보다 길게)
+     * @throws SQLException
+     */
+    public MemberChangeFeed(DataSource dataSource, int batchSize, Duration gapTimeout) throws SQLException {
+
+        this.dataSource = dataSource;
+        this.batchSize = batchSize;
+        this.gapTimeoutNanos = gapTimeout.toNanos();
+        this.lastSeq = latestSeq();
+    }
+
+    /**
+     * member_change 테이블과 트리거 생성 (이미 있으면 그대로 사용)
+     *
+     * @param dataSource
+     * @throws SQLException
+     */
+    public static void install(DataSource dataSource) throws SQLException {
+
+        Connection conn = null;
+        Statement stmt = null;
+
+        try {
+
+            conn = dataSource.getConnection();
+            stmt = conn.createStatement();
+
+            stmt.execute(CREATE_TABLE_SQL);
+            stmt.execute(CREATE_TRIGGER_SQL);
+        }
+        catch (SQLException e) {
+
+            log.error("DB Error = {}", e);
+
+            throw e;
+        }
+        finally {
+
+            JdbcUtils.closeStatement(stmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    public void addListener(MemberChangeListener listener) {
+
+        listeners.add(listener);
+    }
+
+    /**
+     * 전달 위치 변경 (seq 다음 이벤트부터 다시 전달)
+     *
+     * seq 이하의 건너뛴 범위는 그대로 두므로 그 안에서 늦게 커밋되는 변경도 계속 찾아서 전달한다.
+     * seq 보다 뒤의 범위는 폴링이 다시 읽으므로 seq 까지로 줄인다.
+     *
+     * @param seq
+     */
+    public synchronized void seek(long seq) {
+
+        List<long[]> kept = new ArrayList<>();
+
+        for (long[] range : skipped) {
+
+            if (range[0] <= seq) {
+
+                kept.add(new long[]{range[0], Math.min(range[1], seq)});
+            }
+        }
+
+        skipped.clear();
+        skipped.addAll(kept);
+
+        lastSeq = seq;
+        gapSeq = -1;
+    }
+
+    /**
+     * afterSeq 다음부터 지금까지 전달한 이벤트를 listener 에게만 다시 전달
+     *
+     * 피드 위치는 바꾸지 않으므로 다른 리스너는 이벤트를 다시 받지 않는다.
+     * poll() 과 같은 락을 잡으므로 다시 전달하는 이벤트가 이후에 폴링한 이벤트보다 먼저 전달된다.
+     *
+     * @param afterSeq
+     * @param listener
+     * @return 다시 전달한 이벤트 수
+     * @throws SQLException
+     */
+    public synchronized int replay(long afterSeq, MemberChangeListener listener) throws SQLException {
+
+        if (afterSeq >= lastSeq) {
+
+            return 0;
+        }
+
+        List<MemberChange> changes = readRange(afterSeq + 1, lastSeq);
+
+        if (!changes.isEmpty()) {
+
+            listener.onChanges(Collections.unmodifiableList(changes));
+        }
+
+        return changes.size();
+    }
+
+    public synchronized long getLastSeq() {
+
+        return lastSeq;
+    }
+
+    /**
+     * purge() 해도 되는 위치
+     *
+     * 건너뛴 범위가 남아 있으면 그 안의 이벤트가 나중에 커밋될 수 있으므로 범위 앞까지만 지운다.
+     *
+     * @return
+     */
+    public synchronized long getPurgeableSeq() {
+
+        long seq = lastSeq;
+
+        for (long[] range : skipped) {
+
+            seq = Math.min(seq, range[0] - 1);
+        }
+
+        return seq;
+    }
+
+    /**
+     * @return 기록 중인 건너뛴 seq 범위 수
+     */
+    public synchronized int getSkippedRangeCount() {
+
+        return skipped.size();
+    }
+
+    public synchronized void start(Duration interval) {
+
+        if (scheduler != null) {
+
+            throw new IllegalStateException("already started");
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+
+            Thread thread = new Thread(r, "member-change-feed");
+
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        long millis = interval.toMillis();
+
+        scheduler.scheduleWithFixedDelay(this::pollQuietly, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 새 이벤트를 한 번 읽어서 리스너에 전달
+     *
+     * @return 전달한 이벤트 수
+     * @throws SQLException
+     */
+    public synchronized int poll() throws SQLException {
+
+        List<MemberChange> ready = readSkipped();
+        List<MemberChange> read = read(lastSeq, batchSize);
+
+        long expected = lastSeq + 1;
+
+        for (MemberChange change : read) {
+
+            if (change.getSeq() != expected && !gapExpired(expected)) {
+
+                // 아직 커밋되지 않은 앞선 변경이 있을 수 있으므로 대기
+                break;
+            }
+
+            if (change.getSeq() != expected) {
+
+                log.info("member change gap skipped. seq = {} ~ {}", expected, change.getSeq() - 1);
+
+                addSkipped(expected, change.getSeq() - 1);
+            }
+
+            ready.add(change);
+
+            expected = change.getSeq() + 1;
+        }
+
+        lastSeq = expected - 1;
+
+        if (ready.isEmpty()) {
+
+            return 0;
+        }
+
+        List<MemberChange> changes = Collections.unmodifiableList(ready);
+
+        for (MemberChangeListener listener : listeners) {
+
+            try {
+
+                listener.onChanges(changes);
+            }
+            catch (RuntimeException e) {
+
+                log.error("member change listener failed. listener = {}", listener, e);
+            }
+        }
+
+        return ready.size();
+    }
+
+    /**
+     * 모든 피드가 전달한 이벤트 삭제 (outbox 크기 유지)
+     *
+     * @param throughSeq 이 seq 이하의 이벤트 삭제, 모든 피드의 getPurgeableSeq() 중 가장 작은 값
+     * @return 삭제한 이벤트 수
+     * @throws SQLException
+     */
+    public int purge(long throughSeq) throws SQLException {
+
+        String sql = PURGE_SQL;
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+
+        try {
+
+            conn = dataSource.getConnection();
+            pstmt = conn.prepareStatement(sql);
+
+            pstmt.setLong(1, throughSeq);
+
+            return pstmt.executeUpdate();
+        }
+        catch (SQLException e) {
+
+            log.error("DB Error = {}", e);
+
+            throw e;
+        }
+        finally {
+
+            JdbcUtils.closeStatement(pstmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+
+        if (scheduler != null) {
+
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * 같은 빈 seq 를 gapTimeout 이상 기다렸는지 여부
+     */
+    private boolean gapExpired(long seq) {
+
+        long now = System.nanoTime();
+
+        if (gapSeq != seq) {
+
+            gapSeq = seq;
+            gapSinceNanos = now;
+        }
+
+        return now - gapSinceNanos >= gapTimeoutNanos;
+    }
+
+    private void addSkipped(long from, long to) {
+
+        if (skipped.size() >= MAX_SKIPPED_RANGES) {
+
+            long[] dropped = skipped.remove(0);
+
+            log.warn("member change skipped range dropped. seq = {} ~ {}", dropped[0], dropped[1]);
+        }
+
+        skipped.add(new long[]{from, to});
+    }
+
+    /**
+     * 건너뛴 범위에 늦게 커밋된 이벤트 조회
+     *
+     * 커밋되지 않은 세션이 없는지 먼저 확인한 뒤 범위를 읽는다.
+     * 확인한 시점 이전에 발급된 seq 는 모두 커밋 또는 롤백이 끝났으므로, 읽은 뒤 남은 빈 seq 는 롤백된 것이다.
+     *
+     * @return seq 순서의 늦게 커밋된 이벤트
+     */
+    private List<MemberChange> readSkipped() throws SQLException {
+
+        List<MemberChange> late = new ArrayList<>();
+
+        if (skipped.isEmpty()) {
+
+            return late;
+        }
+
+        boolean settled = !hasUncommittedSessions();
+
+        List<long[]> remaining = new ArrayList<>();
+
+        for (long[] range : skipped) {
+
+            long from = range[0];
+
+            for (MemberChange change : readRange(range[0], range[1])) {
+
+                late.add(change);
+
+                if (change.getSeq() > from) {
+
+                    remaining.add(new long[]{from, change.getSeq() - 1});
+                }
+
+                from = change.getSeq() + 1;
+            }
+
+            if (from <= range[1]) {
+
+                remaining.add(new long[]{from, range[1]});
+            }
+        }
+
+        skipped.clear();
+
+        if (!settled) {
+
+            skipped.addAll(remaining);
+        }
+
+        if (!late.isEmpty()) {
+
+            log.info("member change late commits delivered. count = {}", late.size());
+        }
+
+        return late;
+    }
+
+    private List<MemberChange> read(long afterSeq, int limit) throws SQLException {
+
+        String sql = READ_SQL;
+
+        return query(sql, afterSeq, limit);
+    }
+
+    private List<MemberChange> readRange(long fromSeq, long toSeq) throws SQLException {
+
+        String sql = READ_RANGE_SQL;
+
+        return query(sql, fromSeq, toSeq);
+    }
+
+    private List<MemberChange> query(String sql, long... params) throws SQLException {
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+
+            conn = dataSource.getConnection();
+            pstmt = conn.prepareStatement(sql);
+
+            for (int i = 0; i < params.length; i++) {
+
+                pstmt.setLong(i + 1, params[i]);
+            }
+
+            rs = pstmt.executeQuery();
+
+            List<MemberChange> changes = new ArrayList<>();
+
+            while (rs.next()) {
+
+                changes.add(new MemberChange(
+                        rs.getLong("seq"),
+                        MemberChange.Type.valueOf(rs.getString("type")),
+                        rs.getString("memberId"),
+                        rs.getObject("moneyBefore", Integer.class),
+                        rs.getObject("moneyAfter", Integer.class)
+                ));
+            }
+
+            return changes;
+        }
+        catch (SQLException e) {
+
+            log.error("DB Error = {}", e);
+
+            throw e;
+        }
+        finally {
+
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(pstmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    /**
+     * 커밋되지 않은 변경을 가진 다른 세션이 있는지 여부
+     */
+    private boolean hasUncommittedSessions() throws SQLException {
+
+        String sql = UNCOMMITTED_SESSIONS_SQL;
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+
+            conn = dataSource.getConnection();
+            pstmt = conn.prepareStatement(sql);
+
+            rs = pstmt.executeQuery();
+
+            rs.next();
+
+            return rs.getLong(1) > 0;
+        }
+        catch (SQLException e) {
+
+            log.error("DB Error = {}", e);
+
+            throw e;
+        }
+        finally {
+
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(pstmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    private long latestSeq() throws SQLException {
+
+        String sql = LATEST_SEQ_SQL;
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+
+            conn = dataSource.getConnection();
+            pstmt = conn.prepareStatement(sql);
+
+            rs = pstmt.executeQuery();
+
+            rs.next();
+
+            return rs.getLong(1);
+        }
+        catch (SQLException e) {
+
+            log.error("DB Error = {}", e);
+
+            throw e;
+        }
+        finally {
+
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(pstmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    private void pollQuietly() {
+
+        try {
+
+            poll();
+        }
+        catch (Exception e) {
+
+            log.error("member change poll failed", e);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package hello.jdbc.cdc;
+
+import java.util.List;
+
+/**
+ * 회원 변경 이벤트 수신
+ *
+ * 한 번의 폴링에서 읽은 이벤트를 seq 순서대로 묶어서 전달한다.
+ */
+@FunctionalInterface
+public interface MemberChangeListener {
+
+    void onChanges(List<MemberChange> changes);
+}
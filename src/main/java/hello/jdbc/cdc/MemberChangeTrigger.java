@@ -0,0 +1,90 @@
+package hello.jdbc.cdc;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * member 테이블의 INSERT, UPDATE, DELETE 를 member_change 테이블(outbox)에 기록하는 H2 트리거
+ *
+ * 변경을 일으킨 트랜잭션과 같은 커넥션으로 기록하므로
+ * - 트랜잭션이 커밋되어야 이벤트가 보이고, 롤백되면 이벤트도 사라진다.
+ * - 데이터베이스를 공유하는 모든 JVM 이 같은 이벤트를 읽을 수 있다.
+ *
+ * 트리거는 데이터베이스 안에서 실행되므로 H2 서버(TCP) 모드에서는 이 클래스가 서버의 클래스패스에 있어야 한다.
+ */
+public class MemberChangeTrigger implements Trigger {
+
+    static final String INSERT_SQL = "INSERT INTO member_change(memberId, type, moneyBefore, moneyAfter) VALUES (?, ?, ?, ?)";
+
+    // member 테이블 컬럼 순서 (memberId, money)
+    private static final int MEMBER_ID = 0;
+    private static final int MONEY = 1;
+
+    @Override
+    public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before, int type) {
+    }
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+
+        MemberChange.Type type = oldRow == null ? MemberChange.Type.INSERT
+                : newRow == null ? MemberChange.Type.DELETE
+                : MemberChange.Type.UPDATE;
+
+        if (type == MemberChange.Type.UPDATE && !oldRow[MEMBER_ID].equals(newRow[MEMBER_ID])) {
+
+            // memberId 변경은 이전 키 삭제 + 새 키 등록으로 기록 (소비자는 키 단위로만 처리하면 된다.)
+            insert(conn, MemberChange.Type.DELETE, (String) oldRow[MEMBER_ID], oldRow, null);
+            insert(conn, MemberChange.Type.INSERT, (String) newRow[MEMBER_ID], null, newRow);
+
+            return;
+        }
+
+        // 키와 잔액이 모두 그대로인 UPDATE 는 기록하지 않음
+        if (type == MemberChange.Type.UPDATE && oldRow[MONEY].equals(newRow[MONEY])) {
+
+            return;
+        }
+
+        Object[] row = newRow != null ? newRow : oldRow;
+
+        insert(conn, type, (String) row[MEMBER_ID], oldRow, newRow);
+    }
+
+    private void insert(Connection conn, MemberChange.Type type, String memberId, Object[] oldRow, Object[] newRow) throws SQLException {
+
+        try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+
+            pstmt.setString(1, memberId);
+            pstmt.setString(2, type.name());
+            setMoney(pstmt, 3, oldRow);
+            setMoney(pstmt, 4, newRow);
+
+            pstmt.executeUpdate();
+        }
+    }
+
+    private void setMoney(PreparedStatement pstmt, int index, Object[] row) throws SQLException {
+
+        if (row == null) {
+
+            pstmt.setNull(index, Types.INTEGER);
+        }
+        else {
+
+            pstmt.setInt(index, ((Number) row[MONEY]).intValue());
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void remove() {
+    }
+}
@@ -0,0 +1,56 @@
+package hello.jdbc.config;
+
+import hello.jdbc.aggregate.BalanceAggregateService;
+import hello.jdbc.cdc.MemberChangeFeed;
+import hello.jdbc.connection.WorkloadRoutingDataSource;
+import hello.jdbc.repository.MemberRepositoryV3;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+
+/**
+ * 애플리케이션이 사용하는 DataSource, 리포지토리, 잔액 집계
+ *
+ * DataSource 빈을 등록하므로 스프링 부트의 DataSource 자동 구성 대신 작업 종류별 풀(WorkloadRoutingDataSource)을 사용하고,
+ * 트랜잭션 매니저도 이 DataSource 로 만들어진다.
+ *
+ * 잔액 집계는 회원 변경 피드(member_change 테이블, 트리거)가 필요하므로 웜 스타트를 설정했을 때만 등록한다.
+ * 웜 스타트(WarmStartRunner)는 여기서 등록한 인스턴스를 미리 채운다.
+ */
+@Configuration
+public class JdbcConfig {
+
+    @Bean
+    public WorkloadRoutingDataSource dataSource() {
+
+        return WorkloadRoutingDataSource.create(URL, USERNAME, PASSWORD);
+    }
+
+    @Bean
+    public MemberRepositoryV3 memberRepository(DataSource dataSource) {
+
+        return new MemberRepositoryV3(dataSource);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "warm-start.snapshot")
+    public MemberChangeFeed memberChangeFeed(DataSource dataSource) throws SQLException {
+
+        MemberChangeFeed.install(dataSource);
+
+        return new MemberChangeFeed(dataSource, 500, Duration.ofSeconds(5));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "warm-start.snapshot")
+    public BalanceAggregateService balanceAggregateService(DataSource dataSource, MemberChangeFeed memberChangeFeed) {
+
+        return new BalanceAggregateService(dataSource, memberChangeFeed);
+    }
+}
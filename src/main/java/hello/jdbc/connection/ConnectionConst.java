@@ -2,10 +2,12 @@ package hello.jdbc.connection;
 
 /**
  * 데이터베이스에 접속에 필요한 기본 정보 상수
+ *
+ * URL 은 application.properties 의 db.* 설정(StorageSettings)으로 정한다.
  */
 public abstract class ConnectionConst {
 
-    public static final String URL = "jdbc:h2:tcp://localhost/~/test";
+    public static final String URL = StorageSettings.load().getUrl();
     public static final String USERNAME = "sa";
     public static final String PASSWORD = "";
 }
@@ -0,0 +1,84 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.pool.HikariPool;
+import hello.jdbc.transaction.Deadline;
+import hello.jdbc.transaction.DeadlineExceededException;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * 데드라인을 고려한 커넥션 획득
+ *
+ * 현재 쓰레드에 데드라인이 있으면
+ * - 이미 지난 경우 풀에 대기하지 않고 바로 실패
+ * - HikariCP 풀이면 connectionTimeout 대신 남은 시간까지만 대기
+ * - 그 외 DataSource 는 커넥션을 받은 뒤 데드라인이 지났으면 커넥션을 돌려주고 실패
+ */
+public class DeadlineDataSource extends DelegatingDataSource {
+
+    public DeadlineDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+
+        Deadline deadline = Deadline.current();
+
+        if (deadline == null) {
+
+            return super.getConnection();
+        }
+
+        deadline.check("connection checkout");
+
+        Connection connection;
+
+        try {
+
+            connection = acquire(deadline);
+        }
+        catch (SQLException e) {
+
+            // HikariCP 는 대기 시간 초과 시 SQLTransientConnectionException 을 던진다.
+            if (deadline.isExpired() || e instanceof SQLTransientConnectionException) {
+
+                throw new DeadlineExceededException("connection checkout", e);
+            }
+
+            throw e;
+        }
+
+        if (deadline.isExpired()) {
+
+            connection.close();
+
+            deadline.check("connection checkout");
+        }
+
+        return connection;
+    }
+
+    private Connection acquire(Deadline deadline) throws SQLException {
+
+        DataSource target = obtainTargetDataSource();
+
+        if (target instanceof HikariDataSource) {
+
+            HikariPool pool = (HikariPool) ((HikariDataSource) target).getHikariPoolMXBean();
+
+            // 풀이 시작된 이후에만 대기 시간을 직접 지정 가능
+            if (pool != null) {
+
+                return pool.getConnection(Math.max(1, deadline.remainingMillis()));
+            }
+        }
+
+        return target.getConnection();
+    }
+}
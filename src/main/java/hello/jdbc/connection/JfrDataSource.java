@@ -0,0 +1,46 @@
+package hello.jdbc.connection;
+
+import hello.jdbc.jfr.ConnectionAcquireEvent;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 커넥션 획득 대기를 JFR 이벤트(ConnectionAcquireEvent)로 기록
+ *
+ * 트랜잭션 매니저와 리포지토리가 같은 DataSource 를 쓰도록 풀을 이 클래스로 감싸서 전달한다.
+ */
+public class JfrDataSource extends DelegatingDataSource {
+
+    private final String name;
+
+    public JfrDataSource(DataSource targetDataSource, String name) {
+
+        super(targetDataSource);
+
+        this.name = name;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+
+        ConnectionAcquireEvent event = ConnectionAcquireEvent.start(name);
+
+        boolean succeeded = false;
+
+        try {
+
+            Connection connection = super.getConnection();
+
+            succeeded = true;
+
+            return connection;
+        }
+        finally {
+
+            event.finish(succeeded);
+        }
+    }
+}
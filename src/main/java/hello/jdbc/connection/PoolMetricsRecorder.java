@@ -0,0 +1,99 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HikariCP 커넥션 풀 지표 수집
+ *
+ * HikariCP 가 커넥션을 획득, 반납할 때마다 호출하는 IMetricsTracker 를 구현해서 누적 값만 기록한다.
+ * 값을 읽는 쪽(PoolSizeController)이 이전 값과의 차이로 구간 평균을 계산한다.
+ *
+ * - 커넥션 획득 대기 시간 (getConnection() 호출부터 커넥션을 받을 때까지)
+ * - 커넥션 사용 횟수 (커넥션 반납 횟수 = 트랜잭션 처리량)
+ * - 커넥션 획득 타임아웃 횟수
+ *
+ * 풀에는 MetricsTrackerFactory 를 하나만 설정할 수 있으므로, 이미 설정된 팩토리(Micrometer 등)가 있으면
+ * 그 팩토리를 감싸서 모든 호출을 그대로 넘겨준다.
+ */
+public class PoolMetricsRecorder implements MetricsTrackerFactory {
+
+    private final MetricsTrackerFactory delegate;
+
+    private final LongAdder acquiredCount = new LongAdder();
+    private final LongAdder acquiredNanos = new LongAdder();
+    private final LongAdder usageCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+
+    public PoolMetricsRecorder() {
+        this(null);
+    }
+
+    /**
+     * @param delegate 함께 호출할 기존 팩토리, 없으면 null
+     */
+    public PoolMetricsRecorder(MetricsTrackerFactory delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+
+        IMetricsTracker next = delegate == null ? new IMetricsTracker() { } : delegate.create(poolName, poolStats);
+
+        return new IMetricsTracker() {
+
+            @Override
+            public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+                next.recordConnectionCreatedMillis(connectionCreatedMillis);
+            }
+
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquiredCount.increment();
+                acquiredNanos.add(elapsedAcquiredNanos);
+                next.recordConnectionAcquiredNanos(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usageCount.increment();
+                next.recordConnectionUsageMillis(elapsedBorrowedMillis);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeoutCount.increment();
+                next.recordConnectionTimeout();
+            }
+
+            @Override
+            public void close() {
+                next.close();
+            }
+        };
+    }
+
+    public MetricsTrackerFactory getDelegate() {
+        return delegate;
+    }
+
+    public long getAcquiredCount() {
+        return acquiredCount.sum();
+    }
+
+    public long getAcquiredNanos() {
+        return acquiredNanos.sum();
+    }
+
+    public long getUsageCount() {
+        return usageCount.sum();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+}
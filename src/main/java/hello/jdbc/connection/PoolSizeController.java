@@ -0,0 +1,276 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 커넥션 풀 크기 자동 조절
+ *
+ * 측정한 커넥션 획득 대기 시간과 처리량을 보고 maximumPoolSize 를 실행 중에 조절한다. (AIMD)
+ *
+ * - 증가 (Additive Increase)
+ *   커넥션을 기다리는 쓰레드가 있거나, 평균 획득 시간이 목표치를 넘으면 풀 크기를 1 증가
+ * - 감소 (Multiplicative Decrease)
+ *   1) 직전에 풀을 늘렸는데도 처리량이 늘지 않았다면 데이터베이스가 포화된 것으로 보고 크게 줄인다.
+ *   2) 사용 중인 커넥션이 풀 크기의 절반 이하로 한가하면 조금씩 줄인다.
+ *
+ * 풀 크기는 항상 minPoolSize ~ maxPoolSize 범위 안에서만 변경한다.
+ */
+@Slf4j
+public class PoolSizeController implements AutoCloseable {
+
+    /**
+     * 처리량이 이 비율 이상 늘어야 풀 증가가 효과가 있었다고 판단
+     */
+    private static final double MIN_THROUGHPUT_GAIN = 1.05;
+
+    private static final double OVERLOAD_DECREASE_FACTOR = 0.5;
+    private static final double IDLE_DECREASE_FACTOR = 0.75;
+    private static final double IDLE_UTILIZATION = 0.5;
+
+    public enum Decision {
+        INCREASE, DECREASE_OVERLOAD, DECREASE_IDLE, HOLD
+    }
+
+    private final HikariDataSource dataSource;
+    private final PoolMetricsRecorder recorder;
+    private final int minPoolSize;
+    private final int maxPoolSize;
+    private final long targetAcquireNanos;
+
+    private ScheduledExecutorService scheduler;
+
+    private long lastSampleNanos;
+    private long lastAcquiredCount;
+    private long lastAcquiredNanos;
+    private long lastUsageCount;
+    private long lastTimeoutCount;
+
+    /**
+     * 풀을 늘리기 직전의 처리량, 증가 효과를 아직 확인하지 않았으면 음수가 아님
+     */
+    private double throughputBeforeIncrease = -1;
+
+    public PoolSizeController(HikariDataSource dataSource, int minPoolSize, int maxPoolSize, Duration targetAcquireTime) {
+
+        if (minPoolSize < 1 || minPoolSize > maxPoolSize) {
+
+            throw new IllegalArgumentException("invalid pool size bounds. min = " + minPoolSize + ", max = " + maxPoolSize);
+        }
+
+        this.dataSource = dataSource;
+        this.minPoolSize = minPoolSize;
+        this.maxPoolSize = maxPoolSize;
+        this.targetAcquireNanos = targetAcquireTime.toNanos();
+        this.recorder = installRecorder(dataSource);
+        this.lastSampleNanos = System.nanoTime();
+    }
+
+    /**
+     * 주기적으로 풀 크기 조절 시작
+     *
+     * @param interval
+     */
+    public synchronized void start(Duration interval) {
+
+        if (scheduler != null) {
+
+            throw new IllegalStateException("already started");
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+
+            Thread thread = new Thread(r, "pool-size-controller");
+
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        long millis = interval.toMillis();
+
+        scheduler.scheduleWithFixedDelay(this::adjustQuietly, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 지표를 한 번 샘플링하고 풀 크기를 조절
+     *
+     * @return 결정 내용
+     */
+    public synchronized Decision adjust() {
+
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+
+        if (pool == null) {
+
+            // 아직 풀이 시작되지 않음
+            return Decision.HOLD;
+        }
+
+        long now = System.nanoTime();
+        long acquiredCount = recorder.getAcquiredCount();
+        long acquiredNanos = recorder.getAcquiredNanos();
+        long usageCount = recorder.getUsageCount();
+        long timeoutCount = recorder.getTimeoutCount();
+
+        double elapsedSeconds = Math.max(now - lastSampleNanos, 1) / 1_000_000_000.0;
+        long acquiredDelta = acquiredCount - lastAcquiredCount;
+        long avgAcquireNanos = acquiredDelta == 0 ? 0 : (acquiredNanos - lastAcquiredNanos) / acquiredDelta;
+        double throughput = (usageCount - lastUsageCount) / elapsedSeconds;
+        long timeouts = timeoutCount - lastTimeoutCount;
+
+        int pending = pool.getThreadsAwaitingConnection();
+        int active = pool.getActiveConnections();
+        int current = dataSource.getHikariConfigMXBean().getMaximumPoolSize();
+
+        boolean saturated = pending > 0 || timeouts > 0 || avgAcquireNanos > targetAcquireNanos;
+        boolean filled = pool.getTotalConnections() >= current;
+
+        Decision decision;
+        int target;
+
+        if (saturated && !filled) {
+
+            // 직전에 늘린 커넥션이 아직 채워지지 않았으면 효과를 확인할 때까지 대기
+            decision = Decision.HOLD;
+            target = current;
+        }
+        else if (saturated && throughputBeforeIncrease >= 0 && throughput < throughputBeforeIncrease * MIN_THROUGHPUT_GAIN) {
+
+            // 풀을 늘려도 처리량이 그대로면 병목은 데이터베이스 -> 커넥션을 더 주면 부하만 늘어난다.
+            decision = Decision.DECREASE_OVERLOAD;
+            target = (int) (current * OVERLOAD_DECREASE_FACTOR);
+        }
+        else if (saturated) {
+
+            decision = Decision.INCREASE;
+            target = current + 1;
+        }
+        else if (active <= current * IDLE_UTILIZATION) {
+
+            decision = Decision.DECREASE_IDLE;
+            target = (int) (current * IDLE_DECREASE_FACTOR);
+        }
+        else {
+
+            decision = Decision.HOLD;
+            target = current;
+        }
+
+        target = Math.max(minPoolSize, Math.min(maxPoolSize, target));
+
+        if (target == current) {
+
+            decision = Decision.HOLD;
+        }
+        else {
+
+            resize(target);
+
+            log.info("pool resize {} -> {}, decision = {}, pending = {}, active = {}, avgAcquire = {}us, throughput = {}/s, timeouts = {}",
+                    current, target, decision, pending, active, avgAcquireNanos / 1000, (long) throughput, timeouts);
+        }
+
+        lastSampleNanos = now;
+        lastAcquiredCount = acquiredCount;
+        lastAcquiredNanos = acquiredNanos;
+        lastUsageCount = usageCount;
+        lastTimeoutCount = timeoutCount;
+
+        if (decision == Decision.INCREASE) {
+
+            throughputBeforeIncrease = throughput;
+        }
+        else if (decision != Decision.HOLD || !saturated) {
+
+            throughputBeforeIncrease = -1;
+        }
+
+        return decision;
+    }
+
+    public int getCurrentPoolSize() {
+
+        return dataSource.getHikariConfigMXBean().getMaximumPoolSize();
+    }
+
+    public PoolMetricsRecorder getRecorder() {
+        return recorder;
+    }
+
+    @Override
+    public synchronized void close() {
+
+        if (scheduler != null) {
+
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * 최소 유휴 커넥션 수는 최대 크기를 넘을 수 없으므로 함께 조정
+     *
+     * @param target
+     */
+    private void resize(int target) {
+
+        if (dataSource.getHikariConfigMXBean().getMinimumIdle() > target) {
+
+            dataSource.getHikariConfigMXBean().setMinimumIdle(target);
+        }
+
+        dataSource.getHikariConfigMXBean().setMaximumPoolSize(target);
+    }
+
+    private void adjustQuietly() {
+
+        try {
+
+            adjust();
+        }
+        catch (Exception e) {
+
+            log.warn("pool size adjust failed", e);
+        }
+    }
+
+    /**
+     * 기존 팩토리를 감싸는 PoolMetricsRecorder 설치
+     *
+     * HikariCP 는 풀이 시작된 뒤에는 설정된 팩토리를 바꿀 수 없고, MetricRegistry 와 팩토리를 함께 쓸 수 없다.
+     * 이 경우 기존 지표를 덮어쓰지 않도록 생성 시점에 실패시킨다.
+     */
+    private static PoolMetricsRecorder installRecorder(HikariDataSource dataSource) {
+
+        MetricsTrackerFactory existing = dataSource.getMetricsTrackerFactory();
+
+        if (existing instanceof PoolMetricsRecorder) {
+
+            return (PoolMetricsRecorder) existing;
+        }
+
+        if (dataSource.getMetricRegistry() != null) {
+
+            throw new IllegalStateException("pool uses a MetricRegistry, configure it with a MetricsTrackerFactory to combine with PoolSizeController");
+        }
+
+        if (existing != null && dataSource.getHikariPoolMXBean() != null) {
+
+            throw new IllegalStateException("pool already started with a MetricsTrackerFactory, create PoolSizeController before the first getConnection()");
+        }
+
+        PoolMetricsRecorder recorder = new PoolMetricsRecorder(existing);
+
+        dataSource.setMetricsTrackerFactory(recorder);
+
+        return recorder;
+    }
+}
@@ -0,0 +1,39 @@
+package hello.jdbc.connection;
+
+/**
+ * H2 실행 방식과 방식별 기본 저장소 설정
+ *
+ * - MEMORY : 애플리케이션 JVM 안의 메모리 데이터베이스, 디스크 I/O 가 없어서 락을 오래 잡지 않으므로 락 대기를 짧게
+ * - FILE : 애플리케이션 JVM 안에서 파일을 직접 사용 (네트워크 왕복 없음), 캐시를 늘리고 커밋 기록 지연을 짧게
+ * - TCP : 별도 H2 서버에 접속, 여러 클라이언트의 쓰기를 모아서 기록하고 네트워크 왕복만큼 락 대기를 길게
+ *
+ * cacheSizeKb, writeDelayMs 가 0 이면 설정하지 않음 (H2 기본값 사용)
+ */
+public enum StorageMode {
+
+    MEMORY(0, 0, 1000),
+    FILE(64 * 1024, 200, 2000),
+    TCP(64 * 1024, 500, 3000);
+
+    private final int cacheSizeKb;
+    private final int writeDelayMs;
+    private final int lockTimeoutMs;
+
+    StorageMode(int cacheSizeKb, int writeDelayMs, int lockTimeoutMs) {
+        this.cacheSizeKb = cacheSizeKb;
+        this.writeDelayMs = writeDelayMs;
+        this.lockTimeoutMs = lockTimeoutMs;
+    }
+
+    public int getCacheSizeKb() {
+        return cacheSizeKb;
+    }
+
+    public int getWriteDelayMs() {
+        return writeDelayMs;
+    }
+
+    public int getLockTimeoutMs() {
+        return lockTimeoutMs;
+    }
+}
@@ -0,0 +1,143 @@
+package hello.jdbc.connection;
+
+import hello.jdbc.repository.MemberSchema;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * H2 실행 방식(StorageMode)과 저장소 설정으로 JDBC URL 생성
+ *
+ * 설정은 클래스패스의 application.properties 에서 읽고, 같은 이름의 시스템 프로퍼티가 있으면 우선한다.
+ * - db.mode : memory, file, tcp (기본 tcp)
+ * - db.name : 메모리 데이터베이스 이름 또는 데이터베이스 파일 경로
+ * - db.host : tcp 서버 주소
+ * - db.cache-size-kb, db.write-delay-ms, db.lock-timeout-ms : 지정하지 않으면 실행 방식별 기본값
+ *
+ * 세션 쿼리 캐시(QUERY_CACHE_SIZE)는 H2 기본값 8 대신 QUERY_CACHE_SIZE 로 늘린다.
+ * 기본값이면 웜 스타트가 미리 준비한 SQL 이 9번째 SQL 부터 앞의 것을 밀어내서 첫 요청에 다시 파싱된다.
+ *
+ * memory, file 은 애플리케이션 안에서 데이터베이스를 새로 만들 수 있으므로 접속할 때 member 테이블과 이체 함수를 생성한다. (INIT)
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class StorageSettings {
+
+    private static final String PROPERTIES = "application.properties";
+
+    /**
+     * 세션마다 파싱 결과를 재사용하는 SQL 수
+     */
+    public static final int QUERY_CACHE_SIZE = 64;
+
+    private final StorageMode mode;
+    private final String name;
+    private final String host;
+    private final int cacheSizeKb;
+    private final int writeDelayMs;
+    private final int lockTimeoutMs;
+
+    public static StorageSettings load() {
+
+        return from(loadProperties());
+    }
+
+    /**
+     * application.properties 에 db.* 시스템 프로퍼티를 덮어쓴 설정
+     */
+    public static Properties loadProperties() {
+
+        Properties properties = new Properties();
+
+        try (InputStream in = StorageSettings.class.getClassLoader().getResourceAsStream(PROPERTIES)) {
+
+            if (in != null) {
+
+                properties.load(in);
+            }
+        }
+        catch (IOException e) {
+
+            throw new IllegalStateException(e);
+        }
+
+        for (String key : System.getProperties().stringPropertyNames()) {
+
+            if (key.startsWith("db.")) {
+
+                properties.setProperty(key, System.getProperty(key));
+            }
+        }
+
+        return properties;
+    }
+
+    public static StorageSettings from(Properties properties) {
+
+        StorageMode mode = StorageMode.valueOf(property(properties, "db.mode", "tcp").toUpperCase());
+
+        return new StorageSettings(
+                mode,
+                property(properties, "db.name", mode == StorageMode.MEMORY ? "test" : "~/test"),
+                property(properties, "db.host", "localhost"),
+                Integer.parseInt(property(properties, "db.cache-size-kb", String.valueOf(mode.getCacheSizeKb()))),
+                Integer.parseInt(property(properties, "db.write-delay-ms", String.valueOf(mode.getWriteDelayMs()))),
+                Integer.parseInt(property(properties, "db.lock-timeout-ms", String.valueOf(mode.getLockTimeoutMs())))
+        );
+    }
+
+    public String getUrl() {
+
+        StringBuilder url = new StringBuilder("jdbc:h2:");
+
+        switch (mode) {
+
+            case MEMORY:
+                url.append("mem:").append(name).append(";DB_CLOSE_DELAY=-1");
+                break;
+
+            case FILE:
+                url.append("file:").append(name);
+                break;
+
+            case TCP:
+                url.append("tcp://").append(host).append('/').append(name);
+                break;
+        }
+
+        if (cacheSizeKb > 0) {
+
+            url.append(";CACHE_SIZE=").append(cacheSizeKb);
+        }
+
+        if (writeDelayMs > 0) {
+
+            url.append(";WRITE_DELAY=").append(writeDelayMs);
+        }
+
+        url.append(";LOCK_TIMEOUT=").append(lockTimeoutMs);
+        url.append(";QUERY_CACHE_SIZE=").append(QUERY_CACHE_SIZE);
+
+        if (mode != StorageMode.TCP) {
+
+            // INIT 안에서 여러 문장은 \; 로 구분
+            url.append(";INIT=").append(MemberSchema.CREATE_TABLE)
+                    .append("\\;").append(MemberSchema.CREATE_MONEY_INDEX)
+                    .append("\\;").append(MemberSchema.CREATE_TRANSFER_ALIAS);
+        }
+
+        return url.toString();
+    }
+
+    static String property(Properties properties, String key, String defaultValue) {
+
+        String value = properties.getProperty(key);
+
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+}
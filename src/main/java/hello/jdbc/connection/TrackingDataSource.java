@@ -0,0 +1,360 @@
+package hello.jdbc.connection;
+
+import hello.jdbc.load.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 커넥션 누수 감지, 보유 시간 측정
+ *
+ * 커넥션을 프록시로 감싸서 획득부터 close() 까지를 추적한다.
+ * - 호출자 : 커넥션을 요청한 첫 번째 애플리케이션 메서드 (스프링, JDBC, DataSource 래퍼, getConnection() 도우미는 건너뜀)
+ * - 스택 트레이스 : 생성 비용이 크므로 stackSampleRate 번에 한 번만 기록 (테스트 모드에서는 항상)
+ * - 호출자별 보유 시간 히스토그램, holdThreshold 를 넘겨서 보유한 횟수
+ *
+ * 아직 반납되지 않고 holdThreshold 를 넘긴 커넥션은 누수 의심으로 보고서(getLeakReport)에 포함된다.
+ * 테스트 모드에서는 verifyNoLeaks() 로 반납되지 않은 커넥션이 있으면 테스트를 실패시킬 수 있다.
+ */
+@Slf4j
+public class TrackingDataSource extends DelegatingDataSource {
+
+    private static final String[] INFRASTRUCTURE_PREFIXES = {
+            "java.", "javax.", "jdk.", "sun.", "com.sun.", "org.springframework.", "com.zaxxer.", "org.h2."
+    };
+
+    private final long holdThresholdNanos;
+    private final int stackSampleRate;
+
+    private volatile boolean testMode;
+
+    private final AtomicLong checkoutIds = new AtomicLong();
+    private final Map<Long, Checkout> active = new ConcurrentHashMap<>();
+    private final Map<String, CallerStats> callers = new ConcurrentHashMap<>();
+
+    /**
+     * @param targetDataSource
+     * @param holdThreshold 이 시간보다 오래 보유하면 누수 의심
+     * @param stackSampleRate 스택 트레이스를 기록하는 간격 (1 이면 모든 획득)
+     */
+    public TrackingDataSource(DataSource targetDataSource, Duration holdThreshold, int stackSampleRate) {
+
+        super(targetDataSource);
+
+        this.holdThresholdNanos = holdThreshold.toNanos();
+        this.stackSampleRate = Math.max(1, stackSampleRate);
+    }
+
+    /**
+     * 테스트 모드 : 모든 획득의 스택 트레이스 기록
+     */
+    public void setTestMode(boolean testMode) {
+
+        this.testMode = testMode;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+
+        return track(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+
+        return track(super.getConnection(username, password));
+    }
+
+    /**
+     * 반납되지 않은 커넥션 수
+     */
+    public int getActiveCount() {
+
+        return active.size();
+    }
+
+    /**
+     * 반납되지 않은 커넥션이 있으면 예외 (테스트 종료 시점에 호출)
+     *
+     * 첫 번째 누수 커넥션의 획득 스택 트레이스를 원인으로 포함한다.
+     */
+    public void verifyNoLeaks() {
+
+        if (active.isEmpty()) {
+
+            return;
+        }
+
+        List<Checkout> leaks = new ArrayList<>(active.values());
+
+        leaks.sort(Comparator.comparingLong(c -> c.id));
+
+        Checkout first = leaks.get(0);
+
+        IllegalStateException e = new IllegalStateException(
+                "connection leak. count = " + leaks.size() + ", first caller = " + first.caller + ", report = " + getLeakReport());
+
+        if (first.stack != null) {
+
+            e.initCause(first.stack);
+        }
+
+        throw e;
+    }
+
+    /**
+     * 누수 의심 커넥션과 호출자별 보유 시간 (JSON)
+     *
+     * {"active": 2, "holdThresholdMillis": 1000,
+     *  "suspectedLeaks": [{"id": 7, "caller": "...", "thread": "...", "heldMillis": 1500, "stack": ["...", ...]}],
+     *  "callers": [{"caller": "...", "checkouts": 10, "p50Micros": 50, "p99Micros": 120, "maxMicros": 300, "overThreshold": 0}]}
+     *
+     * @return
+     */
+    public String getLeakReport() {
+
+        long now = System.nanoTime();
+
+        StringBuilder json = new StringBuilder();
+
+        json.append("{\"active\": ").append(active.size())
+                .append(", \"holdThresholdMillis\": ").append(holdThresholdNanos / 1_000_000)
+                .append(", \"suspectedLeaks\": [");
+
+        String separator = "";
+
+        for (Checkout checkout : active.values()) {
+
+            long held = now - checkout.startNanos;
+
+            if (held < holdThresholdNanos && !testMode) {
+
+                continue;
+            }
+
+            json.append(separator)
+                    .append("{\"id\": ").append(checkout.id)
+                    .append(", \"caller\": ").append(quote(checkout.caller))
+                    .append(", \"thread\": ").append(quote(checkout.thread))
+                    .append(", \"heldMillis\": ").append(held / 1_000_000)
+                    .append(", \"stack\": [");
+
+            if (checkout.stack != null) {
+
+                StackTraceElement[] frames = checkout.stack.getStackTrace();
+
+                for (int i = 0; i < frames.length; i++) {
+
+                    json.append(i == 0 ? "" : ", ").append(quote(frames[i].toString()));
+                }
+            }
+
+            json.append("]}");
+
+            separator = ", ";
+        }
+
+        json.append("], \"callers\": [");
+
+        separator = "";
+
+        for (Map.Entry<String, CallerStats> entry : new TreeMap<>(callers).entrySet()) {
+
+            LatencyHistogram holds = entry.getValue().holds;
+
+            json.append(separator)
+                    .append("{\"caller\": ").append(quote(entry.getKey()))
+                    .append(", \"checkouts\": ").append(holds.getTotalCount())
+                    .append(", \"p50Micros\": ").append(holds.getValueAtPercentile(50) / 1000)
+                    .append(", \"p99Micros\": ").append(holds.getValueAtPercentile(99) / 1000)
+                    .append(", \"maxMicros\": ").append(holds.getMaxValue() / 1000)
+                    .append(", \"overThreshold\": ").append(entry.getValue().overThreshold.sum())
+                    .append('}');
+
+            separator = ", ";
+        }
+
+        return json.append("]}").toString();
+    }
+
+    /**
+     * 호출자별 보유 시간 히스토그램
+     *
+     * @param caller 클래스 이름.메서드 이름
+     * @return 기록이 없으면 null
+     */
+    public LatencyHistogram getHoldTimes(String caller) {
+
+        CallerStats stats = callers.get(caller);
+
+        return stats == null ? null : stats.holds;
+    }
+
+    private Connection track(Connection target) {
+
+        long id = checkoutIds.incrementAndGet();
+
+        Throwable stack = testMode || id % stackSampleRate == 0 ? new Throwable("connection checkout #" + id) : null;
+
+        Checkout checkout = new Checkout(id, caller(), Thread.currentThread().getName(), System.nanoTime(), stack);
+
+        active.put(id, checkout);
+
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+
+            switch (method.getName()) {
+
+                case "equals":
+                    return proxy == args[0];
+
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+
+                case "toString":
+                    return "Tracked[" + id + "] " + target;
+
+                case "close":
+                    // close() 가 실패해도 다시 반납할 수 없으므로 추적은 먼저 종료
+                    release(checkout);
+                    break;
+            }
+
+            try {
+
+                return method.invoke(target, args);
+            }
+            catch (InvocationTargetException e) {
+
+                throw e.getCause();
+            }
+        });
+    }
+
+    private void release(Checkout checkout) {
+
+        if (!checkout.released.compareAndSet(false, true)) {
+
+            return;
+        }
+
+        active.remove(checkout.id);
+
+        long held = System.nanoTime() - checkout.startNanos;
+
+        CallerStats stats = callers.computeIfAbsent(checkout.caller, caller -> new CallerStats());
+
+        stats.holds.recordValue(held);
+
+        if (held >= holdThresholdNanos) {
+
+            stats.overThreshold.increment();
+
+            log.warn("connection held too long. caller = {}, held = {}ms", checkout.caller, held / 1_000_000);
+        }
+    }
+
+    /**
+     * 커넥션을 요청한 애플리케이션 메서드 (클래스 이름.메서드 이름)
+     */
+    private static String caller() {
+
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> !isInfrastructure(frame.getClassName()))
+                // 리포지토리의 getConnection() 같은 획득 도우미 메서드도 건너뜀
+                .filter(frame -> !frame.getMethodName().equals("getConnection"))
+                .map(frame -> frame.getClassName() + "." + frame.getMethodName())
+                .findFirst()
+                .orElse("unknown"));
+    }
+
+    private static boolean isInfrastructure(String className) {
+
+        // DataSource 래퍼 (이 클래스, DeadlineDataSource 등)
+        if (className.endsWith("DataSource") || className.startsWith(TrackingDataSource.class.getName() + "$")) {
+
+            return true;
+        }
+
+        for (String prefix : INFRASTRUCTURE_PREFIXES) {
+
+            if (className.startsWith(prefix)) {
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static String quote(String value) {
+
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+
+        for (char c : value.toCharArray()) {
+
+            switch (c) {
+
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    }
+                    else {
+                        quoted.append(c);
+                    }
+            }
+        }
+
+        return quoted.append('"').toString();
+    }
+
+    private static class Checkout {
+
+        private final long id;
+        private final String caller;
+        private final String thread;
+        private final long startNanos;
+        private final Throwable stack;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Checkout(long id, String caller, String thread, long startNanos, Throwable stack) {
+            this.id = id;
+            this.caller = caller;
+            this.thread = thread;
+            this.startNanos = startNanos;
+            this.stack = stack;
+        }
+    }
+
+    private static class CallerStats {
+
+        private final LatencyHistogram holds = new LatencyHistogram();
+        private final LongAdder overThreshold = new LongAdder();
+    }
+}
@@ -0,0 +1,148 @@
+package hello.jdbc.connection;
+
+import java.sql.SQLException;
+
+/**
+ * 커넥션 풀을 나누는 작업 종류와 종류별 기본 풀 설정
+ *
+ * - OLTP : 이체 같은 대화형 요청, 풀을 넉넉하게 두고 커넥션 대기와 락 대기를 짧게 (오래 기다리느니 빨리 실패)
+ * - BATCH : 일괄 정산, 대량 적재, 풀을 작게 두고 커넥션이 빌 때까지 오래 기다림
+ * - REPORTING : 전체 스캔, 집계, 풀을 작게 두고 락 대기를 길게
+ *
+ * 요청을 처리하는 쓰레드에 작업 종류를 바인딩해두면 WorkloadRoutingDataSource 가 해당 풀의 커넥션을 준다.
+ * 바인딩하지 않은 쓰레드는 OLTP 풀을 사용한다.
+ *
+ * <pre>
+ * Workload.BATCH.call(() -> batchExecutor.execute(transfers));
+ * </pre>
+ */
+public enum Workload {
+
+    OLTP(10, 1000, 1000),
+    BATCH(2, 30000, 3000),
+    REPORTING(2, 10000, 10000);
+
+    private static final ThreadLocal<Workload> CURRENT = new ThreadLocal<>();
+
+    private final int maximumPoolSize;
+    private final long connectionTimeoutMs;
+    private final int lockTimeoutMs;
+
+    Workload(int maximumPoolSize, long connectionTimeoutMs, int lockTimeoutMs) {
+        this.maximumPoolSize = maximumPoolSize;
+        this.connectionTimeoutMs = connectionTimeoutMs;
+        this.lockTimeoutMs = lockTimeoutMs;
+    }
+
+    public int getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    public long getConnectionTimeoutMs() {
+        return connectionTimeoutMs;
+    }
+
+    public int getLockTimeoutMs() {
+        return lockTimeoutMs;
+    }
+
+    /**
+     * 설정 키에 쓰는 이름 (db.pool.oltp.size 등)
+     */
+    public String key() {
+        return name().toLowerCase();
+    }
+
+    /**
+     * 현재 쓰레드의 작업 종류
+     *
+     * @return 바인딩하지 않았으면 OLTP
+     */
+    public static Workload current() {
+
+        Workload workload = CURRENT.get();
+
+        return workload == null ? OLTP : workload;
+    }
+
+    /**
+     * 현재 쓰레드에 작업 종류 바인딩
+     *
+     * 쓰레드 풀에 넘긴 작업에는 전파되지 않으므로 작업 안에서 다시 바인딩해야 한다.
+     *
+     * @return 스코프가 끝나면 이전 작업 종류로 복구
+     */
+    public Scope attach() {
+
+        Workload previous = CURRENT.get();
+
+        CURRENT.set(this);
+
+        return new Scope(previous);
+    }
+
+    /**
+     * 이 작업 종류를 바인딩한 채로 실행
+     */
+    public <T> T call(Callback<T> callback) throws SQLException {
+
+        Scope scope = attach();
+
+        try {
+
+            return callback.call();
+        }
+        finally {
+
+            scope.close();
+        }
+    }
+
+    /**
+     * 이 작업 종류를 바인딩한 채로 실행 (결과, 검사 예외가 없는 작업)
+     */
+    public void run(Runnable task) {
+
+        Scope scope = attach();
+
+        try {
+
+            task.run();
+        }
+        finally {
+
+            scope.close();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Callback<T> {
+
+        T call() throws SQLException;
+    }
+
+    /**
+     * 작업 종류 바인딩 해제
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private final Workload previous;
+
+        private Scope(Workload previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+
+            if (previous == null) {
+
+                CURRENT.remove();
+            }
+            else {
+
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 작업 종류(Workload)별로 분리한 커넥션 풀 (벌크헤드)
+ *
+ * 일괄 정산, 전체 스캔이 이체와 같은 풀을 쓰면 풀을 다 차지해서 이체가 커넥션을 기다리게 된다.
+ * 작업 종류마다 크기와 타임아웃이 다른 HikariCP 풀을 따로 두고, 현재 쓰레드의 작업 종류로 풀을 고른다.
+ * 배치 풀이 모두 사용 중이어도 배치 요청만 배치 풀에서 기다리고, OLTP 풀은 영향을 받지 않는다.
+ *
+ * 트랜잭션 매니저와 리포지토리에 이 DataSource 하나를 전달한다.
+ * - 트랜잭션 시작 시점의 작업 종류로 풀을 고르고, 트랜잭션이 끝날 때까지 같은 커넥션을 사용 (DataSourceUtils)
+ * - 트랜잭션 밖의 조회는 조회할 때의 작업 종류로 풀을 고른다.
+ *
+ * 풀 설정은 application.properties (또는 시스템 프로퍼티) 에서 읽고, 없으면 작업 종류별 기본값
+ * - db.pool.{oltp|batch|reporting}.size : 최대 커넥션 수
+ * - db.pool.{oltp|batch|reporting}.connection-timeout-ms : 커넥션 획득 대기 시간
+ * - db.pool.{oltp|batch|reporting}.lock-timeout-ms : 세션 락 대기 시간 (SET LOCK_TIMEOUT)
+ */
+@Slf4j
+public class WorkloadRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private final Map<Workload, HikariDataSource> pools;
+
+    public WorkloadRoutingDataSource(Map<Workload, HikariDataSource> pools) {
+
+        this.pools = new EnumMap<>(pools);
+
+        setTargetDataSources(new HashMap<>(this.pools));
+        setDefaultTargetDataSource(this.pools.get(Workload.OLTP));
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    public static WorkloadRoutingDataSource create(String url, String username, String password) {
+
+        return create(url, username, password, StorageSettings.loadProperties());
+    }
+
+    public static WorkloadRoutingDataSource create(String url, String username, String password, Properties properties) {
+
+        Map<Workload, HikariDataSource> pools = new EnumMap<>(Workload.class);
+
+        for (Workload workload : Workload.values()) {
+
+            String prefix = "db.pool." + workload.key() + ".";
+
+            HikariDataSource pool = new HikariDataSource();
+
+            pool.setPoolName(workload.key());
+            pool.setJdbcUrl(url);
+            pool.setUsername(username);
+            pool.setPassword(password);
+            pool.setMaximumPoolSize(Integer.parseInt(
+                    StorageSettings.property(properties, prefix + "size", String.valueOf(workload.getMaximumPoolSize()))));
+            pool.setConnectionTimeout(Long.parseLong(
+                    StorageSettings.property(properties, prefix + "connection-timeout-ms", String.valueOf(workload.getConnectionTimeoutMs()))));
+            pool.setConnectionInitSql("SET LOCK_TIMEOUT " +
+                    StorageSettings.property(properties, prefix + "lock-timeout-ms", String.valueOf(workload.getLockTimeoutMs())));
+
+            pools.put(workload, pool);
+
+            log.info("workload pool = {}, size = {}, connectionTimeout = {}ms, initSql = {}",
+                    pool.getPoolName(), pool.getMaximumPoolSize(), pool.getConnectionTimeout(), pool.getConnectionInitSql());
+        }
+
+        return new WorkloadRoutingDataSource(pools);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+
+        return Workload.current();
+    }
+
+    public HikariDataSource getPool(Workload workload) {
+
+        return pools.get(workload);
+    }
+
+    @Override
+    public void close() {
+
+        for (HikariDataSource pool : pools.values()) {
+
+            pool.close();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package hello.jdbc.domain;
+
+import lombok.Data;
+
+/**
+ * fromId 회원에서 toId 회원으로 money 만큼 이체하는 요청 한 건
+ */
+@Data
+public class Transfer {
+
+    private final String fromId;
+    private final String toId;
+    private final int money;
+}
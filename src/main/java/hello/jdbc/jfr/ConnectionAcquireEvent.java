@@ -0,0 +1,47 @@
+package hello.jdbc.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR 이벤트 - 커넥션 획득 대기
+ *
+ * 풀에 남은 커넥션이 없으면 이벤트 시간이 곧 풀 대기 시간이다.
+ */
+@Name("hello.jdbc.ConnectionAcquire")
+@Label("Connection Acquire")
+@Category({"hello-jdbc", "JDBC"})
+@Description("DataSource 에서 커넥션을 받을 때까지의 대기")
+public class ConnectionAcquireEvent extends Event {
+
+    @Label("DataSource")
+    private String dataSource;
+
+    @Label("Succeeded")
+    private boolean succeeded;
+
+    public static ConnectionAcquireEvent start(String dataSource) {
+
+        ConnectionAcquireEvent event = new ConnectionAcquireEvent();
+
+        event.dataSource = dataSource;
+        event.begin();
+
+        return event;
+    }
+
+    public void finish(boolean succeeded) {
+
+        end();
+
+        if (shouldCommit()) {
+
+            this.succeeded = succeeded;
+
+            commit();
+        }
+    }
+}
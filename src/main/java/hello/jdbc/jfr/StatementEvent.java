@@ -0,0 +1,48 @@
+package hello.jdbc.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR 이벤트 - SQL 실행
+ *
+ * sqlId 는 SQL 문자열 대신 짧은 식별자 (예: member.findById) 를 사용한다.
+ * 변경은 반영된 행 수, 조회는 읽은 행 수를 기록한다.
+ */
+@Name("hello.jdbc.Statement")
+@Label("Statement")
+@Category({"hello-jdbc", "JDBC"})
+@Description("리포지토리의 SQL 실행")
+public class StatementEvent extends Event {
+
+    @Label("SQL Id")
+    private String sqlId;
+
+    @Label("Rows")
+    private long rows;
+
+    public static StatementEvent start(String sqlId) {
+
+        StatementEvent event = new StatementEvent();
+
+        event.sqlId = sqlId;
+        event.begin();
+
+        return event;
+    }
+
+    public void finish(long rows) {
+
+        end();
+
+        if (shouldCommit()) {
+
+            this.rows = rows;
+
+            commit();
+        }
+    }
+}
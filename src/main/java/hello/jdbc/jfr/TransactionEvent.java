@@ -0,0 +1,65 @@
+package hello.jdbc.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR 이벤트 - 트랜잭션
+ *
+ * 이벤트 시작 시각이 트랜잭션 시작(begin), 끝이 커밋 또는 롤백 시점이다.
+ * 기록 중이 아니면 begin(), commit() 은 아무 것도 하지 않으므로 비용이 거의 없다.
+ *
+ * TransactionEvent event = TransactionEvent.start("accountTransfer");
+ * ...
+ * event.finish(TransactionEvent.COMMIT);
+ */
+@Name("hello.jdbc.Transaction")
+@Label("Transaction")
+@Category({"hello-jdbc", "JDBC"})
+@Description("트랜잭션 시작부터 커밋 또는 롤백까지")
+public class TransactionEvent extends Event {
+
+    public static final String COMMIT = "commit";
+    public static final String ROLLBACK = "rollback";
+
+    @Label("Operation")
+    private String operation;
+
+    @Label("Outcome")
+    @Description("commit, rollback")
+    private String outcome;
+
+    @Label("Transfers")
+    private int transfers;
+
+    public static TransactionEvent start(String operation) {
+
+        TransactionEvent event = new TransactionEvent();
+
+        event.operation = operation;
+        event.begin();
+
+        return event;
+    }
+
+    public void finish(String outcome) {
+
+        finish(outcome, 1);
+    }
+
+    public void finish(String outcome, int transfers) {
+
+        end();
+
+        if (shouldCommit()) {
+
+            this.outcome = outcome;
+            this.transfers = transfers;
+
+            commit();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package hello.jdbc.load;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 부하 테스트에서 이체 대상 회원 번호(0 ~ size-1)를 고르는 분포
+ */
+public interface KeyDistribution {
+
+    int next(Random random);
+
+    /**
+     * 모든 회원을 같은 확률로 선택
+     *
+     * @param size
+     * @return
+     */
+    static KeyDistribution uniform(int size) {
+
+        return random -> random.nextInt(size);
+    }
+
+    /**
+     * Zipf 분포 - 소수의 회원에게 요청이 몰리는 핫 계좌 상황
+     *
+     * k 번째 회원이 선택될 확률은 1 / k^exponent 에 비례한다.
+     * 누적 분포를 미리 계산해두고 이진 탐색으로 선택
+     *
+     * @param size
+     * @param exponent 1.0 근처가 일반적, 클수록 쏠림이 심해진다.
+     * @return
+     */
+    static KeyDistribution zipfian(int size, double exponent) {
+
+        double[] cdf = new double[size];
+        double sum = 0;
+
+        for (int k = 0; k < size; k++) {
+
+            sum += 1.0 / Math.pow(k + 1, exponent);
+            cdf[k] = sum;
+        }
+
+        for (int k = 0; k < size; k++) {
+
+            cdf[k] /= sum;
+        }
+
+        return random -> {
+
+            int index = Arrays.binarySearch(cdf, random.nextDouble());
+
+            return index >= 0 ? index : Math.min(-index - 1, size - 1);
+        };
+    }
+}
@@ -0,0 +1,152 @@
+package hello.jdbc.load;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 지연 시간 히스토그램 (log-linear 버킷)
+ *
+ * HdrHistogram 과 같은 방식으로 2의 거듭제곱 구간마다 64개의 선형 버킷을 둔다.
+ * 값의 상대 오차는 1/64 (약 1.6%) 이내이고, 메모리는 값의 범위와 관계없이 고정 (약 30KB)
+ *
+ * 여러 쓰레드에서 동시에 기록 가능하다.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKET_COUNT * 2;
+    private static final int BUCKET_COUNT = (63 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT + LINEAR_LIMIT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalValue = new LongAdder();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * 값 기록
+     *
+     * @param value 0 이상 (보통 나노초)
+     */
+    public void recordValue(long value) {
+
+        if (value < 0) {
+
+            throw new IllegalArgumentException("value must be >= 0. value = " + value);
+        }
+
+        counts.incrementAndGet(indexOf(value));
+        totalCount.increment();
+        totalValue.add(value);
+        maxValue.accumulateAndGet(value, Math::max);
+    }
+
+    public long getTotalCount() {
+
+        return totalCount.sum();
+    }
+
+    public long getMaxValue() {
+
+        return maxValue.get();
+    }
+
+    public double getMean() {
+
+        long count = totalCount.sum();
+
+        return count == 0 ? 0 : (double) totalValue.sum() / count;
+    }
+
+    /**
+     * 백분위 값
+     *
+     * @param percentile 0 ~ 100
+     * @return 해당 백분위가 속한 버킷의 상한 값
+     */
+    public long getValueAtPercentile(double percentile) {
+
+        long count = totalCount.sum();
+
+        if (count == 0) {
+
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+
+            seen += counts.get(i);
+
+            if (seen >= target) {
+
+                return Math.min(highestValueAt(i), maxValue.get());
+            }
+        }
+
+        return maxValue.get();
+    }
+
+    /**
+     * 다른 히스토그램의 값을 합산
+     *
+     * @param other
+     */
+    public void add(LatencyHistogram other) {
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+
+            long c = other.counts.get(i);
+
+            if (c != 0) {
+
+                counts.addAndGet(i, c);
+            }
+        }
+
+        totalCount.add(other.totalCount.sum());
+        totalValue.add(other.totalValue.sum());
+
+        maxValue.accumulateAndGet(other.maxValue.get(), Math::max);
+    }
+
+    static int indexOf(long value) {
+
+        if (value < LINEAR_LIMIT) {
+
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+
+        return shift * SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    static long lowestValueAt(int index) {
+
+        if (index < LINEAR_LIMIT) {
+
+            return index;
+        }
+
+        int shift = index / SUB_BUCKET_COUNT - 1;
+
+        return (long) (index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT) << shift;
+    }
+
+    static long highestValueAt(int index) {
+
+        if (index < LINEAR_LIMIT) {
+
+            return index;
+        }
+
+        int shift = index / SUB_BUCKET_COUNT - 1;
+
+        return lowestValueAt(index) + (1L << shift) - 1;
+    }
+}
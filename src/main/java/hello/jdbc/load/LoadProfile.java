@@ -0,0 +1,62 @@
+package hello.jdbc.load;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * 부하 테스트 설정
+ */
+@Getter
+@Builder
+public class LoadProfile {
+
+    /**
+     * 동시에 이체를 요청하는 쓰레드 수
+     */
+    @Builder.Default
+    private final int threads = 4;
+
+    /**
+     * 초당 목표 요청 수 (전체 쓰레드 합계), 0 이면 제한 없이 최대한 요청
+     */
+    @Builder.Default
+    private final int targetRate = 0;
+
+    @Builder.Default
+    private final Duration duration = Duration.ofSeconds(5);
+
+    @Builder.Default
+    private final int memberCount = 1000;
+
+    @Builder.Default
+    private final int initialMoney = 10000;
+
+    /**
+     * 1회 이체 금액 상한 (1 ~ maxAmount 사이 임의 금액)
+     */
+    @Builder.Default
+    private final int maxAmount = 100;
+
+    /**
+     * 부하 테스트용 회원 ID 접두사 (memberId 컬럼 길이 10 이내)
+     */
+    @Builder.Default
+    private final String memberPrefix = "L";
+
+    /**
+     * 이체 대상 선택 분포, null 이면 균등 분포
+     */
+    private final KeyDistribution distribution;
+
+    public KeyDistribution getDistribution() {
+
+        return distribution != null ? distribution : KeyDistribution.uniform(memberCount);
+    }
+
+    public String memberId(int index) {
+
+        return memberPrefix + index;
+    }
+}
@@ -0,0 +1,57 @@
+package hello.jdbc.load;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 부하 테스트 결과
+ */
+@Getter
+@RequiredArgsConstructor
+public class LoadResult {
+
+    private final long operations;
+    private final long errors;
+    private final long elapsedNanos;
+    private final LatencyHistogram latency;
+    private final long moneyBefore;
+    private final long moneyAfter;
+
+    /**
+     * 초당 처리 건수 (성공 + 실패)
+     *
+     * @return
+     */
+    public double getThroughput() {
+
+        return operations * 1_000_000_000.0 / Math.max(elapsedNanos, 1);
+    }
+
+    /**
+     * 이체 전후 전체 금액이 같은지 여부
+     *
+     * @return
+     */
+    public boolean isConserved() {
+
+        return moneyBefore == moneyAfter;
+    }
+
+    public long percentileMicros(double percentile) {
+
+        return TimeUnit.NANOSECONDS.toMicros(latency.getValueAtPercentile(percentile));
+    }
+
+    public String report() {
+
+        return String.format("operations = %d, errors = %d, throughput = %.1f/s, "
+                        + "p50 = %dus, p99 = %dus, p999 = %dus, max = %dus, "
+                        + "money before = %d, after = %d, conserved = %s",
+                operations, errors, getThroughput(),
+                percentileMicros(50), percentileMicros(99), percentileMicros(99.9),
+                TimeUnit.NANOSECONDS.toMicros(latency.getMaxValue()),
+                moneyBefore, moneyAfter, isConserved());
+    }
+}
@@ -0,0 +1,13 @@
+package hello.jdbc.load;
+
+/**
+ * 부하 테스트 대상 이체 로직
+ *
+ * 서비스 버전마다 클래스가 다르므로 메서드 참조로 연결한다.
+ * ex) new TransferLoadGenerator(dataSource, memberService::accountTransfer)
+ */
+@FunctionalInterface
+public interface TransferAction {
+
+    void transfer(String fromId, String toId, int money) throws Exception;
+}
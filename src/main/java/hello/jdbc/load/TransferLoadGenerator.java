@@ -0,0 +1,205 @@
+package hello.jdbc.load;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV3;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 계좌이체 부하 테스트
+ *
+ * 1. 부하 테스트용 회원을 새로 등록 (memberPrefix 로 시작하는 회원)
+ * 2. 설정된 쓰레드 수로 이체를 반복 요청 (closed-loop)
+ * 3. 목표 요청 수(targetRate)가 있으면 요청 시작 시각을 미리 정해두고,
+ *    지연 시간은 실제 시작 시각이 아니라 "원래 시작했어야 할 시각" 부터 측정한다.
+ *    앞의 요청이 느려져서 뒤 요청이 늦게 시작된 대기 시간까지 포함되므로 coordinated omission 이 보정된다.
+ * 4. 종료 후 전체 금액이 보존되었는지 검증
+ */
+@Slf4j
+public class TransferLoadGenerator {
+
+    public static final String DELETE_MEMBERS_SQL = "DELETE FROM member WHERE memberId LIKE ?";
+    public static final String TOTAL_MONEY_SQL = "SELECT COALESCE(SUM(money), 0) FROM member WHERE memberId LIKE ?";
+
+    private final DataSource dataSource;
+    private final TransferAction action;
+    private final MemberRepositoryV3 memberRepository;
+
+    public TransferLoadGenerator(DataSource dataSource, TransferAction action) {
+        this.dataSource = dataSource;
+        this.action = action;
+        this.memberRepository = new MemberRepositoryV3(dataSource);
+    }
+
+    public LoadResult run(LoadProfile profile) throws SQLException, InterruptedException {
+
+        seed(profile);
+
+        long moneyBefore = totalMoney(profile);
+
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder operations = new LongAdder();
+        LongAdder errors = new LongAdder();
+
+        int threads = profile.getThreads();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        // 쓰레드당 요청 간격, 0 이면 제한 없음
+        long intervalNanos = profile.getTargetRate() > 0 ? 1_000_000_000L * threads / profile.getTargetRate() : 0;
+
+        long startNanos = System.nanoTime();
+        long endNanos = startNanos + profile.getDuration().toNanos();
+
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+
+            // 쓰레드마다 시작 시각을 조금씩 어긋나게 해서 요청이 한 번에 몰리지 않도록 한다.
+            long firstStart = startNanos + intervalNanos * t / threads;
+
+            futures.add(executor.submit(() -> {
+
+                KeyDistribution distribution = profile.getDistribution();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+
+                long intendedStart = firstStart;
+
+                while (true) {
+
+                    long now = System.nanoTime();
+
+                    if (now >= endNanos) {
+
+                        break;
+                    }
+
+                    if (intervalNanos > 0 && intendedStart > now) {
+
+                        LockSupport.parkNanos(intendedStart - now);
+                    }
+
+                    long measureFrom = intervalNanos > 0 ? intendedStart : System.nanoTime();
+
+                    int from = distribution.next(random);
+                    int to = distribution.next(random);
+
+                    while (to == from) {
+
+                        to = random.nextInt(profile.getMemberCount());
+                    }
+
+                    try {
+
+                        action.transfer(profile.memberId(from), profile.memberId(to), 1 + random.nextInt(profile.getMaxAmount()));
+                    }
+                    catch (Exception e) {
+
+                        errors.increment();
+
+                        log.debug("transfer failed", e);
+                    }
+
+                    latency.recordValue(Math.max(0, System.nanoTime() - measureFrom));
+                    operations.increment();
+
+                    intendedStart += intervalNanos;
+                }
+
+                return null;
+            }));
+        }
+
+        for (Future<?> future : futures) {
+
+            try {
+
+                future.get();
+            }
+            catch (Exception e) {
+
+                throw new IllegalStateException(e);
+            }
+        }
+
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        executor.shutdown();
+
+        LoadResult result = new LoadResult(operations.sum(), errors.sum(), elapsedNanos, latency, moneyBefore, totalMoney(profile));
+
+        log.info("load result : {}", result.report());
+
+        return result;
+    }
+
+    /**
+     * 이전 부하 테스트 회원을 지우고 새로 등록
+     *
+     * @param profile
+     * @throws SQLException
+     */
+    private void seed(LoadProfile profile) throws SQLException {
+
+        deleteMembers(profile);
+
+        for (int i = 0; i < profile.getMemberCount(); i++) {
+
+            memberRepository.save(new Member(profile.memberId(i), profile.getInitialMoney()));
+        }
+    }
+
+    public void deleteMembers(LoadProfile profile) throws SQLException {
+
+        executeForPrefix(DELETE_MEMBERS_SQL, profile);
+    }
+
+    public long totalMoney(LoadProfile profile) throws SQLException {
+
+        return executeForPrefix(TOTAL_MONEY_SQL, profile);
+    }
+
+    private long executeForPrefix(String sql, LoadProfile profile) throws SQLException {
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+
+            conn = dataSource.getConnection();
+            pstmt = conn.prepareStatement(sql);
+
+            pstmt.setString(1, profile.getMemberPrefix() + "%");
+
+            if (pstmt.execute()) {
+
+                rs = pstmt.getResultSet();
+                rs.next();
+
+                return rs.getLong(1);
+            }
+
+            return pstmt.getUpdateCount();
+        }
+        finally {
+
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(pstmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+}
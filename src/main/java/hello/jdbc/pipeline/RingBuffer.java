@@ -0,0 +1,125 @@
+package hello.jdbc.pipeline;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 락 없는 고정 크기 링 버퍼 (여러 생산자, 하나의 소비자)
+ *
+ * LMAX Disruptor 와 같은 시퀀스 방식
+ * - 생산자는 claimSequence 를 증가시켜 자기 자리(시퀀스)를 확보하고, 값을 쓴 뒤 published 에 시퀀스를 기록해서 공개한다.
+ * - 소비자는 다음 시퀀스가 공개되었는지 확인하면서 연속된 구간을 한 번에 읽고, consumedSequence 를 전진시킨다.
+ * - 생산자는 consumedSequence 보다 capacity 이상 앞서지 못한다. (버퍼가 가득 차면 대기 = 배압)
+ *
+ * @param <E>
+ */
+public class RingBuffer<E> {
+
+    private static final long SPIN_PARK_NANOS = 1_000;
+
+    private final int mask;
+    private final Object[] entries;
+    private final AtomicLongArray published;
+
+    private final AtomicLong claimSequence = new AtomicLong(0);
+    private final AtomicLong consumedSequence = new AtomicLong(-1);
+
+    /**
+     * @param capacity 2의 거듭제곱
+     */
+    public RingBuffer(int capacity) {
+
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+
+            throw new IllegalArgumentException("capacity must be a power of 2. capacity = " + capacity);
+        }
+
+        this.mask = capacity - 1;
+        this.entries = new Object[capacity];
+        this.published = new AtomicLongArray(capacity);
+
+        for (int i = 0; i < capacity; i++) {
+
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * 값 추가, 버퍼가 가득 차 있으면 소비자가 읽을 때까지 대기
+     *
+     * @param entry
+     */
+    public void publish(E entry) {
+
+        long sequence = claimSequence.getAndIncrement();
+
+        // 한 바퀴 앞선 자리를 소비자가 아직 읽지 않았으면 대기
+        while (sequence - entries.length > consumedSequence.get()) {
+
+            LockSupport.parkNanos(SPIN_PARK_NANOS);
+        }
+
+        int index = (int) sequence & mask;
+
+        entries[index] = entry;
+
+        // volatile 쓰기 - 값 쓰기가 먼저 보이도록 보장
+        published.set(index, sequence);
+    }
+
+    /**
+     * 공개된 값을 최대 maxEntries 개까지 한 번에 읽기 (소비자 쓰레드 하나에서만 호출)
+     *
+     * @param target
+     * @param maxEntries
+     * @return 읽은 개수
+     */
+    @SuppressWarnings("unchecked")
+    public int drainTo(List<? super E> target, int maxEntries) {
+
+        long consumed = consumedSequence.get();
+        long next = consumed + 1;
+        int count = 0;
+
+        while (count < maxEntries) {
+
+            int index = (int) next & mask;
+
+            if (published.get(index) != next) {
+
+                break;
+            }
+
+            target.add((E) entries[index]);
+            entries[index] = null;
+
+            next++;
+            count++;
+        }
+
+        if (count > 0) {
+
+            // 읽은 구간을 한 번에 반납
+            consumedSequence.set(next - 1);
+        }
+
+        return count;
+    }
+
+    /**
+     * 아직 읽지 않은 값이 없는지 여부 (근사값)
+     *
+     * @return
+     */
+    public boolean isEmpty() {
+
+        return claimSequence.get() - 1 == consumedSequence.get();
+    }
+
+    public int capacity() {
+
+        return entries.length;
+    }
+}
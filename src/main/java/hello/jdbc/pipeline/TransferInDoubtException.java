@@ -0,0 +1,35 @@
+package hello.jdbc.pipeline;
+
+import hello.jdbc.domain.Transfer;
+
+/**
+ * 출금은 커밋되었지만 입금도 환불도 커밋하지 못한 이체
+ *
+ * 출금 회원에게 getOwed() 만큼 돌려줘야 하므로 이 예외로 끝난 이체는 수동으로 정산한다.
+ * 환불하지 못한 원인은 getCause() 로 전달한다.
+ */
+public class TransferInDoubtException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Transfer transfer;
+
+    public TransferInDoubtException(Transfer transfer, Throwable cause) {
+
+        super("transfer in doubt. owed = " + transfer.getMoney() + " to memberId = " + transfer.getFromId()
+                + ", toId = " + transfer.getToId(), cause);
+
+        this.transfer = transfer;
+    }
+
+    public Transfer getTransfer() {
+        return transfer;
+    }
+
+    /**
+     * 출금 회원에게 돌려줘야 하는 금액
+     */
+    public int getOwed() {
+        return transfer.getMoney();
+    }
+}
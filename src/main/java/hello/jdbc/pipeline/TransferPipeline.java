@@ -0,0 +1,603 @@
+package hello.jdbc.pipeline;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.Transfer;
+import hello.jdbc.repository.MemberNotFoundException;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.transaction.TransactionExecutor;
+import hello.jdbc.transaction.TransactionOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 단일 작성자(single-writer) 계좌이체 파이프라인
+ *
+ * 회원을 memberId 해시로 샤드에 나누고, 샤드마다 워커 쓰레드 하나만 해당 회원의 잔액을 변경한다.
+ * 같은 회원을 두 쓰레드가 동시에 수정하는 일이 없으므로 행 락을 기다리지 않는다.
+ *
+ * - 요청 : 출금 회원의 샤드 링 버퍼(RingBuffer)에 넣는다. 버퍼가 가득 차면 요청 쓰레드가 대기 (배압)
+ * - 워커 : 링 버퍼에서 여러 요청을 한 번에 꺼내 메모리의 잔액에 반영하고,
+ *          변경된 회원만 자기 전용 커넥션의 한 트랜잭션에서 배치 UPDATE 한 번으로 저장한 뒤 요청을 완료한다.
+ * - 잔액 : 워커가 처음 다루는 회원은 데이터베이스에서 읽어오고, 이후에는 워커 메모리의 값이 기준이다.
+ *          (파이프라인이 동작하는 동안 회원 잔액은 파이프라인을 통해서만 변경해야 한다.)
+ *
+ * 다른 샤드 회원에게 보내는 이체 (핸드오프)
+ * 1. 출금 샤드가 출금을 커밋한 뒤 입금 샤드의 핸드오프 큐에 입금(CREDIT)을 넘긴다.
+ * 2. 입금 샤드가 입금을 커밋하면 요청이 완료된다.
+ * 3. 입금 회원이 없으면 출금 샤드에 환불(REFUND)을 넘기고, 환불이 커밋되면 요청이 실패로 완료된다.
+ * 출금과 입금 사이에는 금액이 이동 중인 상태이며, 모든 요청이 완료되면 전체 금액은 보존된다.
+ *
+ * 출금이 이미 커밋된 입금, 환불은 실패로 끝내면 금액이 사라지므로 다시 처리한다.
+ * - 입금 : 잠금 대기 시간 초과 등으로 실패하면 MAX_CREDIT_ATTEMPTS 번까지 다시 시도하고, 그래도 실패하면 환불
+ * - 환불 : MAX_REFUND_ATTEMPTS 번까지 다시 시도하고, 그래도 실패하면 돌려줄 금액과 원인을 담은 TransferInDoubtException 으로 완료
+ *
+ * 종료 (close)
+ * - 요청과 종료는 같은 락(publishLock)에서 closed 를 확인, 변경하므로 종료 뒤에 들어온 요청은 거부되고,
+ *   종료 전에 받은 요청은 워커가 모두 완료한 뒤에 워커가 끝난다.
+ * - 워커가 끝난 뒤에도 큐에 남은 명령은 실패로 완료한다. (출금이 커밋된 입금, 환불은 TransferInDoubtException)
+ *
+ * 핸드오프 큐는 크기 제한이 없는 별도 큐를 사용한다.
+ * 두 워커가 서로의 가득 찬 링 버퍼에 넣으려고 동시에 대기하는 교착 상태를 피하기 위해서다.
+ */
+@Slf4j
+public class TransferPipeline implements AutoCloseable {
+
+    private static final int MAX_BATCH = 256;
+    private static final long IDLE_PARK_NANOS = 50_000;
+
+    private static final int MAX_CREDIT_ATTEMPTS = 5;
+    private static final int MAX_REFUND_ATTEMPTS = 10;
+    private static final long RETRY_BACKOFF_NANOS = 10_000_000;
+    private static final int MAX_BACKOFF_STEPS = 10;
+
+    private final DataSource dataSource;
+    private final Shard[] shards;
+
+    /**
+     * 요청은 읽기 락, 종료는 쓰기 락 (요청끼리는 동시에 진행)
+     */
+    private final ReadWriteLock publishLock = new ReentrantReadWriteLock();
+    private volatile boolean closed;
+
+    /**
+     * 아직 완료되지 않은 요청 수 (핸드오프 중인 요청 포함)
+     */
+    private final AtomicLong outstanding = new AtomicLong();
+
+    public TransferPipeline(DataSource dataSource, int shardCount, int ringCapacity) throws SQLException {
+
+        this.dataSource = dataSource;
+        this.shards = new Shard[shardCount];
+
+        for (int i = 0; i < shardCount; i++) {
+
+            shards[i] = new Shard(i, dataSource.getConnection(), ringCapacity);
+        }
+
+        for (Shard shard : shards) {
+
+            shard.thread.start();
+        }
+    }
+
+    /**
+     * 이체 요청
+     *
+     * @param transfer
+     * @return 입금까지 커밋되면 완료, 실패하면 예외로 완료
+     */
+    public CompletableFuture<Void> submit(Transfer transfer) {
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+
+        // 종료 확인과 요청 수 증가를 종료와 원자적으로 처리 (요청 수가 0 이 아니면 워커가 끝나지 않음)
+        publishLock.readLock().lock();
+
+        try {
+
+            if (closed) {
+
+                throw new IllegalStateException("pipeline closed");
+            }
+
+            outstanding.incrementAndGet();
+        }
+        finally {
+
+            publishLock.readLock().unlock();
+        }
+
+        future.whenComplete((result, e) -> outstanding.decrementAndGet());
+
+        shardOf(transfer.getFromId()).requests.publish(new Command(CommandType.TRANSFER, transfer, future));
+
+        return future;
+    }
+
+    /**
+     * 남은 요청을 모두 처리한 뒤 워커를 종료하고 커넥션 반납
+     */
+    @Override
+    public void close() {
+
+        publishLock.writeLock().lock();
+
+        try {
+
+            if (closed) {
+
+                return;
+            }
+
+            closed = true;
+        }
+        finally {
+
+            publishLock.writeLock().unlock();
+        }
+
+        for (Shard shard : shards) {
+
+            try {
+
+                shard.thread.join();
+            }
+            catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        for (Shard shard : shards) {
+
+            if (!shard.thread.isAlive()) {
+
+                shard.failPending();
+            }
+
+            shard.connectionDataSource.destroy();
+        }
+    }
+
+    private Shard shardOf(String memberId) {
+
+        return shards[Math.floorMod(memberId.hashCode(), shards.length)];
+    }
+
+    private enum CommandType {
+        TRANSFER, CREDIT, REFUND
+    }
+
+    private static class Command {
+
+        private final CommandType type;
+        private final Transfer transfer;
+        private final CompletableFuture<Void> future;
+
+        /**
+         * 이 명령을 처리하다 실패한 횟수
+         */
+        private final int attempts;
+
+        /**
+         * 환불 사유, null 이면 입금 회원 없음
+         */
+        private final Exception cause;
+
+        private Command(CommandType type, Transfer transfer, CompletableFuture<Void> future) {
+            this(type, transfer, future, 0, null);
+        }
+
+        private Command(CommandType type, Transfer transfer, CompletableFuture<Void> future, int attempts, Exception cause) {
+            this.type = type;
+            this.transfer = transfer;
+            this.future = future;
+            this.attempts = attempts;
+            this.cause = cause;
+        }
+
+        private Command retry() {
+
+            return new Command(type, transfer, future, attempts + 1, cause);
+        }
+    }
+
+    private class Shard implements Runnable {
+
+        private final int index;
+        private final RingBuffer<Command> requests;
+        private final Queue<Command> handoffs = new ConcurrentLinkedQueue<>();
+
+        private Connection connection;
+        private SingleConnectionDataSource connectionDataSource;
+        private MemberRepositoryV3 memberRepository;
+        private TransactionExecutor txExecutor;
+
+        /**
+         * 이 샤드가 소유한 회원의 잔액 (워커 쓰레드에서만 접근)
+         */
+        private final Map<String, Integer> balances = new HashMap<>();
+
+        private final Thread thread;
+
+        private Shard(int index, Connection connection, int ringCapacity) {
+
+            this.index = index;
+            this.requests = new RingBuffer<>(ringCapacity);
+            this.thread = new Thread(this, "transfer-shard-" + index);
+
+            connect(connection);
+        }
+
+        /**
+         * 워커 전용 커넥션, 트랜잭션이 끝나도 닫지 않는다.
+         */
+        private void connect(Connection connection) {
+
+            this.connection = connection;
+            connectionDataSource = new SingleConnectionDataSource(connection, true);
+            memberRepository = new MemberRepositoryV3(connectionDataSource);
+            txExecutor = new TransactionExecutor(new DataSourceTransactionManager(connectionDataSource));
+        }
+
+        /**
+         * 커넥션 풀이 커넥션을 폐기했으면 (잠금 대기 시간 초과 등) 새 커넥션으로 교체
+         *
+         * 교체하지 않으면 이 샤드의 이후 모든 배치가 실패한다.
+         */
+        private void reconnectIfClosed() {
+
+            try {
+
+                if (!connection.isClosed()) {
+
+                    return;
+                }
+
+                connectionDataSource.destroy();
+
+                connect(dataSource.getConnection());
+
+                log.warn("shard {} connection was closed, reconnected", index);
+            }
+            catch (SQLException e) {
+
+                log.error("shard {} reconnect failed", index, e);
+            }
+        }
+
+        @Override
+        public void run() {
+
+            List<Command> batch = new ArrayList<>(MAX_BATCH);
+
+            while (true) {
+
+                Command handoff;
+
+                while (batch.size() < MAX_BATCH && (handoff = handoffs.poll()) != null) {
+
+                    batch.add(handoff);
+                }
+
+                requests.drainTo(batch, MAX_BATCH - batch.size());
+
+                if (batch.isEmpty()) {
+
+                    // 다른 샤드에서 핸드오프가 넘어올 수 있으므로 모든 요청이 완료된 후에 종료
+                    if (closed && outstanding.get() == 0) {
+
+                        break;
+                    }
+
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+
+                    continue;
+                }
+
+                process(batch);
+
+                batch.clear();
+            }
+        }
+
+        /**
+         * 배치를 한 트랜잭션으로 반영, 실패하면 요청을 하나씩 다시 처리해서 실패 원인을 해당 요청에만 전달
+         *
+         * @param batch
+         */
+        private void process(List<Command> batch) {
+
+            try {
+
+                apply(batch);
+            }
+            catch (Exception e) {
+
+                log.warn("shard {} batch failed, retrying one by one. size = {}", index, batch.size(), e);
+
+                reconnectIfClosed();
+
+                for (Command command : batch) {
+
+                    try {
+
+                        apply(List.of(command));
+                    }
+                    catch (Exception single) {
+
+                        log.error("shard {} {} failed. transfer = {}, attempts = {}",
+                                index, command.type, command.transfer, command.attempts + 1, single);
+
+                        reconnectIfClosed();
+
+                        retryOrFail(command, single);
+                    }
+                }
+            }
+        }
+
+        /**
+         * 하나씩 처리해도 실패한 명령 처리
+         *
+         * - TRANSFER : 아무것도 커밋되지 않았으므로 요청 실패
+         * - CREDIT : 출금이 이미 커밋되었으므로 이 샤드에서 다시 시도, 횟수를 넘으면 출금 샤드에 환불을 넘김
+         * - REFUND : 금액이 사라지지 않도록 다시 시도, 횟수를 넘으면 돌려줄 금액과 원인을 로그에 남기고 실패
+         *
+         * @param command
+         * @param e
+         */
+        private void retryOrFail(Command command, Exception e) {
+
+            Transfer t = command.transfer;
+
+            switch (command.type) {
+
+                case CREDIT: {
+
+                    if (command.attempts + 1 < MAX_CREDIT_ATTEMPTS) {
+
+                        backoff(command);
+
+                        handoffs.add(command.retry());
+                    }
+                    else {
+
+                        shardOf(t.getFromId()).handoffs.add(new Command(CommandType.REFUND, t, command.future, 0, e));
+                    }
+
+                    return;
+                }
+
+                case REFUND: {
+
+                    if (command.attempts + 1 < MAX_REFUND_ATTEMPTS) {
+
+                        backoff(command);
+
+                        handoffs.add(command.retry());
+                    }
+                    else {
+
+                        inDoubt(command, e);
+                    }
+
+                    return;
+                }
+
+                default:
+
+                    command.future.completeExceptionally(e);
+            }
+        }
+
+        /**
+         * 워커가 끝난 뒤 큐에 남은 명령 실패 처리 (close() 에서 워커 종료 후 호출)
+         */
+        private void failPending() {
+
+            List<Command> pending = new ArrayList<>(handoffs);
+
+            handoffs.clear();
+
+            requests.drainTo(pending, Integer.MAX_VALUE);
+
+            for (Command command : pending) {
+
+                IllegalStateException closedException = new IllegalStateException("pipeline closed");
+
+                if (command.type == CommandType.TRANSFER) {
+
+                    command.future.completeExceptionally(closedException);
+                }
+                else {
+
+                    inDoubt(command, closedException);
+                }
+            }
+        }
+
+        /**
+         * 출금이 커밋된 이체를 입금도 환불도 하지 못하고 끝냄
+         */
+        private void inDoubt(Command command, Exception e) {
+
+            TransferInDoubtException inDoubt = new TransferInDoubtException(command.transfer, e);
+
+            log.error("shard {} {} gave up. {}", index, command.type, inDoubt.getMessage(), e);
+
+            command.future.completeExceptionally(inDoubt);
+        }
+
+        /**
+         * 데이터베이스 장애로 바로 실패하는 경우 같은 명령을 쉬지 않고 반복하지 않도록 대기
+         */
+        private void backoff(Command command) {
+
+            LockSupport.parkNanos(RETRY_BACKOFF_NANOS * Math.min(command.attempts + 1, MAX_BACKOFF_STEPS));
+        }
+
+        private void apply(List<Command> batch) throws SQLException {
+
+            Map<String, Integer> changes = new HashMap<>();
+            List<Runnable> afterCommit = new ArrayList<>();
+
+            txExecutor.executeWithoutResult(TransactionOptions.READ_WRITE, () -> {
+
+                loadMissing(batch);
+
+                for (Command command : batch) {
+
+                    applyCommand(command, changes, afterCommit);
+                }
+
+                // 변경된 회원은 executeBatch() 한 번으로 저장
+                memberRepository.updateAll(changes);
+            });
+
+            balances.putAll(changes);
+
+            for (Runnable action : afterCommit) {
+
+                action.run();
+            }
+        }
+
+        private void applyCommand(Command command, Map<String, Integer> changes, List<Runnable> afterCommit) {
+
+            Transfer t = command.transfer;
+
+            switch (command.type) {
+
+                case TRANSFER: {
+
+                    Integer from = balance(t.getFromId(), changes);
+
+                    if (from == null) {
+
+                        afterCommit.add(() -> command.future.completeExceptionally(
+                                new MemberNotFoundException(t.getFromId())));
+                        return;
+                    }
+
+                    // MemberServiceV3_1.validation() 과 같은 규칙
+                    if (t.getToId().equals("ex")) {
+
+                        afterCommit.add(() -> command.future.completeExceptionally(new IllegalStateException("이체 중 예외 발생")));
+                        return;
+                    }
+
+                    Shard target = shardOf(t.getToId());
+
+                    if (target == this) {
+
+                        Integer to = balance(t.getToId(), changes);
+
+                        if (to == null) {
+
+                            afterCommit.add(() -> command.future.completeExceptionally(
+                                    new MemberNotFoundException(t.getToId())));
+                            return;
+                        }
+
+                        changes.put(t.getFromId(), from - t.getMoney());
+                        changes.put(t.getToId(), balance(t.getToId(), changes) + t.getMoney());
+
+                        afterCommit.add(() -> command.future.complete(null));
+                    }
+                    else {
+
+                        changes.put(t.getFromId(), from - t.getMoney());
+
+                        afterCommit.add(() -> target.handoffs.add(new Command(CommandType.CREDIT, t, command.future)));
+                    }
+
+                    return;
+                }
+
+                case CREDIT: {
+
+                    Integer to = balance(t.getToId(), changes);
+
+                    if (to == null) {
+
+                        Shard source = shardOf(t.getFromId());
+
+                        afterCommit.add(() -> source.handoffs.add(new Command(CommandType.REFUND, t, command.future)));
+                        return;
+                    }
+
+                    changes.put(t.getToId(), to + t.getMoney());
+
+                    afterCommit.add(() -> command.future.complete(null));
+
+                    return;
+                }
+
+                case REFUND: {
+
+                    changes.put(t.getFromId(), balance(t.getFromId(), changes) + t.getMoney());
+
+                    Exception cause = command.cause != null ? command.cause : new MemberNotFoundException(t.getToId());
+
+                    afterCommit.add(() -> command.future.completeExceptionally(cause));
+                }
+            }
+        }
+
+        private Integer balance(String memberId, Map<String, Integer> changes) {
+
+            Integer changed = changes.get(memberId);
+
+            return changed != null ? changed : balances.get(memberId);
+        }
+
+        /**
+         * 배치에서 처음 다루는 회원의 잔액을 한 번에 조회
+         */
+        private void loadMissing(List<Command> batch) throws SQLException {
+
+            Set<String> missing = new HashSet<>();
+
+            for (Command command : batch) {
+
+                Transfer t = command.transfer;
+
+                addIfMissing(missing, command.type == CommandType.CREDIT ? t.getToId() : t.getFromId());
+
+                if (command.type == CommandType.TRANSFER && shardOf(t.getToId()) == this) {
+
+                    addIfMissing(missing, t.getToId());
+                }
+            }
+
+            if (!missing.isEmpty()) {
+
+                for (Member member : memberRepository.findByIds(missing).getFound().values()) {
+
+                    balances.put(member.getMemberId(), member.getMoney());
+                }
+            }
+        }
+
+        private void addIfMissing(Set<String> missing, String memberId) {
+
+            if (!balances.containsKey(memberId)) {
+
+                missing.add(memberId);
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package hello.jdbc.repository;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 문자열 키 블룸 필터
+ *
+ * 키가 없다는 대답(false)은 항상 맞고, 있다는 대답(true)은 falsePositiveRate 확률로 틀린다.
+ * 키를 지울 수는 없으므로 삭제를 반영하려면 새 필터를 만들어야 한다.
+ *
+ * - 비트 수 m = -n ln(p) / (ln 2)^2
+ * - 해시 함수 수 k = m / n * ln 2
+ * - 해시 두 개(h1, h2)로 k 개의 위치를 만든다. (h1 + i * h2)
+ *
+ * 비트는 AtomicLongArray 에 CAS 로 설정하므로 여러 쓰레드가 락 없이 동시에 추가, 조회할 수 있다.
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitSize;
+    private final int hashCount;
+
+    /**
+     * @param expectedInsertions 넣을 것으로 예상하는 키 수 (넘으면 오탐률이 올라간다)
+     * @param falsePositiveRate 목표 오탐률 (0 ~ 1)
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+
+            throw new IllegalArgumentException("falsePositiveRate = " + falsePositiveRate);
+        }
+
+        long n = Math.max(1, expectedInsertions);
+        long bits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (bits + 63) >>> 6);
+
+        this.words = new AtomicLongArray(words);
+        this.bitSize = (long) words << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / n * Math.log(2)));
+    }
+
+    public void put(String key) {
+
+        long hash = hash(key);
+        long h1 = hash;
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+
+        for (int i = 0; i < hashCount; i++) {
+
+            long bit = Math.floorMod(h1 + i * h2, bitSize);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+
+            long word = words.get(index);
+
+            while ((word & mask) == 0 && !words.compareAndSet(index, word, word | mask)) {
+
+                word = words.get(index);
+            }
+        }
+    }
+
+    /**
+     * @return false 면 확실히 없는 키
+     */
+    public boolean mightContain(String key) {
+
+        long hash = hash(key);
+        long h1 = hash;
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+
+        for (int i = 0; i < hashCount; i++) {
+
+            long bit = Math.floorMod(h1 + i * h2, bitSize);
+
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * 현재 채워진 비트 비율로 추정한 오탐률 ((설정된 비트 / m) ^ k)
+     */
+    public double expectedFalsePositiveRate() {
+
+        long set = 0;
+
+        for (int i = 0; i < words.length(); i++) {
+
+            set += Long.bitCount(words.get(i));
+        }
+
+        return Math.pow((double) set / bitSize, hashCount);
+    }
+
+    private static long hash(String key) {
+
+        long h = 0xCBF29CE484222325L;
+
+        for (int i = 0; i < key.length(); i++) {
+
+            h = (h ^ key.charAt(i)) * 0x100000001B3L;
+        }
+
+        return mix(h);
+    }
+
+    /**
+     * 64비트 비트 섞기 (MurmurHash3 fmix64)
+     */
+    private static long mix(long h) {
+
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+
+        return h;
+    }
+}
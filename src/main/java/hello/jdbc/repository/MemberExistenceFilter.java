@@ -0,0 +1,389 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.cdc.MemberChange;
+import hello.jdbc.cdc.MemberChangeListener;
+import hello.jdbc.connection.Workload;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 회원 존재 여부 블룸 필터
+ *
+ * 없는 회원을 조회하는 요청(오타, 해지된 계좌)이 데이터베이스까지 가지 않도록
+ * MemberRepositoryV3 가 조회 전에 필터를 확인하고, 확실히 없는 회원이면 바로 없음으로 처리한다.
+ *
+ * - rebuild() : memberId 를 스캔해서 새 필터를 만든 뒤 교체 (시작할 때, 그리고 주기적으로)
+ * - add() : save, upsertAll 이 INSERT 전에 호출 (같은 트랜잭션 안의 조회도 새 회원을 찾도록)
+ * - onChanges() : 다른 쓰기 주체(다른 인스턴스, SQL 직접 실행, memberId 변경)가 등록한 회원은
+ *   회원 변경 피드의 INSERT 이벤트로 반영 (feed.addListener(filter))
+ *   피드를 구독하지 않으면 다음 rebuild() 까지, 구독하면 피드 폴링 간격 동안만 없는 회원으로 오판할 수 있다.
+ * - 삭제는 필터에서 지울 수 없으므로 다음 rebuild() 까지 오탐으로 남는다.
+ *
+ * 스캔은 커밋된 회원만 보므로, 스캔 도중에 커밋되지 않은 회원을 새 필터에서 놓치지 않도록
+ * 직전 rebuild() 이후 add() 된 회원을 새 필터에 함께 넣는다. (재구성 주기는 가장 긴 트랜잭션보다 길게)
+ * 처음 rebuild() 가 끝나기 전에는 모든 회원이 있는 것으로 본다.
+ */
+@Slf4j
+public class MemberExistenceFilter implements MemberChangeListener, AutoCloseable {
+
+    static final String COUNT_SQL = "SELECT COUNT(*) FROM member";
+    static final String KEYS_SQL = "SELECT memberId FROM member";
+
+    /**
+     * 재구성 사이에 늘어나는 회원을 위해 현재 회원 수의 몇 배로 필터를 만들지
+     */
+    private static final int GROWTH_HEADROOM = 2;
+    private static final int MIN_CAPACITY = 1024;
+
+    private final DataSource dataSource;
+    private final double falsePositiveRate;
+
+    /**
+     * add() 는 읽기 락, 필터 교체는 쓰기 락 (add() 끼리는 동시에 실행)
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile BloomFilter current;
+    private BloomFilter building;
+    private Set<String> recent = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder negatives = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param dataSource
+     * @param falsePositiveRate 목표 오탐률, 오탐이면 데이터베이스를 조회한 뒤에 없음을 알게 된다.
+     */
+    public MemberExistenceFilter(DataSource dataSource, double falsePositiveRate) {
+        this.dataSource = dataSource;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    /**
+     * @return false 면 확실히 없는 회원
+     */
+    public boolean mightContain(String memberId) {
+
+        BloomFilter filter = current;
+
+        if (filter == null) {
+
+            return true;
+        }
+
+        checks.increment();
+
+        if (filter.mightContain(memberId)) {
+
+            return true;
+        }
+
+        negatives.increment();
+
+        return false;
+    }
+
+    public void add(String memberId) {
+
+        lock.readLock().lock();
+
+        try {
+
+            recent.add(memberId);
+
+            if (current != null) {
+
+                current.put(memberId);
+            }
+
+            if (building != null) {
+
+                building.put(memberId);
+            }
+        }
+        finally {
+
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 필터는 있다고 했지만 데이터베이스에 없던 회원 (오탐 또는 삭제된 회원)
+     */
+    void recordFalsePositive() {
+
+        falsePositives.increment();
+    }
+
+    /**
+     * memberId 를 스캔해서 필터를 다시 만들고 교체
+     *
+     * @throws SQLException
+     */
+    public void rebuild() throws SQLException {
+
+        long start = System.nanoTime();
+
+        long capacity = Math.max(MIN_CAPACITY, countMembers() * GROWTH_HEADROOM);
+
+        BloomFilter next = new BloomFilter(capacity, falsePositiveRate);
+        Set<String> previousRecent;
+
+        lock.writeLock().lock();
+
+        try {
+
+            building = next;
+            previousRecent = recent;
+            recent = ConcurrentHashMap.newKeySet();
+        }
+        finally {
+
+            lock.writeLock().unlock();
+        }
+
+        long scanned;
+
+        try {
+
+            scanned = scanKeys(next);
+        }
+        catch (SQLException | RuntimeException e) {
+
+            lock.writeLock().lock();
+
+            try {
+
+                // 다음 재구성에서 다시 반영
+                building = null;
+                recent.addAll(previousRecent);
+            }
+            finally {
+
+                lock.writeLock().unlock();
+            }
+
+            throw e;
+        }
+
+        lock.writeLock().lock();
+
+        try {
+
+            for (String memberId : previousRecent) {
+
+                next.put(memberId);
+            }
+
+            current = next;
+            building = null;
+        }
+        finally {
+
+            lock.writeLock().unlock();
+        }
+
+        rebuilds.increment();
+
+        log.info("member existence filter rebuilt. members = {}, bits = {}, hashes = {}, elapsed = {}ms",
+                scanned, next.getBitSize(), next.getHashCount(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 회원 변경 피드로 전달된 등록 반영
+     */
+    @Override
+    public void onChanges(List<MemberChange> changes) {
+
+        for (MemberChange change : changes) {
+
+            if (change.getType() == MemberChange.Type.INSERT) {
+
+                add(change.getMemberId());
+            }
+        }
+    }
+
+    /**
+     * 주기적으로 재구성해서 삭제된 회원을 필터에서 제거
+     *
+     * @param interval 가장 긴 트랜잭션보다 길게
+     */
+    public synchronized void startRebuild(Duration interval) {
+
+        if (scheduler != null) {
+
+            throw new IllegalStateException("already started");
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+
+            Thread thread = new Thread(r, "member-existence-filter");
+
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        long millis = interval.toMillis();
+
+        scheduler.scheduleWithFixedDelay(this::rebuildQuietly, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+
+        if (scheduler != null) {
+
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public boolean isReady() {
+        return current != null;
+    }
+
+    public long getChecks() {
+        return checks.sum();
+    }
+
+    /**
+     * 데이터베이스를 조회하지 않고 없음으로 처리한 수
+     */
+    public long getNegatives() {
+        return negatives.sum();
+    }
+
+    public long getFalsePositives() {
+        return falsePositives.sum();
+    }
+
+    public long getRebuilds() {
+        return rebuilds.sum();
+    }
+
+    /**
+     * 현재 필터의 추정 오탐률
+     */
+    public double expectedFalsePositiveRate() {
+
+        BloomFilter filter = current;
+
+        return filter == null ? 1 : filter.expectedFalsePositiveRate();
+    }
+
+    private void rebuildQuietly() {
+
+        try {
+
+            rebuild();
+        }
+        catch (Exception e) {
+
+            log.error("member existence filter rebuild failed", e);
+        }
+    }
+
+    private long countMembers() throws SQLException {
+
+        String sql = COUNT_SQL;
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+
+            conn = getConnection();
+            pstmt = conn.prepareStatement(sql);
+
+            rs = pstmt.executeQuery();
+
+            rs.next();
+
+            return rs.getLong(1);
+        }
+        catch (SQLException e) {
+
+            log.error("DB Error = {}", e);
+
+            throw e;
+        }
+        finally {
+
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(pstmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    private long scanKeys(BloomFilter filter) throws SQLException {
+
+        String sql = KEYS_SQL;
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+
+            conn = getConnection();
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setFetchSize(1000);
+
+            rs = pstmt.executeQuery();
+
+            long scanned = 0;
+
+            while (rs.next()) {
+
+                filter.put(rs.getString(1));
+
+                scanned++;
+            }
+
+            return scanned;
+        }
+        catch (SQLException e) {
+
+            log.error("DB Error = {}", e);
+
+            throw e;
+        }
+        finally {
+
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(pstmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    /**
+     * 키 스캔은 REPORTING 풀의 커넥션을 사용 (WorkloadRoutingDataSource)
+     */
+    private Connection getConnection() throws SQLException {
+
+        return Workload.REPORTING.call(dataSource::getConnection);
+    }
+}
@@ -0,0 +1,24 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * MemberRepositoryV3.findByIds() 결과
+ *
+ * - found : memberId 를 키로 하는 조회된 회원
+ * - missing : 요청했지만 없는 memberId (요청 순서)
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class MemberLookupResult {
+
+    private final Map<String, Member> found;
+    private final Set<String> missing;
+}
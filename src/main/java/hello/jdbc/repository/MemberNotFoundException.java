@@ -0,0 +1,37 @@
+package hello.jdbc.repository;
+
+import java.util.NoSuchElementException;
+
+/**
+ * 회원이 없을 때 발생하는 예외
+ *
+ * 존재 여부를 확인하려고 조회하는 요청이 많아서 조회 실패는 흔한 경로다.
+ * - 스택 트레이스를 채우지 않는다. (fillInStackTrace() 가 예외 생성 비용의 대부분)
+ * - 메시지는 getMessage() 를 호출할 때 만든다. (예외를 잡고 버리는 경우 문자열을 만들지 않음)
+ *
+ * 기존 코드와 호환되도록 NoSuchElementException 을 상속한다.
+ */
+public class MemberNotFoundException extends NoSuchElementException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String memberId;
+
+    public MemberNotFoundException(String memberId) {
+        this.memberId = memberId;
+    }
+
+    public String getMemberId() {
+        return memberId;
+    }
+
+    @Override
+    public String getMessage() {
+        return "member not found. memberId = " + memberId;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
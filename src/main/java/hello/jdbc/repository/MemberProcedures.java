@@ -0,0 +1,157 @@
+package hello.jdbc.repository;
+
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * H2 자바 함수 (CREATE ALIAS)
+ *
+ * 데이터베이스 안에서 실행되므로 클라이언트와 왕복 없이 여러 SQL 을 한 번의 호출로 처리한다.
+ * 첫 번째 파라미터가 Connection 이면 H2 가 호출한 세션의 커넥션을 전달한다. (같은 트랜잭션)
+ *
+ * TCP 서버 모드에서는 이 클래스가 H2 서버의 클래스패스에도 있어야 한다.
+ */
+public abstract class MemberProcedures {
+
+    public static final String TRANSFER_ALIAS = "TRANSFER";
+
+    static final String WITHDRAW_SQL = "UPDATE member SET money = money - ? WHERE memberId = ? AND money >= ?";
+    static final String DEPOSIT_SQL = "UPDATE member SET money = money + ? WHERE memberId = ?";
+    static final String EXISTS_SQL = "SELECT 1 FROM member WHERE memberId = ?";
+
+    /**
+     * 이체 - 잔액 확인, 출금, 입금을 데이터베이스 안에서 한 번에 처리
+     *
+     * 출금은 잔액이 충분한 경우에만 갱신한다. (WHERE money >= ?)
+     * 교착 상태를 피하기 위해 두 회원의 행은 항상 memberId 순서로 잠그고,
+     * 뒤의 갱신이 실패하면 앞의 갱신을 되돌려서 성공하지 않은 이체는 아무 것도 변경하지 않는다.
+     *
+     * 클라이언트의 bizLogic 과 달리 "ex" 회원 예외 검증은 하지 않는다.
+     *
+     * @param conn H2 가 전달하는 현재 세션의 커넥션
+     * @param fromId
+     * @param toId
+     * @param money
+     * @return TransferStatus 코드
+     * @throws SQLException
+     */
+    public static int transfer(Connection conn, String fromId, String toId, int money) throws SQLException {
+
+        if (money <= 0) {
+
+            return TransferStatus.INVALID_AMOUNT.getCode();
+        }
+
+        if (fromId.compareTo(toId) <= 0) {
+
+            TransferStatus status = withdraw(conn, fromId, money);
+
+            if (status != TransferStatus.OK) {
+
+                return status.getCode();
+            }
+
+            if (!deposit(conn, toId, money)) {
+
+                deposit(conn, fromId, money);
+
+                return TransferStatus.TO_NOT_FOUND.getCode();
+            }
+        }
+        else {
+
+            if (!deposit(conn, toId, money)) {
+
+                return TransferStatus.TO_NOT_FOUND.getCode();
+            }
+
+            TransferStatus status = withdraw(conn, fromId, money);
+
+            if (status != TransferStatus.OK) {
+
+                deposit(conn, toId, -money);
+
+                return status.getCode();
+            }
+        }
+
+        return TransferStatus.OK.getCode();
+    }
+
+    private static TransferStatus withdraw(Connection conn, String memberId, int money) throws SQLException {
+
+        String sql = WITHDRAW_SQL;
+
+        PreparedStatement pstmt = null;
+
+        try {
+
+            pstmt = conn.prepareStatement(sql);
+
+            pstmt.setInt(1, money);
+            pstmt.setString(2, memberId);
+            pstmt.setInt(3, money);
+
+            if (pstmt.executeUpdate() == 1) {
+
+                return TransferStatus.OK;
+            }
+        }
+        finally {
+
+            JdbcUtils.closeStatement(pstmt);
+        }
+
+        // 갱신되지 않은 이유 구분 (없는 회원, 잔액 부족)
+        return exists(conn, memberId) ? TransferStatus.INSUFFICIENT_FUNDS : TransferStatus.FROM_NOT_FOUND;
+    }
+
+    private static boolean deposit(Connection conn, String memberId, int money) throws SQLException {
+
+        String sql = DEPOSIT_SQL;
+
+        PreparedStatement pstmt = null;
+
+        try {
+
+            pstmt = conn.prepareStatement(sql);
+
+            pstmt.setInt(1, money);
+            pstmt.setString(2, memberId);
+
+            return pstmt.executeUpdate() == 1;
+        }
+        finally {
+
+            JdbcUtils.closeStatement(pstmt);
+        }
+    }
+
+    private static boolean exists(Connection conn, String memberId) throws SQLException {
+
+        String sql = EXISTS_SQL;
+
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+
+            pstmt = conn.prepareStatement(sql);
+
+            pstmt.setString(1, memberId);
+
+            rs = pstmt.executeQuery();
+
+            return rs.next();
+        }
+        finally {
+
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(pstmt);
+        }
+    }
+}
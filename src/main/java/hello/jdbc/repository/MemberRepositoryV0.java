@@ -5,7 +5,6 @@ import hello.jdbc.domain.Member;
 import lombok.extern.slf4j.Slf4j;
 
 import java.sql.*;
-import java.util.NoSuchElementException;
 
 /**
  * JDBC - DriverManager 사용
@@ -13,6 +12,11 @@ import java.util.NoSuchElementException;
 @Slf4j
 public class MemberRepositoryV0 {
 
+    static final String SAVE_SQL = "INSERT INTO member(memberId, money) VALUES (?, ?)";
+    static final String FIND_BY_ID_SQL = "SELECT * FROM member WHERE memberId = ?";
+    static final String UPDATE_SQL = "UPDATE member SET money = ? WHERE memberId = ?";
+    static final String DELETE_SQL = "DELETE FROM member WHERE memberId = ?";
+
     /**
      * 회원 등록
      *
@@ -23,7 +27,7 @@ public class MemberRepositoryV0 {
     public Member save(Member member) throws SQLException {
 
         // 데이터베이스에 전달할 SQL
-        String sql = "INSERT INTO member(memberId, money) VALUES (?, ?)";
+        String sql = SAVE_SQL;
 
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -70,7 +74,7 @@ public class MemberRepositoryV0 {
     public Member findById(String memberId) throws SQLException {
 
         // 데이터베이스에 전달할 SQL
-        String sql = "SELECT * FROM member WHERE memberId = ?";
+        String sql = FIND_BY_ID_SQL;
 
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -96,7 +100,7 @@ public class MemberRepositoryV0 {
             }
             else {
 
-                throw new NoSuchElementException("member not found. memberId = " + memberId);
+                throw new MemberNotFoundException(memberId);
             }
 
         } catch (SQLException e) {
@@ -120,7 +124,7 @@ public class MemberRepositoryV0 {
      */
     public void update(String memberId, int money) throws SQLException {
 
-        String sql = "UPDATE member SET money = ? WHERE memberId = ?";
+        String sql = UPDATE_SQL;
 
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -157,7 +161,7 @@ public class MemberRepositoryV0 {
      */
     public void delete(String memberId) throws SQLException {
 
-        String sql = "DELETE FROM member WHERE memberId = ?";
+        String sql = DELETE_SQL;
 
         Connection conn = null;
         PreparedStatement pstmt = null;
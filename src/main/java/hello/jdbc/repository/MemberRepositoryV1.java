@@ -6,7 +6,6 @@ import org.springframework.jdbc.support.JdbcUtils;
 
 import javax.sql.DataSource;
 import java.sql.*;
-import java.util.NoSuchElementException;
 
 /**
  * JDBC - DataSource, JdbcUtils 사용
@@ -19,6 +18,11 @@ import java.util.NoSuchElementException;
 @Slf4j
 public class MemberRepositoryV1 {
 
+    static final String SAVE_SQL = "INSERT INTO member(memberId, money) VALUES (?, ?)";
+    static final String FIND_BY_ID_SQL = "SELECT * FROM member WHERE memberId = ?";
+    static final String UPDATE_SQL = "UPDATE member SET money = ? WHERE memberId = ?";
+    static final String DELETE_SQL = "DELETE FROM member WHERE memberId = ?";
+
     private final DataSource dataSource;
 
     public MemberRepositoryV1(DataSource dataSource) {
@@ -35,7 +39,7 @@ public class MemberRepositoryV1 {
     public Member save(Member member) throws SQLException {
 
         // 데이터베이스에 전달할 SQL
-        String sql = "INSERT INTO member(memberId, money) VALUES (?, ?)";
+        String sql = SAVE_SQL;
 
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -82,7 +86,7 @@ public class MemberRepositoryV1 {
     public Member findById(String memberId) throws SQLException {
 
         // 데이터베이스에 전달할 SQL
-        String sql = "SELECT * FROM member WHERE memberId = ?";
+        String sql = FIND_BY_ID_SQL;
 
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -108,7 +112,7 @@ public class MemberRepositoryV1 {
             }
             else {
 
-                throw new NoSuchElementException("member not found. memberId = " + memberId);
+                throw new MemberNotFoundException(memberId);
             }
 
         } catch (SQLException e) {
@@ -132,7 +136,7 @@ public class MemberRepositoryV1 {
      */
     public void update(String memberId, int money) throws SQLException {
 
-        String sql = "UPDATE member SET money = ? WHERE memberId = ?";
+        String sql = UPDATE_SQL;
 
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -169,7 +173,7 @@ public class MemberRepositoryV1 {
      */
     public void delete(String memberId) throws SQLException {
 
-        String sql = "DELETE FROM member WHERE memberId = ?";
+        String sql = DELETE_SQL;
 
         Connection conn = null;
         PreparedStatement pstmt = null;
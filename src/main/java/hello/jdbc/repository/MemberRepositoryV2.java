@@ -6,7 +6,6 @@ import org.springframework.jdbc.support.JdbcUtils;
 
 import javax.sql.DataSource;
 import java.sql.*;
-import java.util.NoSuchElementException;
 
 /**
  * JDBC - ConnectionParam
@@ -18,6 +17,11 @@ import java.util.NoSuchElementException;
 @Slf4j
 public class MemberRepositoryV2 {
 
+    static final String SAVE_SQL = "INSERT INTO member(memberId, money) VALUES (?, ?)";
+    static final String FIND_BY_ID_SQL = "SELECT * FROM member WHERE memberId = ?";
+    static final String UPDATE_SQL = "UPDATE member SET money = ? WHERE memberId = ?";
+    static final String DELETE_SQL = "DELETE FROM member WHERE memberId = ?";
+
     private final DataSource dataSource;
 
     public MemberRepositoryV2(DataSource dataSource) {
@@ -26,7 +30,7 @@ public class MemberRepositoryV2 {
 
     public Member save(Member member) throws SQLException {
 
-        String sql = "INSERT INTO member(memberId, money) VALUES (?, ?)";
+        String sql = SAVE_SQL;
 
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -58,7 +62,7 @@ public class MemberRepositoryV2 {
 
     public Member findById(String memberId) throws SQLException {
 
-        String sql = "SELECT * FROM member WHERE memberId = ?";
+        String sql = FIND_BY_ID_SQL;
 
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -83,7 +87,7 @@ public class MemberRepositoryV2 {
             }
             else {
 
-                throw new NoSuchElementException("member not found. memberId = " + memberId);
+                throw new MemberNotFoundException(memberId);
             }
         }
         catch (SQLException e) {
@@ -108,7 +112,7 @@ public class MemberRepositoryV2 {
      */
     public Member findById(Connection conn, String memberId) throws SQLException {
 
-        String sql = "SELECT * FROM member WHERE memberId = ?";
+        String sql = FIND_BY_ID_SQL;
 
         PreparedStatement pstmt = null;
         ResultSet rs = null;
@@ -131,7 +135,7 @@ public class MemberRepositoryV2 {
             }
             else {
 
-                throw new NoSuchElementException("member not found. memberId = " + memberId);
+                throw new MemberNotFoundException(memberId);
             }
         }
         catch (SQLException e) {
@@ -149,7 +153,7 @@ public class MemberRepositoryV2 {
 
     public void update(String memberId, int money) throws SQLException {
 
-        String sql = "UPDATE member SET money = ? WHERE memberId = ?";
+        String sql = UPDATE_SQL;
 
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -187,7 +191,7 @@ public class MemberRepositoryV2 {
      */
     public void update(Connection conn, String memberId, int money) throws SQLException {
 
-        String sql = "UPDATE member SET money = ? WHERE memberId = ?";
+        String sql = UPDATE_SQL;
 
         PreparedStatement pstmt = null;
 
@@ -215,7 +219,7 @@ public class MemberRepositoryV2 {
 
     public void delete(String memberId) throws SQLException {
 
-        String sql = "DELETE FROM member WHERE memberId = ?";
+        String sql = DELETE_SQL;
 
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -1,13 +1,20 @@
 package hello.jdbc.repository;
 
+import hello.jdbc.connection.Workload;
 import hello.jdbc.domain.Member;
+import hello.jdbc.jfr.StatementEvent;
+import hello.jdbc.transaction.Deadline;
+import hello.jdbc.transaction.DeadlineExceededException;
+import hello.jdbc.transaction.QueryTimeout;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.jdbc.support.JdbcUtils;
 
 import javax.sql.DataSource;
 import java.sql.*;
-import java.util.NoSuchElementException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ObjIntConsumer;
 
 /**
  * 트랜잭션 - 트랜잭션 매니저
@@ -20,19 +27,83 @@ import java.util.NoSuchElementException;
  * - 커넥션을 con.close() 를 사용해서 직접 닫아버리면 커넥션이 유지되지 않는 문제가 발생하는데,
  *   DataSourceUtils.releaseConnection() 를 사용하면 트랜잭션을 사용하기 위해 동기화된 커넥션은 커넥션을 닫지 않고 그대로 유지
  * - 트랜잭션 동기화 매니저가 관리하는 커넥션이 없는 경우 해당 커넥션을 닫는다.
+ *
+ * 요청 데드라인(Deadline)이 있으면 모든 SQL 에 남은 시간을 쿼리 타임아웃으로 적용한다.
+ *
+ * SQL 실행은 JFR 이벤트(StatementEvent)로 기록한다. (기록 중이 아니면 비용 거의 없음)
+ *
+ * 회원 존재 여부 필터(MemberExistenceFilter)를 전달하면 확실히 없는 회원은 데이터베이스를 조회하지 않는다.
  */
 @Slf4j
 public class MemberRepositoryV3 {
 
+    static final String SAVE_SQL = "INSERT INTO member(memberId, money) VALUES (?, ?)";
+    static final String MONEY_OF_SQL = "SELECT money FROM member WHERE memberId = ?";
+    static final String MONEY_RANGE_SQL = "SELECT memberId, money FROM member WHERE money BETWEEN ? AND ? ORDER BY money, memberId LIMIT ?";
+    static final String COUNT_BELOW_SQL = "SELECT COUNT(*) FROM member WHERE money < ?";
+    static final String UPSERT_SQL = "MERGE INTO member(memberId, money) KEY(memberId) VALUES (?, ?)";
+    static final String UPDATE_SQL = "UPDATE member SET money = ? WHERE memberId = ?";
+    static final String DELETE_SQL = "DELETE FROM member WHERE memberId = ?";
+
+    /**
+     * moneyOf() 에서 회원이 없을 때 반환하는 값
+     */
+    public static final long MONEY_NOT_FOUND = Long.MIN_VALUE;
+
+    /**
+     * findByIds() 에서 사용하는 IN 목록 크기
+     *
+     * 키 개수마다 다른 SQL 을 만들면 데이터베이스의 쿼리 캐시가 매번 새로 채워지므로
+     * 정해진 크기의 SQL 만 사용하고 남는 자리는 마지막 키를 반복해서 채운다.
+     */
+    static final int[] IN_SHAPES = {1, 8, 32, 128};
+    static final String[] IN_SQLS = new String[IN_SHAPES.length];
+
+    static {
+
+        for (int i = 0; i < IN_SHAPES.length; i++) {
+
+            StringJoiner placeholders = new StringJoiner(", ", "(", ")");
+
+            for (int j = 0; j < IN_SHAPES[i]; j++) {
+
+                placeholders.add("?");
+            }
+
+            IN_SQLS[i] = "SELECT memberId, money FROM member WHERE memberId IN " + placeholders;
+        }
+    }
+
+    /**
+     * upsertAll() 에서 한 번에 전송하고 커밋하는 건수
+     */
+    private static final int UPSERT_CHUNK_SIZE = 500;
+
+    /**
+     * 잔액 범위 조회의 fetch size (원격 연결에서 한 번에 전송받는 행 수)
+     */
+    private static final int RANGE_FETCH_SIZE = 1000;
+
     private final DataSource dataSource;
+    private final MemberExistenceFilter existenceFilter;
+
+    /**
+     * 실행한 SQL 모양 (재시작할 때 미리 준비하도록 웜 스타트 스냅샷에 기록)
+     */
+    private final Set<String> statementShapes = ConcurrentHashMap.newKeySet();
 
     public MemberRepositoryV3(DataSource dataSource) {
+        this(dataSource, null);
+    }
+
+    public MemberRepositoryV3(DataSource dataSource, MemberExistenceFilter existenceFilter) {
         this.dataSource = dataSource;
+        this.existenceFilter = existenceFilter;
     }
 
     public Member save(Member member) throws SQLException {
 
-        String sql = "INSERT INTO member(memberId, money) VALUES (?, ?)";
+        String sql = SAVE_SQL;
 
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -41,12 +112,18 @@ public class MemberRepositoryV3 {
 
             conn = getConnection();
 
-            pstmt = conn.prepareStatement(sql);
+            pstmt = prepareStatement(conn, sql);
+            applyDeadline(pstmt);
 
             pstmt.setString(1, member.getMemberId());
             pstmt.setInt(2, member.getMoney());
 
-            pstmt.executeUpdate();
+            // 커밋 전에도 같은 트랜잭션에서 찾을 수 있도록 INSERT 전에 추가 (롤백되면 오탐으로 남음)
+            addToFilter(member.getMemberId());
+
+            StatementEvent event = StatementEvent.start("member.save");
+
+            event.finish(pstmt.executeUpdate());
 
             return member;
         }
@@ -54,6 +131,8 @@ public class MemberRepositoryV3 {
 
             log.info("DB Error = {}", e);
 
+            checkDeadline(e);
+
             throw e;
         }
         finally {
@@ -62,9 +141,69 @@ public class MemberRepositoryV3 {
         }
     }
 
+    /**
+     * 회원 조회, 없으면 MemberNotFoundException
+     *
+     * 존재 여부를 확인하는 용도라면 예외를 만들지 않는 findOptionalById(), moneyOf() 를 사용한다.
+     */
     public Member findById(String memberId) throws SQLException {
 
-        String sql = "SELECT * FROM member WHERE memberId = ?";
+        long money = moneyOf(memberId);
+
+        if (money == MONEY_NOT_FOUND) {
+
+            throw new MemberNotFoundException(memberId);
+        }
+
+        return new Member(memberId, (int) money);
+    }
+
+    public Optional<Member> findOptionalById(String memberId) throws SQLException {
+
+        long money = moneyOf(memberId);
+
+        return money == MONEY_NOT_FOUND ? Optional.empty() : Optional.of(new Member(memberId, (int) money));
+    }
+
+    /**
+     * 회원이 있으면 Member 객체를 만들지 않고 consumer 에 memberId, money 를 전달
+     *
+     * @param memberId
+     * @param consumer
+     * @return 회원 존재 여부
+     * @throws SQLException
+     */
+    public boolean findById(String memberId, ObjIntConsumer<String> consumer) throws SQLException {
+
+        long money = moneyOf(memberId);
+
+        if (money == MONEY_NOT_FOUND) {
+
+            return false;
+        }
+
+        consumer.accept(memberId, (int) money);
+
+        return true;
+    }
+
+    /**
+     * 회원의 잔액 조회 (할당 없음)
+     *
+     * money 는 int 이므로 int 범위 밖의 값을 없는 회원 표시로 사용한다.
+     *
+     * @param memberId
+     * @return 잔액, 회원이 없으면 MONEY_NOT_FOUND
+     * @throws SQLException
+     */
+    public long moneyOf(String memberId) throws SQLException {
+
+        if (existenceFilter != null && !existenceFilter.mightContain(memberId)) {
+
+            return MONEY_NOT_FOUND;
+        }
+
+        String sql = MONEY_OF_SQL;
 
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -73,30 +212,177 @@ public class MemberRepositoryV3 {
         try {
 
             conn = getConnection();
-            pstmt = conn.prepareStatement(sql);
+            pstmt = prepareStatement(conn, sql);
+            applyDeadline(pstmt);
 
             pstmt.setString(1, memberId);
 
+            StatementEvent event = StatementEvent.start("member.findById");
+
             rs = pstmt.executeQuery();
 
-            if (rs.next()) {
+            boolean found = rs.next();
+
+            event.finish(found ? 1 : 0);
+
+            if (!found && existenceFilter != null) {
+
+                existenceFilter.recordFalsePositive();
+            }
+
+            return found ? rs.getInt(1) : MONEY_NOT_FOUND;
+        }
+        catch (SQLException e) {
+
+            log.info("DB Error = {}", e);
+
+            checkDeadline(e);
+
+            throw e;
+        }
+        finally {
+
+            close(conn, pstmt, rs);
+        }
+    }
+
+    /**
+     * 여러 회원을 한 번에 조회
+     *
+     * 키를 IN_SHAPES 크기의 묶음으로 나눠서 묶음마다 한 번씩만 조회한다. (N 번 -> N / 128 번)
+     * 없는 회원은 예외 없이 결과의 missing 에 담긴다.
+     *
+     * @param memberIds
+     * @return 조회된 회원과 없는 memberId
+     * @throws SQLException
+     */
+    public MemberLookupResult findByIds(Collection<String> memberIds) throws SQLException {
+
+        Set<String> requested = new LinkedHashSet<>(memberIds);
+        List<String> ids = new ArrayList<>(requested);
+        Map<String, Member> result = new HashMap<>(ids.size() * 4 / 3 + 1);
+
+        if (existenceFilter != null) {
+
+            ids.removeIf(memberId -> !existenceFilter.mightContain(memberId));
+        }
+
+        if (!ids.isEmpty()) {
+
+            Connection conn = null;
 
-                Member member = new Member();
+            try {
 
-                member.setMemberId(rs.getString("memberId"));
-                member.setMoney(rs.getInt("money"));
+                conn = getConnection();
 
-                return member;
+                findByIds(conn, ids, result);
             }
-            else {
+            finally {
 
-                throw new NoSuchElementException("member not found. memberId = " + memberId);
+                close(conn, null, null);
             }
         }
+
+        requested.removeAll(result.keySet());
+
+        if (!requested.isEmpty()) {
+
+            log.info("missing members = {}", requested.size());
+        }
+
+        return new MemberLookupResult(result, requested);
+    }
+
+    private void findByIds(Connection conn, List<String> ids, Map<String, Member> result) throws SQLException {
+
+        int offset = 0;
+
+        while (offset < ids.size()) {
+
+            int shape = shapeFor(ids.size() - offset);
+            int size = Math.min(IN_SHAPES[shape], ids.size() - offset);
+
+            findChunk(conn, shape, ids.subList(offset, offset + size), result);
+
+            offset += size;
+        }
+    }
+
+    /**
+     * 잔액이 min 이상 max 이하인 회원을 잔액 순으로 조회
+     *
+     * @param min
+     * @param max
+     * @param limit 최대 회원 수
+     * @return 잔액, memberId 순
+     * @throws SQLException
+     */
+    public List<Member> findByMoneyRange(int min, int max, int limit) throws SQLException {
+
+        List<Member> members = new ArrayList<>(Math.min(limit, RANGE_FETCH_SIZE));
+
+        findByMoneyRange(min, max, limit, (memberId, money) -> members.add(new Member(memberId, money)));
+
+        return members;
+    }
+
+    /**
+     * 잔액이 min 이상 max 이하인 회원을 잔액 순으로 consumer 에 전달
+     *
+     * H2 는 LAZY_QUERY_EXECUTION 을 켜지 않으면 결과 전체를 만든 뒤 돌려주므로, 메모리에 올라가는 행 수는 limit 으로 제한한다.
+     * (fetch size 는 원격 연결에서 한 번에 전송받는 행 수에만 영향을 준다.)
+     * 잔액 인덱스(MemberSchema.MONEY_INDEX)가 있으면 범위만 읽고, limit 에 도달하면 바로 멈춘다.
+     *
+     * @param min
+     * @param max
+     * @param limit 최대 회원 수
+     * @param consumer memberId, money
+     * @return 전달한 회원 수
+     * @throws SQLException
+     */
+    public int findByMoneyRange(int min, int max, int limit, ObjIntConsumer<String> consumer) throws SQLException {
+
+        String sql = MONEY_RANGE_SQL;
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+
+            conn = getConnection();
+            pstmt = prepareStatement(conn, sql);
+            applyDeadline(pstmt);
+
+            pstmt.setFetchSize(RANGE_FETCH_SIZE);
+            pstmt.setInt(1, min);
+            pstmt.setInt(2, max);
+            pstmt.setInt(3, limit);
+
+            // 결과를 읽으면서 전달하므로 consumer 처리 시간도 포함
+            StatementEvent event = StatementEvent.start("member.findByMoneyRange");
+
+            rs = pstmt.executeQuery();
+
+            int count = 0;
+
+            while (rs.next()) {
+
+                consumer.accept(rs.getString(1), rs.getInt(2));
+
+                count++;
+            }
+
+            event.finish(count);
+
+            return count;
+        }
         catch (SQLException e) {
 
             log.info("DB Error = {}", e);
 
+            checkDeadline(e);
+
             throw e;
         }
         finally {
@@ -105,9 +391,276 @@ public class MemberRepositoryV3 {
         }
     }
 
+    /**
+     * 잔액이 threshold 미만인 회원 수
+     *
+     * @param threshold
+     * @return
+     * @throws SQLException
+     */
+    public long countBelow(int threshold) throws SQLException {
+
+        String sql = COUNT_BELOW_SQL;
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+
+            conn = getConnection();
+            pstmt = prepareStatement(conn, sql);
+            applyDeadline(pstmt);
+
+            pstmt.setInt(1, threshold);
+
+            StatementEvent event = StatementEvent.start("member.countBelow");
+
+            rs = pstmt.executeQuery();
+
+            rs.next();
+
+            event.finish(1);
+
+            return rs.getLong(1);
+        }
+        catch (SQLException e) {
+
+            log.info("DB Error = {}", e);
+
+            checkDeadline(e);
+
+            throw e;
+        }
+        finally {
+
+            close(conn, pstmt, rs);
+        }
+    }
+
+    /**
+     * 여러 회원을 한 번에 등록 또는 수정 (MERGE)
+     *
+     * 외부 피드처럼 회원이 이미 있는지 모르는 데이터를 반영할 때 사용한다.
+     * findById() -> 예외 -> save()/update() 를 회원마다 반복하지 않고
+     * H2 의 MERGE INTO ... KEY(memberId) 를 JDBC 배치로 묶어서 UPSERT_CHUNK_SIZE 건마다 한 번에 전송한다.
+     *
+     * - 진행 중인 트랜잭션이 있으면 그 트랜잭션에 참여하고 커밋은 트랜잭션 매니저에 맡긴다.
+     * - 트랜잭션이 없으면 묶음마다 커밋해서 트랜잭션(락, undo 로그) 크기를 제한한다.
+     *
+     * 등록/수정 건수는 묶음을 반영하기 직전에 이미 있는 회원을 조회해서 계산한다.
+     * (동시에 같은 회원을 등록하는 경우 건수는 근사값이지만 MERGE 결과는 항상 정확하다.)
+     *
+     * @param members
+     * @return 등록, 수정 건수
+     * @throws SQLException
+     */
+    public UpsertResult upsertAll(Collection<Member> members) throws SQLException {
+
+        String sql = UPSERT_SQL;
+
+        List<Member> list = new ArrayList<>(members);
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        boolean chunkCommit = false;
+
+        int inserted = 0;
+        int updated = 0;
+
+        try {
+
+            // 트랜잭션이 없으면 BATCH 풀의 커넥션을 사용 (WorkloadRoutingDataSource)
+            conn = Workload.BATCH.call(this::getConnection);
+
+            // 작업 단위(UnitOfWork)가 고정한 커넥션은 동기화되어 있어도 자동 커밋 모드이므로 자동 커밋 여부로 판단
+            chunkCommit = conn.getAutoCommit();
+
+            if (chunkCommit) {
+
+                conn.setAutoCommit(false);
+            }
+
+            pstmt = prepareStatement(conn, sql);
+            applyDeadline(pstmt);
+
+            for (int offset = 0; offset < list.size(); offset += UPSERT_CHUNK_SIZE) {
+
+                List<Member> chunk = list.subList(offset, Math.min(offset + UPSERT_CHUNK_SIZE, list.size()));
+
+                List<String> chunkIds = new ArrayList<>(chunk.size());
+
+                for (Member member : chunk) {
+
+                    chunkIds.add(member.getMemberId());
+                }
+
+                Map<String, Member> existing = new HashMap<>();
+
+                findByIds(conn, chunkIds, existing);
+
+                Set<String> seen = new HashSet<>(existing.keySet());
+
+                for (Member member : chunk) {
+
+                    pstmt.setString(1, member.getMemberId());
+                    pstmt.setInt(2, member.getMoney());
+                    pstmt.addBatch();
+
+                    addToFilter(member.getMemberId());
+
+                    // 같은 묶음에 같은 회원이 여러 번 있으면 두 번째부터는 수정
+                    if (seen.add(member.getMemberId())) {
+                        inserted++;
+                    }
+                    else {
+                        updated++;
+                    }
+                }
+
+                StatementEvent event = StatementEvent.start("member.upsertAll");
+
+                pstmt.executeBatch();
+
+                event.finish(chunk.size());
+
+                if (chunkCommit) {
+
+                    conn.commit();
+                }
+            }
+
+            log.info("upsert inserted = {}, updated = {}", inserted, updated);
+
+            return new UpsertResult(inserted, updated);
+        }
+        catch (SQLException e) {
+
+            log.error("DB Error = {}", e);
+
+            if (chunkCommit) {
+
+                // 이미 커밋된 묶음은 유지되고 실패한 묶음만 롤백
+                rollback(conn, e);
+            }
+
+            checkDeadline(e);
+
+            throw e;
+        }
+        finally {
+
+            if (chunkCommit) {
+
+                resetAutoCommit(conn);
+            }
+
+            close(conn, pstmt, null);
+        }
+    }
+
+    /**
+     * 롤백 중에 발생한 예외가 원래 예외를 가리지 않도록 suppressed 로 붙임
+     *
+     * @param conn
+     * @param ex 원래 예외
+     */
+    private void rollback(Connection conn, SQLException ex) {
+
+        try {
+
+            conn.rollback();
+        }
+        catch (SQLException rollbackEx) {
+
+            log.error("Rollback Error, original exception = {}", ex.toString(), rollbackEx);
+
+            ex.addSuppressed(rollbackEx);
+        }
+    }
+
+    private void resetAutoCommit(Connection conn) {
+
+        try {
+
+            conn.setAutoCommit(true);
+        }
+        catch (SQLException e) {
+
+            log.info("autoCommit reset ERROR = {}", e);
+        }
+    }
+
+    private void findChunk(Connection conn, int shape, List<String> chunk, Map<String, Member> result) throws SQLException {
+
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+
+            pstmt = prepareStatement(conn, IN_SQLS[shape]);
+            applyDeadline(pstmt);
+
+            for (int i = 0; i < IN_SHAPES[shape]; i++) {
+
+                // 남는 자리는 마지막 키로 채움
+                pstmt.setString(i + 1, chunk.get(Math.min(i, chunk.size() - 1)));
+            }
+
+            StatementEvent event = StatementEvent.start("member.findByIds");
+
+            rs = pstmt.executeQuery();
+
+            int rows = 0;
+
+            while (rs.next()) {
+
+                Member member = new Member(rs.getString("memberId"), rs.getInt("money"));
+
+                result.put(member.getMemberId(), member);
+
+                rows++;
+            }
+
+            event.finish(rows);
+        }
+        catch (SQLException e) {
+
+            log.info("DB Error = {}", e);
+
+            checkDeadline(e);
+
+            throw e;
+        }
+        finally {
+
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(pstmt);
+        }
+    }
+
+    /**
+     * 남은 키 개수를 담을 수 있는 가장 작은 IN 목록 크기 (없으면 가장 큰 크기)
+     *
+     * @param remaining
+     * @return IN_SHAPES 인덱스
+     */
+    private static int shapeFor(int remaining) {
+
+        for (int i = 0; i < IN_SHAPES.length; i++) {
+
+            if (IN_SHAPES[i] >= remaining) {
+
+                return i;
+            }
+        }
+
+        return IN_SHAPES.length - 1;
+    }
+
     public void update(String memberId, int money) throws SQLException {
 
-        String sql = "UPDATE member SET money = ? WHERE memberId = ?";
+        String sql = UPDATE_SQL;
 
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -115,19 +668,93 @@ public class MemberRepositoryV3 {
         try {
 
             conn = getConnection();
-            pstmt = conn.prepareStatement(sql);
+            pstmt = prepareStatement(conn, sql);
+            applyDeadline(pstmt);
 
             pstmt.setInt(1, money);
             pstmt.setString(2, memberId);
 
+            StatementEvent event = StatementEvent.start("member.update");
+
             int resultSize = pstmt.executeUpdate();
 
+            event.finish(resultSize);
+
             log.info("resultSize = {}", resultSize);
         }
         catch (SQLException e) {
 
             log.error("DB Error = {}", e);
 
+            checkDeadline(e);
+
+            throw e;
+        }
+        finally {
+
+            close(conn, pstmt, null);
+        }
+    }
+
+    /**
+     * 여러 회원의 잔액을 한 번의 배치로 수정
+     *
+     * update() 와 같은 SQL 을 addBatch() 로 모아서 executeBatch() 한 번으로 실행한다.
+     * 호출한 쪽의 트랜잭션 안에서 실행되고, 커밋은 호출한 쪽이 한다.
+     *
+     * @param balances memberId, 수정할 잔액
+     * @return 수정된 회원 수 (없는 회원은 제외)
+     * @throws SQLException
+     */
+    public int updateAll(Map<String, Integer> balances) throws SQLException {
+
+        String sql = UPDATE_SQL;
+
+        if (balances.isEmpty()) {
+
+            return 0;
+        }
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+
+        try {
+
+            conn = getConnection();
+            pstmt = prepareStatement(conn, sql);
+            applyDeadline(pstmt);
+
+            for (Map.Entry<String, Integer> balance : balances.entrySet()) {
+
+                pstmt.setInt(1, balance.getValue());
+                pstmt.setString(2, balance.getKey());
+                pstmt.addBatch();
+            }
+
+            StatementEvent event = StatementEvent.start("member.updateAll");
+
+            int updated = 0;
+
+            for (int resultSize : pstmt.executeBatch()) {
+
+                updated += Math.max(resultSize, 0);
+            }
+
+            event.finish(updated);
+
+            if (updated < balances.size()) {
+
+                log.info("updateAll missing members = {}", balances.size() - updated);
+            }
+
+            return updated;
+        }
+        catch (SQLException e) {
+
+            log.error("DB Error = {}", e);
+
+            checkDeadline(e);
+
             throw e;
         }
         finally {
@@ -136,9 +763,77 @@ public class MemberRepositoryV3 {
         }
     }
 
+    /**
+     * 데이터베이스 이체 함수(TRANSFER)를 한 번 호출해서 이체
+     *
+     * 조회, 출금, 입금이 데이터베이스 안에서 실행되므로 JDBC 왕복은 호출 한 번뿐이다.
+     * 트랜잭션 밖에서 호출하면 자동 커밋 모드로 호출 한 번이 그대로 하나의 트랜잭션이 된다.
+     *
+     * @param fromId
+     * @param toId
+     * @param money
+     * @return 결과 코드, OK 가 아니면 아무 것도 변경되지 않음
+     * @throws SQLException
+     */
+    public TransferStatus transfer(String fromId, String toId, int money) throws SQLException {
+
+        if (existenceFilter != null && !existenceFilter.mightContain(fromId)) {
+
+            return TransferStatus.FROM_NOT_FOUND;
+        }
+
+        if (existenceFilter != null && !existenceFilter.mightContain(toId)) {
+
+            return TransferStatus.TO_NOT_FOUND;
+        }
+
+        String sql = "CALL " + MemberProcedures.TRANSFER_ALIAS + "(?, ?, ?)";
+
+        Connection conn = null;
+        CallableStatement cstmt = null;
+        ResultSet rs = null;
+
+        try {
+
+            conn = getConnection();
+            cstmt = prepareCall(conn, sql);
+            applyDeadline(cstmt);
+
+            cstmt.setString(1, fromId);
+            cstmt.setString(2, toId);
+            cstmt.setInt(3, money);
+
+            StatementEvent event = StatementEvent.start("member.transfer");
+
+            rs = cstmt.executeQuery();
+            rs.next();
+
+            event.finish(1);
+
+            return TransferStatus.of(rs.getInt(1));
+        }
+        catch (SQLException e) {
+
+            log.error("DB Error = {}", e);
+
+            checkDeadline(e);
+
+            throw e;
+        }
+        finally {
+
+            close(conn, cstmt, rs);
+        }
+    }
+
+    /**
+     * 회원 삭제
+     *
+     * 블룸 필터에서는 지울 수 없으므로 삭제된 회원은 필터를 다시 만들 때까지 데이터베이스에서 없음을 확인한다.
+     */
     public void delete(String memberId) throws SQLException {
 
-        String sql = "DELETE FROM member WHERE memberId = ?";
+        String sql = DELETE_SQL;
 
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -146,18 +841,25 @@ public class MemberRepositoryV3 {
         try {
 
             conn = getConnection();
-            pstmt = conn.prepareStatement(sql);
+            pstmt = prepareStatement(conn, sql);
+            applyDeadline(pstmt);
 
             pstmt.setString(1, memberId);
 
+            StatementEvent event = StatementEvent.start("member.delete");
+
             int resultSize = pstmt.executeUpdate();
 
+            event.finish(resultSize);
+
             log.info("resultSize = {}", resultSize);
         }
         catch (SQLException e) {
 
             log.error("DB Error = {}", e);
 
+            checkDeadline(e);
+
             throw e;
         }
         finally {
@@ -166,8 +868,45 @@ public class MemberRepositoryV3 {
         }
     }
 
+    /**
+     * 지금까지 실행한 SQL 모양
+     */
+    public List<String> getStatementShapes() {
+
+        List<String> shapes = new ArrayList<>(statementShapes);
+
+        Collections.sort(shapes);
+
+        return shapes;
+    }
+
+    private PreparedStatement prepareStatement(Connection conn, String sql) throws SQLException {
+
+        statementShapes.add(sql);
+
+        return conn.prepareStatement(sql);
+    }
+
+    private CallableStatement prepareCall(Connection conn, String sql) throws SQLException {
+
+        statementShapes.add(sql);
+
+        return conn.prepareCall(sql);
+    }
+
+    private void addToFilter(String memberId) {
+
+        if (existenceFilter != null) {
+
+            existenceFilter.add(memberId);
+        }
+    }
+
     private Connection getConnection() throws SQLException {
 
+        // 데드라인이 지났으면 커넥션을 요청하지 않는다.
+        Deadline.checkCurrent("connection checkout");
+
         // DataSourceUtils 를 통해 트랜잭션 동기화 사용
         Connection con = DataSourceUtils.getConnection(dataSource);
 
@@ -176,6 +915,32 @@ public class MemberRepositoryV3 {
         return con;
     }
 
+    /**
+     * 남은 데드라인을 쿼리 타임아웃으로 적용 (밀리초 단위)
+     *
+     * 트랜잭션 타임아웃이 더 짧으면 트랜잭션의 남은 시간을 적용한다.
+     *
+     * @param pstmt
+     * @throws SQLException
+     */
+    private void applyDeadline(PreparedStatement pstmt) throws SQLException {
+
+        QueryTimeout.apply(pstmt, dataSource);
+    }
+
+    /**
+     * 쿼리 타임아웃으로 취소된 경우 데드라인 초과 예외로 변환
+     *
+     * @param e
+     */
+    private void checkDeadline(SQLException e) {
+
+        if (Deadline.isCurrentExpired()) {
+
+            throw new DeadlineExceededException("statement execution", e);
+        }
+    }
+
     private void close(Connection conn, Statement st, ResultSet rs) {
 
         JdbcUtils.closeResultSet(rs);
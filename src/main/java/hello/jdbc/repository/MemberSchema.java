@@ -0,0 +1,62 @@
+package hello.jdbc.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * member 테이블과 인덱스 생성 (이미 있으면 그대로 사용)
+ *
+ * idx_member_money : 잔액 범위 조회(findByMoneyRange, countBelow)용 보조 인덱스
+ * - (money, memberId) 순서라서 범위 조회 결과가 인덱스만으로 잔액 순으로 나오고 테이블을 다시 읽지 않는다.
+ *
+ * TRANSFER : 한 번의 호출로 이체하는 자바 함수 (MemberProcedures.transfer)
+ */
+@Slf4j
+public abstract class MemberSchema {
+
+    public static final String MONEY_INDEX = "idx_member_money";
+
+    public static final String CREATE_TABLE =
+            "CREATE TABLE IF NOT EXISTS member (memberId VARCHAR(10), money INTEGER NOT NULL DEFAULT 0, PRIMARY KEY (memberId))";
+
+    public static final String CREATE_MONEY_INDEX =
+            "CREATE INDEX IF NOT EXISTS " + MONEY_INDEX + " ON member(money, memberId)";
+
+    public static final String CREATE_TRANSFER_ALIAS =
+            "CREATE ALIAS IF NOT EXISTS " + MemberProcedures.TRANSFER_ALIAS + " FOR \"" + MemberProcedures.class.getName() + ".transfer\"";
+
+    private static final String[] DDL = {CREATE_TABLE, CREATE_MONEY_INDEX, CREATE_TRANSFER_ALIAS};
+
+    public static void bootstrap(DataSource dataSource) throws SQLException {
+
+        Connection conn = null;
+        Statement stmt = null;
+
+        try {
+
+            conn = dataSource.getConnection();
+            stmt = conn.createStatement();
+
+            for (String ddl : DDL) {
+
+                stmt.execute(ddl);
+            }
+        }
+        catch (SQLException e) {
+
+            log.error("DB Error = {}", e);
+
+            throw e;
+        }
+        finally {
+
+            JdbcUtils.closeStatement(stmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package hello.jdbc.repository;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 데이터베이스 이체 함수(TRANSFER) 결과 코드
+ *
+ * OK 가 아니면 아무 것도 변경되지 않는다.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum TransferStatus {
+
+    OK(0),
+    INSUFFICIENT_FUNDS(1),
+    FROM_NOT_FOUND(2),
+    TO_NOT_FOUND(3),
+    INVALID_AMOUNT(4);
+
+    private final int code;
+
+    public static TransferStatus of(int code) {
+
+        for (TransferStatus status : values()) {
+
+            if (status.code == code) {
+
+                return status;
+            }
+        }
+
+        throw new IllegalArgumentException("unknown transfer status code = " + code);
+    }
+}
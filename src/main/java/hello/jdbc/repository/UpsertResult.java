@@ -0,0 +1,17 @@
+package hello.jdbc.repository;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * MemberRepositoryV3.upsertAll() 결과
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class UpsertResult {
+
+    private final int inserted;
+    private final int updated;
+}
@@ -0,0 +1,75 @@
+package hello.jdbc.service;
+
+import hello.jdbc.admission.ConcurrencyLimiter;
+import hello.jdbc.admission.OverloadedException;
+import hello.jdbc.transaction.DeadlineExceededException;
+import hello.jdbc.transaction.RetryableErrors;
+import lombok.RequiredArgsConstructor;
+
+import java.sql.SQLException;
+
+/**
+ * 이체 - 수용 제어 (과부하 시 요청 거절)
+ *
+ * 데이터베이스가 느려지면 이체 요청이 커넥션 풀 앞에 쌓이고, 쌓인 만큼 모든 요청의 응답 시간이 함께 늘어난다.
+ * 동시 처리 한도(ConcurrencyLimiter)를 넘는 요청은 커넥션을 기다리지 않고 OverloadedException 으로 바로 거절한다.
+ *
+ * - 정상 완료, 비즈니스 예외 : 응답 시간을 한도 계산에 반영
+ * - 데드라인 초과, 잠금 경합 실패 : 과부하로 보고 한도 감소
+ */
+@RequiredArgsConstructor
+public class AdmissionControlledTransferService {
+
+    private final MemberServiceV3_1 memberService;
+    private final ConcurrencyLimiter limiter;
+
+    public void accountTransfer(String fromId, String toId, int money) throws SQLException {
+
+        ConcurrencyLimiter.Permit permit = limiter.tryAcquire();
+
+        if (permit == null) {
+
+            throw new OverloadedException(limiter.getLimit(), limiter.getInflight());
+        }
+
+        try {
+
+            memberService.accountTransfer(fromId, toId, money);
+
+            permit.onSuccess();
+        }
+        catch (DeadlineExceededException e) {
+
+            permit.onDropped();
+
+            throw e;
+        }
+        catch (SQLException | RuntimeException e) {
+
+            if (RetryableErrors.isRetryable(e)) {
+
+                permit.onDropped();
+            }
+            else {
+
+                permit.onSuccess();
+            }
+
+            throw e;
+        }
+        catch (Error e) {
+
+            permit.onIgnore();
+
+            throw e;
+        }
+    }
+
+    public int getLimit() {
+        return limiter.getLimit();
+    }
+
+    public long getRejected() {
+        return limiter.getRejected();
+    }
+}
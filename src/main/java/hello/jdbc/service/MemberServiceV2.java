@@ -81,22 +81,33 @@ public class MemberServiceV2 {
      * 커넥션 풀을 사용하면 con.close() 를 호출 했을 때 커넥션이 종료되는 것이 아니라 풀에 반납된다.
      * 현재 수동 커밋 모드로 동작하기 때문에 풀에 돌려주기 전에 기본 값인 자동 커밋 모드로 변경하는 것이 안전하다.
      *
+     * 자동 커밋 모드 변경이 실패해도 커넥션은 반드시 닫는다. (닫지 않으면 풀의 커넥션이 누수된다.)
+     *
      * @param conn
      */
     private void release(Connection conn) {
-        
+
         if (conn != null) {
 
             try {
 
                 // 커넥션 풀 고려
                 conn.setAutoCommit(true);
-
-                conn.close();
             }
             catch (Exception e) {
 
-                log.info("ERROR", e);
+                log.error("autoCommit reset ERROR", e);
+            }
+            finally {
+
+                try {
+
+                    conn.close();
+                }
+                catch (Exception e) {
+
+                    log.error("connection close ERROR", e);
+                }
             }
         }
     }
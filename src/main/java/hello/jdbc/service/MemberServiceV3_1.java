@@ -1,15 +1,22 @@
 package hello.jdbc.service;
 
 import hello.jdbc.domain.Member;
+import hello.jdbc.domain.Transfer;
+import hello.jdbc.jfr.TransactionEvent;
 import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.repository.TransferStatus;
+import hello.jdbc.transaction.Deadline;
+import hello.jdbc.transaction.DeadlineExceededException;
+import hello.jdbc.transaction.TransactionOptions;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
-import org.springframework.transaction.support.DefaultTransactionDefinition;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 트랜잭션 - 트랜잭션 매니저
@@ -25,7 +32,14 @@ public class MemberServiceV3_1 {
 
         // 트랜잭션 시작
         // 현재 트랜잭션의 상태 정보가 포함되어 있으며, 이후 트랜잭션을 커밋, 롤백할 때 필요
-        TransactionStatus status = transactionManager.getTransaction(new DefaultTransactionDefinition());
+        // 트랜잭션 정의는 불변 객체를 재사용 (매 호출마다 DefaultTransactionDefinition 을 생성하지 않는다)
+        // 요청 데드라인이 있으면 남은 시간을 트랜잭션 타임아웃으로 사용하고, 이미 지났으면 바로 실패
+        Deadline.checkCurrent("transaction begin");
+
+        // 트랜잭션 시작부터 커밋, 롤백까지를 JFR 이벤트로 기록
+        TransactionEvent event = TransactionEvent.start("accountTransfer");
+
+        TransactionStatus status = transactionManager.getTransaction(TransactionOptions.READ_WRITE.boundedBy(Deadline.current()));
 
         try {
 
@@ -34,16 +48,142 @@ public class MemberServiceV3_1 {
 
             // 비즈니스 로직이 정상 수행되면 트랜잭션을 커밋
             transactionManager.commit(status);
+
+            event.finish(TransactionEvent.COMMIT);
+        }
+        catch (DeadlineExceededException e) {
+
+            // 데드라인 초과는 감싸지 않고 그대로 전달
+            rollback(status, e);
+
+            event.finish(TransactionEvent.ROLLBACK);
+
+            throw e;
         }
         catch (Exception e) {
 
             // 비즈니스 로직 수행 도중에 예외가 발생하면 트랜잭션을 롤백
-            transactionManager.rollback(status);
+            rollback(status, e);
+
+            event.finish(TransactionEvent.ROLLBACK);
 
             throw new IllegalStateException(e);
         }
     }
 
+    /**
+     * 데이터베이스 함수로 이체 (호출 한 번)
+     *
+     * 잔액 확인, 출금, 입금이 데이터베이스 함수 안에서 원자적으로 실행되므로 트랜잭션 매니저를 거치지 않는다.
+     * (트랜잭션 시작, 조회 2번, 수정 2번, 커밋 -> CALL 1번)
+     * 외부 트랜잭션이 있으면 같은 커넥션으로 호출되어 그 트랜잭션에 참여한다.
+     *
+     * @param fromId
+     * @param toId
+     * @param money
+     * @throws SQLException
+     */
+    public void accountTransferInDatabase(String fromId, String toId, int money) throws SQLException {
+
+        Deadline.checkCurrent("transaction begin");
+
+        TransferStatus status = memberRepository.transfer(fromId, toId, money);
+
+        if (status != TransferStatus.OK) {
+
+            throw new IllegalStateException("이체 실패 status = " + status);
+        }
+    }
+
+    /**
+     * 여러 건 이체를 한 트랜잭션으로 실행 (부분 롤백)
+     *
+     * 이체마다 세이브포인트를 만들고, 실패한 이체는 자기 세이브포인트까지만 롤백한다.
+     * 나머지 이체는 마지막에 함께 커밋되므로 실패 한 건 때문에 전체를 다시 실행하지 않아도 된다.
+     *
+     * - 데드라인 초과는 개별 실패로 보지 않고 전체를 롤백한 뒤 그대로 전달
+     * - 커밋이 실패하면 전체가 반영되지 않으므로 예외를 던진다.
+     *
+     * @param transfers
+     * @return 요청 순서대로 이체별 결과
+     */
+    public List<TransferOutcome> accountTransferAll(List<Transfer> transfers) {
+
+        Deadline.checkCurrent("transaction begin");
+
+        TransactionEvent event = TransactionEvent.start("accountTransferAll");
+
+        TransactionStatus status = transactionManager.getTransaction(TransactionOptions.READ_WRITE.boundedBy(Deadline.current()));
+
+        List<TransferOutcome> outcomes = new ArrayList<>(transfers.size());
+
+        try {
+
+            for (Transfer transfer : transfers) {
+
+                Object savepoint = status.createSavepoint();
+
+                try {
+
+                    bizLogic(transfer.getFromId(), transfer.getToId(), transfer.getMoney());
+
+                    status.releaseSavepoint(savepoint);
+
+                    outcomes.add(TransferOutcome.success(transfer));
+                }
+                catch (DeadlineExceededException e) {
+
+                    throw e;
+                }
+                catch (Exception e) {
+
+                    // 이 이체에서 변경한 내용만 롤백
+                    status.rollbackToSavepoint(savepoint);
+                    status.releaseSavepoint(savepoint);
+
+                    outcomes.add(TransferOutcome.failure(transfer, e));
+                }
+            }
+        }
+        catch (RuntimeException e) {
+
+            rollback(status, e);
+
+            event.finish(TransactionEvent.ROLLBACK, transfers.size());
+
+            throw e;
+        }
+
+        transactionManager.commit(status);
+
+        event.finish(TransactionEvent.COMMIT, transfers.size());
+
+        return outcomes;
+    }
+
+    /**
+     * 롤백 중에 발생한 예외가 원래 예외를 가리지 않도록 처리
+     *
+     * 잠금 대기 시간 초과 등으로 커넥션 풀이 커넥션을 폐기하면 롤백도 실패하는데,
+     * 롤백 예외를 그대로 던지면 재시도 여부를 판단할 원래 예외가 사라진다.
+     *
+     * @param status
+     * @param ex
+     */
+    private void rollback(TransactionStatus status, Exception ex) {
+
+        try {
+
+            transactionManager.rollback(status);
+        }
+        catch (RuntimeException rollbackEx) {
+
+            log.error("Rollback Error, original exception = {}", ex.toString(), rollbackEx);
+
+            ex.addSuppressed(rollbackEx);
+        }
+    }
+
     private void bizLogic(String fromId, String toId, int money) throws SQLException {
 
         Member fromMember = memberRepository.findById(fromId);
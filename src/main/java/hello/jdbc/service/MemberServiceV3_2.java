@@ -0,0 +1,80 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.transaction.TransactionExecutor;
+import hello.jdbc.transaction.TransactionOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.SQLException;
+
+/**
+ * 트랜잭션 - 트랜잭션 콜백 실행기
+ *
+ * 트랜잭션을 시작, 커밋, 롤백하는 반복 코드를 TransactionExecutor 로 옮기고
+ * 서비스에는 비즈니스 로직만 남긴다.
+ */
+@Slf4j
+public class MemberServiceV3_2 {
+
+    private final TransactionExecutor txExecutor;
+    private final MemberRepositoryV3 memberRepository;
+
+    public MemberServiceV3_2(PlatformTransactionManager transactionManager, MemberRepositoryV3 memberRepository) {
+        this.txExecutor = new TransactionExecutor(transactionManager);
+        this.memberRepository = memberRepository;
+    }
+
+    public void accountTransfer(String fromId, String toId, int money) {
+
+        try {
+
+            txExecutor.executeWithoutResult(TransactionOptions.READ_WRITE, () -> bizLogic(fromId, toId, money));
+        }
+        catch (SQLException e) {
+
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 읽기 전용 트랜잭션에서 회원 조회
+     *
+     * 읽기 전용 힌트는 Connection.setReadOnly(true) 로 드라이버에 전달된다.
+     *
+     * @param memberId
+     * @return
+     */
+    public Member findMember(String memberId) {
+
+        try {
+
+            return txExecutor.execute(TransactionOptions.READ_ONLY, () -> memberRepository.findById(memberId));
+        }
+        catch (SQLException e) {
+
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void bizLogic(String fromId, String toId, int money) throws SQLException {
+
+        Member fromMember = memberRepository.findById(fromId);
+        Member toMember = memberRepository.findById(toId);
+
+        memberRepository.update(fromId, fromMember.getMoney() - money);
+
+        validation(toMember);
+
+        memberRepository.update(toId, toMember.getMoney() + money);
+    }
+
+    private void validation(Member toMember) {
+
+        if (toMember.getMemberId().equals("ex")) {
+
+            throw new IllegalStateException("이체 중 예외 발생");
+        }
+    }
+}
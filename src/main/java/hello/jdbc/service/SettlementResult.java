@@ -0,0 +1,34 @@
+package hello.jdbc.service;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * 일괄 정산 결과
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class SettlementResult {
+
+    private final long succeeded;
+    private final long failed;
+    private final long elapsedNanos;
+    private final List<Wave> waves;
+
+    /**
+     * 웨이브(동시에 실행한 이체 묶음) 하나의 실행 정보
+     */
+    @Getter
+    @ToString
+    @RequiredArgsConstructor
+    public static class Wave {
+
+        private final int index;
+        private final int transfers;
+        private final long elapsedNanos;
+    }
+}
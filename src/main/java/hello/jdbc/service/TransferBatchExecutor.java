@@ -0,0 +1,172 @@
+package hello.jdbc.service;
+
+import hello.jdbc.connection.Workload;
+import hello.jdbc.domain.Transfer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 일괄 정산 - 충돌 없는 이체 묶음(웨이브) 단위 병렬 실행
+ *
+ * 같은 회원을 건드리는 이체끼리만 순서가 중요하므로, 이체를 웨이브로 나눠서
+ * 한 웨이브 안에서는 어떤 두 이체도 같은 회원을 공유하지 않도록 만든다. (그리디 컬러링)
+ *
+ * - 이체 i 의 웨이브 = max(from 회원의 마지막 웨이브, to 회원의 마지막 웨이브) + 1
+ * - 같은 회원의 이체는 항상 뒤 웨이브로 밀리므로 회원별 처리 순서는 입력 순서와 같다.
+ *   -> 최종 잔액은 순차 실행 결과와 같다.
+ * - 한 웨이브 안의 이체는 서로 다른 행만 수정하므로 행 락 경합이 없다.
+ *
+ * 웨이브는 ForkJoinPool 에서 워커 수만큼 나눠서 병렬로 실행하고,
+ * 워커는 자기 몫을 순서대로 처리하므로 동시에 사용하는 커넥션은 워커당 하나다.
+ * (커넥션 풀 크기는 parallelism 이상으로 설정)
+ *
+ * 워커는 BATCH 작업으로 실행하므로 WorkloadRoutingDataSource 를 쓰면 이체 요청과 다른 풀을 사용한다.
+ */
+@Slf4j
+public class TransferBatchExecutor {
+
+    private final MemberServiceV3_1 memberService;
+    private final int parallelism;
+
+    public TransferBatchExecutor(MemberServiceV3_1 memberService, int parallelism) {
+        this.memberService = memberService;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * 이체 목록을 웨이브로 분할
+     *
+     * @param transfers
+     * @return 웨이브 순서대로, 각 웨이브 안에서는 입력 순서 유지
+     */
+    public static List<List<Transfer>> plan(List<Transfer> transfers) {
+
+        Map<String, Integer> lastWave = new HashMap<>();
+        List<List<Transfer>> waves = new ArrayList<>();
+
+        for (Transfer transfer : transfers) {
+
+            int wave = Math.max(
+                    lastWave.getOrDefault(transfer.getFromId(), -1),
+                    lastWave.getOrDefault(transfer.getToId(), -1)
+            ) + 1;
+
+            if (wave == waves.size()) {
+
+                waves.add(new ArrayList<>());
+            }
+
+            waves.get(wave).add(transfer);
+
+            lastWave.put(transfer.getFromId(), wave);
+            lastWave.put(transfer.getToId(), wave);
+        }
+
+        return waves;
+    }
+
+    public SettlementResult execute(List<Transfer> transfers) {
+
+        List<List<Transfer>> waves = plan(transfers);
+
+        log.info("settlement transfers = {}, waves = {}", transfers.size(), waves.size());
+
+        LongAdder succeeded = new LongAdder();
+        LongAdder failed = new LongAdder();
+        List<SettlementResult.Wave> waveStats = new ArrayList<>(waves.size());
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        long start = System.nanoTime();
+
+        try {
+
+            for (int i = 0; i < waves.size(); i++) {
+
+                List<Transfer> wave = waves.get(i);
+
+                long waveStart = System.nanoTime();
+
+                runWave(pool, wave, succeeded, failed);
+
+                waveStats.add(new SettlementResult.Wave(i, wave.size(), System.nanoTime() - waveStart));
+            }
+        }
+        finally {
+
+            pool.shutdown();
+        }
+
+        SettlementResult result = new SettlementResult(succeeded.sum(), failed.sum(), System.nanoTime() - start, waveStats);
+
+        log.info("settlement succeeded = {}, failed = {}, elapsed = {}ms",
+                result.getSucceeded(), result.getFailed(), result.getElapsedNanos() / 1_000_000);
+
+        return result;
+    }
+
+    /**
+     * 웨이브를 워커 수만큼 나눠서 실행하고 모든 워커가 끝날 때까지 대기
+     */
+    private void runWave(ForkJoinPool pool, List<Transfer> wave, LongAdder succeeded, LongAdder failed) {
+
+        int workers = Math.min(parallelism, wave.size());
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(workers);
+
+        for (int w = 0; w < workers; w++) {
+
+            List<Transfer> share = wave.subList(wave.size() * w / workers, wave.size() * (w + 1) / workers);
+
+            tasks.add(pool.submit(() -> {
+
+                // 워커 쓰레드는 배치 풀의 커넥션을 사용 (WorkloadRoutingDataSource)
+                Workload.BATCH.run(() -> {
+
+                    for (Transfer transfer : share) {
+
+                        if (transfer(transfer)) {
+                            succeeded.increment();
+                        }
+                        else {
+                            failed.increment();
+                        }
+                    }
+                });
+            }));
+        }
+
+        for (ForkJoinTask<?> task : tasks) {
+
+            task.join();
+        }
+    }
+
+    /**
+     * 이체 한 건 실행, 실패한 이체는 롤백되고 나머지 이체는 계속 진행
+     *
+     * @param transfer
+     * @return 성공 여부
+     */
+    private boolean transfer(Transfer transfer) {
+
+        try {
+
+            memberService.accountTransfer(transfer.getFromId(), transfer.getToId(), transfer.getMoney());
+
+            return true;
+        }
+        catch (Exception e) {
+
+            log.info("transfer failed. transfer = {}, error = {}", transfer, e.toString());
+
+            return false;
+        }
+    }
+}
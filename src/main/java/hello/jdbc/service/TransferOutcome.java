@@ -0,0 +1,33 @@
+package hello.jdbc.service;
+
+import hello.jdbc.domain.Transfer;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 여러 건 이체에서 이체 한 건의 결과
+ *
+ * 실패한 이체는 failure 에 원인 예외를 담는다.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class TransferOutcome {
+
+    private final Transfer transfer;
+    private final Exception failure;
+
+    public static TransferOutcome success(Transfer transfer) {
+        return new TransferOutcome(transfer, null);
+    }
+
+    public static TransferOutcome failure(Transfer transfer, Exception failure) {
+        return new TransferOutcome(transfer, failure);
+    }
+
+    public boolean isSucceeded() {
+        return failure == null;
+    }
+}
@@ -0,0 +1,161 @@
+package hello.jdbc.transaction;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 요청 단위 데드라인
+ *
+ * 요청을 처리하는 쓰레드에 데드라인을 바인딩해두면 아래 단계에서 남은 시간만큼만 기다린다.
+ *
+ * - 커넥션 획득 : DeadlineDataSource 가 남은 시간까지만 풀에서 대기
+ * - 트랜잭션 : TransactionExecutor 가 남은 시간을 트랜잭션 타임아웃으로 사용
+ * - SQL 실행 : 리포지토리가 QueryTimeout 으로 남은 시간(ms)을 쿼리 타임아웃으로 적용
+ *
+ * 데드라인이 이미 지났으면 더 이상 작업을 쌓지 않고 DeadlineExceededException 으로 바로 실패한다.
+ *
+ * <pre>
+ * try (Deadline.Scope scope = Deadline.after(Duration.ofMillis(500)).attach()) {
+ *     memberService.accountTransfer(fromId, toId, money);
+ * }
+ * </pre>
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static Deadline after(Duration timeout) {
+
+        return new Deadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    /**
+     * 현재 쓰레드에 바인딩된 데드라인
+     *
+     * @return 없으면 null
+     */
+    public static Deadline current() {
+
+        return CURRENT.get();
+    }
+
+    /**
+     * 현재 데드라인이 지났으면 예외
+     *
+     * @param operation 예외 메시지에 포함할 작업 이름
+     */
+    public static void checkCurrent(String operation) {
+
+        Deadline deadline = CURRENT.get();
+
+        if (deadline != null) {
+
+            deadline.check(operation);
+        }
+    }
+
+    /**
+     * 현재 데드라인의 남은 시간을 JDBC 타임아웃(초) 으로 변환
+     *
+     * @return 데드라인이 없으면 -1
+     */
+    public static int currentTimeoutSeconds() {
+
+        Deadline deadline = CURRENT.get();
+
+        return deadline == null ? -1 : deadline.remainingSeconds();
+    }
+
+    public static boolean isCurrentExpired() {
+
+        Deadline deadline = CURRENT.get();
+
+        return deadline != null && deadline.isExpired();
+    }
+
+    /**
+     * 현재 쓰레드에 데드라인 바인딩
+     *
+     * 이미 더 빠른 데드라인이 바인딩되어 있으면 바깥 데드라인을 유지한다.
+     *
+     * @return 스코프가 끝나면 이전 데드라인으로 복구
+     */
+    public Scope attach() {
+
+        Deadline previous = CURRENT.get();
+
+        CURRENT.set(previous != null && previous.deadlineNanos <= deadlineNanos ? previous : this);
+
+        return new Scope(previous);
+    }
+
+    public long remainingNanos() {
+
+        return deadlineNanos - System.nanoTime();
+    }
+
+    public long remainingMillis() {
+
+        return TimeUnit.NANOSECONDS.toMillis(remainingNanos());
+    }
+
+    /**
+     * 초 단위 타임아웃(트랜잭션 타임아웃 등)용, 올림 (0 은 무제한이므로 최소 1초)
+     *
+     * 쿼리 타임아웃은 최대 1초 가까이 늘어날 수 있으므로 QueryTimeout 으로 밀리초 단위를 사용한다.
+     *
+     * @return
+     */
+    public int remainingSeconds() {
+
+        long seconds = (remainingNanos() + 999_999_999L) / 1_000_000_000L;
+
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, seconds));
+    }
+
+    public boolean isExpired() {
+
+        return remainingNanos() <= 0;
+    }
+
+    public void check(String operation) {
+
+        long remaining = remainingNanos();
+
+        if (remaining <= 0) {
+
+            throw new DeadlineExceededException(operation, -remaining);
+        }
+    }
+
+    /**
+     * 데드라인 바인딩 해제
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private final Deadline previous;
+
+        private Scope(Deadline previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+
+            if (previous == null) {
+
+                CURRENT.remove();
+            }
+            else {
+
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package hello.jdbc.transaction;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 요청 데드라인 초과
+ *
+ * 커넥션 획득, 트랜잭션 시작, SQL 실행 전에 데드라인이 지났거나
+ * 남은 시간 안에 작업이 끝나지 않은 경우 발생
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededException(String operation, long overdueNanos) {
+        super("deadline exceeded before " + operation + ". overdue = " + TimeUnit.NANOSECONDS.toMillis(overdueNanos) + "ms");
+    }
+
+    public DeadlineExceededException(String operation, Throwable cause) {
+        super("deadline exceeded during " + operation, cause);
+    }
+}
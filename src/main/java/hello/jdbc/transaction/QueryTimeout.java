@@ -0,0 +1,124 @@
+package hello.jdbc.transaction;
+
+import org.h2.jdbc.JdbcConnection;
+import org.springframework.jdbc.datasource.ConnectionHolder;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ConcurrentReferenceHashMap;
+import org.springframework.util.ConcurrentReferenceHashMap.ReferenceType;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+/**
+ * 남은 데드라인을 밀리초 단위 쿼리 타임아웃으로 적용
+ *
+ * JDBC 의 Statement.setQueryTimeout() 은 초 단위라서 50ms 남은 요청도 1초까지 실행될 수 있다.
+ * H2 는 세션 단위 SET QUERY_TIMEOUT(밀리초)을 지원하므로 남은 시간을 그대로 적용한다.
+ * - 데드라인과 트랜잭션 타임아웃 중 먼저 끝나는 쪽을 사용
+ * - 세션 설정은 커넥션을 풀에 반납해도 남으므로, 타임아웃이 없는 문장 전에는 0(무제한)으로 되돌린다.
+ * - 남은 시간을 STEP_MILLIS 단위로 올림해서 적용하고, 세션마다 마지막으로 적용한 값을 기억한다.
+ *   적용한 값이 남은 시간보다 길고 그 차이가 STEP_MILLIS 이하이면 SET 을 생략하므로,
+ *   데드라인 안에서 연달아 실행하는 문장은 남은 시간이 STEP_MILLIS 줄어들 때까지 SET 없이 실행된다.
+ *   대신 쿼리 타임아웃이 데드라인보다 최대 STEP_MILLIS 늦게 끝날 수 있다. (다음 문장 전 데드라인 확인은 그대로)
+ *
+ * H2 가 아닌 커넥션은 기존처럼 DataSourceUtils.applyTimeout() 으로 초 단위 타임아웃을 적용한다.
+ */
+public final class QueryTimeout {
+
+    /**
+     * 타임아웃을 올림하는 단위(ms)
+     */
+    public static final int STEP_MILLIS = 50;
+
+    private static final String SET_QUERY_TIMEOUT = "SET QUERY_TIMEOUT ";
+
+    /**
+     * H2 세션별 마지막으로 적용한 타임아웃(ms), 세션이 닫히면 함께 정리
+     * 세션은 한 번에 한 쓰레드만 사용하므로 전체 락 없이 세션별 항목만 읽고 쓴다.
+     */
+    private static final Map<JdbcConnection, Integer> APPLIED = new ConcurrentReferenceHashMap<>(16, ReferenceType.WEAK);
+
+    private QueryTimeout() {
+    }
+
+    /**
+     * 문장을 실행하기 직전에 호출
+     *
+     * @param stmt
+     * @param dataSource 트랜잭션 타임아웃을 찾을 DataSource
+     * @throws SQLException
+     * @throws DeadlineExceededException 데드라인이 이미 지난 경우
+     */
+    public static void apply(Statement stmt, DataSource dataSource) throws SQLException {
+
+        Deadline.checkCurrent("statement execution");
+
+        Connection conn = stmt.getConnection();
+
+        if (!conn.isWrapperFor(JdbcConnection.class)) {
+
+            DataSourceUtils.applyTimeout(stmt, dataSource, Deadline.currentTimeoutSeconds());
+
+            return;
+        }
+
+        long millis = timeoutMillis(dataSource);
+
+        JdbcConnection session = conn.unwrap(JdbcConnection.class);
+
+        int applied = APPLIED.getOrDefault(session, 0);
+
+        if (millis == 0 ? applied == 0 : applied >= millis && applied - millis <= STEP_MILLIS) {
+
+            return;
+        }
+
+        int timeout = (int) Math.min(Integer.MAX_VALUE, roundUp(millis));
+
+        try (Statement set = conn.createStatement()) {
+
+            set.execute(SET_QUERY_TIMEOUT + timeout);
+        }
+
+        APPLIED.put(session, timeout);
+    }
+
+    /**
+     * STEP_MILLIS 단위로 올림
+     */
+    private static long roundUp(long millis) {
+
+        return (millis + STEP_MILLIS - 1) / STEP_MILLIS * STEP_MILLIS;
+    }
+
+    /**
+     * @return 데드라인, 트랜잭션 타임아웃 중 짧은 남은 시간(ms), 둘 다 없으면 0
+     */
+    private static long timeoutMillis(DataSource dataSource) {
+
+        long millis = 0;
+
+        Deadline deadline = Deadline.current();
+
+        if (deadline != null) {
+
+            // 1ms 미만은 0(무제한)이 되지 않도록 최소 1ms
+            millis = Math.max(1, deadline.remainingMillis());
+        }
+
+        ConnectionHolder holder = (ConnectionHolder) TransactionSynchronizationManager.getResource(dataSource);
+
+        if (holder != null && holder.hasTimeout()) {
+
+            long transactionMillis = holder.getTimeToLiveInMillis();
+
+            millis = millis == 0 ? transactionMillis : Math.min(millis, transactionMillis);
+        }
+
+        return millis;
+    }
+}
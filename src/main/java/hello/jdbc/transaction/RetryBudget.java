@@ -0,0 +1,68 @@
+package hello.jdbc.transaction;
+
+/**
+ * 재시도 예산 (토큰 버킷)
+ *
+ * 재시도 한 번에 토큰 하나를 사용하고, 토큰은 초당 tokensPerSecond 개씩 capacity 까지 채워진다.
+ * 데이터베이스가 전체적으로 느려져서 대부분의 요청이 실패할 때 모든 요청이 재시도하면 부하가 몇 배로 늘어나므로 (재시도 폭풍)
+ * 예산을 다 쓰면 재시도하지 않고 바로 실패시킨다.
+ */
+public class RetryBudget {
+
+    private final double capacity;
+    private final double tokensPerNano;
+
+    private double tokens;
+    private long refilledAt;
+
+    /**
+     * @param capacity 한 번에 몰아서 쓸 수 있는 최대 재시도 수
+     * @param tokensPerSecond 초당 허용하는 평균 재시도 수
+     */
+    public RetryBudget(int capacity, double tokensPerSecond) {
+
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.refilledAt = System.nanoTime();
+    }
+
+    public synchronized boolean tryAcquire() {
+
+        refill();
+
+        if (tokens < 1) {
+
+            return false;
+        }
+
+        tokens -= 1;
+
+        return true;
+    }
+
+    /**
+     * 받은 토큰을 쓰지 않고 돌려줌 (재시도를 포기한 경우)
+     */
+    public synchronized void release() {
+
+        refill();
+
+        tokens = Math.min(capacity, tokens + 1);
+    }
+
+    public synchronized double getAvailable() {
+
+        refill();
+
+        return tokens;
+    }
+
+    private void refill() {
+
+        long now = System.nanoTime();
+
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+    }
+}
@@ -0,0 +1,64 @@
+package hello.jdbc.transaction;
+
+import org.h2.api.ErrorCode;
+
+import java.sql.SQLException;
+
+/**
+ * 다시 실행하면 성공할 수 있는 데이터베이스 오류 분류
+ *
+ * 잠금 경합으로 트랜잭션이 실패한 경우만 재시도 대상이다. (제약 조건 위반, 문법 오류 등은 다시 실행해도 실패)
+ * - 50200 : 잠금 대기 시간 초과 (LOCK_TIMEOUT)
+ * - 40001 : 교착 상태 (DEADLOCK)
+ * - 90131 : 다른 트랜잭션이 같은 행을 동시에 수정 (MVStore CONCURRENT_UPDATE)
+ * - SQLState 40xxx : 표준 트랜잭션 롤백 클래스 (다른 드라이버)
+ *
+ * 서비스가 예외를 IllegalStateException 등으로 감싸서 던지므로 원인(cause)을 따라가며 확인한다.
+ */
+public abstract class RetryableErrors {
+
+    private static final int[] RETRYABLE_CODES = {
+            ErrorCode.LOCK_TIMEOUT_1, ErrorCode.DEADLOCK_1, ErrorCode.CONCURRENT_UPDATE_1
+    };
+
+    public static boolean isRetryable(Throwable e) {
+
+        return retryableCause(e) != null;
+    }
+
+    /**
+     * @param e
+     * @return 재시도 대상인 SQLException, 없으면 null
+     */
+    public static SQLException retryableCause(Throwable e) {
+
+        // 데드라인이 지났으면 다시 실행할 시간이 없다.
+        for (Throwable cause = e; cause != null && !(cause instanceof DeadlineExceededException); cause = cause.getCause()) {
+
+            if (cause instanceof SQLException && isRetryable((SQLException) cause)) {
+
+                return (SQLException) cause;
+            }
+
+            if (cause.getCause() == cause) {
+
+                break;
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean isRetryable(SQLException e) {
+
+        for (int code : RETRYABLE_CODES) {
+
+            if (e.getErrorCode() == code) {
+
+                return true;
+            }
+        }
+
+        return e.getSQLState() != null && e.getSQLState().startsWith("40");
+    }
+}
@@ -0,0 +1,206 @@
+package hello.jdbc.transaction;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 트랜잭션 - 잠금 경합 실패 자동 재시도
+ *
+ * 잠금 대기 시간 초과, 교착 상태처럼 다시 실행하면 성공할 수 있는 실패(RetryableErrors)만 트랜잭션 전체를 다시 실행한다.
+ * - 재시도 간격 : 지수 백오프 + 전체 지터 (0 ~ min(maxBackoff, baseBackoff * 2^(n-1)))
+ *   같은 잠금에서 충돌한 요청들이 동시에 다시 충돌하지 않도록 대기 시간을 무작위로 분산
+ * - 재시도 예산(RetryBudget)을 다 쓰면 재시도하지 않고 실패 (재시도 폭풍 방지)
+ * - 데드라인(Deadline)이 있으면 남은 시간 안에 대기가 끝나지 않는 재시도는 하지 않는다.
+ * - 이미 진행 중인 트랜잭션 안에서 호출되면 재시도하지 않는다. (실패한 트랜잭션은 바깥에서 롤백해야 한다.)
+ *
+ * 재시도 지표 : 호출 수, 재시도 수(오류 코드별), 재시도 후 성공, 시도 횟수 소진, 예산 부족
+ */
+@Slf4j
+public class RetryingTransactionExecutor {
+
+    private final TransactionExecutor transactionExecutor;
+    private final int maxAttempts;
+    private final long baseBackoffNanos;
+    private final long maxBackoffNanos;
+    private final RetryBudget budget;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder recovered = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    private final LongAdder budgetRejected = new LongAdder();
+    private final Map<Integer, LongAdder> retriesByErrorCode = new ConcurrentHashMap<>();
+
+    /**
+     * @param transactionExecutor 시도마다 새 트랜잭션을 시작
+     * @param maxAttempts 첫 시도를 포함한 최대 실행 횟수
+     * @param baseBackoff 첫 재시도의 최대 대기 시간
+     * @param maxBackoff 재시도 대기 시간 상한
+     * @param budget
+     */
+    public RetryingTransactionExecutor(TransactionExecutor transactionExecutor, int maxAttempts,
+                                       Duration baseBackoff, Duration maxBackoff, RetryBudget budget) {
+
+        this.transactionExecutor = transactionExecutor;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseBackoffNanos = baseBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+        this.budget = budget;
+    }
+
+    /**
+     * 콜백을 트랜잭션 안에서 실행하고, 재시도 대상 실패면 새 트랜잭션으로 다시 실행
+     */
+    public <T> T execute(TransactionOptions options, TransactionExecutor.Callback<T> callback) throws SQLException {
+
+        return call(() -> transactionExecutor.execute(options, callback));
+    }
+
+    /**
+     * 스스로 트랜잭션을 시작, 커밋하는 작업을 재시도 (예: MemberServiceV3_1.accountTransfer)
+     */
+    public <T> T call(TransactionExecutor.Callback<T> callback) throws SQLException {
+
+        calls.increment();
+
+        boolean nested = TransactionSynchronizationManager.isActualTransactionActive();
+
+        for (int attempt = 1; ; attempt++) {
+
+            try {
+
+                T result = callback.doInTransaction();
+
+                if (attempt > 1) {
+
+                    recovered.increment();
+                }
+
+                return result;
+            }
+            catch (SQLException | RuntimeException e) {
+
+                SQLException cause = RetryableErrors.retryableCause(e);
+
+                if (cause == null || nested) {
+
+                    throw e;
+                }
+
+                long backoff = backoffNanos(attempt);
+
+                // 데드라인 안에 끝나지 않는 재시도는 예산을 쓰기 전에 포기
+                if (!canRetry(attempt, backoff)) {
+
+                    throw e;
+                }
+
+                if (!sleep(backoff)) {
+
+                    // 인터럽트되어 재시도하지 않으므로 예산을 돌려준다.
+                    budget.release();
+
+                    throw e;
+                }
+
+                retries.increment();
+                retriesByErrorCode.computeIfAbsent(cause.getErrorCode(), code -> new LongAdder()).increment();
+
+                log.warn("retry transaction. attempt = {}, errorCode = {}, backoff = {}ms",
+                        attempt + 1, cause.getErrorCode(), backoff / 1_000_000);
+            }
+        }
+    }
+
+    private boolean canRetry(int attempt, long backoffNanos) {
+
+        if (attempt >= maxAttempts) {
+
+            exhausted.increment();
+
+            return false;
+        }
+
+        Deadline deadline = Deadline.current();
+
+        if (deadline != null && deadline.remainingNanos() <= backoffNanos) {
+
+            return false;
+        }
+
+        if (!budget.tryAcquire()) {
+
+            budgetRejected.increment();
+
+            return false;
+        }
+
+        return true;
+    }
+
+    private long backoffNanos(int attempt) {
+
+        long ceiling = Math.min(maxBackoffNanos, baseBackoffNanos << Math.min(attempt - 1, 20));
+
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * @return 인터럽트되면 false
+     */
+    private boolean sleep(long nanos) {
+
+        try {
+
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+
+            return true;
+        }
+        catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+            return false;
+        }
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    public long getRecovered() {
+        return recovered.sum();
+    }
+
+    public long getExhausted() {
+        return exhausted.sum();
+    }
+
+    public long getBudgetRejected() {
+        return budgetRejected.sum();
+    }
+
+    /**
+     * 오류 코드별 재시도 수
+     */
+    public Map<Integer, Long> getRetriesByErrorCode() {
+
+        Map<Integer, Long> snapshot = new TreeMap<>();
+
+        retriesByErrorCode.forEach((code, count) -> snapshot.put(code, count.sum()));
+
+        return snapshot;
+    }
+}
@@ -0,0 +1,114 @@
+package hello.jdbc.transaction;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.SQLException;
+
+/**
+ * 트랜잭션 - 콜백 실행기
+ *
+ * 트랜잭션 시작, 커밋, 롤백 코드를 한 곳에 모아두고 비즈니스 로직은 콜백(람다)으로만 전달한다.
+ *
+ * 이미 진행 중인 트랜잭션이 있으면 트랜잭션 매니저를 거치지 않고 콜백을 바로 실행한다.
+ * (외부 트랜잭션에 그대로 참여하므로 TransactionStatus 생성, 동기화 등록 비용이 없다.)
+ *
+ * 현재 쓰레드에 데드라인(Deadline)이 있으면 남은 시간을 트랜잭션 타임아웃으로 사용하고,
+ * 이미 지났으면 트랜잭션을 시작하지 않고 실패한다.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class TransactionExecutor {
+
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * 트랜잭션 안에서 실행할 로직
+     *
+     * 리포지토리가 SQLException 을 던지므로 체크 예외를 그대로 전달할 수 있도록 별도로 정의
+     *
+     * @param <T>
+     */
+    @FunctionalInterface
+    public interface Callback<T> {
+
+        T doInTransaction() throws SQLException;
+    }
+
+    /**
+     * 반환 값이 없는 트랜잭션 로직
+     */
+    @FunctionalInterface
+    public interface VoidCallback {
+
+        void doInTransaction() throws SQLException;
+    }
+
+    public <T> T execute(TransactionOptions options, Callback<T> callback) throws SQLException {
+
+        Deadline deadline = Deadline.current();
+
+        if (deadline != null) {
+
+            deadline.check("transaction begin");
+        }
+
+        // 외부 트랜잭션이 있으면 새로 시작하지 않고 그대로 참여
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+
+            return callback.doInTransaction();
+        }
+
+        TransactionStatus status = transactionManager.getTransaction(options.boundedBy(deadline));
+
+        T result;
+
+        try {
+
+            result = callback.doInTransaction();
+        }
+        catch (SQLException | RuntimeException | Error e) {
+
+            rollbackOnException(status, e);
+
+            throw e;
+        }
+
+        transactionManager.commit(status);
+
+        return result;
+    }
+
+    public void executeWithoutResult(TransactionOptions options, VoidCallback callback) throws SQLException {
+
+        execute(options, () -> {
+
+            callback.doInTransaction();
+
+            return null;
+        });
+    }
+
+    /**
+     * 롤백 중에 발생한 예외가 원래 예외를 가리지 않도록 처리
+     *
+     * @param status
+     * @param ex
+     */
+    private void rollbackOnException(TransactionStatus status, Throwable ex) {
+
+        try {
+
+            transactionManager.rollback(status);
+        }
+        catch (RuntimeException | Error rollbackEx) {
+
+            log.error("Rollback Error, original exception = {}", ex.toString(), rollbackEx);
+
+            ex.addSuppressed(rollbackEx);
+        }
+    }
+}
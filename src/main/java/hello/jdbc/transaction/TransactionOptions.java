@@ -0,0 +1,124 @@
+package hello.jdbc.transaction;
+
+import org.springframework.transaction.TransactionDefinition;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 불변 트랜잭션 정의
+ *
+ * DefaultTransactionDefinition 은 변경 가능한 객체라서 공유할 수 없기 때문에 매 호출마다 새로 생성해야 한다.
+ * TransactionOptions 는 값이 바뀌지 않으므로 (readOnly, isolation, timeout) 조합마다 하나의 인스턴스만 만들어 캐시해두고 재사용한다.
+ *
+ * - readOnly : DataSourceTransactionManager 가 Connection.setReadOnly(true) 로 전달
+ * - isolation : 트랜잭션 시작 시 커넥션의 격리 수준을 변경하고, 종료 시 원래 값으로 복구
+ * - timeout : 초 단위, 커넥션 홀더에 데드라인으로 기록되어 DataSourceUtils.applyTimeout() 에서 사용
+ */
+public final class TransactionOptions implements TransactionDefinition {
+
+    private static final ConcurrentMap<Long, TransactionOptions> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * 기본 읽기/쓰기 트랜잭션 (new DefaultTransactionDefinition() 과 동일)
+     */
+    public static final TransactionOptions READ_WRITE = of(false, ISOLATION_DEFAULT, TIMEOUT_DEFAULT);
+
+    /**
+     * 읽기 전용 트랜잭션
+     */
+    public static final TransactionOptions READ_ONLY = of(true, ISOLATION_DEFAULT, TIMEOUT_DEFAULT);
+
+    private final boolean readOnly;
+    private final int isolationLevel;
+    private final int timeout;
+
+    private TransactionOptions(boolean readOnly, int isolationLevel, int timeout) {
+        this.readOnly = readOnly;
+        this.isolationLevel = isolationLevel;
+        this.timeout = timeout;
+    }
+
+    /**
+     * 캐시된 트랜잭션 정의 조회
+     *
+     * @param readOnly
+     * @param isolationLevel TransactionDefinition.ISOLATION_* 상수
+     * @param timeout 초 단위, TIMEOUT_DEFAULT(-1) 이면 제한 없음
+     * @return
+     */
+    public static TransactionOptions of(boolean readOnly, int isolationLevel, int timeout) {
+
+        if (timeout < TIMEOUT_DEFAULT) {
+
+            throw new IllegalArgumentException("timeout must be >= -1. timeout = " + timeout);
+        }
+
+        long key = ((long) timeout << 32) | ((isolationLevel & 0xFF) << 1) | (readOnly ? 1 : 0);
+
+        return CACHE.computeIfAbsent(key, k -> new TransactionOptions(readOnly, isolationLevel, timeout));
+    }
+
+    public TransactionOptions withTimeout(int timeout) {
+
+        return of(readOnly, isolationLevel, timeout);
+    }
+
+    public TransactionOptions withIsolationLevel(int isolationLevel) {
+
+        return of(readOnly, isolationLevel, timeout);
+    }
+
+    public TransactionOptions withReadOnly(boolean readOnly) {
+
+        return of(readOnly, isolationLevel, timeout);
+    }
+
+    /**
+     * 데드라인의 남은 시간을 넘지 않도록 트랜잭션 타임아웃 제한
+     *
+     * @param deadline null 이면 그대로 반환
+     * @return
+     */
+    public TransactionOptions boundedBy(Deadline deadline) {
+
+        if (deadline == null) {
+
+            return this;
+        }
+
+        int remaining = deadline.remainingSeconds();
+
+        return timeout == TIMEOUT_DEFAULT || remaining < timeout ? withTimeout(remaining) : this;
+    }
+
+    @Override
+    public int getPropagationBehavior() {
+        return PROPAGATION_REQUIRED;
+    }
+
+    @Override
+    public int getIsolationLevel() {
+        return isolationLevel;
+    }
+
+    @Override
+    public int getTimeout() {
+        return timeout;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    @Override
+    public String getName() {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionOptions(readOnly=" + readOnly + ", isolationLevel=" + isolationLevel + ", timeout=" + timeout + ")";
+    }
+}
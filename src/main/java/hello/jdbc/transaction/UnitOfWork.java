@@ -0,0 +1,130 @@
+package hello.jdbc.transaction;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.ConnectionHolder;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 작업 단위(Unit of Work) - 트랜잭션 없이 커넥션 하나를 쓰레드에 고정
+ *
+ * 트랜잭션이 없으면 리포지토리 메서드마다 커넥션 풀에서 커넥션을 꺼내고 반납한다.
+ * (조회 다섯 번이면 풀 왕복도 다섯 번)
+ *
+ * 작업 단위를 시작하면 커넥션을 하나 획득해서 트랜잭션 동기화 매니저에 등록한다.
+ * - DataSourceUtils.getConnection() 은 등록된 커넥션을 반환하고, releaseConnection() 은 닫지 않는다.
+ * - 자동 커밋 모드는 그대로이므로 SQL 은 각각 커밋된다. (트랜잭션이 아님)
+ * - 작업 단위 안에서 DataSourceTransactionManager 로 트랜잭션을 시작하면 같은 커넥션을 사용한다.
+ * - dataSource.getConnection() 을 직접 호출하는 리포지토리(MemberRepositoryV1 등)는
+ *   TransactionAwareDataSourceProxy 로 감싼 DataSource 를 전달하면 같은 커넥션을 사용한다.
+ *
+ * 이미 작업 단위나 트랜잭션이 진행 중이면 새로 획득하지 않고 그대로 참여하며, 종료해도 커넥션을 닫지 않는다.
+ *
+ * try (UnitOfWork uow = UnitOfWork.begin(dataSource)) {
+ *     repository.findById("memberA");
+ *     repository.findById("memberB");
+ * }
+ */
+@Slf4j
+public class UnitOfWork implements AutoCloseable {
+
+    private final DataSource dataSource;
+    private final ConnectionHolder holder;
+
+    private boolean closed;
+
+    /**
+     * 작업 단위 안에서 실행할 로직
+     *
+     * @param <T>
+     */
+    @FunctionalInterface
+    public interface Callback<T> {
+
+        T doInUnitOfWork() throws SQLException;
+    }
+
+    private UnitOfWork(DataSource dataSource, ConnectionHolder holder) {
+
+        this.dataSource = dataSource;
+        this.holder = holder;
+    }
+
+    /**
+     * 작업 단위 시작
+     *
+     * @param dataSource 리포지토리와 같은 DataSource 인스턴스여야 커넥션이 공유된다.
+     * @return
+     * @throws SQLException
+     */
+    public static UnitOfWork begin(DataSource dataSource) throws SQLException {
+
+        // 외부 작업 단위 또는 트랜잭션에 참여
+        if (TransactionSynchronizationManager.hasResource(dataSource)) {
+
+            return new UnitOfWork(dataSource, null);
+        }
+
+        Connection conn = dataSource.getConnection();
+
+        ConnectionHolder holder = new ConnectionHolder(conn);
+
+        TransactionSynchronizationManager.bindResource(dataSource, holder);
+
+        return new UnitOfWork(dataSource, holder);
+    }
+
+    public static <T> T execute(DataSource dataSource, Callback<T> callback) throws SQLException {
+
+        UnitOfWork uow = begin(dataSource);
+
+        try {
+
+            return callback.doInUnitOfWork();
+        }
+        finally {
+
+            uow.close();
+        }
+    }
+
+    /**
+     * 이 작업 단위가 커넥션을 직접 획득했는지 여부 (false 이면 외부 작업 단위, 트랜잭션에 참여)
+     */
+    public boolean isOwner() {
+
+        return holder != null;
+    }
+
+    /**
+     * 작업 단위 종료 - 등록을 해제하고 커넥션을 풀에 반납
+     */
+    @Override
+    public void close() {
+
+        if (closed || holder == null) {
+
+            return;
+        }
+
+        closed = true;
+
+        TransactionSynchronizationManager.unbindResourceIfPossible(dataSource);
+
+        // 반납하지 않은 사용처가 있어도 작업 단위가 끝나면 커넥션은 닫는다.
+        if (holder.isOpen()) {
+
+            log.warn("unit of work closed while connection is still in use");
+        }
+
+        Connection conn = holder.getConnection();
+
+        holder.clear();
+
+        JdbcUtils.closeConnection(conn);
+    }
+}
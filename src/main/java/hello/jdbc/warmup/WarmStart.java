@@ -0,0 +1,250 @@
+package hello.jdbc.warmup;
+
+import hello.jdbc.aggregate.BalanceAggregateService;
+import hello.jdbc.connection.StorageSettings;
+import hello.jdbc.repository.MemberRepositoryV3;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 웜 스타트 - 재시작 직후의 지연 시간 줄이기
+ *
+ * 재시작하면 잔액 집계(BalanceAggregateService)를 전체 스캔으로 다시 채우고, 커넥션을 요청이 올 때마다 새로 만들고,
+ * SQL 을 처음 실행할 때 파싱한다. 이 작업을 요청을 받기 전에 끝내고, 그중 오래 걸리는 스캔은 스냅샷으로 대신한다.
+ *
+ * 시작 (start)
+ * 1. 스냅샷(WarmStartSnapshot)이 있으면 메모리 맵으로 읽어서 잔액 집계를 채움, 없거나 깨졌으면 전체 스캔
+ * 2. 커넥션 풀을 미리 채우고, 커넥션마다 지난번에 실행한 SQL 을 미리 준비
+ *    준비한 SQL 은 닫아도 세션의 쿼리 캐시(StorageSettings.QUERY_CACHE_SIZE 개, LRU)에 남아서 같은 SQL 을 다시 파싱하지 않는다.
+ *    캐시보다 많은 SQL 을 준비하면 앞의 것이 밀려나므로 QUERY_CACHE_SIZE 개까지만 준비한다.
+ * 3. 스냅샷으로 채웠으면 백그라운드에서 전체 스캔으로 데이터베이스와 맞춤 (스냅샷 이후의 변경, 삭제 반영)
+ *
+ * 종료 (shutdown) : 잔액 집계와 리포지토리가 실행한 SQL 모양을 스냅샷으로 저장
+ */
+@Slf4j
+public class WarmStart {
+
+    private final DataSource dataSource;
+    private final MemberRepositoryV3 memberRepository;
+    private final BalanceAggregateService aggregateService;
+    private final Path snapshotPath;
+
+    /**
+     * 스냅샷에서 읽은 SQL 모양 (이번 실행에서 쓰지 않았어도 다음 스냅샷에 유지)
+     */
+    private List<String> snapshotShapes = Collections.emptyList();
+
+    private CompletableFuture<Void> validation = CompletableFuture.completedFuture(null);
+    private boolean warm;
+
+    public WarmStart(DataSource dataSource, MemberRepositoryV3 memberRepository,
+                     BalanceAggregateService aggregateService, Path snapshotPath) {
+
+        this.dataSource = dataSource;
+        this.memberRepository = memberRepository;
+        this.aggregateService = aggregateService;
+        this.snapshotPath = snapshotPath;
+    }
+
+    /**
+     * 요청을 받기 전에 호출, 반환되면 캐시, 커넥션, SQL 준비가 끝난 상태
+     *
+     * @param connections 미리 만들어둘 커넥션 수 (풀 크기 이하)
+     * @param parallelism 전체 스캔 병렬도
+     * @throws SQLException
+     */
+    public void start(int connections, int parallelism) throws SQLException {
+
+        long start = System.nanoTime();
+
+        WarmStartSnapshot snapshot = readSnapshot();
+
+        List<String> shapes = Collections.emptyList();
+
+        if (snapshot != null) {
+
+            snapshot.forEachMember(aggregateService::preload);
+
+            snapshotShapes = snapshot.getStatementShapes();
+            shapes = snapshotShapes.subList(0, Math.min(snapshotShapes.size(), StorageSettings.QUERY_CACHE_SIZE));
+        }
+        else {
+
+            aggregateService.initialize(parallelism);
+        }
+
+        int prepared = prefill(connections, shapes);
+
+        warm = snapshot != null;
+
+        if (warm) {
+
+            validation = CompletableFuture.runAsync(() -> validate(parallelism), runnable -> {
+
+                Thread thread = new Thread(runnable, "warm-start-validation");
+
+                thread.setDaemon(true);
+                thread.start();
+            });
+        }
+
+        log.info("warm start ready. warm = {}, members = {}, connections = {}, prepared = {}, elapsed = {}ms",
+                warm, aggregateService.getMemberCount(), connections, prepared, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 현재 잔액 집계와 실행한 SQL 모양(지난 스냅샷의 모양 포함)을 스냅샷으로 저장
+     *
+     * @return 저장한 회원 수
+     * @throws IOException
+     */
+    public int shutdown() throws IOException {
+
+        Set<String> shapes = new TreeSet<>(snapshotShapes);
+
+        shapes.addAll(memberRepository.getStatementShapes());
+
+        return WarmStartSnapshot.write(snapshotPath, new ArrayList<>(shapes), aggregateService::forEachBalance);
+    }
+
+    /**
+     * 스냅샷으로 시작했는지 여부
+     */
+    public boolean isWarm() {
+        return warm;
+    }
+
+    /**
+     * 백그라운드 검증 (스냅샷 없이 시작했으면 이미 완료)
+     */
+    public CompletableFuture<Void> getValidation() {
+        return validation;
+    }
+
+    private WarmStartSnapshot readSnapshot() {
+
+        if (!Files.exists(snapshotPath)) {
+
+            log.info("no warm start snapshot. path = {}", snapshotPath);
+
+            return null;
+        }
+
+        try {
+
+            WarmStartSnapshot snapshot = WarmStartSnapshot.map(snapshotPath);
+
+            log.info("warm start snapshot mapped. members = {}, shapes = {}, age = {}s",
+                    snapshot.getMemberCount(), snapshot.getStatementShapes().size(),
+                    (System.currentTimeMillis() - snapshot.getCreatedAtMillis()) / 1000);
+
+            return snapshot;
+        }
+        catch (IOException e) {
+
+            log.warn("ignore warm start snapshot. path = {}, error = {}", snapshotPath, e.toString());
+
+            return null;
+        }
+    }
+
+    /**
+     * 커넥션을 동시에 connections 개 빌려서 풀이 새 커넥션을 만들게 하고, 커넥션마다 SQL 을 준비
+     *
+     * @return 준비한 SQL 수
+     */
+    private int prefill(int connections, List<String> shapes) throws SQLException {
+
+        List<Connection> borrowed = new ArrayList<>(connections);
+
+        int prepared = 0;
+
+        try {
+
+            for (int i = 0; i < connections; i++) {
+
+                Connection conn = dataSource.getConnection();
+
+                borrowed.add(conn);
+
+                prepared += prepare(conn, shapes);
+            }
+        }
+        catch (SQLException e) {
+
+            log.error("DB Error = {}", e);
+
+            throw e;
+        }
+        finally {
+
+            for (Connection conn : borrowed) {
+
+                JdbcUtils.closeConnection(conn);
+            }
+        }
+
+        return prepared;
+    }
+
+    private int prepare(Connection conn, List<String> shapes) {
+
+        int prepared = 0;
+
+        for (String sql : shapes) {
+
+            PreparedStatement pstmt = null;
+
+            try {
+
+                pstmt = sql.startsWith("CALL ") ? conn.prepareCall(sql) : conn.prepareStatement(sql);
+
+                prepared++;
+            }
+            catch (SQLException e) {
+
+                // 스키마가 바뀌어서 더 이상 쓰지 않는 SQL 은 건너뜀
+                log.info("skip statement shape = {}, error = {}", sql, e.toString());
+            }
+            finally {
+
+                JdbcUtils.closeStatement(pstmt);
+            }
+        }
+
+        return prepared;
+    }
+
+    private void validate(int parallelism) {
+
+        long start = System.nanoTime();
+
+        try {
+
+            aggregateService.initialize(parallelism);
+
+            log.info("warm start validated. members = {}, elapsed = {}ms",
+                    aggregateService.getMemberCount(), (System.nanoTime() - start) / 1_000_000);
+        }
+        catch (SQLException e) {
+
+            log.error("warm start validation failed", e);
+
+            throw new IllegalStateException(e);
+        }
+    }
+}
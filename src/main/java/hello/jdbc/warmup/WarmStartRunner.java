@@ -0,0 +1,79 @@
+package hello.jdbc.warmup;
+
+import hello.jdbc.aggregate.BalanceAggregateService;
+import hello.jdbc.cdc.MemberChangeFeed;
+import hello.jdbc.connection.Workload;
+import hello.jdbc.connection.WorkloadRoutingDataSource;
+import hello.jdbc.repository.MemberRepositoryV3;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * 애플리케이션 시작 시 웜 스타트, 종료 시 스냅샷 저장
+ *
+ * ApplicationRunner 는 애플리케이션이 준비 완료(ApplicationReadyEvent, ReadinessState.ACCEPTING_TRAFFIC)를
+ * 알리기 전에 실행되므로 캐시, 커넥션 풀, SQL 준비가 끝난 뒤에 요청을 받는다.
+ *
+ * warm-start.snapshot 에 스냅샷 파일 경로를 지정한 경우에만 동작한다.
+ * 미리 채우는 DataSource, 리포지토리, 잔액 집계는 애플리케이션이 사용하는 빈(JdbcConfig)이다.
+ * DataSource, 잔액 집계, 피드는 컨테이너가 닫으므로 종료 시에는 스냅샷만 저장한다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "warm-start.snapshot")
+public class WarmStartRunner implements ApplicationRunner, DisposableBean {
+
+    private final WorkloadRoutingDataSource dataSource;
+    private final MemberChangeFeed feed;
+    private final WarmStart warmStart;
+    private final int parallelism;
+
+    private boolean started;
+
+    public WarmStartRunner(WorkloadRoutingDataSource dataSource, MemberRepositoryV3 memberRepository,
+                           MemberChangeFeed feed, BalanceAggregateService aggregateService,
+                           @Value("${warm-start.snapshot}") String snapshotPath,
+                           @Value("${warm-start.parallelism:4}") int parallelism) {
+
+        this.dataSource = dataSource;
+        this.feed = feed;
+        this.warmStart = new WarmStart(dataSource, memberRepository, aggregateService, Path.of(snapshotPath));
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+
+        warmStart.start(dataSource.getPool(Workload.OLTP).getMaximumPoolSize(), parallelism);
+
+        started = true;
+
+        feed.start(Duration.ofMillis(200));
+    }
+
+    @Override
+    public void destroy() throws Exception {
+
+        if (!started) {
+
+            return;
+        }
+
+        // 스냅샷을 저장하는 동안 잔액 집계가 바뀌지 않도록 피드를 먼저 멈춤
+        feed.close();
+
+        warmStart.shutdown();
+    }
+
+    public WarmStart getWarmStart() {
+        return warmStart;
+    }
+}
@@ -0,0 +1,285 @@
+package hello.jdbc.warmup;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 웜 스타트 스냅샷 파일
+ *
+ * 종료할 때 회원 잔액과 실행한 SQL 모양을 바이너리로 저장하고, 시작할 때 파일을 메모리 맵으로 읽는다.
+ *
+ * 파일 형식 (빅 엔디안)
+ * - 헤더 : MAGIC(int), VERSION(int), 생성 시각 epoch ms(long)
+ * - SQL 모양 : 개수(int), [길이(short), UTF-8]
+ * - 회원 : 개수(int), [memberId 길이(byte), UTF-8, money(int)]
+ * - CRC32(long) : 헤더부터 회원까지
+ *
+ * 임시 파일에 쓴 뒤 이동하므로 쓰는 도중에 종료되어도 이전 스냅샷이 남는다.
+ * 읽을 때 형식이나 체크섬이 맞지 않으면 IOException 이고, 호출하는 쪽은 스냅샷 없이 시작한다.
+ */
+@Slf4j
+public class WarmStartSnapshot {
+
+    private static final int MAGIC = 0x484A5753;
+    private static final int VERSION = 1;
+
+    private final long createdAtMillis;
+    private final List<String> statementShapes;
+
+    /**
+     * 회원 영역 (메모리 맵 버퍼의 일부, 읽을 때마다 복사본 사용)
+     */
+    private final ByteBuffer members;
+    private final int memberCount;
+
+    private WarmStartSnapshot(long createdAtMillis, List<String> statementShapes, ByteBuffer members, int memberCount) {
+        this.createdAtMillis = createdAtMillis;
+        this.statementShapes = statementShapes;
+        this.members = members;
+        this.memberCount = memberCount;
+    }
+
+    @FunctionalInterface
+    public interface MemberSource {
+
+        /**
+         * 저장할 회원을 consumer 에 전달
+         */
+        void forEach(ObjIntConsumer<String> consumer);
+    }
+
+    /**
+     * 스냅샷 저장
+     *
+     * @param path
+     * @param statementShapes
+     * @param members
+     * @return 저장한 회원 수
+     * @throws IOException
+     */
+    public static int write(Path path, List<String> statementShapes, MemberSource members) throws IOException {
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        CRC32 crc = new CRC32();
+
+        int[] count = {0};
+
+        try (OutputStream file = Files.newOutputStream(tmp)) {
+
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc), 64 * 1024));
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+
+            out.writeInt(statementShapes.size());
+
+            for (String shape : statementShapes) {
+
+                byte[] bytes = shape.getBytes(StandardCharsets.UTF_8);
+
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+
+            // 회원 수는 다 쓴 뒤에 알 수 있으므로 회원 영역은 따로 모은 뒤 기록
+            ByteArrayBuilder body = new ByteArrayBuilder();
+
+            members.forEach((memberId, money) -> {
+
+                body.writeKey(memberId);
+                body.writeInt(money);
+
+                count[0]++;
+            });
+
+            out.writeInt(count[0]);
+            body.writeTo(out);
+
+            out.flush();
+
+            // 체크섬은 체크섬 자신을 제외한 내용으로 계산
+            new DataOutputStream(file).writeLong(crc.getValue());
+        }
+
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        log.info("warm start snapshot written. path = {}, members = {}, shapes = {}, bytes = {}",
+                path, count[0], statementShapes.size(), Files.size(path));
+
+        return count[0];
+    }
+
+    /**
+     * 스냅샷 파일을 메모리 맵으로 읽음
+     *
+     * @param path
+     * @return
+     * @throws IOException 형식, 버전, 체크섬이 맞지 않는 경우
+     */
+    public static WarmStartSnapshot map(Path path) throws IOException {
+
+        MappedByteBuffer buffer;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+            if (channel.size() < 24 || channel.size() > Integer.MAX_VALUE) {
+
+                throw new IOException("invalid snapshot size = " + channel.size());
+            }
+
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+
+            int bodyLength = buffer.limit() - Long.BYTES;
+
+            CRC32 crc = new CRC32();
+
+            crc.update(buffer.duplicate().limit(bodyLength));
+
+            if (crc.getValue() != buffer.getLong(bodyLength)) {
+
+                throw new IOException("snapshot checksum mismatch");
+            }
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+
+                throw new IOException("unsupported snapshot format");
+            }
+
+            long createdAtMillis = buffer.getLong();
+
+            int shapeCount = buffer.getInt();
+            List<String> shapes = new ArrayList<>(shapeCount);
+
+            for (int i = 0; i < shapeCount; i++) {
+
+                shapes.add(readString(buffer, buffer.getShort() & 0xFFFF));
+            }
+
+            int memberCount = buffer.getInt();
+
+            ByteBuffer members = buffer.slice().limit(bodyLength - buffer.position());
+
+            return new WarmStartSnapshot(createdAtMillis, Collections.unmodifiableList(shapes), members, memberCount);
+        }
+        catch (BufferUnderflowException | IllegalArgumentException e) {
+
+            throw new IOException("corrupted snapshot", e);
+        }
+    }
+
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    public List<String> getStatementShapes() {
+        return statementShapes;
+    }
+
+    public int getMemberCount() {
+        return memberCount;
+    }
+
+    /**
+     * 저장한 회원을 순서대로 전달 (Member 객체를 만들지 않음)
+     *
+     * @param consumer memberId, money
+     */
+    public void forEachMember(ObjIntConsumer<String> consumer) {
+
+        ByteBuffer buffer = members.duplicate();
+
+        for (int i = 0; i < memberCount; i++) {
+
+            String memberId = readString(buffer, buffer.get() & 0xFF);
+
+            consumer.accept(memberId, buffer.getInt());
+        }
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+
+        byte[] bytes = new byte[length];
+
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 회원 영역 버퍼
+     */
+    private static class ByteArrayBuilder {
+
+        private byte[] bytes = new byte[64 * 1024];
+        private int size;
+
+        void writeKey(String memberId) {
+
+            byte[] key = memberId.getBytes(StandardCharsets.UTF_8);
+
+            if (key.length > 0xFF) {
+
+                throw new IllegalArgumentException("memberId too long = " + memberId);
+            }
+
+            ensure(1 + key.length);
+
+            bytes[size++] = (byte) key.length;
+
+            System.arraycopy(key, 0, bytes, size, key.length);
+
+            size += key.length;
+        }
+
+        void writeInt(int value) {
+
+            ensure(Integer.BYTES);
+
+            bytes[size++] = (byte) (value >>> 24);
+            bytes[size++] = (byte) (value >>> 16);
+            bytes[size++] = (byte) (value >>> 8);
+            bytes[size++] = (byte) value;
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+
+            out.write(bytes, 0, size);
+        }
+
+        private void ensure(int extra) {
+
+            if (size + extra > bytes.length) {
+
+                byte[] grown = new byte[Math.max(bytes.length * 2, size + extra)];
+
+                System.arraycopy(bytes, 0, grown, 0, size);
+
+                bytes = grown;
+            }
+        }
+    }
+}
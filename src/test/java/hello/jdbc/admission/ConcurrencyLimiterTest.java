@@ -0,0 +1,217 @@
+package hello.jdbc.admission;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.load.LatencyHistogram;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.service.AdmissionControlledTransferService;
+import hello.jdbc.service.MemberServiceV3_1;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class ConcurrencyLimiterTest {
+
+    private static final long MILLIS = 1_000_000;
+
+    @Test
+    @DisplayName("응답 시간이 그대로면 한도 증가, 늘어나면 감소")
+    void gradient() {
+
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 1, 100);
+
+        for (int i = 0; i < 100; i++) {
+
+            limiter.onSample(MILLIS, limiter.getLimit());
+        }
+
+        int grown = limiter.getLimit();
+
+        assertThat(grown).isGreaterThan(10);
+
+        for (int i = 0; i < 30; i++) {
+
+            limiter.onSample(10 * MILLIS, limiter.getLimit());
+        }
+
+        assertThat(limiter.getLimit()).isLessThan(grown / 2);
+    }
+
+    @Test
+    @DisplayName("한도를 채우지 않은 상태에서는 늘리지 않고, 과부하 실패는 한도 감소")
+    void appLimitedAndDrop() {
+
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 1, 100);
+
+        for (int i = 0; i < 100; i++) {
+
+            limiter.onSample(MILLIS, 2);
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(20);
+
+        limiter.onDrop();
+
+        assertThat(limiter.getLimit()).isEqualTo(18);
+        assertThat(limiter.getDropped()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("한도를 넘으면 바로 거절하고, 허가는 한 번만 반납")
+    void reject() {
+
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 10);
+
+        ConcurrencyLimiter.Permit first = limiter.tryAcquire();
+        ConcurrencyLimiter.Permit second = limiter.tryAcquire();
+
+        assertThat(limiter.tryAcquire()).isNull();
+        assertThat(limiter.getRejected()).isEqualTo(1);
+
+        first.onIgnore();
+        first.onSuccess();
+
+        assertThat(limiter.getInflight()).isEqualTo(1);
+        assertThat(limiter.tryAcquire()).isNotNull();
+
+        second.onIgnore();
+    }
+
+    @Test
+    @DisplayName("풀보다 많은 동시 요청 - 초과 요청은 풀 앞에서 기다리지 않고 바로 거절")
+    void overload() throws Exception {
+
+        HikariDataSource dataSource = new HikariDataSource();
+
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(4);
+
+        MemberRepositoryV3 repository = new MemberRepositoryV3(dataSource);
+        MemberServiceV3_1 memberService = new MemberServiceV3_1(new DataSourceTransactionManager(dataSource), repository);
+
+        // 회원이 적으면 같은 행 잠금 대기가 지연 시간을 좌우하므로 충분히 분산
+        int members = 5000;
+
+        try {
+
+            for (int i = 0; i < members; i++) {
+
+                repository.save(new Member("L" + i, 1_000_000));
+            }
+
+            LatencyHistogram unprotected = run(32, members, (from, to) -> memberService.accountTransfer(from, to, 1));
+
+            ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 1, 64);
+            AdmissionControlledTransferService protectedService = new AdmissionControlledTransferService(memberService, limiter);
+
+            // 첫 1초는 한도 적응 구간
+            run(32, members, (from, to) -> protectedService.accountTransfer(from, to, 1));
+
+            LatencyHistogram accepted = run(32, members, (from, to) -> protectedService.accountTransfer(from, to, 1));
+
+            log.info("unprotected completed = {}, p50 = {}us, p99 = {}us / limited completed = {}, p50 = {}us, p99 = {}us, limit = {}, rejected = {}",
+                    unprotected.getTotalCount(), unprotected.getValueAtPercentile(50) / 1000, unprotected.getValueAtPercentile(99) / 1000,
+                    accepted.getTotalCount(), accepted.getValueAtPercentile(50) / 1000, accepted.getValueAtPercentile(99) / 1000,
+                    limiter.getLimit(), limiter.getRejected());
+
+            assertThat(limiter.getRejected()).isPositive();
+            assertThat(limiter.getLimit()).isLessThan(32);
+            assertThat(limiter.getInflight()).isZero();
+
+            assertThatThrownBy(() -> {
+
+                ConcurrencyLimiter full = new ConcurrencyLimiter(1, 1, 1);
+
+                full.tryAcquire();
+
+                new AdmissionControlledTransferService(memberService, full).accountTransfer("L0", "L1", 1);
+            }).isInstanceOf(OverloadedException.class).hasMessage("overloaded. limit = 1, inflight = 1");
+        }
+        finally {
+
+            for (int i = 0; i < members; i++) {
+
+                repository.delete("L" + i);
+            }
+
+            dataSource.close();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Transfer {
+
+        void transfer(String fromId, String toId) throws SQLException;
+    }
+
+    /**
+     * threads 개의 쓰레드가 1초 동안 이체, 처리된 요청의 지연 시간만 기록 (거절은 제외)
+     */
+    private LatencyHistogram run(int threads, int members, Transfer transfer) throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        long endNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+
+        List<Future<LatencyHistogram>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+
+            futures.add(executor.submit(() -> {
+
+                LatencyHistogram latency = new LatencyHistogram();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+
+                while (System.nanoTime() < endNanos) {
+
+                    int from = random.nextInt(members);
+                    int to = (from + 1 + random.nextInt(members - 1)) % members;
+
+                    long start = System.nanoTime();
+
+                    try {
+
+                        transfer.transfer("L" + from, "L" + to);
+
+                        latency.recordValue(System.nanoTime() - start);
+                    }
+                    catch (OverloadedException e) {
+
+                        // 거절된 요청은 잠시 후 다시 요청
+                        Thread.sleep(1);
+                    }
+                }
+
+                return latency;
+            }));
+        }
+
+        LatencyHistogram total = new LatencyHistogram();
+
+        for (Future<LatencyHistogram> future : futures) {
+
+            total.add(future.get());
+        }
+
+        executor.shutdown();
+
+        return total;
+    }
+}
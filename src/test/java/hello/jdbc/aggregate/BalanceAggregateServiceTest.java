@@ -0,0 +1,205 @@
+package hello.jdbc.aggregate;
+
+import hello.jdbc.cdc.MemberChangeFeed;
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.Transfer;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.service.MemberServiceV3_1;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 회원 변경 피드(트리거)를 사용하므로 테스트 JVM 안의 메모리 데이터베이스를 사용
+ */
+@Slf4j
+class BalanceAggregateServiceTest {
+
+    private static final String AGGREGATE_URL = "jdbc:h2:mem:aggregate;DB_CLOSE_DELAY=-1";
+    private static final int MEMBER_COUNT = 2000;
+
+    private DriverManagerDataSource dataSource;
+    private MemberRepositoryV3 memberRepository;
+
+    private MemberChangeFeed feed;
+    private BalanceAggregateService aggregateService;
+
+    @BeforeEach
+    void before() throws SQLException {
+
+        dataSource = new DriverManagerDataSource(AGGREGATE_URL, "sa", "");
+
+        execute("CREATE TABLE member (memberId VARCHAR(10), money INTEGER NOT NULL DEFAULT 0, PRIMARY KEY (memberId))");
+
+        MemberChangeFeed.install(dataSource);
+
+        memberRepository = new MemberRepositoryV3(dataSource);
+
+        List<Member> members = new ArrayList<>();
+        Random random = new Random(3);
+
+        for (int i = 0; i < MEMBER_COUNT; i++) {
+
+            members.add(new Member("A" + i, random.nextInt(1_000_000)));
+        }
+
+        memberRepository.upsertAll(members);
+
+        feed = new MemberChangeFeed(dataSource, 500, Duration.ofSeconds(1));
+        aggregateService = new BalanceAggregateService(dataSource, feed);
+
+        aggregateService.initialize(4);
+    }
+
+    @AfterEach
+    void after() throws SQLException {
+
+        aggregateService.close();
+
+        execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    @DisplayName("병렬 스캔 결과가 데이터베이스 집계와 같다")
+    void initialize() throws SQLException {
+
+        assertThat(aggregateService.getMemberCount()).isEqualTo(MEMBER_COUNT);
+        assertThat(aggregateService.getTotal()).isEqualTo(querySum());
+        assertThat(aggregateService.topN(100)).isEqualTo(queryTop(100));
+    }
+
+    @Test
+    @DisplayName("메모리의 회원으로 범위를 나눠 다시 스캔해도 빠지거나 겹치는 회원이 없다")
+    void rescan() throws SQLException {
+
+        memberRepository.save(new Member("", 7));
+        memberRepository.save(new Member("zzz", 11));
+
+        aggregateService.initialize(7);
+
+        assertThat(aggregateService.getMemberCount()).isEqualTo(MEMBER_COUNT + 2);
+        assertThat(aggregateService.getTotal()).isEqualTo(querySum());
+        assertThat(aggregateService.verify()).isTrue();
+    }
+
+    @Test
+    @DisplayName("이체, 등록, 수정, 삭제 후 증분 갱신 결과가 데이터베이스 집계와 같다")
+    void incremental() throws SQLException {
+
+        MemberServiceV3_1 memberService = new MemberServiceV3_1(new DataSourceTransactionManager(dataSource), memberRepository);
+
+        List<Transfer> transfers = new ArrayList<>();
+        Random random = new Random(5);
+
+        for (int i = 0; i < 300; i++) {
+
+            transfers.add(new Transfer("A" + random.nextInt(MEMBER_COUNT), "A" + random.nextInt(MEMBER_COUNT), random.nextInt(500_000)));
+        }
+
+        memberService.accountTransferAll(transfers);
+
+        memberRepository.save(new Member("rich", 5_000_000));
+        memberRepository.update("A1", 4_000_000);
+        memberRepository.delete(queryTop(1).get(0).getMemberId());
+
+        // 커밋된 변경이 아직 반영되지 않음
+        assertThat(aggregateService.getTotal()).isNotEqualTo(querySum());
+
+        while (feed.poll() > 0) {
+        }
+
+        assertThat(aggregateService.getMemberCount()).isEqualTo(MEMBER_COUNT);
+        assertThat(aggregateService.getTotal()).isEqualTo(querySum());
+        assertThat(aggregateService.topN(100)).isEqualTo(queryTop(100));
+        assertThat(aggregateService.verify()).isTrue();
+    }
+
+    /**
+     * 실행 시간을 비교하므로 기본 테스트에서는 제외하고, 다른 벤치마크와 같이 -Dbench.rows 를 지정했을 때만 실행
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "bench.rows", matches = "\\d+")
+    @DisplayName("메모리 집계와 SQL 집계 응답 시간 비교")
+    void latency() throws SQLException {
+
+        int rounds = 200;
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < rounds; i++) {
+
+            aggregateService.getTotal();
+            aggregateService.topN(100);
+        }
+
+        long memoryNanos = (System.nanoTime() - start) / rounds;
+
+        start = System.nanoTime();
+
+        for (int i = 0; i < rounds; i++) {
+
+            querySum();
+            queryTop(100);
+        }
+
+        long sqlNanos = (System.nanoTime() - start) / rounds;
+
+        log.info("sum + top 100 : memory = {}us, sql = {}us", memoryNanos / 1000, sqlNanos / 1000);
+
+        assertThat(memoryNanos).isLessThan(sqlNanos);
+    }
+
+    private long querySum() throws SQLException {
+
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(SUM(money), 0) FROM member")) {
+
+            rs.next();
+
+            return rs.getLong(1);
+        }
+    }
+
+    private List<Member> queryTop(int n) throws SQLException {
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT memberId, money FROM member ORDER BY money DESC, memberId LIMIT ?")) {
+
+            pstmt.setInt(1, n);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+
+                List<Member> top = new ArrayList<>();
+
+                while (rs.next()) {
+
+                    top.add(new Member(rs.getString(1), rs.getInt(2)));
+                }
+
+                return top;
+            }
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+
+            stmt.execute(sql);
+        }
+    }
+}
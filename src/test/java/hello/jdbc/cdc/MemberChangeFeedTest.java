@@ -0,0 +1,310 @@
+package hello.jdbc.cdc;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.service.MemberServiceV3_1;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 트리거는 데이터베이스 안에서 실행되므로 테스트 JVM 안의 메모리 데이터베이스를 사용
+ */
+@Slf4j
+class MemberChangeFeedTest {
+
+    private static final String CDC_URL = "jdbc:h2:mem:cdc;DB_CLOSE_DELAY=-1";
+
+    private DriverManagerDataSource dataSource;
+    private MemberRepositoryV3 memberRepository;
+
+    @BeforeEach
+    void before() throws SQLException {
+
+        dataSource = new DriverManagerDataSource(CDC_URL, "sa", "");
+
+        execute("CREATE TABLE member (memberId VARCHAR(10), money INTEGER NOT NULL DEFAULT 0, PRIMARY KEY (memberId))");
+
+        MemberChangeFeed.install(dataSource);
+
+        memberRepository = new MemberRepositoryV3(dataSource);
+    }
+
+    @AfterEach
+    void after() throws SQLException {
+
+        execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    @DisplayName("등록, 수정, 삭제를 변경 전후 잔액과 함께 전달")
+    void capture() throws SQLException {
+
+        MemberChangeFeed feed = new MemberChangeFeed(dataSource, 100, Duration.ofSeconds(1));
+        List<MemberChange> received = new ArrayList<>();
+
+        feed.addListener(received::addAll);
+
+        memberRepository.save(new Member("memberA", 10000));
+        memberRepository.update("memberA", 8000);
+        memberRepository.update("memberA", 8000);
+        memberRepository.delete("memberA");
+
+        assertThat(feed.poll()).isEqualTo(3);
+
+        assertThat(received).extracting(MemberChange::getType)
+                .containsExactly(MemberChange.Type.INSERT, MemberChange.Type.UPDATE, MemberChange.Type.DELETE);
+        assertThat(received).extracting(MemberChange::getMoneyBefore).containsExactly(null, 10000, 8000);
+        assertThat(received).extracting(MemberChange::getMoneyAfter).containsExactly(10000, 8000, null);
+
+        assertThat(feed.poll()).isZero();
+    }
+
+    @Test
+    @DisplayName("먼저 시작한 트랜잭션이 커밋될 때까지 뒤의 변경은 전달하지 않음")
+    void commitOrder() throws SQLException {
+
+        memberRepository.save(new Member("memberA", 10000));
+        memberRepository.save(new Member("memberB", 10000));
+
+        MemberChangeFeed feed = new MemberChangeFeed(dataSource, 100, Duration.ofMinutes(1));
+        List<MemberChange> received = new ArrayList<>();
+
+        feed.addListener(received::addAll);
+
+        try (Connection tx = dataSource.getConnection()) {
+
+            tx.setAutoCommit(false);
+
+            try (Statement stmt = tx.createStatement()) {
+
+                stmt.executeUpdate("UPDATE member SET money = 9000 WHERE memberId = 'memberA'");
+            }
+
+            // 뒤에 시작했지만 먼저 커밋
+            memberRepository.update("memberB", 11000);
+
+            assertThat(feed.poll()).isZero();
+
+            tx.commit();
+        }
+
+        assertThat(feed.poll()).isEqualTo(2);
+        assertThat(received).extracting(MemberChange::getMemberId).containsExactly("memberA", "memberB");
+    }
+
+    @Test
+    @DisplayName("롤백된 변경은 전달하지 않고, 빈 seq 는 gapTimeout 이후 건너뜀")
+    void rollback() throws Exception {
+
+        memberRepository.save(new Member("memberA", 10000));
+        memberRepository.save(new Member("ex", 10000));
+
+        MemberChangeFeed feed = new MemberChangeFeed(dataSource, 100, Duration.ofMillis(200));
+        List<MemberChange> received = new ArrayList<>();
+
+        feed.addListener(received::addAll);
+
+        MemberServiceV3_1 memberService = new MemberServiceV3_1(new DataSourceTransactionManager(dataSource), memberRepository);
+
+        // 출금 후 예외 -> 롤백
+        assertThatThrownBy(() -> memberService.accountTransfer("memberA", "ex", 2000))
+                .isInstanceOf(IllegalStateException.class);
+
+        memberRepository.update("memberA", 7000);
+
+        assertThat(feed.poll()).isZero();
+
+        Thread.sleep(300);
+
+        assertThat(feed.poll()).isEqualTo(1);
+        assertThat(received).extracting(MemberChange::getMoneyBefore).containsExactly(10000);
+    }
+
+    @Test
+    @DisplayName("memberId 변경은 이전 키 DELETE, 새 키 INSERT 로 기록")
+    void rename() throws SQLException {
+
+        memberRepository.save(new Member("memberA", 10000));
+
+        MemberChangeFeed feed = new MemberChangeFeed(dataSource, 100, Duration.ofSeconds(1));
+        List<MemberChange> received = new ArrayList<>();
+
+        feed.addListener(received::addAll);
+
+        execute("UPDATE member SET memberId = 'memberB' WHERE memberId = 'memberA'");
+
+        assertThat(feed.poll()).isEqualTo(2);
+
+        assertThat(received).extracting(MemberChange::getType).containsExactly(MemberChange.Type.DELETE, MemberChange.Type.INSERT);
+        assertThat(received).extracting(MemberChange::getMemberId).containsExactly("memberA", "memberB");
+        assertThat(received).extracting(MemberChange::getMoneyBefore).containsExactly(10000, null);
+        assertThat(received).extracting(MemberChange::getMoneyAfter).containsExactly(null, 10000);
+    }
+
+    @Test
+    @DisplayName("gapTimeout 보다 늦게 커밋된 변경도 건너뛴 범위에서 찾아서 전달")
+    void lateCommit() throws Exception {
+
+        memberRepository.save(new Member("memberA", 10000));
+        memberRepository.save(new Member("memberB", 10000));
+
+        MemberChangeFeed feed = new MemberChangeFeed(dataSource, 100, Duration.ofMillis(200));
+        List<MemberChange> received = new ArrayList<>();
+
+        feed.addListener(received::addAll);
+
+        try (Connection tx = dataSource.getConnection()) {
+
+            tx.setAutoCommit(false);
+
+            try (Statement stmt = tx.createStatement()) {
+
+                stmt.executeUpdate("UPDATE member SET money = 9000 WHERE memberId = 'memberA'");
+            }
+
+            memberRepository.update("memberB", 11000);
+
+            assertThat(feed.poll()).isZero();
+
+            Thread.sleep(300);
+
+            // 긴 트랜잭션의 seq 를 건너뛰고 전달, 건너뛴 범위는 지우지 않음
+            assertThat(feed.poll()).isEqualTo(1);
+            assertThat(feed.getSkippedRangeCount()).isEqualTo(1);
+            assertThat(feed.getPurgeableSeq()).isLessThan(feed.getLastSeq());
+
+            tx.commit();
+        }
+
+        assertThat(feed.poll()).isEqualTo(1);
+        assertThat(received).extracting(MemberChange::getMemberId).containsExactly("memberB", "memberA");
+        assertThat(received.get(1).getMoneyAfter()).isEqualTo(9000);
+
+        // 커밋되지 않은 세션이 없으므로 기록 정리
+        assertThat(feed.getSkippedRangeCount()).isZero();
+        assertThat(feed.getPurgeableSeq()).isEqualTo(feed.getLastSeq());
+        assertThat(feed.poll()).isZero();
+    }
+
+    @Test
+    @DisplayName("위치를 바꿔도 건너뛴 범위에 늦게 커밋된 변경을 전달")
+    void seekKeepsSkipped() throws Exception {
+
+        memberRepository.save(new Member("memberA", 10000));
+        memberRepository.save(new Member("memberB", 10000));
+
+        MemberChangeFeed feed = new MemberChangeFeed(dataSource, 100, Duration.ofMillis(200));
+        List<MemberChange> received = new ArrayList<>();
+
+        feed.addListener(received::addAll);
+
+        try (Connection tx = dataSource.getConnection()) {
+
+            tx.setAutoCommit(false);
+
+            try (Statement stmt = tx.createStatement()) {
+
+                stmt.executeUpdate("UPDATE member SET money = 9000 WHERE memberId = 'memberA'");
+            }
+
+            memberRepository.update("memberB", 11000);
+            memberRepository.update("memberB", 12000);
+
+            assertThat(feed.poll()).isZero();
+
+            Thread.sleep(300);
+
+            assertThat(feed.poll()).isEqualTo(2);
+            assertThat(feed.getSkippedRangeCount()).isEqualTo(1);
+
+            // 마지막 이벤트만 다시 받도록 되돌려도 그 앞의 건너뛴 범위는 유지
+            feed.seek(feed.getLastSeq() - 1);
+
+            assertThat(feed.getSkippedRangeCount()).isEqualTo(1);
+
+            tx.commit();
+        }
+
+        assertThat(feed.poll()).isEqualTo(2);
+        assertThat(received).extracting(MemberChange::getMoneyAfter).containsExactly(11000, 12000, 9000, 12000);
+        assertThat(feed.getSkippedRangeCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("이미 전달한 이벤트를 한 리스너에게만 다시 전달")
+    void replay() throws SQLException {
+
+        MemberChangeFeed feed = new MemberChangeFeed(dataSource, 100, Duration.ofSeconds(1));
+        List<MemberChange> received = new ArrayList<>();
+        List<MemberChange> replayed = new ArrayList<>();
+
+        feed.addListener(received::addAll);
+
+        long fromSeq = feed.getLastSeq();
+
+        memberRepository.save(new Member("memberA", 10000));
+        memberRepository.update("memberA", 8000);
+
+        assertThat(feed.poll()).isEqualTo(2);
+
+        // 피드 위치는 그대로이고, 다른 리스너는 다시 받지 않음
+        assertThat(feed.replay(fromSeq, replayed::addAll)).isEqualTo(2);
+        assertThat(replayed).extracting(MemberChange::getMoneyAfter).containsExactly(10000, 8000);
+        assertThat(received).hasSize(2);
+        assertThat(feed.poll()).isZero();
+
+        assertThat(feed.replay(feed.getLastSeq(), replayed::addAll)).isZero();
+    }
+
+    @Test
+    @DisplayName("데이터베이스를 공유하는 피드마다 같은 변경을 받아서 캐시 무효화")
+    void invalidateCaches() throws SQLException {
+
+        memberRepository.save(new Member("memberA", 10000));
+        memberRepository.save(new Member("memberB", 10000));
+
+        // JVM 마다 하나씩 있는 캐시와 피드
+        Map<String, Integer> cache1 = new HashMap<>(Map.of("memberA", 10000, "memberB", 10000));
+        Map<String, Integer> cache2 = new HashMap<>(cache1);
+
+        try (MemberChangeFeed feed1 = new MemberChangeFeed(dataSource, 100, Duration.ofSeconds(1));
+             MemberChangeFeed feed2 = new MemberChangeFeed(dataSource, 100, Duration.ofSeconds(1))) {
+
+            feed1.addListener(changes -> changes.forEach(c -> cache1.remove(c.getMemberId())));
+            feed2.addListener(changes -> changes.forEach(c -> cache2.remove(c.getMemberId())));
+
+            memberRepository.update("memberA", 5000);
+
+            feed1.poll();
+            feed2.poll();
+
+            assertThat(cache1).containsOnlyKeys("memberB");
+            assertThat(cache2).containsOnlyKeys("memberB");
+
+            // 두 피드가 모두 전달한 이벤트는 정리
+            assertThat(feed1.purge(Math.min(feed1.getPurgeableSeq(), feed2.getPurgeableSeq()))).isGreaterThan(0);
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+
+            stmt.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+@SuppressWarnings("try")
+class PoolSizeControllerTest {
+
+    private HikariDataSource dataSource;
+    private PoolSizeController controller;
+
+    @BeforeEach
+    void before() {
+
+        dataSource = new HikariDataSource();
+
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(2);
+        dataSource.setPoolName("TunedPool");
+
+        controller = new PoolSizeController(dataSource, 2, 8, Duration.ofMillis(5));
+    }
+
+    @AfterEach
+    void after() {
+
+        controller.close();
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("커넥션 대기가 생기면 풀 크기 증가, 한가해지면 감소")
+    void resizeByAcquisitionWait() throws Exception {
+
+        // 풀 시작 (커넥션 풀은 첫 getConnection() 에서 초기화된다)
+        holdConnection(0);
+
+        int threads = 8;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+
+        // 풀 크기(2)보다 많은 쓰레드가 커넥션을 오래 점유
+        for (int i = 0; i < threads; i++) {
+
+            executor.submit(() -> {
+
+                try {
+
+                    for (int j = 0; j < 5; j++) {
+
+                        holdConnection(50);
+                    }
+                }
+                finally {
+
+                    done.countDown();
+                }
+
+                return null;
+            });
+        }
+
+        Thread.sleep(120);
+
+        PoolSizeController.Decision decision = controller.adjust();
+
+        assertThat(decision).isEqualTo(PoolSizeController.Decision.INCREASE);
+        assertThat(controller.getCurrentPoolSize()).isEqualTo(3);
+
+        done.await(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        // 부하가 끝나면 최소 크기까지 줄어든다.
+        for (int i = 0; i < 10; i++) {
+
+            controller.adjust();
+        }
+
+        assertThat(controller.getCurrentPoolSize()).isEqualTo(2);
+        assertThat(controller.getRecorder().getAcquiredCount()).isEqualTo(threads * 5 + 1);
+    }
+
+    @Test
+    @DisplayName("풀 크기는 설정된 범위를 넘지 않는다")
+    void bounded() throws Exception {
+
+        holdConnection(0);
+
+        try (Connection c1 = dataSource.getConnection(); Connection c2 = dataSource.getConnection()) {
+
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+
+            // 풀이 가득 찬 상태에서 대기 쓰레드 생성
+            executor.submit(() -> holdConnection(0));
+
+            Thread.sleep(100);
+
+            for (int i = 0; i < 20; i++) {
+
+                controller.adjust();
+
+                assertThat(controller.getCurrentPoolSize()).isBetween(2, 8);
+            }
+
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("이미 설정된 지표 팩토리는 덮어쓰지 않고 함께 호출")
+    void keepExistingMetricsTrackerFactory() throws Exception {
+
+        controller.close();
+        dataSource.close();
+
+        AtomicInteger acquired = new AtomicInteger();
+
+        dataSource = new HikariDataSource();
+
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(2);
+        dataSource.setPoolName("ObservedPool");
+        dataSource.setMetricsTrackerFactory((poolName, poolStats) -> new IMetricsTracker() {
+
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquired.incrementAndGet();
+            }
+        });
+
+        MetricsTrackerFactory existing = dataSource.getMetricsTrackerFactory();
+
+        controller = new PoolSizeController(dataSource, 2, 8, Duration.ofMillis(5));
+
+        assertThat(controller.getRecorder().getDelegate()).isSameAs(existing);
+
+        holdConnection(0);
+        holdConnection(0);
+
+        assertThat(acquired.get()).isEqualTo(2);
+        assertThat(controller.getRecorder().getAcquiredCount()).isEqualTo(2);
+
+        // 풀이 시작된 뒤에는 팩토리를 바꿀 수 없으므로 실패
+        HikariDataSource started = new HikariDataSource();
+
+        try {
+
+            started.setJdbcUrl(URL);
+            started.setUsername(USERNAME);
+            started.setPassword(PASSWORD);
+            started.setMetricsTrackerFactory(existing);
+            started.getConnection().close();
+
+            assertThatThrownBy(() -> new PoolSizeController(started, 1, 2, Duration.ofMillis(5)))
+                    .isInstanceOf(IllegalStateException.class);
+        }
+        finally {
+
+            started.close();
+        }
+    }
+
+    private Void holdConnection(long millis) throws SQLException, InterruptedException {
+
+        try (Connection connection = dataSource.getConnection()) {
+
+            Thread.sleep(millis);
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,168 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.load.LatencyHistogram;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.repository.MemberSchema;
+import lombok.extern.slf4j.Slf4j;
+import org.h2.tools.Server;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * H2 실행 방식별 조회, 수정 지연 시간 비교
+ *
+ * 외부 H2 서버 없이 실행할 수 있도록 TCP 서버도 테스트 안에서 임시 디렉토리로 시작한다.
+ * 지연 시간 비교는 기본 테스트에서는 제외하고, 다른 벤치마크와 같이 -Dbench.rows 를 지정했을 때만 실행
+ */
+@Slf4j
+class StorageModeBenchmarkTest {
+
+    private static final int MEMBER_COUNT = 100;
+    private static final int OPERATIONS = 2000;
+
+    @TempDir
+    Path tempDir;
+
+    private Server tcpServer;
+
+    @BeforeEach
+    void before() throws Exception {
+
+        tcpServer = Server.createTcpServer("-tcpPort", String.valueOf(freePort()), "-baseDir", tempDir.toString(), "-ifNotExists").start();
+    }
+
+    @AfterEach
+    void after() {
+
+        tcpServer.stop();
+    }
+
+    @Test
+    @DisplayName("실행 방식별 URL 과 기본 설정")
+    void url() {
+
+        assertThat(settings(StorageMode.MEMORY, "m").getUrl())
+                .startsWith("jdbc:h2:mem:m;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=1000;QUERY_CACHE_SIZE=64;INIT=CREATE TABLE IF NOT EXISTS member");
+        assertThat(settings(StorageMode.FILE, "/data/f").getUrl())
+                .startsWith("jdbc:h2:file:/data/f;CACHE_SIZE=65536;WRITE_DELAY=200;LOCK_TIMEOUT=2000;QUERY_CACHE_SIZE=64;INIT=");
+
+        Properties properties = new Properties();
+
+        properties.setProperty("db.mode", "tcp");
+        properties.setProperty("db.lock-timeout-ms", "500");
+
+        assertThat(StorageSettings.from(properties).getUrl())
+                .isEqualTo("jdbc:h2:tcp://localhost/~/test;CACHE_SIZE=65536;WRITE_DELAY=500;LOCK_TIMEOUT=500;QUERY_CACHE_SIZE=64");
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "bench.rows", matches = "\\d+")
+    @DisplayName("실행 방식별 조회, 수정 지연 시간")
+    void latencyByMode() throws SQLException {
+
+        Map<StorageMode, LatencyHistogram> results = new EnumMap<>(StorageMode.class);
+
+        results.put(StorageMode.MEMORY, measure(settings(StorageMode.MEMORY, "bench")));
+        results.put(StorageMode.FILE, measure(settings(StorageMode.FILE, tempDir.resolve("file").toString())));
+        results.put(StorageMode.TCP, measure(settings(StorageMode.TCP, "tcp")));
+
+        for (Map.Entry<StorageMode, LatencyHistogram> result : results.entrySet()) {
+
+            LatencyHistogram latency = result.getValue();
+
+            log.info("{} : findById + update p50 = {}us, p99 = {}us, mean = {}us",
+                    result.getKey(), latency.getValueAtPercentile(50) / 1000,
+                    latency.getValueAtPercentile(99) / 1000, (long) latency.getMean() / 1000);
+        }
+
+        assertThat(results.get(StorageMode.MEMORY).getValueAtPercentile(50))
+                .isLessThan(results.get(StorageMode.TCP).getValueAtPercentile(50));
+    }
+
+    private LatencyHistogram measure(StorageSettings settings) throws SQLException {
+
+        HikariDataSource dataSource = new HikariDataSource();
+
+        dataSource.setJdbcUrl(settings.getUrl());
+        dataSource.setUsername(ConnectionConst.USERNAME);
+        dataSource.setPassword(ConnectionConst.PASSWORD);
+
+        try {
+
+            MemberSchema.bootstrap(dataSource);
+
+            MemberRepositoryV3 repository = new MemberRepositoryV3(dataSource);
+
+            for (int i = 0; i < MEMBER_COUNT; i++) {
+
+                repository.save(new Member("T" + i, 10000));
+            }
+
+            // 워밍업
+            run(repository, new LatencyHistogram());
+
+            LatencyHistogram latency = new LatencyHistogram();
+
+            run(repository, latency);
+
+            return latency;
+        }
+        finally {
+
+            dataSource.close();
+        }
+    }
+
+    private void run(MemberRepositoryV3 repository, LatencyHistogram latency) throws SQLException {
+
+        for (int i = 0; i < OPERATIONS; i++) {
+
+            String memberId = "T" + (i % MEMBER_COUNT);
+
+            long start = System.nanoTime();
+
+            Member member = repository.findById(memberId);
+            repository.update(memberId, member.getMoney() + 1);
+
+            latency.recordValue(System.nanoTime() - start);
+        }
+    }
+
+    private StorageSettings settings(StorageMode mode, String name) {
+
+        Properties properties = new Properties();
+
+        properties.setProperty("db.mode", mode.name());
+        properties.setProperty("db.name", name);
+
+        if (mode == StorageMode.TCP && tcpServer != null) {
+
+            properties.setProperty("db.host", "localhost:" + tcpServer.getPort());
+        }
+
+        return StorageSettings.from(properties);
+    }
+
+    private int freePort() throws Exception {
+
+        try (ServerSocket socket = new ServerSocket(0)) {
+
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package hello.jdbc.connection;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV1;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+@SuppressWarnings("try")
+class TrackingDataSourceTest {
+
+    private TrackingDataSource dataSource;
+
+    @BeforeEach
+    void before() {
+
+        dataSource = new TrackingDataSource(new DriverManagerDataSource(URL, USERNAME, PASSWORD), Duration.ofMillis(50), 1);
+    }
+
+    @Test
+    @DisplayName("반납하지 않은 커넥션은 테스트 모드에서 실패")
+    void leak() throws SQLException {
+
+        dataSource.setTestMode(true);
+
+        Connection leaked = dataSource.getConnection();
+
+        assertThat(dataSource.getActiveCount()).isEqualTo(1);
+
+        assertThatThrownBy(dataSource::verifyNoLeaks)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("first caller = hello.jdbc.connection.TrackingDataSourceTest.leak")
+                .hasCauseInstanceOf(Throwable.class);
+
+        log.info("leak report = {}", dataSource.getLeakReport());
+
+        assertThat(dataSource.getLeakReport())
+                .contains("\"active\": 1")
+                .contains("\"caller\": \"hello.jdbc.connection.TrackingDataSourceTest.leak\"")
+                .contains("TrackingDataSourceTest.leak(TrackingDataSourceTest.java");
+
+        leaked.close();
+        leaked.close();
+
+        dataSource.verifyNoLeaks();
+    }
+
+    @Test
+    @DisplayName("호출자별 보유 시간과 기준 초과 횟수")
+    void holdTimes() throws Exception {
+
+        MemberRepositoryV1 repository = new MemberRepositoryV1(dataSource);
+
+        repository.save(new Member("tracked", 100));
+        repository.findById("tracked");
+        repository.delete("tracked");
+
+        assertThat(dataSource.getHoldTimes("hello.jdbc.repository.MemberRepositoryV1.save").getTotalCount()).isEqualTo(1);
+        assertThat(dataSource.getHoldTimes("hello.jdbc.repository.MemberRepositoryV1.findById").getTotalCount()).isEqualTo(1);
+
+        try (Connection conn = dataSource.getConnection()) {
+
+            Thread.sleep(60);
+        }
+
+        // 반납 전 기준을 넘긴 커넥션은 누수 의심
+        Connection slow = dataSource.getConnection();
+
+        Thread.sleep(60);
+
+        String report = dataSource.getLeakReport();
+
+        log.info("leak report = {}", report);
+
+        assertThat(report)
+                .contains("{\"caller\": \"hello.jdbc.connection.TrackingDataSourceTest.holdTimes\", \"checkouts\": 1")
+                .contains("\"overThreshold\": 1}")
+                .contains("\"suspectedLeaks\": [{\"id\": ");
+
+        slow.close();
+
+        assertThat(dataSource.getLeakReport()).contains("\"suspectedLeaks\": []");
+    }
+
+    @Test
+    @DisplayName("스택 트레이스는 샘플링해서 기록")
+    void sampling() throws SQLException {
+
+        TrackingDataSource sampled = new TrackingDataSource(new DriverManagerDataSource(URL, USERNAME, PASSWORD), Duration.ZERO, 2);
+
+        Connection first = sampled.getConnection();
+        Connection second = sampled.getConnection();
+
+        String report = sampled.getLeakReport();
+
+        // 첫 번째는 스택 없음, 두 번째만 기록
+        assertThat(report).contains("\"id\": 1, \"caller\": \"hello.jdbc.connection.TrackingDataSourceTest.sampling\"");
+        assertThat(report).containsOnlyOnce("TrackingDataSourceTest.sampling(TrackingDataSourceTest.java");
+
+        first.close();
+        second.close();
+    }
+}
@@ -0,0 +1,127 @@
+package hello.jdbc.connection;
+
+import com.zaxxer.hikari.HikariPoolMXBean;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.service.MemberServiceV3_1;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Properties;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+@SuppressWarnings("try")
+class WorkloadRoutingDataSourceTest {
+
+    private static final String MEMBER_A = "bulkheadA";
+    private static final String MEMBER_B = "bulkheadB";
+
+    private WorkloadRoutingDataSource dataSource;
+
+    @BeforeEach
+    void before() {
+
+        Properties properties = new Properties();
+
+        properties.setProperty("db.pool.batch.size", "2");
+        properties.setProperty("db.pool.batch.connection-timeout-ms", "250");
+
+        dataSource = WorkloadRoutingDataSource.create(URL, USERNAME, PASSWORD, properties);
+    }
+
+    @AfterEach
+    void after() {
+
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("현재 쓰레드의 작업 종류로 풀 선택, 바인딩하지 않으면 OLTP")
+    void routing() throws SQLException {
+
+        assertThat(Workload.current()).isEqualTo(Workload.OLTP);
+
+        try (Connection oltp = dataSource.getConnection()) {
+
+            assertThat(active(Workload.OLTP)).isEqualTo(1);
+
+            try (Workload.Scope batch = Workload.BATCH.attach(); Connection conn = dataSource.getConnection()) {
+
+                assertThat(active(Workload.BATCH)).isEqualTo(1);
+
+                try (Workload.Scope reporting = Workload.REPORTING.attach(); Connection other = dataSource.getConnection()) {
+
+                    assertThat(active(Workload.REPORTING)).isEqualTo(1);
+                }
+
+                assertThat(Workload.current()).isEqualTo(Workload.BATCH);
+            }
+        }
+
+        assertThat(Workload.current()).isEqualTo(Workload.OLTP);
+        assertThat(dataSource.getPool(Workload.BATCH).getMaximumPoolSize()).isEqualTo(2);
+        assertThat(dataSource.getPool(Workload.OLTP).getMaximumPoolSize()).isEqualTo(Workload.OLTP.getMaximumPoolSize());
+    }
+
+    @Test
+    @DisplayName("배치 풀을 모두 사용 중이어도 이체는 OLTP 풀에서 바로 처리")
+    void bulkhead() throws SQLException {
+
+        MemberRepositoryV3 memberRepository = new MemberRepositoryV3(dataSource);
+        MemberServiceV3_1 memberService = new MemberServiceV3_1(new DataSourceTransactionManager(dataSource), memberRepository);
+
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        try (Workload.Scope scope = Workload.BATCH.attach();
+             Connection first = dataSource.getConnection();
+             Connection second = dataSource.getConnection()) {
+
+            // 배치 요청은 배치 풀에서만 기다리다가 실패
+            long start = System.nanoTime();
+
+            assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+
+            log.info("batch checkout failed after {}ms", (System.nanoTime() - start) / 1_000_000);
+
+            // 이체는 OLTP 로 실행
+            try (Workload.Scope oltp = Workload.OLTP.attach()) {
+
+                start = System.nanoTime();
+
+                memberService.accountTransfer(MEMBER_A, MEMBER_B, 2000);
+
+                log.info("oltp transfer while batch pool exhausted = {}us", (System.nanoTime() - start) / 1000);
+            }
+
+            assertThat(active(Workload.BATCH)).isEqualTo(2);
+            assertThat(active(Workload.OLTP)).isZero();
+        }
+        finally {
+
+            assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+            assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(12000);
+
+            memberRepository.delete(MEMBER_A);
+            memberRepository.delete(MEMBER_B);
+        }
+    }
+
+    private int active(Workload workload) {
+
+        HikariPoolMXBean pool = dataSource.getPool(workload).getHikariPoolMXBean();
+
+        return pool == null ? 0 : pool.getActiveConnections();
+    }
+}
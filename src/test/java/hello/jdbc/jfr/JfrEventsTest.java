@@ -0,0 +1,170 @@
+package hello.jdbc.jfr;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.JfrDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.service.MemberServiceV3_1;
+import lombok.extern.slf4j.Slf4j;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import javax.sql.DataSource;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * JFR 이벤트 기록
+ *
+ * -Djfr.output=파일 경로 를 지정하면 샘플 기록 파일을 남긴다. (JDK Mission Control 로 확인)
+ */
+@Slf4j
+class JfrEventsTest {
+
+    private static final String MEMBER_A = "jfrA";
+    private static final String MEMBER_B = "jfrB";
+    private static final String MEMBER_EX = "ex";
+
+    @TempDir
+    Path tempDir;
+
+    private HikariDataSource pool;
+    private MemberRepositoryV3 memberRepository;
+    private MemberServiceV3_1 memberService;
+
+    @BeforeEach
+    void before() throws SQLException {
+
+        pool = new HikariDataSource();
+
+        pool.setJdbcUrl(URL);
+        pool.setUsername(USERNAME);
+        pool.setPassword(PASSWORD);
+
+        DataSource dataSource = new JfrDataSource(pool, "oltp");
+
+        memberRepository = new MemberRepositoryV3(dataSource);
+        memberService = new MemberServiceV3_1(new DataSourceTransactionManager(dataSource), memberRepository);
+
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+    }
+
+    @AfterEach
+    void after() throws SQLException {
+
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+        memberRepository.delete(MEMBER_EX);
+
+        pool.close();
+    }
+
+    @Test
+    @DisplayName("설정 파일로 기록하면 트랜잭션, SQL, 커넥션 획득 이벤트가 남는다")
+    void recording() throws Exception {
+
+        Path output = Paths.get(System.getProperty("jfr.output", tempDir.resolve("hello-jdbc.jfr").toString()));
+
+        try (Recording recording = new Recording(settings())) {
+
+            recording.start();
+
+            memberService.accountTransfer(MEMBER_A, MEMBER_B, 1000);
+            memberService.accountTransfer(MEMBER_B, MEMBER_A, 500);
+
+            assertThatThrownBy(() -> memberService.accountTransfer(MEMBER_A, MEMBER_EX, 100))
+                    .isInstanceOf(IllegalStateException.class);
+
+            recording.stop();
+            recording.dump(output);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(output);
+
+        log.info("recording = {}, events = {}", output, events.size());
+
+        Map<String, List<RecordedEvent>> byType = events.stream()
+                .filter(event -> event.getEventType().getName().startsWith("hello.jdbc."))
+                .collect(Collectors.groupingBy(event -> event.getEventType().getName()));
+
+        List<RecordedEvent> transactions = byType.get("hello.jdbc.Transaction");
+
+        assertThat(transactions).extracting(event -> event.getString("outcome"))
+                .containsExactly(TransactionEvent.COMMIT, TransactionEvent.COMMIT, TransactionEvent.ROLLBACK);
+
+        // 이체마다 조회 2번, 수정 2번 ("ex" 는 수정 1번 후 실패)
+        List<RecordedEvent> statements = byType.get("hello.jdbc.Statement");
+
+        assertThat(statements).hasSize(11);
+        assertThat(statements).filteredOn(event -> event.getString("sqlId").equals("member.update"))
+                .hasSize(5)
+                .allMatch(event -> event.getLong("rows") == 1);
+
+        // 트랜잭션마다 커넥션 획득 1번
+        assertThat(byType.get("hello.jdbc.ConnectionAcquire")).hasSize(3)
+                .allMatch(event -> event.getString("dataSource").equals("oltp") && event.getBoolean("succeeded"));
+    }
+
+    /**
+     * 실행 시간을 재므로 기본 테스트에서는 제외하고, 다른 벤치마크와 같이 -Dbench.rows 를 지정했을 때만 실행
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "bench.rows", matches = "\\d+")
+    @DisplayName("기록 중이 아니면 이벤트 비용은 거의 없다")
+    void disabledCost() {
+
+        int count = 5_000_000;
+
+        // 워밍업
+        emit(count);
+
+        long start = System.nanoTime();
+
+        emit(count);
+
+        double nanosPerEvent = (double) (System.nanoTime() - start) / count;
+
+        log.info("disabled StatementEvent cost = {} ns", String.format("%.1f", nanosPerEvent));
+
+        assertThat(nanosPerEvent).isLessThan(100);
+    }
+
+    private void emit(int count) {
+
+        for (int i = 0; i < count; i++) {
+
+            StatementEvent.start("member.findById").finish(1);
+        }
+    }
+
+    private Configuration settings() throws Exception {
+
+        try (Reader reader = new InputStreamReader(
+                getClass().getClassLoader().getResourceAsStream("jfr/hello-jdbc.jfc"), StandardCharsets.UTF_8)) {
+
+            return Configuration.create(reader);
+        }
+    }
+}
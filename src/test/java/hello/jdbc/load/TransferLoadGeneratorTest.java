@@ -0,0 +1,117 @@
+package hello.jdbc.load;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.service.MemberServiceV3_1;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@Slf4j
+class TransferLoadGeneratorTest {
+
+    private HikariDataSource dataSource;
+    private TransferLoadGenerator generator;
+    private LoadProfile lastProfile;
+
+    @BeforeEach
+    void before() {
+
+        dataSource = new HikariDataSource();
+
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+
+        MemberServiceV3_1 memberService = new MemberServiceV3_1(
+                new DataSourceTransactionManager(dataSource),
+                new MemberRepositoryV3(dataSource)
+        );
+
+        generator = new TransferLoadGenerator(dataSource, memberService::accountTransfer);
+    }
+
+    @AfterEach
+    void after() throws SQLException {
+
+        if (lastProfile != null) {
+
+            generator.deleteMembers(lastProfile);
+        }
+
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("히스토그램 백분위 오차 1/64 이내")
+    void histogramPercentile() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for (long value = 1; value <= 100_000; value++) {
+
+            histogram.recordValue(value * 1000);
+        }
+
+        assertThat(histogram.getTotalCount()).isEqualTo(100_000);
+        assertThat((double) histogram.getValueAtPercentile(50)).isCloseTo(50_000_000, within(50_000_000 / 64.0));
+        assertThat((double) histogram.getValueAtPercentile(99)).isCloseTo(99_000_000, within(99_000_000 / 64.0));
+        assertThat(histogram.getValueAtPercentile(100)).isEqualTo(100_000_000);
+    }
+
+    @Test
+    @DisplayName("Zipf 분포 단일 쓰레드 - 전체 금액 보존")
+    void zipfianSingleThread() throws Exception {
+
+        lastProfile = LoadProfile.builder()
+                .threads(1)
+                .duration(Duration.ofSeconds(1))
+                .memberCount(100)
+                .distribution(KeyDistribution.zipfian(100, 1.1))
+                .build();
+
+        LoadResult result = generator.run(lastProfile);
+
+        assertThat(result.getOperations()).isPositive();
+        assertThat(result.getErrors()).isZero();
+        assertThat(result.isConserved()).isTrue();
+        assertThat(result.getMoneyBefore()).isEqualTo(100 * 10000L);
+    }
+
+    /**
+     * 목표 요청 수를 지정하면 실제 처리량이 목표치 근처로 제한된다.
+     *
+     * MemberServiceV3_1 은 조회한 금액으로 덮어쓰는 방식이라 같은 회원에 대한 동시 이체에서 갱신 손실이 생길 수 있다.
+     * 보존 여부는 결과 리포트로 확인한다.
+     *
+     * @throws Exception
+     */
+    @Test
+    @DisplayName("목표 요청 수로 제한된 다중 쓰레드 부하")
+    void rateLimitedMultiThread() throws Exception {
+
+        lastProfile = LoadProfile.builder()
+                .threads(4)
+                .targetRate(200)
+                .duration(Duration.ofSeconds(1))
+                .memberCount(1000)
+                .build();
+
+        LoadResult result = generator.run(lastProfile);
+
+        log.info("report = {}", result.report());
+
+        assertThat(result.getOperations()).isBetween(150L, 250L);
+        assertThat(result.percentileMicros(99)).isGreaterThanOrEqualTo(result.percentileMicros(50));
+    }
+}
@@ -0,0 +1,412 @@
+package hello.jdbc.pipeline;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.Transfer;
+import hello.jdbc.load.KeyDistribution;
+import hello.jdbc.load.LatencyHistogram;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.service.MemberServiceV3_1;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class TransferPipelineTest {
+
+    private static final int MEMBER_COUNT = 100;
+    private static final int INITIAL_MONEY = 1_000_000;
+
+    private HikariDataSource dataSource;
+    private MemberRepositoryV3 memberRepository;
+
+    @BeforeEach
+    void before() throws SQLException {
+
+        dataSource = new HikariDataSource();
+
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(12);
+
+        memberRepository = new MemberRepositoryV3(dataSource);
+
+        List<Member> members = new ArrayList<>();
+
+        for (int i = 0; i < MEMBER_COUNT; i++) {
+
+            members.add(new Member(memberId(i), INITIAL_MONEY));
+        }
+
+        memberRepository.upsertAll(members);
+    }
+
+    @AfterEach
+    void after() throws SQLException {
+
+        for (int i = 0; i < MEMBER_COUNT; i++) {
+
+            memberRepository.delete(memberId(i));
+        }
+
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("여러 쓰레드에서 요청해도 잔액은 정확하고 전체 금액은 보존")
+    void concurrentTransfers() throws Exception {
+
+        List<Transfer> transfers = randomTransfers(5000, KeyDistribution.uniform(MEMBER_COUNT));
+
+        Map<String, Integer> expected = new HashMap<>();
+
+        for (Transfer t : transfers) {
+
+            expected.merge(t.getFromId(), -t.getMoney(), Integer::sum);
+            expected.merge(t.getToId(), t.getMoney(), Integer::sum);
+        }
+
+        try (TransferPipeline pipeline = new TransferPipeline(dataSource, 4, 1024)) {
+
+            submitAll(pipeline, transfers, 4, new LatencyHistogram());
+        }
+
+        Map<String, Member> members = memberRepository.findByIds(allMemberIds()).getFound();
+
+        long total = 0;
+
+        for (Member member : members.values()) {
+
+            total += member.getMoney();
+
+            assertThat(member.getMoney()).isEqualTo(INITIAL_MONEY + expected.getOrDefault(member.getMemberId(), 0));
+        }
+
+        assertThat(total).isEqualTo((long) MEMBER_COUNT * INITIAL_MONEY);
+    }
+
+    @Test
+    @DisplayName("없는 회원에게 보낸 이체는 환불 후 실패, 'ex' 회원 이체는 실패")
+    void failedTransfers() throws Exception {
+
+        try (TransferPipeline pipeline = new TransferPipeline(dataSource, 4, 64)) {
+
+            CompletableFuture<Void> unknown = pipeline.submit(new Transfer(memberId(0), "unknown", 100));
+            CompletableFuture<Void> ex = pipeline.submit(new Transfer(memberId(1), "ex", 100));
+
+            assertThatThrownBy(unknown::join).hasCauseInstanceOf(NoSuchElementException.class);
+            assertThatThrownBy(ex::join).hasCauseInstanceOf(IllegalStateException.class);
+        }
+
+        assertThat(memberRepository.findById(memberId(0)).getMoney()).isEqualTo(INITIAL_MONEY);
+        assertThat(memberRepository.findById(memberId(1)).getMoney()).isEqualTo(INITIAL_MONEY);
+    }
+
+    @Test
+    @DisplayName("입금 샤드의 SQL 예외 - 다시 시도해서 입금하거나, 횟수를 넘으면 환불하고 전체 금액은 보존")
+    void creditFailure() throws Exception {
+
+        int shardCount = 4;
+
+        // 출금, 입금 회원이 다른 샤드에 있어야 핸드오프가 생긴다.
+        String fromId = memberId(0);
+        String toId = allMemberIds().stream()
+                .filter(id -> Math.floorMod(id.hashCode(), shardCount) != Math.floorMod(fromId.hashCode(), shardCount))
+                .findFirst()
+                .orElseThrow();
+
+        // 입금 UPDATE 가 잠금 대기 시간 초과(SQLException)로 빨리 실패하도록 샤드 커넥션의 LOCK_TIMEOUT 을 줄임
+        HikariDataSource shardDataSource = new HikariDataSource();
+
+        shardDataSource.setJdbcUrl(URL);
+        shardDataSource.setUsername(USERNAME);
+        shardDataSource.setPassword(PASSWORD);
+        shardDataSource.setMaximumPoolSize(shardCount);
+        shardDataSource.setConnectionInitSql("SET LOCK_TIMEOUT 50");
+
+        try (TransferPipeline pipeline = new TransferPipeline(shardDataSource, shardCount, 64);
+             Connection locker = DriverManager.getConnection(URL, USERNAME, PASSWORD)) {
+
+            // 1. 잠금이 잠깐 걸린 동안 실패한 입금은 다시 시도해서 성공
+            lock(locker, toId);
+
+            CompletableFuture<Void> retried = pipeline.submit(new Transfer(fromId, toId, 100));
+
+            Thread.sleep(80);
+
+            locker.rollback();
+
+            retried.get(10, TimeUnit.SECONDS);
+
+            assertThat(memberRepository.findById(fromId).getMoney()).isEqualTo(INITIAL_MONEY - 100);
+            assertThat(memberRepository.findById(toId).getMoney()).isEqualTo(INITIAL_MONEY + 100);
+
+            // 2. 잠금이 풀리지 않으면 출금 샤드에 환불하고 입금 실패 원인으로 완료
+            lock(locker, toId);
+
+            CompletableFuture<Void> refunded = pipeline.submit(new Transfer(fromId, toId, 200));
+
+            assertThatThrownBy(() -> refunded.get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(SQLException.class);
+
+            locker.rollback();
+        }
+        finally {
+
+            shardDataSource.close();
+        }
+
+        assertThat(memberRepository.findById(fromId).getMoney()).isEqualTo(INITIAL_MONEY - 100);
+        assertThat(memberRepository.findById(toId).getMoney()).isEqualTo(INITIAL_MONEY + 100);
+
+        long total = 0;
+
+        for (Member member : memberRepository.findByIds(allMemberIds()).getFound().values()) {
+
+            total += member.getMoney();
+        }
+
+        assertThat(total).isEqualTo((long) MEMBER_COUNT * INITIAL_MONEY);
+    }
+
+    @Test
+    @DisplayName("환불도 횟수를 넘으면 돌려줄 금액과 원인으로 실패하고, 종료한 뒤의 요청은 거부")
+    void refundFailure() throws Exception {
+
+        int shardCount = 4;
+
+        String fromId = memberId(0);
+        String toId = allMemberIds().stream()
+                .filter(id -> Math.floorMod(id.hashCode(), shardCount) != Math.floorMod(fromId.hashCode(), shardCount))
+                .findFirst()
+                .orElseThrow();
+
+        HikariDataSource shardDataSource = new HikariDataSource();
+
+        shardDataSource.setJdbcUrl(URL);
+        shardDataSource.setUsername(USERNAME);
+        shardDataSource.setPassword(PASSWORD);
+        shardDataSource.setMaximumPoolSize(shardCount);
+        shardDataSource.setConnectionInitSql("SET LOCK_TIMEOUT 50");
+
+        TransferPipeline pipeline = new TransferPipeline(shardDataSource, shardCount, 64);
+
+        try (Connection toLocker = DriverManager.getConnection(URL, USERNAME, PASSWORD);
+             Connection fromLocker = DriverManager.getConnection(URL, USERNAME, PASSWORD)) {
+
+            // 입금이 실패하도록 잠그고, 출금이 커밋된 뒤 환불도 실패하도록 출금 회원도 잠금
+            lock(toLocker, toId);
+
+            CompletableFuture<Void> future = pipeline.submit(new Transfer(fromId, toId, 300));
+
+            long deadline = System.currentTimeMillis() + 5000;
+
+            while (memberRepository.findById(fromId).getMoney() != INITIAL_MONEY - 300 && System.currentTimeMillis() < deadline) {
+
+                Thread.sleep(5);
+            }
+
+            lock(fromLocker, fromId);
+
+            assertThatThrownBy(() -> future.get(30, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(TransferInDoubtException.class)
+                    .satisfies(e -> {
+
+                        TransferInDoubtException inDoubt = (TransferInDoubtException) e.getCause();
+
+                        assertThat(inDoubt.getOwed()).isEqualTo(300);
+                        assertThat(inDoubt.getCause()).isInstanceOf(SQLException.class);
+                    });
+
+            toLocker.rollback();
+            fromLocker.rollback();
+        }
+        finally {
+
+            pipeline.close();
+            shardDataSource.close();
+        }
+
+        assertThatThrownBy(() -> pipeline.submit(new Transfer(fromId, toId, 1))).isInstanceOf(IllegalStateException.class);
+
+        // 돌려주지 못한 금액은 출금 회원에게서 빠진 상태
+        assertThat(memberRepository.findById(fromId).getMoney()).isEqualTo(INITIAL_MONEY - 300);
+        assertThat(memberRepository.findById(toId).getMoney()).isEqualTo(INITIAL_MONEY);
+    }
+
+    /**
+     * 핫 계좌(Zipf 분포)로 몰리는 이체를 같은 쓰레드 수로 요청했을 때 처리량과 지연 시간 비교
+     *
+     * - 락 기반 : MemberServiceV3_1.accountTransfer() 를 쓰레드마다 동기 호출
+     * - 파이프라인 : 샤드 워커가 배치로 커밋
+     *
+     * @throws Exception
+     */
+    @Test
+    @DisplayName("락 기반 서비스와 처리량, 지연 시간 비교")
+    void compareWithLockBasedService() throws Exception {
+
+        int threads = 8;
+        List<Transfer> transfers = randomTransfers(4000, KeyDistribution.zipfian(MEMBER_COUNT, 1.1));
+
+        MemberServiceV3_1 memberService = new MemberServiceV3_1(new DataSourceTransactionManager(dataSource), memberRepository);
+
+        LatencyHistogram lockLatency = new LatencyHistogram();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        long start = System.nanoTime();
+
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int w = 0; w < threads; w++) {
+
+            List<Transfer> share = transfers.subList(transfers.size() * w / threads, transfers.size() * (w + 1) / threads);
+
+            futures.add(executor.submit(() -> {
+
+                for (Transfer t : share) {
+
+                    long begin = System.nanoTime();
+
+                    try {
+                        memberService.accountTransfer(t.getFromId(), t.getToId(), t.getMoney());
+                    }
+                    catch (Exception e) {
+                        log.debug("transfer failed", e);
+                    }
+
+                    lockLatency.recordValue(System.nanoTime() - begin);
+                }
+
+                return null;
+            }));
+        }
+
+        for (Future<?> future : futures) {
+
+            future.get();
+        }
+
+        long lockNanos = System.nanoTime() - start;
+
+        executor.shutdown();
+
+        LatencyHistogram pipelineLatency = new LatencyHistogram();
+
+        start = System.nanoTime();
+
+        try (TransferPipeline pipeline = new TransferPipeline(dataSource, 4, 1024)) {
+
+            submitAll(pipeline, transfers, threads, pipelineLatency);
+        }
+
+        long pipelineNanos = System.nanoTime() - start;
+
+        log.info("lock-based : {}/s, p50 = {}us, p99 = {}us",
+                transfers.size() * 1_000_000_000L / lockNanos,
+                lockLatency.getValueAtPercentile(50) / 1000, lockLatency.getValueAtPercentile(99) / 1000);
+        log.info("pipeline   : {}/s, p50 = {}us, p99 = {}us",
+                transfers.size() * 1_000_000_000L / pipelineNanos,
+                pipelineLatency.getValueAtPercentile(50) / 1000, pipelineLatency.getValueAtPercentile(99) / 1000);
+
+        assertThat(pipelineLatency.getTotalCount()).isEqualTo(transfers.size());
+    }
+
+    /**
+     * 여러 쓰레드에서 나눠서 요청하고 모든 요청이 완료될 때까지 대기
+     */
+    private void submitAll(TransferPipeline pipeline, List<Transfer> transfers, int threads, LatencyHistogram latency) throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<CompletableFuture<Void>> results = new CopyOnWriteArrayList<>();
+        List<Future<?>> submitters = new ArrayList<>();
+
+        for (int w = 0; w < threads; w++) {
+
+            List<Transfer> share = transfers.subList(transfers.size() * w / threads, transfers.size() * (w + 1) / threads);
+
+            submitters.add(executor.submit(() -> {
+
+                for (Transfer t : share) {
+
+                    long begin = System.nanoTime();
+
+                    results.add(pipeline.submit(t).whenComplete((r, e) -> latency.recordValue(System.nanoTime() - begin)));
+                }
+            }));
+        }
+
+        for (Future<?> submitter : submitters) {
+
+            submitter.get();
+        }
+
+        CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).get(60, TimeUnit.SECONDS);
+
+        executor.shutdown();
+    }
+
+    /**
+     * 다른 커넥션에서 회원 행을 잠금 (rollback() 할 때까지 유지)
+     */
+    private void lock(Connection locker, String memberId) throws SQLException {
+
+        locker.setAutoCommit(false);
+
+        try (PreparedStatement pstmt = locker.prepareStatement("UPDATE member SET money = money WHERE memberId = ?")) {
+
+            pstmt.setString(1, memberId);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private List<Transfer> randomTransfers(int count, KeyDistribution distribution) {
+
+        Random random = new Random(7);
+        List<Transfer> transfers = new ArrayList<>();
+
+        while (transfers.size() < count) {
+
+            int from = distribution.next(random);
+            int to = distribution.next(random);
+
+            if (from != to) {
+
+                transfers.add(new Transfer(memberId(from), memberId(to), 1 + random.nextInt(100)));
+            }
+        }
+
+        return transfers;
+    }
+
+    private List<String> allMemberIds() {
+
+        List<String> ids = new ArrayList<>();
+
+        for (int i = 0; i < MEMBER_COUNT; i++) {
+
+            ids.add(memberId(i));
+        }
+
+        return ids;
+    }
+
+    private String memberId(int i) {
+
+        return "P" + i;
+    }
+}
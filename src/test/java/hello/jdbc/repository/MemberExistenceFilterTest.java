@@ -0,0 +1,241 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.cdc.MemberChangeFeed;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 필터 크기와 오탐 수를 정확히 확인하기 위해 테스트 전용 메모리 데이터베이스를 사용
+ */
+@Slf4j
+class MemberExistenceFilterTest {
+
+    private static final String FILTER_URL = "jdbc:h2:mem:existence;DB_CLOSE_DELAY=-1";
+    private static final int MEMBER_COUNT = 1000;
+
+    private CountingDataSource dataSource;
+    private MemberExistenceFilter filter;
+    private MemberRepositoryV3 repository;
+
+    @BeforeEach
+    void before() throws SQLException {
+
+        dataSource = new CountingDataSource(new DriverManagerDataSource(FILTER_URL, "sa", ""));
+
+        execute(MemberSchema.CREATE_TABLE);
+
+        filter = new MemberExistenceFilter(dataSource, 0.01);
+        repository = new MemberRepositoryV3(dataSource, filter);
+
+        List<Member> members = new ArrayList<>();
+
+        for (int i = 0; i < MEMBER_COUNT; i++) {
+
+            members.add(new Member("E" + i, 10000));
+        }
+
+        repository.upsertAll(members);
+
+        filter.rebuild();
+
+        dataSource.acquisitions.set(0);
+    }
+
+    @AfterEach
+    void after() throws SQLException {
+
+        filter.close();
+
+        execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    @DisplayName("목표 오탐률로 크기를 정하고, 넣은 키는 항상 있다고 대답")
+    void falsePositiveRate() {
+
+        BloomFilter bloom = new BloomFilter(100_000, 0.01);
+
+        for (int i = 0; i < 100_000; i++) {
+
+            bloom.put("member" + i);
+        }
+
+        int falsePositives = 0;
+
+        for (int i = 0; i < 100_000; i++) {
+
+            assertThat(bloom.mightContain("member" + i)).isTrue();
+
+            if (bloom.mightContain("absent" + i)) {
+
+                falsePositives++;
+            }
+        }
+
+        log.info("bits = {}, hashes = {}, false positive rate = {}, expected = {}",
+                bloom.getBitSize(), bloom.getHashCount(), falsePositives / 100_000.0, bloom.expectedFalsePositiveRate());
+
+        assertThat(bloom.getHashCount()).isEqualTo(7);
+        assertThat(falsePositives / 100_000.0).isLessThan(0.015);
+    }
+
+    @Test
+    @DisplayName("확실히 없는 회원은 데이터베이스를 조회하지 않고 없음")
+    void definiteMiss() throws SQLException {
+
+        int misses = 0;
+
+        for (int i = 0; i < 1000; i++) {
+
+            if (repository.moneyOf("X" + i) == MemberRepositoryV3.MONEY_NOT_FOUND) {
+
+                misses++;
+            }
+        }
+
+        assertThat(misses).isEqualTo(1000);
+        assertThat(dataSource.acquisitions.get()).isEqualTo(filter.getFalsePositives());
+        assertThat(filter.getNegatives()).isGreaterThan(950);
+
+        dataSource.acquisitions.set(0);
+
+        assertThatThrownBy(() -> repository.findById("nobody")).isInstanceOf(MemberNotFoundException.class);
+        assertThat(repository.transfer("E1", "nobody", 100)).isEqualTo(TransferStatus.TO_NOT_FOUND);
+        assertThat(repository.findByIds(List.of("nobody", "nothing")).getMissing()).containsExactly("nobody", "nothing");
+        assertThat(dataSource.acquisitions.get()).isZero();
+
+        assertThat(repository.findById("E1").getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("저장한 회원은 바로 찾고, 삭제한 회원은 다시 만들 때 필터에서 빠짐")
+    void saveAndDelete() throws SQLException {
+
+        repository.save(new Member("new", 500));
+
+        assertThat(repository.findById("new").getMoney()).isEqualTo(500);
+
+        repository.delete("E2");
+
+        // 필터에는 남아 있으므로 데이터베이스에서 없음을 확인
+        assertThat(filter.mightContain("E2")).isTrue();
+        assertThat(repository.findOptionalById("E2")).isEmpty();
+        assertThat(filter.getFalsePositives()).isEqualTo(1);
+
+        filter.rebuild();
+
+        assertThat(filter.mightContain("new")).isTrue();
+        assertThat(filter.getRebuilds()).isEqualTo(2);
+
+        dataSource.acquisitions.set(0);
+
+        // 재구성 후에는 오탐 확률로만 데이터베이스 조회
+        repository.findOptionalById("E2");
+
+        assertThat(dataSource.acquisitions.get()).isEqualTo(filter.getFalsePositives() - 1);
+    }
+
+    @Test
+    @DisplayName("다른 쓰기 주체가 등록한 회원은 회원 변경 피드로 필터에 반영")
+    void otherWriters() throws SQLException {
+
+        MemberChangeFeed.install(dataSource);
+
+        MemberChangeFeed feed = new MemberChangeFeed(dataSource, 100, Duration.ofSeconds(1));
+
+        feed.addListener(filter);
+
+        // 필터를 모르는 다른 인스턴스의 등록, SQL 로 직접 바꾼 memberId
+        new MemberRepositoryV3(dataSource).save(new Member("other", 10000));
+        execute("UPDATE member SET memberId = 'renamed' WHERE memberId = 'E1'");
+
+        assertThat(filter.mightContain("other")).isFalse();
+        assertThat(filter.mightContain("renamed")).isFalse();
+
+        feed.poll();
+        feed.close();
+
+        assertThat(repository.findById("other").getMoney()).isEqualTo(10000);
+        assertThat(repository.findById("renamed").getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("재구성 도중 커밋되지 않은 회원도 새 필터에 포함")
+    void uncommittedDuringRebuild() throws SQLException {
+
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+
+        TransactionStatus status = transactionManager.getTransaction(new DefaultTransactionDefinition());
+
+        try {
+
+            repository.save(new Member("pending", 700));
+
+            // 스캔은 다른 커넥션이므로 커밋되지 않은 회원을 보지 못한다.
+            filter.rebuild();
+
+            transactionManager.commit(status);
+        }
+        catch (RuntimeException | SQLException e) {
+
+            transactionManager.rollback(status);
+
+            throw e;
+        }
+
+        assertThat(filter.mightContain("pending")).isTrue();
+        assertThat(repository.findById("pending").getMoney()).isEqualTo(700);
+
+        // 다음 재구성에서는 스캔으로 포함
+        filter.rebuild();
+
+        assertThat(filter.mightContain("pending")).isTrue();
+    }
+
+    private void execute(String sql) throws SQLException {
+
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+
+            stmt.execute(sql);
+        }
+    }
+
+    private static class CountingDataSource extends DelegatingDataSource {
+
+        private final AtomicInteger acquisitions = new AtomicInteger();
+
+        private CountingDataSource(DataSource target) {
+
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+
+            acquisitions.incrementAndGet();
+
+            return super.getConnection();
+        }
+    }
+}
@@ -0,0 +1,454 @@
+package hello.jdbc.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * memberId <-> int 대리 키(memberKey) 사전
+ *
+ * 사전은 member_key 테이블에 저장하고, 메모리에는 두 방향으로 캐시한다.
+ * - memberId -> memberKey : 오픈 어드레싱 맵 (StringIntMap)
+ * - memberKey -> memberId : 키가 1부터 빈틈 없이 발급되므로 키를 인덱스로 쓰는 배열
+ *
+ * 캐시에 없는 memberId 는 member_key 를 조회하고, 발급되지 않은 memberId 였으면 negativeTtl 동안 없음을 기억한다.
+ * (같은 없는 회원을 반복해서 조회해도 negativeTtl 에 한 번만 데이터베이스를 조회, 다른 노드가 그 사이에 발급한 키는 negativeTtl 뒤에 보인다.)
+ * 조회는 DataSourceUtils 로 커넥션을 얻으므로 트랜잭션, 작업 단위(UnitOfWork) 안에서는 같은 커넥션을 사용하고,
+ * 결과를 읽는 중인 호출자는 idOf(key, conn) 으로 자신의 커넥션을 넘겨서 풀에서 커넥션을 하나 더 빌리지 않는다.
+ *
+ * 키 발급(assign)은 호출한 쪽의 트랜잭션과 상관없이 별도 커넥션에서 바로 커밋한다.
+ * 트랜잭션이 롤백되어도 발급한 키는 남지만, 같은 memberId 가 다른 노드에서 다른 키를 받는 일은 없다.
+ * (AUTO_INCREMENT 값은 롤백해도 재사용되지 않으므로 키에 빈틈이 생길 수는 있다.)
+ */
+@Slf4j
+public class MemberKeyDictionary {
+
+    static final String LOAD_SQL = "SELECT memberKey, memberId FROM member_key";
+    static final String KEY_OF_SQL = "SELECT memberKey FROM member_key WHERE memberId = ?";
+    static final String ID_OF_SQL = "SELECT memberId FROM member_key WHERE memberKey = ?";
+    static final String ASSIGN_SQL = "INSERT INTO member_key(memberId) VALUES (?)";
+
+    /**
+     * 발급되지 않은 memberId 의 키
+     */
+    public static final int NO_KEY = 0;
+
+    public static final Duration DEFAULT_NEGATIVE_TTL = Duration.ofSeconds(1);
+
+    /**
+     * 없음을 기억하는 memberId 최대 수, 넘으면 모두 비움 (없는 memberId 를 무작위로 조회해도 메모리가 늘지 않도록)
+     */
+    private static final int MAX_NEGATIVE_ENTRIES = 10_000;
+
+    private final DataSource dataSource;
+    private final long negativeTtlNanos;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final StringIntMap keys = new StringIntMap(1024, NO_KEY);
+    private String[] ids = new String[1024];
+
+    /**
+     * 발급되지 않은 memberId 와 기억을 끝낼 시각 (System.nanoTime)
+     */
+    private final Map<String, Long> negatives = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public MemberKeyDictionary(DataSource dataSource) {
+        this(dataSource, DEFAULT_NEGATIVE_TTL);
+    }
+
+    /**
+     * @param dataSource
+     * @param negativeTtl 발급되지 않은 memberId 를 다시 조회하지 않는 시간
+     */
+    public MemberKeyDictionary(DataSource dataSource, Duration negativeTtl) {
+        this.dataSource = dataSource;
+        this.negativeTtlNanos = negativeTtl.toNanos();
+    }
+
+    /**
+     * member_key 전체를 캐시에 올림 (시작할 때 한 번)
+     *
+     * @return 읽은 키 수
+     * @throws SQLException
+     */
+    public int load() throws SQLException {
+
+        String sql = LOAD_SQL;
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+
+            conn = dataSource.getConnection();
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setFetchSize(1000);
+
+            rs = pstmt.executeQuery();
+
+            int loaded = 0;
+
+            while (rs.next()) {
+
+                cache(rs.getString(2), rs.getInt(1));
+
+                loaded++;
+            }
+
+            log.info("member key dictionary loaded. keys = {}", loaded);
+
+            return loaded;
+        }
+        catch (SQLException e) {
+
+            log.error("DB Error = {}", e);
+
+            throw e;
+        }
+        finally {
+
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(pstmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+
+    /**
+     * memberId 의 키 조회
+     *
+     * @param memberId
+     * @return 발급되지 않았으면 NO_KEY
+     * @throws SQLException
+     */
+    public int keyOf(String memberId) throws SQLException {
+
+        int key = cachedKey(memberId);
+
+        if (key != NO_KEY || isKnownMissing(memberId)) {
+
+            hits.increment();
+
+            return key;
+        }
+
+        misses.increment();
+
+        key = selectKey(memberId, null);
+
+        if (key != NO_KEY) {
+
+            cache(memberId, key);
+        }
+        else {
+
+            rememberMissing(memberId);
+        }
+
+        return key;
+    }
+
+    /**
+     * memberId 의 키, 없으면 발급
+     *
+     * @param memberId
+     * @return
+     * @throws SQLException
+     */
+    public int assign(String memberId) throws SQLException {
+
+        int key = keyOf(memberId);
+
+        if (key != NO_KEY) {
+
+            return key;
+        }
+
+        key = insertKey(memberId);
+
+        cache(memberId, key);
+
+        return key;
+    }
+
+    /**
+     * 키의 memberId 조회
+     *
+     * @param key
+     * @return
+     * @throws SQLException
+     */
+    public String idOf(int key) throws SQLException {
+
+        return idOf(key, null);
+    }
+
+    /**
+     * 키의 memberId 조회, 캐시에 없으면 conn 으로 조회
+     *
+     * @param key
+     * @param conn 호출자가 사용 중인 커넥션, null 이면 DataSourceUtils 로 획득
+     * @return
+     * @throws SQLException
+     */
+    public String idOf(int key, Connection conn) throws SQLException {
+
+        lock.readLock().lock();
+
+        try {
+
+            if (key > 0 && key < ids.length && ids[key] != null) {
+
+                hits.increment();
+
+                return ids[key];
+            }
+        }
+        finally {
+
+            lock.readLock().unlock();
+        }
+
+        misses.increment();
+
+        String memberId = selectId(key, conn);
+
+        if (memberId == null) {
+
+            throw new IllegalStateException("unknown memberKey = " + key);
+        }
+
+        cache(memberId, key);
+
+        return memberId;
+    }
+
+    public int size() {
+
+        lock.readLock().lock();
+
+        try {
+
+            return keys.size();
+        }
+        finally {
+
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private int cachedKey(String memberId) {
+
+        lock.readLock().lock();
+
+        try {
+
+            return keys.get(memberId);
+        }
+        finally {
+
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean isKnownMissing(String memberId) {
+
+        Long expiresAt = negatives.get(memberId);
+
+        if (expiresAt == null) {
+
+            return false;
+        }
+
+        if (System.nanoTime() - expiresAt < 0) {
+
+            return true;
+        }
+
+        negatives.remove(memberId, expiresAt);
+
+        return false;
+    }
+
+    private void rememberMissing(String memberId) {
+
+        if (negativeTtlNanos <= 0) {
+
+            return;
+        }
+
+        if (negatives.size() >= MAX_NEGATIVE_ENTRIES) {
+
+            negatives.clear();
+        }
+
+        negatives.put(memberId, System.nanoTime() + negativeTtlNanos);
+    }
+
+    private void cache(String memberId, int key) {
+
+        negatives.remove(memberId);
+
+        lock.writeLock().lock();
+
+        try {
+
+            keys.put(memberId, key);
+
+            if (key >= ids.length) {
+
+                ids = Arrays.copyOf(ids, Math.max(ids.length * 2, key + 1));
+            }
+
+            ids[key] = memberId;
+        }
+        finally {
+
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int selectKey(String memberId, Connection callerConn) throws SQLException {
+
+        String sql = KEY_OF_SQL;
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+
+            conn = callerConn != null ? callerConn : DataSourceUtils.getConnection(dataSource);
+            pstmt = conn.prepareStatement(sql);
+
+            pstmt.setString(1, memberId);
+
+            rs = pstmt.executeQuery();
+
+            return rs.next() ? rs.getInt(1) : NO_KEY;
+        }
+        catch (SQLException e) {
+
+            log.error("DB Error = {}", e);
+
+            throw e;
+        }
+        finally {
+
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(pstmt);
+
+            if (callerConn == null) {
+
+                DataSourceUtils.releaseConnection(conn, dataSource);
+            }
+        }
+    }
+
+    private String selectId(int key, Connection callerConn) throws SQLException {
+
+        String sql = ID_OF_SQL;
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+
+            conn = callerConn != null ? callerConn : DataSourceUtils.getConnection(dataSource);
+            pstmt = conn.prepareStatement(sql);
+
+            pstmt.setInt(1, key);
+
+            rs = pstmt.executeQuery();
+
+            return rs.next() ? rs.getString(1) : null;
+        }
+        catch (SQLException e) {
+
+            log.error("DB Error = {}", e);
+
+            throw e;
+        }
+        finally {
+
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(pstmt);
+
+            if (callerConn == null) {
+
+                DataSourceUtils.releaseConnection(conn, dataSource);
+            }
+        }
+    }
+
+    /**
+     * 별도 커넥션(자동 커밋)으로 키 발급, 다른 쓰레드나 노드가 먼저 발급했으면 그 키를 사용
+     */
+    private int insertKey(String memberId) throws SQLException {
+
+        String sql = ASSIGN_SQL;
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+
+            conn = dataSource.getConnection();
+            pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+
+            pstmt.setString(1, memberId);
+            pstmt.executeUpdate();
+
+            rs = pstmt.getGeneratedKeys();
+            rs.next();
+
+            return rs.getInt(1);
+        }
+        catch (SQLException e) {
+
+            // 유니크 제약 위반 (H2 DUPLICATE_KEY_1 = 23505)
+            if (e.getErrorCode() == 23505) {
+
+                // 발급에 쓴 커넥션으로 조회 (풀에서 하나 더 빌리지 않음)
+                return selectKey(memberId, conn);
+            }
+
+            log.error("DB Error = {}", e);
+
+            throw e;
+        }
+        finally {
+
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(pstmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+}
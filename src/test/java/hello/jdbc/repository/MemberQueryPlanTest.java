@@ -0,0 +1,308 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.aggregate.BalanceAggregateService;
+import hello.jdbc.cdc.MemberChangeFeed;
+import hello.jdbc.domain.Member;
+import hello.jdbc.load.TransferLoadGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 실행 계획 회귀 테스트
+ *
+ * 리포지토리(MemberRepositoryV0 ~ V4), 이체 함수(MemberProcedures), 존재 여부 필터, 키 사전,
+ * 잔액 집계 스캔, 회원 변경 피드, 부하 생성기가 실행하는 SQL 마다 (각 클래스의 SQL 상수)
+ * 데이터를 채운 스키마에서 EXPLAIN ANALYZE 를 실행해서 아래를 확인한다.
+ * - 기대한 인덱스를 사용하는지 (WHERE 조건이 바뀌거나 기본 키, 잔액 인덱스가 없어지면 실패)
+ * - 읽은 행 수(scanCount)가 기대한 범위 안인지
+ *
+ * H2 의 EXPLAIN 은 예상 행 수를 보여주지 않으므로 대표 파라미터로 실행했을 때 실제로 읽은 행 수를 기준으로 삼는다.
+ * 데이터를 바꾸는 SQL 도 실행되므로 트랜잭션 안에서 실행하고 롤백한다.
+ */
+@Slf4j
+class MemberQueryPlanTest {
+
+    private static final String PLAN_URL = "jdbc:h2:mem:plan;DB_CLOSE_DELAY=-1";
+    private static final int ROWS = 10_000;
+
+    private static final String PRIMARY_KEY = "PRIMARY_KEY";
+    private static final String MONEY_INDEX = MemberSchema.MONEY_INDEX.toUpperCase();
+    private static final String BALANCE_MONEY_INDEX = SurrogateKeySchema.BALANCE_MONEY_INDEX.toUpperCase();
+    private static final String KEY_UNIQUE = "CONSTRAINT_INDEX";
+
+    /**
+     * 인덱스 없이 전체를 읽는 것이 의도인 SQL
+     */
+    private static final String FULL_SCAN = null;
+
+    /**
+     * EXPLAIN 대상이 아닌 자바 함수 호출, 함수 안의 SQL 은 따로 확인
+     */
+    private static final String TRANSFER_CALL = "CALL " + MemberProcedures.TRANSFER_ALIAS + "(?, ?, ?)";
+
+    private static final Pattern SCAN_COUNT = Pattern.compile("/\\* scanCount: (\\d+) \\*/");
+
+    private static final Map<String, PlanCase> CASES = new LinkedHashMap<>();
+
+    static {
+
+        // MemberRepositoryV0 ~ V3 (같은 SQL 은 한 번만 확인)
+        for (String sql : new String[]{MemberRepositoryV0.SAVE_SQL, MemberRepositoryV1.SAVE_SQL, MemberRepositoryV2.SAVE_SQL, MemberRepositoryV3.SAVE_SQL}) {
+            add(sql, FULL_SCAN, 0, "new1", 100);
+        }
+
+        for (String sql : new String[]{MemberRepositoryV0.FIND_BY_ID_SQL, MemberRepositoryV1.FIND_BY_ID_SQL, MemberRepositoryV2.FIND_BY_ID_SQL}) {
+            add(sql, PRIMARY_KEY, 2, "P5");
+        }
+
+        for (String sql : new String[]{MemberRepositoryV0.UPDATE_SQL, MemberRepositoryV1.UPDATE_SQL, MemberRepositoryV2.UPDATE_SQL, MemberRepositoryV3.UPDATE_SQL}) {
+            add(sql, PRIMARY_KEY, 2, 100, "P5");
+        }
+
+        for (String sql : new String[]{MemberRepositoryV0.DELETE_SQL, MemberRepositoryV1.DELETE_SQL, MemberRepositoryV2.DELETE_SQL, MemberRepositoryV3.DELETE_SQL}) {
+            add(sql, PRIMARY_KEY, 2, "P5");
+        }
+
+        // MemberRepositoryV3
+        add(MemberRepositoryV3.MONEY_OF_SQL, PRIMARY_KEY, 2, "P5");
+        add(MemberRepositoryV3.MONEY_RANGE_SQL, MONEY_INDEX, 101, 1000, 50_000, 100);
+        add(MemberRepositoryV3.COUNT_BELOW_SQL, MONEY_INDEX, 2 * ROWS / 100, 1000);
+        add(MemberRepositoryV3.UPSERT_SQL, FULL_SCAN, 0, "P5", 100);
+
+        for (int i = 0; i < MemberRepositoryV3.IN_SHAPES.length; i++) {
+
+            int size = MemberRepositoryV3.IN_SHAPES[i];
+            Object[] params = new Object[size];
+
+            for (int j = 0; j < size; j++) {
+
+                params[j] = "P" + (j + 1);
+            }
+
+            add(MemberRepositoryV3.IN_SQLS[i], PRIMARY_KEY, size + 1, params);
+        }
+
+        // MemberProcedures.transfer
+        add(MemberProcedures.WITHDRAW_SQL, PRIMARY_KEY, 2, 1, "P5", 1);
+        add(MemberProcedures.DEPOSIT_SQL, PRIMARY_KEY, 2, 1, "P6");
+        add(MemberProcedures.EXISTS_SQL, PRIMARY_KEY, 2, "P5");
+
+        // MemberExistenceFilter (전체 키 스캔이 의도)
+        add(MemberExistenceFilter.COUNT_SQL, PRIMARY_KEY, 0);
+        add(MemberExistenceFilter.KEYS_SQL, FULL_SCAN, ROWS + 1);
+
+        // BalanceAggregateService (기본 키 범위마다 자기 범위만 읽음, 범위 경계는 키만 순서대로 한 번 읽음)
+        add(BalanceAggregateService.SCAN_RANGE_SQL, PRIMARY_KEY, ROWS / 8, "P2", "P3");
+        add(BalanceAggregateService.SCAN_TAIL_SQL, PRIMARY_KEY, ROWS / 8, "P9");
+        add(BalanceAggregateService.COUNT_SQL, PRIMARY_KEY, 0);
+        add(BalanceAggregateService.KEYS_SQL, PRIMARY_KEY, ROWS + 1);
+
+        // MemberChangeFeed (seq 기본 키 범위)
+        add(MemberChangeFeed.READ_SQL, PRIMARY_KEY, 51, ROWS - 100, 50);
+        add(MemberChangeFeed.READ_RANGE_SQL, PRIMARY_KEY, 52, 100, 150);
+        add(MemberChangeFeed.PURGE_SQL, PRIMARY_KEY, 101, 100);
+        add(MemberChangeFeed.LATEST_SEQ_SQL, FULL_SCAN, 0); // 행 키에서 바로 읽음 (direct lookup)
+        add(MemberChangeFeed.UNCOMMITTED_SESSIONS_SQL, FULL_SCAN, 100);
+
+        // TransferLoadGenerator (memberId 접두사)
+        add(TransferLoadGenerator.TOTAL_MONEY_SQL, PRIMARY_KEY, ROWS / 8, "P9%");
+        add(TransferLoadGenerator.DELETE_MEMBERS_SQL, PRIMARY_KEY, ROWS / 8, "P9%");
+
+        // MemberRepositoryV4, MemberKeyDictionary (int 대리 키)
+        add(MemberRepositoryV4.SAVE_SQL, FULL_SCAN, 0, ROWS + 1, 100);
+        add(MemberRepositoryV4.MONEY_OF_SQL, PRIMARY_KEY, 2, 5);
+        add(MemberRepositoryV4.MONEY_RANGE_SQL, BALANCE_MONEY_INDEX, 101, 1000, 50_000, 100);
+        add(MemberRepositoryV4.UPDATE_SQL, PRIMARY_KEY, 2, 100, 5);
+        add(MemberRepositoryV4.DELETE_SQL, PRIMARY_KEY, 2, 5);
+        add(MemberKeyDictionary.ASSIGN_SQL, FULL_SCAN, 0, "new1");
+        add(MemberKeyDictionary.KEY_OF_SQL, KEY_UNIQUE, 2, "P5");
+        add(MemberKeyDictionary.ID_OF_SQL, PRIMARY_KEY, 2, 5);
+        add(MemberKeyDictionary.LOAD_SQL, FULL_SCAN, ROWS + 1);
+    }
+
+    private static DriverManagerDataSource dataSource;
+
+    @BeforeAll
+    static void seed() throws SQLException {
+
+        dataSource = new DriverManagerDataSource(PLAN_URL, "sa", "");
+
+        MemberSchema.bootstrap(dataSource);
+        SurrogateKeySchema.bootstrap(dataSource);
+        MemberChangeFeed.install(dataSource);
+
+        // 잔액은 0 ~ 99,999 에 고르게 분포
+        execute("INSERT INTO member SELECT 'P' || X, MOD(X * 7919, 100000) FROM SYSTEM_RANGE(1, " + ROWS + ")");
+        execute("INSERT INTO member_key(memberId) SELECT 'P' || X FROM SYSTEM_RANGE(1, " + ROWS + ") ORDER BY X");
+        execute("INSERT INTO member_balance SELECT X, MOD(X * 7919, 100000) FROM SYSTEM_RANGE(1, " + ROWS + ")");
+        execute("ANALYZE");
+    }
+
+    @AfterAll
+    static void drop() throws SQLException {
+
+        execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    @DisplayName("모든 SQL 이 기대한 인덱스를 사용하고, 기대한 행 수 이하만 읽음")
+    void plans() throws SQLException {
+
+        for (PlanCase planCase : CASES.values()) {
+
+            String plan = explainAnalyze(planCase);
+
+            log.info("plan = {}", plan);
+
+            if (planCase.index != null) {
+
+                assertThat(plan).as(planCase.sql).contains("/* PUBLIC." + planCase.index).doesNotContain("tableScan");
+            }
+
+            assertThat(scanCount(plan)).as(planCase.sql).isLessThanOrEqualTo(planCase.maxScanCount);
+        }
+    }
+
+    @Test
+    @DisplayName("member 테이블의 기본 키가 memberId (INSERT, MERGE 중복 확인과 단건 조회가 기본 키 인덱스를 사용)")
+    void primaryKey() throws SQLException {
+
+        String sql = "SELECT COLUMN_NAME FROM INFORMATION_SCHEMA.INDEXES WHERE TABLE_NAME = 'MEMBER' AND PRIMARY_KEY = TRUE";
+
+        List<String> columns = new ArrayList<>();
+
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+
+                columns.add(rs.getString(1));
+            }
+        }
+
+        assertThat(columns).containsExactly("MEMBERID");
+    }
+
+    @Test
+    @DisplayName("MemberRepositoryV3 가 실행하는 SQL 은 모두 실행 계획 확인 대상")
+    void everyRepositoryStatementCovered() throws SQLException {
+
+        MemberRepositoryV3 repository = new MemberRepositoryV3(dataSource);
+
+        List<String> ids = new ArrayList<>();
+
+        for (int i = 1; i <= 128; i++) {
+
+            ids.add("P" + i);
+        }
+
+        repository.save(new Member("cover", 1000));
+        repository.findById("cover");
+        repository.findByIds(ids.subList(0, 1));
+        repository.findByIds(ids.subList(0, 8));
+        repository.findByIds(ids.subList(0, 32));
+        repository.findByIds(ids);
+        repository.findByMoneyRange(0, 1000, 10);
+        repository.countBelow(1000);
+        repository.upsertAll(List.of(new Member("cover", 2000)));
+        repository.update("cover", 3000);
+        repository.transfer("cover", "P1", 100);
+        repository.delete("cover");
+
+        List<String> shapes = new ArrayList<>(repository.getStatementShapes());
+
+        assertThat(shapes.remove(TRANSFER_CALL)).isTrue();
+
+        assertThat(CASES.keySet()).containsAll(shapes);
+    }
+
+    private static void add(String sql, String index, long maxScanCount, Object... params) {
+
+        CASES.put(sql, new PlanCase(sql, index, maxScanCount, params));
+    }
+
+    private String explainAnalyze(PlanCase planCase) throws SQLException {
+
+        try (Connection conn = dataSource.getConnection()) {
+
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement pstmt = conn.prepareStatement("EXPLAIN ANALYZE " + planCase.sql)) {
+
+                for (int i = 0; i < planCase.params.size(); i++) {
+
+                    pstmt.setObject(i + 1, planCase.params.get(i));
+                }
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+
+                    rs.next();
+
+                    return rs.getString(1);
+                }
+            }
+            finally {
+
+                conn.rollback();
+            }
+        }
+    }
+
+    private static long scanCount(String plan) {
+
+        long total = 0;
+
+        Matcher matcher = SCAN_COUNT.matcher(plan);
+
+        while (matcher.find()) {
+
+            total += Long.parseLong(matcher.group(1));
+        }
+
+        return total;
+    }
+
+    private static void execute(String sql) throws SQLException {
+
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+
+            stmt.execute(sql);
+        }
+    }
+
+    private static class PlanCase {
+
+        private final String sql;
+        private final String index;
+        private final long maxScanCount;
+        private final List<Object> params;
+
+        private PlanCase(String sql, String index, long maxScanCount, Object[] params) {
+            this.sql = sql;
+            this.index = index;
+            this.maxScanCount = maxScanCount;
+            this.params = Collections.unmodifiableList(Arrays.asList(params));
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package hello.jdbc.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class MemberRepositoryV3Test {
+
+    private static final int MEMBER_COUNT = 300;
+
+    /**
+     * JIT 가 결과를 버리지 못하도록 보관
+     */
+    private static volatile Object sink;
+
+    private HikariDataSource dataSource;
+    private MemberRepositoryV3 repository;
+
+    @BeforeEach
+    void beforeEach() {
+
+        dataSource = new HikariDataSource();
+
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+
+        repository = new MemberRepositoryV3(dataSource);
+    }
+
+    @AfterEach
+    void afterEach() throws SQLException {
+
+        for (int i = 0; i < MEMBER_COUNT; i++) {
+
+            repository.delete(memberId(i));
+        }
+
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("여러 회원 한 번에 조회 - 없는 회원은 예외 없이 missing 으로 반환")
+    void findByIds() throws SQLException {
+
+        List<String> ids = new ArrayList<>();
+
+        for (int i = 0; i < MEMBER_COUNT; i++) {
+
+            repository.save(new Member(memberId(i), i));
+
+            ids.add(memberId(i));
+        }
+
+        // 중복 키, 없는 키 포함
+        ids.add(memberId(0));
+        ids.add("none1");
+        ids.add("none2");
+
+        MemberLookupResult result = repository.findByIds(ids);
+        Map<String, Member> found = result.getFound();
+
+        assertThat(found).hasSize(MEMBER_COUNT);
+        assertThat(found).doesNotContainKeys("none1", "none2");
+        assertThat(found.get(memberId(299))).isEqualTo(new Member(memberId(299), 299));
+        assertThat(result.getMissing()).containsExactly("none1", "none2");
+    }
+
+    @Test
+    @DisplayName("빈 목록 조회")
+    void findByIdsEmpty() throws SQLException {
+
+        assertThat(repository.findByIds(List.of()).getFound()).isEmpty();
+        assertThat(repository.findByIds(List.of()).getMissing()).isEmpty();
+        assertThat(repository.findByIds(List.of("none1")).getFound()).isEmpty();
+        assertThat(repository.findByIds(List.of("none1")).getMissing()).containsExactly("none1");
+    }
+
+    @Test
+    @DisplayName("등록/수정 건수를 구분해서 MERGE")
+    void upsertAll() throws SQLException {
+
+        // 절반만 미리 등록
+        for (int i = 0; i < MEMBER_COUNT / 2; i++) {
+
+            repository.save(new Member(memberId(i), 0));
+        }
+
+        List<Member> feed = new ArrayList<>();
+
+        for (int i = 0; i < MEMBER_COUNT; i++) {
+
+            feed.add(new Member(memberId(i), 1000 + i));
+        }
+
+        UpsertResult result = repository.upsertAll(feed);
+
+        assertThat(result.getInserted()).isEqualTo(MEMBER_COUNT / 2);
+        assertThat(result.getUpdated()).isEqualTo(MEMBER_COUNT / 2);
+
+        assertThat(repository.findById(memberId(0)).getMoney()).isEqualTo(1000);
+        assertThat(repository.findById(memberId(MEMBER_COUNT - 1)).getMoney()).isEqualTo(1000 + MEMBER_COUNT - 1);
+    }
+
+    @Test
+    @DisplayName("예외 없는 조회 - Optional, 잔액 sentinel, consumer")
+    void lookupWithoutException() throws SQLException {
+
+        repository.save(new Member(memberId(0), 500));
+
+        assertThat(repository.findOptionalById(memberId(0))).contains(new Member(memberId(0), 500));
+        assertThat(repository.findOptionalById("none1")).isEmpty();
+
+        assertThat(repository.moneyOf(memberId(0))).isEqualTo(500);
+        assertThat(repository.moneyOf("none1")).isEqualTo(MemberRepositoryV3.MONEY_NOT_FOUND);
+
+        List<String> found = new ArrayList<>();
+
+        assertThat(repository.findById(memberId(0), (id, money) -> found.add(id + ":" + money))).isTrue();
+        assertThat(repository.findById("none1", (id, money) -> found.add(id + ":" + money))).isFalse();
+        assertThat(found).containsExactly(memberId(0) + ":500");
+
+        // 예외로 알리는 조회는 스택 트레이스 없는 예외
+        assertThatThrownBy(() -> repository.findById("none1"))
+                .isInstanceOf(MemberNotFoundException.class)
+                .isInstanceOf(NoSuchElementException.class)
+                .hasMessage("member not found. memberId = none1")
+                .satisfies(e -> assertThat(e.getStackTrace()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("잔액 범위 조회와 기준 미만 회원 수")
+    void moneyRange() throws SQLException {
+
+        MemberSchema.bootstrap(dataSource);
+
+        // 다른 데이터와 겹치지 않도록 음수 잔액 사용
+        for (int i = 0; i < MEMBER_COUNT; i++) {
+
+            repository.save(new Member(memberId(i), -1000 + i));
+        }
+
+        List<Member> found = repository.findByMoneyRange(-1000, -901, 50);
+
+        assertThat(found).hasSize(50);
+        assertThat(found.get(0)).isEqualTo(new Member(memberId(0), -1000));
+        assertThat(found.get(49)).isEqualTo(new Member(memberId(49), -951));
+
+        assertThat(repository.findByMoneyRange(-720, -600, 1000)).hasSize(20);
+        assertThat(repository.countBelow(-900)).isEqualTo(100);
+    }
+
+    /**
+     * 조회 실패 한 건당 할당량 비교 (쓰레드 할당 카운터 사용)
+     *
+     * - 예외 생성 : NoSuchElementException(메시지 + 스택 트레이스) vs MemberNotFoundException
+     * - 조회 실패 : findById() 예외 vs moneyOf() sentinel (JDBC 드라이버 할당 포함)
+     */
+    @Test
+    @DisplayName("조회 실패 할당량 비교")
+    void missAllocation() throws SQLException {
+
+        int count = 10_000;
+
+        long stackful = allocatedBytes(() -> {
+
+            for (int i = 0; i < count; i++) {
+
+                sink = new NoSuchElementException("member not found. memberId = " + memberId(i));
+            }
+        });
+
+        long stackless = allocatedBytes(() -> {
+
+            for (int i = 0; i < count; i++) {
+
+                sink = new MemberNotFoundException("none1");
+            }
+        });
+
+        log.info("exception bytes per miss : NoSuchElementException = {}, MemberNotFoundException = {}",
+                stackful / count, stackless / count);
+
+        int queries = 200;
+
+        long throwing = allocatedBytes(() -> {
+
+            for (int i = 0; i < queries; i++) {
+
+                try {
+                    repository.findById("none1");
+                }
+                catch (MemberNotFoundException | SQLException e) {
+                    sink = e;
+                }
+            }
+        });
+
+        long sentinel = allocatedBytes(() -> {
+
+            for (int i = 0; i < queries; i++) {
+
+                try {
+                    sink = repository.moneyOf("none1");
+                }
+                catch (SQLException e) {
+                    sink = e;
+                }
+            }
+        });
+
+        log.info("lookup bytes per miss : findById = {}, moneyOf = {}", throwing / queries, sentinel / queries);
+
+        assertThat(stackless).isLessThan(stackful / 4);
+    }
+
+    @Test
+    @DisplayName("upsertAll 롤백이 실패해도 원래 예외를 던지고 롤백 예외는 suppressed 로 보존")
+    void upsertAllRollbackFailure() {
+
+        DataSource failingRollback = new DelegatingDataSource(dataSource) {
+
+            @Override
+            public Connection getConnection() throws SQLException {
+
+                Connection target = super.getConnection();
+
+                return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+
+                    if (method.getName().equals("rollback")) {
+
+                        throw new SQLException("rollback failed");
+                    }
+
+                    try {
+
+                        return method.invoke(target, args);
+                    }
+                    catch (InvocationTargetException e) {
+
+                        throw e.getCause();
+                    }
+                });
+            }
+        };
+
+        MemberRepositoryV3 failing = new MemberRepositoryV3(failingRollback);
+
+        // memberId 는 VARCHAR(10) 이므로 배치 실행이 실패
+        List<Member> feed = List.of(new Member(memberId(0), 1), new Member("toolongmemberid", 2));
+
+        assertThatThrownBy(() -> failing.upsertAll(feed))
+                .isInstanceOf(SQLException.class)
+                .hasMessageNotContaining("rollback failed")
+                .satisfies(e -> assertThat(e.getSuppressed()).extracting(Throwable::getMessage).containsExactly("rollback failed"));
+    }
+
+    private long allocatedBytes(Runnable task) {
+
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        // 워밍업
+        task.run();
+
+        long before = threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+        task.run();
+
+        return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+    }
+
+    private String memberId(int i) {
+
+        return "M" + i;
+    }
+}
@@ -0,0 +1,319 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import hello.jdbc.jfr.StatementEvent;
+import hello.jdbc.transaction.Deadline;
+import hello.jdbc.transaction.DeadlineExceededException;
+import hello.jdbc.transaction.QueryTimeout;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * int 대리 키 - 사전 인코딩
+ *
+ * memberId(가변 길이 문자열) 대신 사전(MemberKeyDictionary)이 발급한 int 키(memberKey)로 member_balance 에 저장한다.
+ * 기본 키와 잔액 인덱스의 항목이 4바이트 int 로 줄고, 키 비교가 문자열 비교 대신 int 비교가 된다.
+ *
+ * 메서드의 인자와 결과는 V3 와 같이 memberId 를 사용하고, 리포지토리 안에서만 키로 바꾼다.
+ * - 키가 발급되지 않은 memberId 는 member_balance 를 조회하지 않고 없는 회원 (사전 조회는 negativeTtl 에 한 번)
+ * - 사전은 메모리에 캐시되므로 키 변환에는 보통 데이터베이스 왕복이 없다.
+ *
+ * member_balance 는 member 테이블과 동기화되지 않는 별도 저장소다.
+ * V4 는 대리 키의 크기, 속도를 측정하기 위한 테스트 전용 구현이므로 애플리케이션 코드(src/main)에 포함하지 않는다.
+ * member 를 쓰는 V3, 잔액 집계, 회원 변경 피드와 같은 회원을 다루지 않고, 스키마도 SurrogateKeySchema.bootstrap() 으로 따로 만든다.
+ *
+ * 커넥션과 데드라인은 V3 와 같이 처리한다. (DataSourceUtils, 쿼리 타임아웃, JFR 이벤트)
+ */
+@Slf4j
+public class MemberRepositoryV4 {
+
+    static final String SAVE_SQL = "INSERT INTO member_balance(memberKey, money) VALUES (?, ?)";
+    static final String MONEY_OF_SQL = "SELECT money FROM member_balance WHERE memberKey = ?";
+    static final String MONEY_RANGE_SQL = "SELECT memberKey, money FROM member_balance WHERE money BETWEEN ? AND ? ORDER BY money, memberKey LIMIT ?";
+    static final String UPDATE_SQL = "UPDATE member_balance SET money = ? WHERE memberKey = ?";
+    static final String DELETE_SQL = "DELETE FROM member_balance WHERE memberKey = ?";
+
+    private static final int RANGE_FETCH_SIZE = 1000;
+
+    private final DataSource dataSource;
+    private final MemberKeyDictionary dictionary;
+
+    public MemberRepositoryV4(DataSource dataSource, MemberKeyDictionary dictionary) {
+        this.dataSource = dataSource;
+        this.dictionary = dictionary;
+    }
+
+    public Member save(Member member) throws SQLException {
+
+        String sql = SAVE_SQL;
+
+        int key = dictionary.assign(member.getMemberId());
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+
+        try {
+
+            conn = getConnection();
+            pstmt = conn.prepareStatement(sql);
+            applyDeadline(pstmt);
+
+            pstmt.setInt(1, key);
+            pstmt.setInt(2, member.getMoney());
+
+            StatementEvent event = StatementEvent.start("memberV4.save");
+
+            event.finish(pstmt.executeUpdate());
+
+            return member;
+        }
+        catch (SQLException e) {
+
+            log.info("DB Error = {}", e);
+
+            checkDeadline(e);
+
+            throw e;
+        }
+        finally {
+
+            close(conn, pstmt, null);
+        }
+    }
+
+    /**
+     * 회원 조회, 없으면 MemberNotFoundException
+     */
+    public Member findById(String memberId) throws SQLException {
+
+        long money = moneyOf(memberId);
+
+        if (money == MemberRepositoryV3.MONEY_NOT_FOUND) {
+
+            throw new MemberNotFoundException(memberId);
+        }
+
+        return new Member(memberId, (int) money);
+    }
+
+    /**
+     * 회원의 잔액 조회
+     *
+     * @param memberId
+     * @return 잔액, 회원이 없으면 MemberRepositoryV3.MONEY_NOT_FOUND
+     * @throws SQLException
+     */
+    public long moneyOf(String memberId) throws SQLException {
+
+        int key = dictionary.keyOf(memberId);
+
+        if (key == MemberKeyDictionary.NO_KEY) {
+
+            return MemberRepositoryV3.MONEY_NOT_FOUND;
+        }
+
+        return moneyOf(key);
+    }
+
+    /**
+     * 키로 잔액 조회 (사전 변환을 마친 호출자용)
+     */
+    public long moneyOf(int key) throws SQLException {
+
+        String sql = MONEY_OF_SQL;
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+
+            conn = getConnection();
+            pstmt = conn.prepareStatement(sql);
+            applyDeadline(pstmt);
+
+            pstmt.setInt(1, key);
+
+            StatementEvent event = StatementEvent.start("memberV4.findById");
+
+            rs = pstmt.executeQuery();
+
+            boolean found = rs.next();
+
+            event.finish(found ? 1 : 0);
+
+            return found ? rs.getInt(1) : MemberRepositoryV3.MONEY_NOT_FOUND;
+        }
+        catch (SQLException e) {
+
+            log.info("DB Error = {}", e);
+
+            checkDeadline(e);
+
+            throw e;
+        }
+        finally {
+
+            close(conn, pstmt, rs);
+        }
+    }
+
+    /**
+     * 잔액이 min 이상 max 이하인 회원을 잔액 순으로 조회
+     *
+     * 결과의 키는 사전으로 memberId 로 바꿔서 돌려준다.
+     */
+    public List<Member> findByMoneyRange(int min, int max, int limit) throws SQLException {
+
+        String sql = MONEY_RANGE_SQL;
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+
+            conn = getConnection();
+            pstmt = conn.prepareStatement(sql);
+            applyDeadline(pstmt);
+
+            pstmt.setFetchSize(RANGE_FETCH_SIZE);
+            pstmt.setInt(1, min);
+            pstmt.setInt(2, max);
+            pstmt.setInt(3, limit);
+
+            StatementEvent event = StatementEvent.start("memberV4.findByMoneyRange");
+
+            rs = pstmt.executeQuery();
+
+            List<Member> members = new ArrayList<>(Math.min(limit, RANGE_FETCH_SIZE));
+
+            while (rs.next()) {
+
+                // 결과를 읽는 중이므로 사전에 없는 키는 같은 커넥션으로 조회
+                members.add(new Member(dictionary.idOf(rs.getInt(1), conn), rs.getInt(2)));
+            }
+
+            event.finish(members.size());
+
+            return members;
+        }
+        catch (SQLException e) {
+
+            log.info("DB Error = {}", e);
+
+            checkDeadline(e);
+
+            throw e;
+        }
+        finally {
+
+            close(conn, pstmt, rs);
+        }
+    }
+
+    public void update(String memberId, int money) throws SQLException {
+
+        int key = dictionary.keyOf(memberId);
+
+        if (key == MemberKeyDictionary.NO_KEY) {
+
+            log.info("resultSize = 0, unknown memberId = {}", memberId);
+
+            return;
+        }
+
+        execute("memberV4.update", UPDATE_SQL, money, key);
+    }
+
+    /**
+     * 회원 삭제, 사전의 키는 그대로 남는다. (다시 가입하면 같은 키)
+     */
+    public void delete(String memberId) throws SQLException {
+
+        int key = dictionary.keyOf(memberId);
+
+        if (key == MemberKeyDictionary.NO_KEY) {
+
+            return;
+        }
+
+        execute("memberV4.delete", DELETE_SQL, key);
+    }
+
+    private void execute(String sqlId, String sql, int... params) throws SQLException {
+
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+
+        try {
+
+            conn = getConnection();
+            pstmt = conn.prepareStatement(sql);
+            applyDeadline(pstmt);
+
+            for (int i = 0; i < params.length; i++) {
+
+                pstmt.setInt(i + 1, params[i]);
+            }
+
+            StatementEvent event = StatementEvent.start(sqlId);
+
+            int resultSize = pstmt.executeUpdate();
+
+            event.finish(resultSize);
+
+            log.info("resultSize = {}", resultSize);
+        }
+        catch (SQLException e) {
+
+            log.error("DB Error = {}", e);
+
+            checkDeadline(e);
+
+            throw e;
+        }
+        finally {
+
+            close(conn, pstmt, null);
+        }
+    }
+
+    private Connection getConnection() throws SQLException {
+
+        Deadline.checkCurrent("connection checkout");
+
+        return DataSourceUtils.getConnection(dataSource);
+    }
+
+    private void applyDeadline(PreparedStatement pstmt) throws SQLException {
+
+        QueryTimeout.apply(pstmt, dataSource);
+    }
+
+    private void checkDeadline(SQLException e) {
+
+        if (Deadline.isCurrentExpired()) {
+
+            throw new DeadlineExceededException("statement execution", e);
+        }
+    }
+
+    private void close(Connection conn, Statement st, ResultSet rs) {
+
+        JdbcUtils.closeResultSet(rs);
+        JdbcUtils.closeStatement(st);
+        DataSourceUtils.releaseConnection(conn, dataSource);
+    }
+}
@@ -0,0 +1,154 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 사전과 키 테이블을 새로 만들기 위해 테스트 전용 메모리 데이터베이스를 사용
+ */
+class MemberRepositoryV4Test {
+
+    private static final String KEYED_URL = "jdbc:h2:mem:keyed;DB_CLOSE_DELAY=-1";
+
+    private DriverManagerDataSource dataSource;
+    private MemberKeyDictionary dictionary;
+    private MemberRepositoryV4 repository;
+
+    @BeforeEach
+    void before() throws SQLException {
+
+        dataSource = new DriverManagerDataSource(KEYED_URL, "sa", "");
+
+        SurrogateKeySchema.bootstrap(dataSource);
+
+        dictionary = new MemberKeyDictionary(dataSource);
+        repository = new MemberRepositoryV4(dataSource, dictionary);
+    }
+
+    @AfterEach
+    void after() throws SQLException {
+
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+
+            stmt.execute("DROP ALL OBJECTS");
+        }
+    }
+
+    @Test
+    @DisplayName("memberId 로 저장, 조회, 수정, 삭제 - 안에서는 int 키 사용")
+    void crud() throws SQLException {
+
+        repository.save(new Member("memberA", 10000));
+        repository.save(new Member("memberB", 20000));
+
+        assertThat(repository.findById("memberA").getMoney()).isEqualTo(10000);
+        assertThat(repository.moneyOf(dictionary.keyOf("memberB"))).isEqualTo(20000);
+
+        repository.update("memberA", 15000);
+
+        assertThat(repository.findByMoneyRange(0, 100000, 10))
+                .containsExactly(new Member("memberA", 15000), new Member("memberB", 20000));
+
+        repository.delete("memberA");
+
+        assertThatThrownBy(() -> repository.findById("memberA")).isInstanceOf(MemberNotFoundException.class);
+
+        // 키가 없는 회원은 member_balance 를 조회하지 않고, 사전 조회도 negativeTtl 동안 한 번
+        long misses = dictionary.getMisses();
+
+        assertThat(repository.moneyOf("nobody")).isEqualTo(MemberRepositoryV3.MONEY_NOT_FOUND);
+        assertThat(repository.moneyOf("nobody")).isEqualTo(MemberRepositoryV3.MONEY_NOT_FOUND);
+        assertThat(dictionary.getMisses()).isEqualTo(misses + 1);
+
+        // 가입하면 바로 찾음
+        repository.save(new Member("nobody", 500));
+
+        assertThat(repository.moneyOf("nobody")).isEqualTo(500);
+
+        // 삭제 후 다시 가입하면 같은 키
+        int key = dictionary.keyOf("memberA");
+
+        repository.save(new Member("memberA", 1));
+
+        assertThat(dictionary.keyOf("memberA")).isEqualTo(key);
+    }
+
+    @Test
+    @DisplayName("키는 1부터 빈틈 없이 발급되고, 새 사전도 테이블에서 같은 키를 읽음")
+    void denseKeys() throws SQLException {
+
+        for (int i = 0; i < 3000; i++) {
+
+            assertThat(dictionary.assign("K" + i)).isEqualTo(i + 1);
+        }
+
+        assertThat(dictionary.assign("K42")).isEqualTo(43);
+
+        MemberKeyDictionary reloaded = new MemberKeyDictionary(dataSource);
+
+        assertThat(reloaded.load()).isEqualTo(3000);
+        assertThat(reloaded.keyOf("K2999")).isEqualTo(3000);
+        assertThat(reloaded.idOf(1)).isEqualTo("K0");
+        assertThat(reloaded.getMisses()).isZero();
+    }
+
+    @Test
+    @DisplayName("캐시에 없는 키는 범위 조회 중인 커넥션으로 memberId 를 찾음")
+    void coldDictionaryUsesCallerConnection() throws SQLException {
+
+        repository.save(new Member("memberA", 10000));
+        repository.save(new Member("memberB", 20000));
+
+        AtomicInteger acquisitions = new AtomicInteger();
+
+        DelegatingDataSource counting = new DelegatingDataSource(dataSource) {
+
+            @Override
+            public Connection getConnection() throws SQLException {
+
+                acquisitions.incrementAndGet();
+
+                return super.getConnection();
+            }
+        };
+
+        MemberKeyDictionary cold = new MemberKeyDictionary(counting);
+
+        assertThat(new MemberRepositoryV4(counting, cold).findByMoneyRange(0, 100000, 10))
+                .containsExactly(new Member("memberA", 10000), new Member("memberB", 20000));
+        assertThat(cold.getMisses()).isEqualTo(2);
+        assertThat(acquisitions.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("오픈 어드레싱 맵 - 늘어나도 모든 키를 찾고, 없는 키는 missingValue")
+    void stringIntMap() {
+
+        StringIntMap map = new StringIntMap(4, -1);
+
+        for (int i = 0; i < 100_000; i++) {
+
+            map.put("member" + i, i);
+        }
+
+        map.put("member7", 70);
+
+        assertThat(map.size()).isEqualTo(100_000);
+        assertThat(map.get("member99999")).isEqualTo(99999);
+        assertThat(map.get("member7")).isEqualTo(70);
+        assertThat(map.get("none")).isEqualTo(-1);
+    }
+}
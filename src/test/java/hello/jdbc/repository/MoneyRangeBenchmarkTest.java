@@ -0,0 +1,122 @@
+package hello.jdbc.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 잔액 인덱스 유무에 따른 범위 조회 비교
+ *
+ * 실행 시간을 비교하므로 기본 테스트에서는 제외하고, -Dbench.rows 를 지정했을 때만 실행 (예: -Dbench.rows=10000000)
+ * 공유 데이터베이스에 대량의 행을 넣지 않도록 임시 디렉토리의 파일 데이터베이스를 사용 (메모리 데이터베이스는 천만 건을 담지 못함)
+ */
+@Slf4j
+class MoneyRangeBenchmarkTest {
+
+    private static final int ROWS = Integer.getInteger("bench.rows", 0);
+    private static final int ROUNDS = 20;
+    private static final int INSERT_CHUNK = 1_000_000;
+
+    @TempDir
+    Path tempDir;
+
+    private DriverManagerDataSource dataSource;
+    private MemberRepositoryV3 repository;
+
+    @BeforeEach
+    void before() throws SQLException {
+
+        dataSource = new DriverManagerDataSource("jdbc:h2:" + tempDir.resolve("range").toAbsolutePath() + ";DB_CLOSE_DELAY=-1", "sa", "");
+
+        // 대량 등록은 인덱스 없이 한 뒤 bootstrap 으로 인덱스 생성
+        execute("CREATE TABLE member (memberId VARCHAR(10), money INTEGER NOT NULL DEFAULT 0, PRIMARY KEY (memberId))");
+
+        // 잔액 0 ~ 999,999 무작위, 한 트랜잭션이 너무 커지지 않도록 나눠서 등록
+        for (int from = 1; from <= ROWS; from += INSERT_CHUNK) {
+
+            int to = Math.min(from + INSERT_CHUNK - 1, ROWS);
+
+            execute("INSERT INTO member SELECT 'B' || X, CAST(RAND() * 1000000 AS INT) FROM SYSTEM_RANGE(" + from + ", " + to + ")");
+        }
+
+        MemberSchema.bootstrap(dataSource);
+
+        repository = new MemberRepositoryV3(dataSource);
+    }
+
+    @AfterEach
+    void after() throws SQLException {
+
+        execute("SHUTDOWN");
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "bench.rows", matches = "\\d+")
+    @DisplayName("잔액 인덱스가 있으면 범위 조회가 빨라진다")
+    void withAndWithoutIndex() throws SQLException {
+
+        long[] indexed = measure();
+        long found = repository.countBelow(1000);
+
+        execute("DROP INDEX " + MemberSchema.MONEY_INDEX);
+
+        long[] fullScan = measure();
+
+        log.info("rows = {}, range(limit 100) : index = {}us, full scan = {}us", ROWS, indexed[0] / 1000, fullScan[0] / 1000);
+        log.info("rows = {}, countBelow : index = {}us, full scan = {}us", ROWS, indexed[1] / 1000, fullScan[1] / 1000);
+
+        assertThat(repository.countBelow(1000)).isEqualTo(found);
+        assertThat(indexed[0]).isLessThan(fullScan[0]);
+        assertThat(indexed[1]).isLessThan(fullScan[1]);
+    }
+
+    /**
+     * @return 범위 조회, 기준 미만 회원 수 조회 한 번의 평균 시간 (나노초)
+     */
+    private long[] measure() throws SQLException {
+
+        // 워밍업
+        repository.findByMoneyRange(500_000, 510_000, 100);
+        repository.countBelow(1000);
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < ROUNDS; i++) {
+
+            assertThat(repository.findByMoneyRange(500_000, 510_000, 100)).hasSizeLessThanOrEqualTo(100);
+        }
+
+        long range = (System.nanoTime() - start) / ROUNDS;
+
+        start = System.nanoTime();
+
+        for (int i = 0; i < ROUNDS; i++) {
+
+            repository.countBelow(1000);
+        }
+
+        long count = (System.nanoTime() - start) / ROUNDS;
+
+        return new long[]{range, count};
+    }
+
+    private void execute(String sql) throws SQLException {
+
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+
+            stmt.execute(sql);
+        }
+    }
+}
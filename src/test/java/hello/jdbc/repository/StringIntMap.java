@@ -0,0 +1,123 @@
+package hello.jdbc.repository;
+
+import java.util.Arrays;
+
+/**
+ * 문자열 -> int 오픈 어드레싱 해시 맵 (선형 탐색)
+ *
+ * HashMap<String, Integer> 는 항목마다 Node 와 Integer 객체를 만들지만,
+ * 이 맵은 키 배열과 값 배열 두 개만 사용하고 값을 박싱하지 않는다.
+ *
+ * - 용량은 2의 거듭제곱, 채워진 비율이 LOAD_FACTOR 를 넘으면 두 배로 늘림
+ * - 삭제는 지원하지 않는다. (사전의 키는 한 번 발급되면 바뀌지 않음)
+ * - 동기화하지 않으므로 여러 쓰레드에서 사용하면 호출하는 쪽에서 락을 잡는다.
+ */
+final class StringIntMap {
+
+    private static final double LOAD_FACTOR = 0.5;
+
+    private final int missingValue;
+
+    private String[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    /**
+     * @param expectedSize
+     * @param missingValue 키가 없을 때 get() 이 반환하는 값
+     */
+    StringIntMap(int expectedSize, int missingValue) {
+
+        int capacity = Integer.highestOneBit((int) Math.max(2, Math.min(1 << 30, expectedSize / LOAD_FACTOR)) * 2 - 1);
+
+        this.missingValue = missingValue;
+        this.keys = new String[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    int get(String key) {
+
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+
+            String candidate = keys[slot];
+
+            if (candidate == null) {
+
+                return missingValue;
+            }
+
+            if (candidate.equals(key)) {
+
+                return values[slot];
+            }
+        }
+    }
+
+    void put(String key, int value) {
+
+        if (size + 1 > keys.length * LOAD_FACTOR) {
+
+            resize(keys.length * 2);
+        }
+
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+
+            String candidate = keys[slot];
+
+            if (candidate == null) {
+
+                keys[slot] = key;
+                values[slot] = value;
+                size++;
+
+                return;
+            }
+
+            if (candidate.equals(key)) {
+
+                values[slot] = value;
+
+                return;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    private int slot(String key) {
+
+        // String.hashCode() 의 하위 비트가 고르게 퍼지도록 섞음
+        int h = key.hashCode() * 0x9E3779B9;
+
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void resize(int capacity) {
+
+        String[] oldKeys = keys;
+        int[] oldValues = values;
+
+        keys = new String[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        size = 0;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+
+            if (oldKeys[i] != null) {
+
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package hello.jdbc.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 문자열 기본 키(member)와 int 대리 키(member_balance) 비교
+ *
+ * - 크기 : 같은 회원을 각각 등록한 파일 데이터베이스를 SHUTDOWN COMPACT 한 뒤의 파일 크기
+ *   잔액 인덱스를 만들기 전후의 차이를 인덱스 크기로 본다.
+ * - 조회 : 같은 PreparedStatement 로 무작위 회원 잔액 단건 조회, 사전 변환을 포함한 경우도 측정
+ *
+ * 실행 시간을 비교하므로 기본 테스트에서는 제외하고, -Dbench.rows 를 지정했을 때만 실행 (예: -Dbench.rows=10000000)
+ */
+@Slf4j
+class SurrogateKeyBenchmarkTest {
+
+    private static final int ROWS = Integer.getInteger("bench.rows", 0);
+    private static final int LOOKUPS = 50_000;
+
+    /**
+     * JIT 가 조회 결과를 버리지 못하도록 보관
+     */
+    private static volatile long sink;
+
+    /**
+     * memberId 는 VARCHAR(10) 을 채우는 10자리 ('M' + 9자리 숫자)
+     */
+    private static final String MEMBER_ID = "'M' || LPAD(X, 9, '0')";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @EnabledIfSystemProperty(named = "bench.rows", matches = "\\d+")
+    @DisplayName("int 대리 키는 테이블, 인덱스가 작고 조회가 빠르다")
+    void stringKeyVsIntKey() throws SQLException {
+
+        String stringUrl = url("string");
+        String intUrl = url("int");
+
+        // 문자열 키
+        execute(stringUrl, MemberSchema.CREATE_TABLE);
+        execute(stringUrl, "INSERT INTO member SELECT " + MEMBER_ID + ", MOD(X * 7919, 1000000) FROM SYSTEM_RANGE(1, " + ROWS + ")");
+
+        long stringTable = compactedSize(stringUrl, "string");
+
+        execute(stringUrl, MemberSchema.CREATE_MONEY_INDEX);
+
+        long stringIndexed = compactedSize(stringUrl, "string");
+
+        // int 키, 사전은 따로 측정
+        execute(intUrl, SurrogateKeySchema.CREATE_BALANCE_TABLE);
+        execute(intUrl, "INSERT INTO member_balance SELECT X, MOD(X * 7919, 1000000) FROM SYSTEM_RANGE(1, " + ROWS + ")");
+
+        long intTable = compactedSize(intUrl, "int");
+
+        execute(intUrl, SurrogateKeySchema.CREATE_BALANCE_MONEY_INDEX);
+
+        long intIndexed = compactedSize(intUrl, "int");
+
+        execute(intUrl, SurrogateKeySchema.CREATE_KEY_TABLE);
+        execute(intUrl, "INSERT INTO member_key(memberId) SELECT " + MEMBER_ID + " FROM SYSTEM_RANGE(1, " + ROWS + ") ORDER BY X");
+
+        long intWithDictionary = compactedSize(intUrl, "int");
+
+        log.info("rows = {}, table : string key = {}KB, int key = {}KB", ROWS, stringTable / 1024, intTable / 1024);
+        log.info("rows = {}, money index : string key = {}KB, int key = {}KB",
+                ROWS, (stringIndexed - stringTable) / 1024, (intIndexed - intTable) / 1024);
+        log.info("rows = {}, dictionary (member_key) = {}KB", ROWS, (intWithDictionary - intIndexed) / 1024);
+
+        // 조회 시간
+        long[] lookups = measureLookups(stringUrl, intUrl);
+
+        log.info("rows = {}, lookup : string key = {}ns, int key = {}ns, int key + dictionary = {}ns",
+                ROWS, lookups[0], lookups[1], lookups[2]);
+
+        assertThat(intTable).isLessThan(stringTable);
+        assertThat(intIndexed).isLessThan(stringIndexed);
+    }
+
+    /**
+     * 리포지토리의 로그, 커넥션 처리 비용을 빼고 같은 PreparedStatement 로 키 조회만 비교
+     *
+     * @return 문자열 키, int 키, memberId -> 사전 -> int 키 조회의 평균 시간(ns)
+     */
+    private long[] measureLookups(String stringUrl, String intUrl) throws SQLException {
+
+        DriverManagerDataSource intDataSource = new DriverManagerDataSource(intUrl, "sa", "");
+
+        MemberKeyDictionary dictionary = new MemberKeyDictionary(intDataSource);
+
+        dictionary.load();
+
+        try (Connection stringConn = new DriverManagerDataSource(stringUrl, "sa", "").getConnection();
+             Connection intConn = intDataSource.getConnection();
+             PreparedStatement byId = stringConn.prepareStatement("SELECT money FROM member WHERE memberId = ?");
+             PreparedStatement byKey = intConn.prepareStatement("SELECT money FROM member_balance WHERE memberKey = ?")) {
+
+            long[] result = new long[3];
+
+            // 첫 번째 반복은 JIT 준비
+            for (int round = 0; round < 2; round++) {
+
+                Random random = new Random(11);
+                long start = System.nanoTime();
+
+                for (int i = 0; i < LOOKUPS; i++) {
+
+                    byId.setString(1, memberId(1 + random.nextInt(ROWS)));
+                    sink += money(byId);
+                }
+
+                result[0] = (System.nanoTime() - start) / LOOKUPS;
+
+                random = new Random(11);
+                start = System.nanoTime();
+
+                for (int i = 0; i < LOOKUPS; i++) {
+
+                    byKey.setInt(1, 1 + random.nextInt(ROWS));
+                    sink += money(byKey);
+                }
+
+                result[1] = (System.nanoTime() - start) / LOOKUPS;
+
+                random = new Random(11);
+                start = System.nanoTime();
+
+                for (int i = 0; i < LOOKUPS; i++) {
+
+                    byKey.setInt(1, dictionary.keyOf(memberId(1 + random.nextInt(ROWS))));
+                    sink += money(byKey);
+                }
+
+                result[2] = (System.nanoTime() - start) / LOOKUPS;
+            }
+
+            assertThat(dictionary.getMisses()).isZero();
+
+            return result;
+        }
+    }
+
+    private static int money(PreparedStatement pstmt) throws SQLException {
+
+        try (ResultSet rs = pstmt.executeQuery()) {
+
+            return rs.next() ? rs.getInt(1) : -1;
+        }
+    }
+
+    private static String memberId(int x) {
+
+        return String.format("M%09d", x);
+    }
+
+    private String url(String name) {
+
+        return "jdbc:h2:" + tempDir.resolve(name).toAbsolutePath();
+    }
+
+    private long compactedSize(String url, String name) throws SQLException {
+
+        execute(url, "SHUTDOWN COMPACT");
+
+        try {
+
+            return Files.size(tempDir.resolve(name + ".mv.db"));
+        }
+        catch (IOException e) {
+
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void execute(String url, String sql) throws SQLException {
+
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url, "sa", "");
+
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+
+            stmt.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package hello.jdbc.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * int 대리 키 측정용 테이블 생성 (MemberKeyDictionary, MemberRepositoryV4)
+ *
+ * member_key : memberId <-> memberKey 사전, 발급한 키는 바뀌거나 재사용되지 않는다.
+ * member_balance : 잔액, 기본 키와 잔액 인덱스가 가변 길이 문자열 대신 4바이트 int 를 사용
+ *
+ * member 와 동기화되지 않는 비교용 별도 저장소이므로 애플리케이션 스키마(MemberSchema)에는 포함하지 않는다.
+ */
+@Slf4j
+public abstract class SurrogateKeySchema {
+
+    public static final String BALANCE_MONEY_INDEX = "idx_member_balance_money";
+
+    public static final String CREATE_KEY_TABLE =
+            "CREATE TABLE IF NOT EXISTS member_key (memberKey INT AUTO_INCREMENT PRIMARY KEY, memberId VARCHAR(10) NOT NULL UNIQUE)";
+
+    public static final String CREATE_BALANCE_TABLE =
+            "CREATE TABLE IF NOT EXISTS member_balance (memberKey INT PRIMARY KEY, money INTEGER NOT NULL DEFAULT 0)";
+
+    public static final String CREATE_BALANCE_MONEY_INDEX =
+            "CREATE INDEX IF NOT EXISTS " + BALANCE_MONEY_INDEX + " ON member_balance(money, memberKey)";
+
+    private static final String[] DDL = {CREATE_KEY_TABLE, CREATE_BALANCE_TABLE, CREATE_BALANCE_MONEY_INDEX};
+
+    public static void bootstrap(DataSource dataSource) throws SQLException {
+
+        Connection conn = null;
+        Statement stmt = null;
+
+        try {
+
+            conn = dataSource.getConnection();
+            stmt = conn.createStatement();
+
+            for (String ddl : DDL) {
+
+                stmt.execute(ddl);
+            }
+        }
+        catch (SQLException e) {
+
+            log.error("DB Error = {}", e);
+
+            throw e;
+        }
+        finally {
+
+            JdbcUtils.closeStatement(stmt);
+            JdbcUtils.closeConnection(conn);
+        }
+    }
+}
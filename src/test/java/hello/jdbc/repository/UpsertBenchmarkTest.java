@@ -0,0 +1,118 @@
+package hello.jdbc.repository;
+
+import hello.jdbc.domain.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * MERGE 배치(upsertAll)와 조회 후 등록/수정 방식 비교
+ *
+ * 실행 시간을 비교하므로 기본 테스트에서는 제외하고, -Dbench.rows 를 지정했을 때만 실행 (예: -Dbench.rows=100000)
+ * 공유 데이터베이스에 대량의 행을 넣지 않도록 임시 디렉토리의 파일 데이터베이스를 사용
+ */
+@Slf4j
+class UpsertBenchmarkTest {
+
+    private static final int ROWS = Integer.getInteger("bench.rows", 0);
+
+    @TempDir
+    Path tempDir;
+
+    private DriverManagerDataSource dataSource;
+    private MemberRepositoryV3 repository;
+
+    @BeforeEach
+    void before() throws SQLException {
+
+        dataSource = new DriverManagerDataSource("jdbc:h2:" + tempDir.resolve("upsert").toAbsolutePath() + ";DB_CLOSE_DELAY=-1", "sa", "");
+
+        MemberSchema.bootstrap(dataSource);
+
+        repository = new MemberRepositoryV3(dataSource);
+    }
+
+    @AfterEach
+    void after() throws SQLException {
+
+        execute("SHUTDOWN");
+    }
+
+    /**
+     * 기존 방식 : findById() -> NoSuchElementException 이면 save(), 있으면 update()
+     * 변경 방식 : upsertAll()
+     *
+     * @throws SQLException
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "bench.rows", matches = "\\d+")
+    @DisplayName("MERGE 배치와 조회 후 등록/수정 방식 속도 비교")
+    void upsertAllSpeed() throws SQLException {
+
+        List<Member> feed = new ArrayList<>();
+
+        for (int i = 0; i < ROWS; i++) {
+
+            feed.add(new Member("U" + i, i));
+        }
+
+        // 워밍업 겸 절반은 이미 있는 상태로 만든다.
+        repository.upsertAll(feed.subList(0, ROWS / 2));
+
+        long start = System.nanoTime();
+
+        for (Member member : feed) {
+
+            try {
+
+                repository.findById(member.getMemberId());
+                repository.update(member.getMemberId(), member.getMoney() + 1);
+            }
+            catch (NoSuchElementException e) {
+
+                repository.save(member);
+            }
+        }
+
+        long oldNanos = System.nanoTime() - start;
+
+        for (Member member : feed.subList(ROWS / 2, ROWS)) {
+
+            repository.delete(member.getMemberId());
+        }
+
+        start = System.nanoTime();
+
+        repository.upsertAll(feed);
+
+        long newNanos = System.nanoTime() - start;
+
+        log.info("rows = {}, find + save/update = {}ms, upsertAll = {}ms, speedup = {}x",
+                ROWS, oldNanos / 1_000_000, newNanos / 1_000_000, oldNanos / Math.max(newNanos, 1));
+
+        assertThat(newNanos).isLessThan(oldNanos);
+    }
+
+    private void execute(String sql) throws SQLException {
+
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+
+            stmt.execute(sql);
+        }
+    }
+}
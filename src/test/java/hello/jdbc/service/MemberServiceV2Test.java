@@ -1,5 +1,6 @@
 package hello.jdbc.service;
 
+import hello.jdbc.connection.TrackingDataSource;
 import hello.jdbc.domain.Member;
 import hello.jdbc.repository.MemberRepositoryV2;
 import org.junit.jupiter.api.AfterEach;
@@ -9,6 +10,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
 
 import java.sql.SQLException;
+import java.time.Duration;
 
 import static hello.jdbc.connection.ConnectionConst.*;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -23,13 +25,17 @@ class MemberServiceV2Test {
     public static final String MEMBER_B = "memberB";
     public static final String MEMBER_EX = "ex";
 
+    private TrackingDataSource dataSource;
     private MemberRepositoryV2 memberRepository;
     private MemberServiceV2 memberService;
 
     @BeforeEach
     void before() {
 
-        DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+        // 커넥션을 직접 닫는 방식이므로 누수 감지 (테스트 모드)
+        dataSource = new TrackingDataSource(new DriverManagerDataSource(URL, USERNAME, PASSWORD), Duration.ofSeconds(1), 1);
+
+        dataSource.setTestMode(true);
 
         memberRepository = new MemberRepositoryV2(dataSource);
         memberService = new MemberServiceV2(dataSource, memberRepository);
@@ -41,6 +47,8 @@ class MemberServiceV2Test {
         memberRepository.delete(MEMBER_A);
         memberRepository.delete(MEMBER_B);
         memberRepository.delete(MEMBER_EX);
+
+        dataSource.verifyNoLeaks();
     }
 
     /**
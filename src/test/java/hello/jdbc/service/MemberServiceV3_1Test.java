@@ -1,7 +1,10 @@
 package hello.jdbc.service;
 
 import hello.jdbc.domain.Member;
+import hello.jdbc.domain.Transfer;
+import hello.jdbc.repository.MemberNotFoundException;
 import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.repository.TransferStatus;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -11,6 +14,7 @@ import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.springframework.transaction.PlatformTransactionManager;
 
 import java.sql.SQLException;
+import java.util.List;
 
 import static hello.jdbc.connection.ConnectionConst.*;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -93,4 +97,54 @@ class MemberServiceV3_1Test {
         assertThat(findMemberA.getMoney()).isEqualTo(10000);
         assertThat(findMemberB.getMoney()).isEqualTo(10000);
     }
+
+    @Test
+    @DisplayName("데이터베이스 함수로 이체 - 실패하면 아무 것도 변경되지 않음")
+    void accountTransferInDatabase() throws SQLException {
+
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        memberService.accountTransferInDatabase(MEMBER_A, MEMBER_B, 2000);
+        memberService.accountTransferInDatabase(MEMBER_B, MEMBER_A, 500);
+
+        assertThat(memberRepository.transfer(MEMBER_A, MEMBER_B, 20000)).isEqualTo(TransferStatus.INSUFFICIENT_FUNDS);
+        assertThat(memberRepository.transfer(MEMBER_B, MEMBER_A, 20000)).isEqualTo(TransferStatus.INSUFFICIENT_FUNDS);
+        assertThat(memberRepository.transfer("unknown", MEMBER_A, 100)).isEqualTo(TransferStatus.FROM_NOT_FOUND);
+        assertThat(memberRepository.transfer(MEMBER_A, "unknown", 100)).isEqualTo(TransferStatus.TO_NOT_FOUND);
+        assertThat(memberRepository.transfer(MEMBER_B, "a-unknown", 100)).isEqualTo(TransferStatus.TO_NOT_FOUND);
+        assertThat(memberRepository.transfer(MEMBER_A, MEMBER_B, 0)).isEqualTo(TransferStatus.INVALID_AMOUNT);
+
+        assertThatThrownBy(() -> memberService.accountTransferInDatabase(MEMBER_A, MEMBER_B, 20000))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("INSUFFICIENT_FUNDS");
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(8500);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(11500);
+    }
+
+    @Test
+    @DisplayName("여러 건 이체 - 실패한 이체만 세이브포인트까지 롤백")
+    void accountTransferAll() throws SQLException {
+
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+        memberRepository.save(new Member(MEMBER_EX, 10000));
+
+        List<TransferOutcome> outcomes = memberService.accountTransferAll(List.of(
+                new Transfer(MEMBER_A, MEMBER_B, 1000),
+                new Transfer(MEMBER_A, MEMBER_EX, 2000),
+                new Transfer(MEMBER_B, "unknown", 500),
+                new Transfer(MEMBER_B, MEMBER_A, 300)
+        ));
+
+        assertThat(outcomes).extracting(TransferOutcome::isSucceeded).containsExactly(true, false, false, true);
+        assertThat(outcomes.get(1).getFailure()).isInstanceOf(IllegalStateException.class);
+        assertThat(outcomes.get(2).getFailure()).isInstanceOf(MemberNotFoundException.class);
+
+        // "ex" 이체에서 먼저 출금한 2000 은 세이브포인트로 롤백
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000 - 1000 + 300);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000 + 1000 - 300);
+        assertThat(memberRepository.findById(MEMBER_EX).getMoney()).isEqualTo(10000);
+    }
 }
@@ -0,0 +1,165 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.domain.Transfer;
+import hello.jdbc.repository.MemberRepositoryV3;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.sql.SQLException;
+import java.util.*;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 일괄 정산 - 웨이브 단위 병렬 실행
+ */
+@Slf4j
+class TransferBatchExecutorTest {
+
+    private static final int MEMBER_COUNT = 50;
+    private static final String MEMBER_EX = "ex";
+
+    private HikariDataSource dataSource;
+    private MemberRepositoryV3 memberRepository;
+    private MemberServiceV3_1 memberService;
+
+    @BeforeEach
+    void before() {
+
+        dataSource = new HikariDataSource();
+
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+        dataSource.setMaximumPoolSize(8);
+
+        memberRepository = new MemberRepositoryV3(dataSource);
+        memberService = new MemberServiceV3_1(new DataSourceTransactionManager(dataSource), memberRepository);
+    }
+
+    @AfterEach
+    void after() throws SQLException {
+
+        for (String memberId : memberIds()) {
+
+            memberRepository.delete(memberId);
+        }
+
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("웨이브 안에서는 같은 회원을 공유하지 않고, 회원별 순서는 유지")
+    void plan() {
+
+        List<Transfer> transfers = List.of(
+                new Transfer("a", "b", 1),
+                new Transfer("c", "d", 1),
+                new Transfer("b", "c", 1),
+                new Transfer("e", "f", 1),
+                new Transfer("a", "e", 1)
+        );
+
+        List<List<Transfer>> waves = TransferBatchExecutor.plan(transfers);
+
+        assertThat(waves).hasSize(2);
+        assertThat(waves.get(0)).containsExactly(transfers.get(0), transfers.get(1), transfers.get(3));
+        assertThat(waves.get(1)).containsExactly(transfers.get(2), transfers.get(4));
+    }
+
+    @Test
+    @DisplayName("병렬 정산 결과는 순차 실행 결과와 같다")
+    void sameAsSequential() throws SQLException {
+
+        List<Transfer> transfers = randomTransfers(2000);
+
+        // 순차 실행
+        reset();
+
+        long failedSequential = 0;
+
+        for (Transfer transfer : transfers) {
+
+            try {
+
+                memberService.accountTransfer(transfer.getFromId(), transfer.getToId(), transfer.getMoney());
+            }
+            catch (IllegalStateException e) {
+
+                failedSequential++;
+            }
+        }
+
+        Map<String, Member> sequential = memberRepository.findByIds(memberIds()).getFound();
+
+        // 병렬 실행
+        reset();
+
+        SettlementResult result = new TransferBatchExecutor(memberService, 8).execute(transfers);
+
+        Map<String, Member> parallel = memberRepository.findByIds(memberIds()).getFound();
+
+        log.info("waves = {}, elapsed = {}ms, first wave = {}",
+                result.getWaves().size(), result.getElapsedNanos() / 1_000_000, result.getWaves().get(0));
+
+        assertThat(parallel).isEqualTo(sequential);
+        assertThat(result.getFailed()).isEqualTo(failedSequential).isPositive();
+        assertThat(result.getSucceeded() + result.getFailed()).isEqualTo(transfers.size());
+    }
+
+    private void reset() throws SQLException {
+
+        List<Member> members = new ArrayList<>();
+
+        for (String memberId : memberIds()) {
+
+            members.add(new Member(memberId, 100_000));
+        }
+
+        memberRepository.upsertAll(members);
+    }
+
+    /**
+     * "ex" 회원에게 보내는 이체는 실패한다. (MemberServiceV3_1.validation)
+     */
+    private List<Transfer> randomTransfers(int count) {
+
+        Random random = new Random(42);
+        List<String> ids = memberIds();
+        List<Transfer> transfers = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+
+            String from = ids.get(random.nextInt(ids.size()));
+            String to = ids.get(random.nextInt(ids.size()));
+
+            if (!from.equals(to)) {
+
+                transfers.add(new Transfer(from, to, 1 + random.nextInt(1000)));
+            }
+        }
+
+        return transfers;
+    }
+
+    private List<String> memberIds() {
+
+        List<String> ids = new ArrayList<>();
+
+        for (int i = 0; i < MEMBER_COUNT; i++) {
+
+            ids.add("S" + i);
+        }
+
+        ids.add(MEMBER_EX);
+
+        return ids;
+    }
+}
@@ -0,0 +1,167 @@
+package hello.jdbc.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.ConnectionConst;
+import hello.jdbc.connection.StorageMode;
+import hello.jdbc.connection.StorageSettings;
+import hello.jdbc.domain.Member;
+import hello.jdbc.load.LatencyHistogram;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.repository.MemberSchema;
+import lombok.extern.slf4j.Slf4j;
+import org.h2.tools.Server;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 이체 - 클라이언트 bizLogic (트랜잭션 + 조회 2번 + 수정 2번 + 커밋) vs 데이터베이스 함수 CALL 1번
+ *
+ * 왕복 비용 차이가 드러나도록 메모리 모드와 TCP 서버 모드를 모두 측정한다.
+ * 실행 시간을 비교하므로 기본 테스트에서는 제외하고, 다른 벤치마크와 같이 -Dbench.rows 를 지정했을 때만 실행
+ */
+@Slf4j
+class TransferProcedureBenchmarkTest {
+
+    private static final int MEMBER_COUNT = 100;
+    private static final int TRANSFERS = 2000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @EnabledIfSystemProperty(named = "bench.rows", matches = "\\d+")
+    @DisplayName("클라이언트 이체 vs 데이터베이스 함수 이체 지연 시간")
+    void clientVsProcedure() throws Exception {
+
+        Server tcpServer = Server.createTcpServer("-tcpPort", String.valueOf(freePort()), "-baseDir", tempDir.toString(), "-ifNotExists").start();
+
+        try {
+
+            measure(settings(StorageMode.MEMORY, "procedure", null));
+
+            LatencyHistogram[] tcp = measure(settings(StorageMode.TCP, "procedure", "localhost:" + tcpServer.getPort()));
+
+            log.info("TCP p50 : procedure / client = {}",
+                    String.format("%.2f", (double) tcp[1].getValueAtPercentile(50) / tcp[0].getValueAtPercentile(50)));
+
+            // 서버 모드에서는 왕복이 줄어든 만큼 빨라진다.
+            assertThat(tcp[1].getValueAtPercentile(50)).isLessThan(tcp[0].getValueAtPercentile(50));
+        }
+        finally {
+
+            tcpServer.stop();
+        }
+    }
+
+    /**
+     * @return [클라이언트 이체, 데이터베이스 함수 이체]
+     */
+    private LatencyHistogram[] measure(StorageSettings settings) throws SQLException {
+
+        HikariDataSource dataSource = new HikariDataSource();
+
+        dataSource.setJdbcUrl(settings.getUrl());
+        dataSource.setUsername(ConnectionConst.USERNAME);
+        dataSource.setPassword(ConnectionConst.PASSWORD);
+
+        try {
+
+            MemberSchema.bootstrap(dataSource);
+
+            MemberRepositoryV3 repository = new MemberRepositoryV3(dataSource);
+            MemberServiceV3_1 service = new MemberServiceV3_1(new DataSourceTransactionManager(dataSource), repository);
+
+            for (int i = 0; i < MEMBER_COUNT; i++) {
+
+                repository.save(new Member("P" + i, 1_000_000));
+            }
+
+            // 워밍업
+            run(service, false, new LatencyHistogram());
+            run(service, true, new LatencyHistogram());
+
+            LatencyHistogram client = new LatencyHistogram();
+            LatencyHistogram procedure = new LatencyHistogram();
+
+            run(service, false, client);
+            run(service, true, procedure);
+
+            log.info("{} : client bizLogic p50 = {}us, p99 = {}us / procedure p50 = {}us, p99 = {}us",
+                    settings.getMode(),
+                    client.getValueAtPercentile(50) / 1000, client.getValueAtPercentile(99) / 1000,
+                    procedure.getValueAtPercentile(50) / 1000, procedure.getValueAtPercentile(99) / 1000);
+
+            // 이체만 했으므로 전체 잔액은 그대로
+            long total = 0;
+
+            for (int i = 0; i < MEMBER_COUNT; i++) {
+
+                total += repository.findById("P" + i).getMoney();
+                repository.delete("P" + i);
+            }
+
+            assertThat(total).isEqualTo(MEMBER_COUNT * 1_000_000L);
+
+            return new LatencyHistogram[]{client, procedure};
+        }
+        finally {
+
+            dataSource.close();
+        }
+    }
+
+    private void run(MemberServiceV3_1 service, boolean procedure, LatencyHistogram latency) throws SQLException {
+
+        for (int i = 0; i < TRANSFERS; i++) {
+
+            String fromId = "P" + (i % MEMBER_COUNT);
+            String toId = "P" + ((i * 7 + 1) % MEMBER_COUNT);
+
+            long start = System.nanoTime();
+
+            if (procedure) {
+
+                service.accountTransferInDatabase(fromId, toId, 1);
+            }
+            else {
+
+                service.accountTransfer(fromId, toId, 1);
+            }
+
+            latency.recordValue(System.nanoTime() - start);
+        }
+    }
+
+    private StorageSettings settings(StorageMode mode, String name, String host) {
+
+        Properties properties = new Properties();
+
+        properties.setProperty("db.mode", mode.name());
+        properties.setProperty("db.name", name);
+
+        if (host != null) {
+
+            properties.setProperty("db.host", host);
+        }
+
+        return StorageSettings.from(properties);
+    }
+
+    private int freePort() throws Exception {
+
+        try (ServerSocket socket = new ServerSocket(0)) {
+
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package hello.jdbc.transaction;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.connection.DeadlineDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.service.MemberServiceV3_1;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.ConnectionHolder;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.time.Duration;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+@SuppressWarnings("try")
+class DeadlineTest {
+
+    public static final String MEMBER_A = "memberA";
+    public static final String MEMBER_B = "memberB";
+
+    private HikariDataSource hikariDataSource;
+    private DeadlineDataSource dataSource;
+    private MemberRepositoryV3 memberRepository;
+    private MemberServiceV3_1 memberService;
+    private TransactionExecutor txExecutor;
+
+    @BeforeEach
+    void before() {
+
+        hikariDataSource = new HikariDataSource();
+
+        hikariDataSource.setJdbcUrl(URL);
+        hikariDataSource.setUsername(USERNAME);
+        hikariDataSource.setPassword(PASSWORD);
+        hikariDataSource.setMaximumPoolSize(1);
+
+        dataSource = new DeadlineDataSource(hikariDataSource);
+
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+
+        memberRepository = new MemberRepositoryV3(dataSource);
+        memberService = new MemberServiceV3_1(transactionManager, memberRepository);
+        txExecutor = new TransactionExecutor(transactionManager);
+    }
+
+    @AfterEach
+    void after() throws SQLException {
+
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+
+        hikariDataSource.close();
+    }
+
+    @Test
+    @DisplayName("데드라인이 지나면 이체를 시작하지 않고 바로 실패")
+    void expiredDeadline() throws Exception {
+
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        Deadline deadline = Deadline.after(Duration.ofMillis(1));
+
+        Thread.sleep(5);
+
+        try (Deadline.Scope scope = deadline.attach()) {
+
+            assertThatThrownBy(() -> memberService.accountTransfer(MEMBER_A, MEMBER_B, 2000))
+                    .isInstanceOf(DeadlineExceededException.class)
+                    .hasMessageContaining("transaction begin");
+        }
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(10000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("데드라인 안에서는 정상 이체")
+    void withinDeadline() throws SQLException {
+
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+
+        try (Deadline.Scope scope = Deadline.after(Duration.ofSeconds(5)).attach()) {
+
+            memberService.accountTransfer(MEMBER_A, MEMBER_B, 2000);
+        }
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(8000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(12000);
+    }
+
+    @Test
+    @DisplayName("커넥션 획득은 connectionTimeout 이 아니라 남은 데드라인까지만 대기")
+    void connectionCheckoutBounded() throws SQLException {
+
+        // 풀의 유일한 커넥션을 점유
+        try (Connection held = dataSource.getConnection()) {
+
+            long start = System.nanoTime();
+
+            try (Deadline.Scope scope = Deadline.after(Duration.ofMillis(200)).attach()) {
+
+                assertThatThrownBy(() -> memberRepository.findById(MEMBER_A))
+                        .isInstanceOf(DeadlineExceededException.class)
+                        .hasMessageContaining("connection checkout");
+            }
+
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            log.info("checkout failed after {}ms", elapsedMillis);
+
+            // 기본 connectionTimeout(30초) 보다 훨씬 빨리 실패
+            assertThat(elapsedMillis).isLessThan(2000);
+        }
+    }
+
+    @Test
+    @DisplayName("남은 데드라인이 트랜잭션 타임아웃으로 적용")
+    void transactionTimeout() throws SQLException {
+
+        try (Deadline.Scope scope = Deadline.after(Duration.ofSeconds(3)).attach()) {
+
+            int ttl = txExecutor.execute(TransactionOptions.READ_WRITE, () -> {
+
+                ConnectionHolder holder = (ConnectionHolder) TransactionSynchronizationManager.getResource(dataSource);
+
+                assertThat(holder.hasTimeout()).isTrue();
+
+                return holder.getTimeToLiveInSeconds();
+            });
+
+            assertThat(ttl).isBetween(1, 3);
+        }
+    }
+
+    @Test
+    @DisplayName("바깥 데드라인이 더 빠르면 유지")
+    void nestedDeadline() {
+
+        Deadline outer = Deadline.after(Duration.ofSeconds(1));
+
+        try (Deadline.Scope outerScope = outer.attach()) {
+
+            try (Deadline.Scope innerScope = Deadline.after(Duration.ofSeconds(10)).attach()) {
+
+                assertThat(Deadline.current()).isSameAs(outer);
+            }
+
+            assertThat(Deadline.current()).isSameAs(outer);
+        }
+
+        assertThat(Deadline.current()).isNull();
+    }
+
+    @Test
+    @DisplayName("쿼리 타임아웃은 초 단위로 올림하지 않고 남은 시간(ms)만큼만 실행, 데드라인이 없으면 해제")
+    void millisecondQueryTimeout() throws SQLException {
+
+        String sql = "SELECT COUNT(*) FROM SYSTEM_RANGE(1, 1000000000) WHERE MOD(X, 7) = 3";
+
+        // HikariCP 는 SQLTimeoutException 이 난 커넥션을 닫으므로 세션을 유지하는 DataSource 사용
+        DataSource plain = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+
+        try (Connection conn = plain.getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            long start = System.nanoTime();
+
+            try (Deadline.Scope scope = Deadline.after(Duration.ofMillis(100)).attach()) {
+
+                QueryTimeout.apply(pstmt, plain);
+
+                assertThatThrownBy(pstmt::executeQuery).isInstanceOf(SQLTimeoutException.class);
+            }
+
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            log.info("query cancelled after {}ms", elapsedMillis);
+
+            // 초 단위였다면 최소 1초
+            assertThat(elapsedMillis).isLessThan(700);
+
+            // 데드라인이 없는 문장 전에는 세션 타임아웃을 되돌림
+            try (PreparedStatement settings = conn.prepareStatement("SELECT VALUE FROM INFORMATION_SCHEMA.SETTINGS WHERE NAME = 'QUERY_TIMEOUT'")) {
+
+                QueryTimeout.apply(settings, plain);
+
+                assertThat(querySetting(settings)).isEqualTo("0");
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("쿼리 타임아웃은 STEP_MILLIS 단위로 올림하고, 같은 단위 안에서는 SET 을 다시 실행하지 않음")
+    void coarseQueryTimeout() throws SQLException {
+
+        DataSource plain = new DriverManagerDataSource(URL, USERNAME, PASSWORD);
+
+        try (Connection conn = plain.getConnection();
+             PreparedStatement settings = conn.prepareStatement("SELECT VALUE FROM INFORMATION_SCHEMA.SETTINGS WHERE NAME = 'QUERY_TIMEOUT'")) {
+
+            try (Deadline.Scope scope = Deadline.after(Duration.ofSeconds(10)).attach()) {
+
+                QueryTimeout.apply(settings, plain);
+
+                int applied = Integer.parseInt(querySetting(settings));
+
+                assertThat(applied % QueryTimeout.STEP_MILLIS).isZero();
+                assertThat(applied).isBetween(9000, 10000);
+
+                // 직접 바꾼 값이 남아 있으면 두 번째 apply 가 SET 을 생략한 것
+                try (Statement stmt = conn.createStatement()) {
+
+                    stmt.execute("SET QUERY_TIMEOUT 123456");
+                }
+
+                QueryTimeout.apply(settings, plain);
+
+                assertThat(querySetting(settings)).isEqualTo("123456");
+            }
+
+            QueryTimeout.apply(settings, plain);
+
+            assertThat(querySetting(settings)).isEqualTo("0");
+        }
+    }
+
+    private static String querySetting(PreparedStatement settings) throws SQLException {
+
+        try (ResultSet rs = settings.executeQuery()) {
+
+            rs.next();
+
+            return rs.getString(1);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package hello.jdbc.transaction;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberNotFoundException;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.service.MemberServiceV3_1;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+@SuppressWarnings("try")
+class RetryingTransactionExecutorTest {
+
+    private static final String MEMBER_A = "retryA";
+    private static final String MEMBER_B = "retryB";
+
+    private HikariDataSource dataSource;
+    private MemberRepositoryV3 memberRepository;
+    private MemberServiceV3_1 memberService;
+    private TransactionExecutor txExecutor;
+
+    @BeforeEach
+    void before() throws SQLException {
+
+        dataSource = new HikariDataSource();
+
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+
+        // 테스트가 오래 걸리지 않도록 잠금 대기 시간을 줄임
+        dataSource.setConnectionInitSql("SET LOCK_TIMEOUT 100");
+
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+
+        memberRepository = new MemberRepositoryV3(dataSource);
+        memberService = new MemberServiceV3_1(transactionManager, memberRepository);
+        txExecutor = new TransactionExecutor(transactionManager);
+
+        memberRepository.save(new Member(MEMBER_A, 10000));
+        memberRepository.save(new Member(MEMBER_B, 10000));
+    }
+
+    @AfterEach
+    void after() throws SQLException {
+
+        memberRepository.delete(MEMBER_A);
+        memberRepository.delete(MEMBER_B);
+
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("오류 코드로 재시도 대상 분류")
+    void classify() {
+
+        assertThat(RetryableErrors.isRetryable(new SQLException("lock timeout", "HYT00", 50200))).isTrue();
+        assertThat(RetryableErrors.isRetryable(new SQLException("deadlock", "40001", 40001))).isTrue();
+        assertThat(RetryableErrors.isRetryable(new IllegalStateException(new SQLException("lock timeout", "HYT00", 50200)))).isTrue();
+
+        assertThat(RetryableErrors.isRetryable(new SQLException("duplicate key", "23505", 23505))).isFalse();
+        assertThat(RetryableErrors.isRetryable(new IllegalStateException(new MemberNotFoundException("none")))).isFalse();
+        assertThat(RetryableErrors.isRetryable(new DeadlineExceededException("statement execution", new SQLException("timeout", "40001", 40001)))).isFalse();
+    }
+
+    @Test
+    @DisplayName("잠금 대기 시간 초과는 잠금이 풀린 뒤 재시도해서 성공")
+    void lockTimeoutRetried() throws Exception {
+
+        RetryingTransactionExecutor retrying = new RetryingTransactionExecutor(
+                txExecutor, 20, Duration.ofMillis(20), Duration.ofMillis(100), new RetryBudget(100, 10));
+
+        CountDownLatch locked = new CountDownLatch(1);
+
+        // 다른 트랜잭션이 memberA 의 행 잠금을 1초 동안 보유
+        Thread holder = new Thread(() -> {
+
+            try (Connection conn = dataSource.getConnection()) {
+
+                conn.setAutoCommit(false);
+
+                try (PreparedStatement pstmt = conn.prepareStatement("UPDATE member SET money = money WHERE memberId = ?")) {
+
+                    pstmt.setString(1, MEMBER_A);
+                    pstmt.executeUpdate();
+                }
+
+                locked.countDown();
+
+                Thread.sleep(1000);
+
+                conn.commit();
+            }
+            catch (Exception e) {
+
+                log.error("holder error", e);
+            }
+        });
+
+        holder.start();
+        locked.await();
+
+        // 재시도 없이는 실패
+        assertThatThrownBy(() -> memberService.accountTransfer(MEMBER_A, MEMBER_B, 1000))
+                .isInstanceOf(IllegalStateException.class)
+                .matches(RetryableErrors::isRetryable);
+
+        retrying.call(() -> {
+
+            memberService.accountTransfer(MEMBER_A, MEMBER_B, 1000);
+
+            return null;
+        });
+
+        holder.join();
+
+        log.info("calls = {}, retries = {}, byErrorCode = {}, recovered = {}",
+                retrying.getCalls(), retrying.getRetries(), retrying.getRetriesByErrorCode(), retrying.getRecovered());
+
+        assertThat(memberRepository.findById(MEMBER_A).getMoney()).isEqualTo(9000);
+        assertThat(memberRepository.findById(MEMBER_B).getMoney()).isEqualTo(11000);
+
+        assertThat(retrying.getRetries()).isPositive();
+        assertThat(retrying.getRecovered()).isEqualTo(1);
+        assertThat(retrying.getRetriesByErrorCode()).containsOnlyKeys(50200);
+    }
+
+    @Test
+    @DisplayName("재시도 예산을 다 쓰면 바로 실패")
+    void budget() {
+
+        RetryingTransactionExecutor retrying = new RetryingTransactionExecutor(
+                txExecutor, 5, Duration.ZERO, Duration.ZERO, new RetryBudget(3, 0));
+
+        AtomicInteger attempts = new AtomicInteger();
+
+        TransactionExecutor.Callback<Void> alwaysLocked = () -> {
+
+            attempts.incrementAndGet();
+
+            throw new SQLException("lock timeout", "HYT00", 50200);
+        };
+
+        // 최대 5번 중 4번째 시도에서 소진
+        assertThatThrownBy(() -> retrying.execute(TransactionOptions.READ_WRITE, alwaysLocked)).isInstanceOf(SQLException.class);
+        assertThat(attempts.get()).isEqualTo(4);
+        assertThat(retrying.getBudgetRejected()).isEqualTo(1);
+
+        // 예산이 없으므로 재시도 없음
+        assertThatThrownBy(() -> retrying.execute(TransactionOptions.READ_WRITE, alwaysLocked)).isInstanceOf(SQLException.class);
+        assertThat(attempts.get()).isEqualTo(5);
+        assertThat(retrying.getBudgetRejected()).isEqualTo(2);
+        assertThat(retrying.getRetries()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("데드라인 안에 끝나지 않는 재시도는 예산을 쓰지 않고 포기")
+    void deadlineKeepsBudget() {
+
+        RetryBudget budget = new RetryBudget(3, 0);
+        RetryingTransactionExecutor retrying = new RetryingTransactionExecutor(
+                txExecutor, 5, Duration.ofSeconds(10), Duration.ofSeconds(10), budget);
+
+        AtomicInteger attempts = new AtomicInteger();
+
+        try (Deadline.Scope scope = Deadline.after(Duration.ofMillis(1)).attach()) {
+
+            assertThatThrownBy(() -> retrying.call(() -> {
+
+                attempts.incrementAndGet();
+
+                throw new SQLException("lock timeout", "HYT00", 50200);
+            })).isInstanceOf(SQLException.class);
+        }
+
+        assertThat(attempts.get()).isEqualTo(1);
+        assertThat(retrying.getRetries()).isZero();
+        assertThat(budget.getAvailable()).isEqualTo(3.0);
+    }
+
+    @Test
+    @DisplayName("재시도 대상이 아니거나 바깥 트랜잭션이 있으면 재시도하지 않음")
+    void notRetried() throws SQLException {
+
+        RetryingTransactionExecutor retrying = new RetryingTransactionExecutor(
+                txExecutor, 5, Duration.ZERO, Duration.ZERO, new RetryBudget(100, 0));
+
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> retrying.call(() -> {
+
+            attempts.incrementAndGet();
+
+            return memberRepository.save(new Member(MEMBER_A, 1));
+        })).isInstanceOf(SQLException.class);
+
+        assertThat(attempts.get()).isEqualTo(1);
+
+        txExecutor.executeWithoutResult(TransactionOptions.READ_WRITE, () ->
+                assertThatThrownBy(() -> retrying.call(() -> {
+
+                    attempts.incrementAndGet();
+
+                    throw new SQLException("lock timeout", "HYT00", 50200);
+                })).isInstanceOf(SQLException.class));
+
+        assertThat(attempts.get()).isEqualTo(2);
+        assertThat(retrying.getRetries()).isZero();
+        assertThat(retrying.getExhausted()).isZero();
+    }
+}
@@ -0,0 +1,230 @@
+package hello.jdbc.transaction;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class TransactionExecutorTest {
+
+    private HikariDataSource dataSource;
+    private PlatformTransactionManager transactionManager;
+    private TransactionExecutor txExecutor;
+
+    @BeforeEach
+    void before() {
+
+        dataSource = new HikariDataSource();
+
+        dataSource.setJdbcUrl(URL);
+        dataSource.setUsername(USERNAME);
+        dataSource.setPassword(PASSWORD);
+
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        txExecutor = new TransactionExecutor(transactionManager);
+    }
+
+    @AfterEach
+    void after() {
+
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("정의 캐시 - 같은 조합이면 같은 인스턴스")
+    void cachedDefinition() {
+
+        assertThat(TransactionOptions.READ_ONLY.withTimeout(3)).isSameAs(TransactionOptions.READ_ONLY.withTimeout(3));
+        assertThat(TransactionOptions.READ_WRITE.withReadOnly(true)).isSameAs(TransactionOptions.READ_ONLY);
+        assertThat(TransactionOptions.READ_WRITE.withTimeout(3).getTimeout()).isEqualTo(3);
+    }
+
+    /**
+     * H2 의 isReadOnly() 는 데이터베이스 자체의 읽기 전용 여부를 반환하므로
+     * 프록시 커넥션으로 setReadOnly() 호출 값을 기록해서 검증
+     *
+     * @throws SQLException
+     */
+    @Test
+    @DisplayName("읽기 전용 힌트가 커넥션에 전달")
+    void readOnlyHint() throws SQLException {
+
+        List<Boolean> readOnlyCalls = new ArrayList<>();
+
+        DataSource recordingDataSource = new DelegatingDataSource(dataSource) {
+
+            @Override
+            public Connection getConnection() throws SQLException {
+
+                Connection target = super.getConnection();
+
+                return (Connection) Proxy.newProxyInstance(
+                        Connection.class.getClassLoader(),
+                        new Class<?>[]{Connection.class},
+                        (proxy, method, args) -> {
+
+                            if (method.getName().equals("setReadOnly")) {
+                                readOnlyCalls.add((Boolean) args[0]);
+                            }
+
+                            try {
+                                return method.invoke(target, args);
+                            }
+                            catch (InvocationTargetException e) {
+                                throw e.getTargetException();
+                            }
+                        });
+            }
+        };
+
+        TransactionExecutor recordingExecutor = new TransactionExecutor(new DataSourceTransactionManager(recordingDataSource));
+
+        boolean readOnly = recordingExecutor.execute(TransactionOptions.READ_ONLY, TransactionSynchronizationManager::isCurrentTransactionReadOnly);
+
+        // 시작 시 true 로 설정하고, 커넥션 반납 전에 false 로 복구
+        assertThat(readOnly).isTrue();
+        assertThat(readOnlyCalls).containsExactly(true, false);
+
+        readOnlyCalls.clear();
+
+        recordingExecutor.execute(TransactionOptions.READ_WRITE, TransactionSynchronizationManager::isCurrentTransactionReadOnly);
+
+        assertThat(readOnlyCalls).isEmpty();
+    }
+
+    @Test
+    @DisplayName("격리 수준 적용")
+    void isolationLevel() throws SQLException {
+
+        TransactionOptions serializable = TransactionOptions.READ_WRITE.withIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+
+        int isolation = txExecutor.execute(serializable, () -> currentConnection().getTransactionIsolation());
+
+        assertThat(isolation).isEqualTo(Connection.TRANSACTION_SERIALIZABLE);
+    }
+
+    @Test
+    @DisplayName("외부 트랜잭션이 있으면 그대로 참여")
+    void joinOuterTransaction() throws SQLException {
+
+        TransactionStatus outer = transactionManager.getTransaction(TransactionOptions.READ_WRITE);
+
+        try {
+
+            Connection outerConnection = currentConnection();
+
+            // 읽기 전용을 요청해도 외부 트랜잭션의 커넥션을 그대로 사용
+            Connection innerConnection = txExecutor.execute(TransactionOptions.READ_ONLY, this::currentConnection);
+
+            assertThat(innerConnection).isSameAs(outerConnection);
+            assertThat(innerConnection.isReadOnly()).isFalse();
+        }
+        finally {
+
+            transactionManager.rollback(outer);
+        }
+    }
+
+    @Test
+    @DisplayName("예외 발생 시 롤백 후 원래 예외 전달")
+    void rollbackOnException() {
+
+        assertThatThrownBy(() -> txExecutor.executeWithoutResult(TransactionOptions.READ_WRITE, () -> {
+
+            throw new SQLException("biz error");
+
+        })).isInstanceOf(SQLException.class).hasMessage("biz error");
+
+        // 트랜잭션이 정리되어 동기화 매니저에 남아있지 않음
+        assertThat(TransactionSynchronizationManager.isActualTransactionActive()).isFalse();
+    }
+
+    /**
+     * 트랜잭션 1건당 오버헤드 측정
+     *
+     * 기존 방식 : 매번 DefaultTransactionDefinition 생성 + getTransaction/commit 직접 호출
+     * 변경 방식 : 캐시된 TransactionOptions + TransactionExecutor
+     *
+     * @throws SQLException
+     */
+    @Test
+    @DisplayName("트랜잭션 오버헤드 측정")
+    void overhead() throws SQLException {
+
+        int count = 2000;
+
+        // 워밍업
+        runBefore(count);
+        runAfter(count);
+
+        long beforeNanos = runBefore(count);
+        long afterNanos = runAfter(count);
+
+        log.info("before = {} ns/tx, after = {} ns/tx", beforeNanos / count, afterNanos / count);
+    }
+
+    private long runBefore(int count) {
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < count; i++) {
+
+            TransactionStatus status = transactionManager.getTransaction(new DefaultTransactionDefinition());
+
+            try {
+
+                currentConnection();
+
+                transactionManager.commit(status);
+            }
+            catch (Exception e) {
+
+                transactionManager.rollback(status);
+
+                throw new IllegalStateException(e);
+            }
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    private long runAfter(int count) throws SQLException {
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < count; i++) {
+
+            txExecutor.execute(TransactionOptions.READ_WRITE, this::currentConnection);
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    private Connection currentConnection() {
+
+        return DataSourceUtils.getConnection(dataSource);
+    }
+}
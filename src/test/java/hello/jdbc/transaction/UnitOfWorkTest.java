@@ -0,0 +1,194 @@
+package hello.jdbc.transaction;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV1;
+import hello.jdbc.repository.MemberRepositoryV3;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+@SuppressWarnings("try")
+class UnitOfWorkTest {
+
+    private static final String[] MEMBER_IDS = {"uow1", "uow2", "uow3", "uow4", "uow5"};
+
+    private HikariDataSource pool;
+    private CountingDataSource dataSource;
+    private MemberRepositoryV3 repository;
+
+    @BeforeEach
+    void before() throws SQLException {
+
+        pool = new HikariDataSource();
+
+        pool.setJdbcUrl(URL);
+        pool.setUsername(USERNAME);
+        pool.setPassword(PASSWORD);
+
+        dataSource = new CountingDataSource(pool);
+        repository = new MemberRepositoryV3(dataSource);
+
+        for (String memberId : MEMBER_IDS) {
+
+            repository.save(new Member(memberId, 10000));
+        }
+
+        dataSource.acquisitions.set(0);
+    }
+
+    @AfterEach
+    void after() throws SQLException {
+
+        for (String memberId : MEMBER_IDS) {
+
+            repository.delete(memberId);
+        }
+
+        pool.close();
+    }
+
+    @Test
+    @DisplayName("작업 단위 안의 조회는 커넥션 하나를 재사용")
+    void reuse() throws SQLException {
+
+        findAll();
+
+        int withoutUnitOfWork = dataSource.acquisitions.getAndSet(0);
+
+        try (UnitOfWork uow = UnitOfWork.begin(dataSource)) {
+
+            assertThat(uow.isOwner()).isTrue();
+
+            findAll();
+        }
+
+        int withUnitOfWork = dataSource.acquisitions.get();
+
+        log.info("pool acquisitions per request : without unit of work = {}, with unit of work = {}", withoutUnitOfWork, withUnitOfWork);
+
+        assertThat(withoutUnitOfWork).isEqualTo(MEMBER_IDS.length);
+        assertThat(withUnitOfWork).isEqualTo(1);
+
+        // 종료 후에는 등록이 해제되고 커넥션은 풀에 반납
+        assertThat(TransactionSynchronizationManager.hasResource(dataSource)).isFalse();
+        assertThat(pool.getHikariPoolMXBean().getActiveConnections()).isZero();
+    }
+
+    @Test
+    @DisplayName("작업 단위는 트랜잭션이 아니므로 SQL 마다 커밋")
+    void autoCommit() throws SQLException {
+
+        UnitOfWork.execute(dataSource, () -> {
+
+            Connection conn = DataSourceUtils.getConnection(dataSource);
+
+            assertThat(conn.getAutoCommit()).isTrue();
+
+            DataSourceUtils.releaseConnection(conn, dataSource);
+
+            repository.update("uow1", 5000);
+
+            return null;
+        });
+
+        assertThat(repository.findById("uow1").getMoney()).isEqualTo(5000);
+    }
+
+    @Test
+    @DisplayName("dataSource.getConnection() 을 직접 쓰는 리포지토리는 TransactionAwareDataSourceProxy 로 참여")
+    void directDataSource() throws SQLException {
+
+        MemberRepositoryV1 repositoryV1 = new MemberRepositoryV1(new TransactionAwareDataSourceProxy(dataSource));
+
+        UnitOfWork.execute(dataSource, () -> {
+
+            for (String memberId : MEMBER_IDS) {
+
+                repositoryV1.findById(memberId);
+            }
+
+            return null;
+        });
+
+        assertThat(dataSource.acquisitions.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("작업 단위 안의 트랜잭션과 중첩 작업 단위는 같은 커넥션 사용")
+    void participate() throws SQLException {
+
+        TransactionExecutor txExecutor = new TransactionExecutor(new DataSourceTransactionManager(dataSource));
+
+        try (UnitOfWork uow = UnitOfWork.begin(dataSource)) {
+
+            repository.findById("uow1");
+
+            txExecutor.executeWithoutResult(TransactionOptions.READ_WRITE, () -> {
+
+                repository.update("uow1", 9000);
+                repository.update("uow2", 11000);
+            });
+
+            try (UnitOfWork nested = UnitOfWork.begin(dataSource)) {
+
+                assertThat(nested.isOwner()).isFalse();
+
+                repository.findById("uow2");
+            }
+
+            // 중첩 작업 단위 종료 후에도 바깥 작업 단위의 커넥션은 유지
+            assertThat(TransactionSynchronizationManager.hasResource(dataSource)).isTrue();
+
+            repository.findById("uow3");
+        }
+
+        assertThat(dataSource.acquisitions.get()).isEqualTo(1);
+        assertThat(repository.findById("uow1").getMoney()).isEqualTo(9000);
+        assertThat(repository.findById("uow2").getMoney()).isEqualTo(11000);
+    }
+
+    private void findAll() throws SQLException {
+
+        for (String memberId : MEMBER_IDS) {
+
+            repository.findById(memberId);
+        }
+    }
+
+    /**
+     * 커넥션 풀에서 커넥션을 꺼낸 횟수
+     */
+    private static class CountingDataSource extends DelegatingDataSource {
+
+        private final AtomicInteger acquisitions = new AtomicInteger();
+
+        private CountingDataSource(HikariDataSource target) {
+
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+
+            acquisitions.incrementAndGet();
+
+            return super.getConnection();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package hello.jdbc.warmup;
+
+import hello.jdbc.aggregate.BalanceAggregateService;
+import hello.jdbc.connection.Workload;
+import hello.jdbc.connection.WorkloadRoutingDataSource;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.repository.MemberSchema;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 웜 스타트가 애플리케이션 빈(JdbcConfig)을 채우는지 확인
+ *
+ * 피드 트리거를 설치하려면 member 테이블이 있어야 하므로 컨텍스트를 띄우기 전에 만들고,
+ * 다른 테스트에 영향을 주지 않도록 끝나면 트리거와 member_change 테이블을 지운다.
+ */
+@SpringBootTest
+@DirtiesContext
+class WarmStartRunnerTest {
+
+    @TempDir
+    static Path dir;
+
+    @Autowired
+    WarmStartRunner runner;
+
+    @Autowired
+    WorkloadRoutingDataSource dataSource;
+
+    @Autowired
+    MemberRepositoryV3 memberRepository;
+
+    @Autowired
+    BalanceAggregateService aggregateService;
+
+    @DynamicPropertySource
+    static void warmStartProperties(DynamicPropertyRegistry registry) {
+
+        registry.add("warm-start.snapshot", () -> dir.resolve("runner.snapshot").toString());
+    }
+
+    @BeforeAll
+    static void createTable() throws SQLException {
+
+        execute(MemberSchema.CREATE_TABLE);
+    }
+
+    @AfterAll
+    static void dropFeed() throws SQLException {
+
+        execute("DROP TRIGGER IF EXISTS member_change_trigger");
+        execute("DROP TABLE IF EXISTS member_change");
+    }
+
+    @Test
+    @DisplayName("애플리케이션이 사용하는 풀과 잔액 집계를 미리 채운다")
+    void warmsApplicationBeans() throws Exception {
+
+        // 스냅샷 없이 시작했으므로 전체 스캔으로 채움
+        assertThat(runner.getWarmStart().isWarm()).isFalse();
+
+        assertThat(dataSource.getPool(Workload.OLTP).getHikariPoolMXBean().getTotalConnections())
+                .isEqualTo(dataSource.getPool(Workload.OLTP).getMaximumPoolSize());
+        assertThat(aggregateService.getMemberCount()).isEqualTo(count());
+
+        // 같은 리포지토리로 등록한 회원이 같은 잔액 집계에 반영
+        memberRepository.save(new Member("runner", 777));
+
+        try {
+
+            long deadline = System.currentTimeMillis() + 5000;
+
+            while (aggregateService.getMemberCount() != count() && System.currentTimeMillis() < deadline) {
+
+                Thread.sleep(20);
+            }
+
+            assertThat(aggregateService.getMemberCount()).isEqualTo(count());
+        }
+        finally {
+
+            memberRepository.delete("runner");
+        }
+    }
+
+    private static int count() throws SQLException {
+
+        try (Connection conn = DriverManager.getConnection(URL, USERNAME, PASSWORD);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM member")) {
+
+            rs.next();
+
+            return rs.getInt(1);
+        }
+    }
+
+    private static void execute(String sql) throws SQLException {
+
+        try (Connection conn = DriverManager.getConnection(URL, USERNAME, PASSWORD); Statement stmt = conn.createStatement()) {
+
+            stmt.execute(sql);
+        }
+    }
+}
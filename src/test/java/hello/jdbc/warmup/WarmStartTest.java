@@ -0,0 +1,246 @@
+package hello.jdbc.warmup;
+
+import com.zaxxer.hikari.HikariDataSource;
+import hello.jdbc.aggregate.BalanceAggregateService;
+import hello.jdbc.cdc.MemberChangeFeed;
+import hello.jdbc.domain.Member;
+import hello.jdbc.repository.MemberRepositoryV3;
+import hello.jdbc.repository.MemberSchema;
+import lombok.extern.slf4j.Slf4j;
+import org.h2.jdbc.JdbcPreparedStatement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static hello.jdbc.connection.ConnectionConst.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 잔액 집계가 회원 변경 피드(트리거)를 사용하므로 테스트 JVM 안의 메모리 데이터베이스를 사용
+ */
+@Slf4j
+class WarmStartTest {
+
+    private static final String WARM_URL = "jdbc:h2:mem:warmstart;DB_CLOSE_DELAY=-1";
+    private static final int MEMBER_COUNT = 2000;
+    private static final int POOL_SIZE = 4;
+
+    @TempDir
+    Path dir;
+
+    private HikariDataSource dataSource;
+    private MemberRepositoryV3 memberRepository;
+
+    @BeforeEach
+    void before() throws SQLException {
+
+        dataSource = new HikariDataSource();
+
+        dataSource.setJdbcUrl(WARM_URL);
+        dataSource.setUsername("sa");
+        dataSource.setMaximumPoolSize(POOL_SIZE);
+
+        execute(MemberSchema.CREATE_TABLE);
+
+        MemberChangeFeed.install(dataSource);
+
+        memberRepository = new MemberRepositoryV3(dataSource);
+
+        List<Member> members = new ArrayList<>();
+
+        for (int i = 0; i < MEMBER_COUNT; i++) {
+
+            members.add(new Member("W" + i, i * 10));
+        }
+
+        memberRepository.upsertAll(members);
+    }
+
+    @AfterEach
+    void after() throws SQLException {
+
+        execute("DROP ALL OBJECTS");
+
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("스냅샷을 저장한 그대로 읽고, 깨진 파일은 거부")
+    void snapshotFile() throws IOException {
+
+        Path path = dir.resolve("members.snapshot");
+
+        Map<String, Integer> members = new LinkedHashMap<>();
+
+        members.put("a", 1);
+        members.put("회원", -5);
+        members.put("z", Integer.MAX_VALUE);
+
+        WarmStartSnapshot.write(path, List.of("SELECT 1", "CALL TRANSFER(?, ?, ?)"), consumer -> members.forEach(consumer::accept));
+
+        WarmStartSnapshot snapshot = WarmStartSnapshot.map(path);
+
+        Map<String, Integer> read = new LinkedHashMap<>();
+
+        snapshot.forEachMember(read::put);
+
+        assertThat(read).containsExactlyEntriesOf(members);
+        assertThat(snapshot.getStatementShapes()).containsExactly("SELECT 1", "CALL TRANSFER(?, ?, ?)");
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+
+            file.seek(30);
+            file.write(file.read() ^ 0xFF);
+        }
+
+        assertThatThrownBy(() -> WarmStartSnapshot.map(path)).isInstanceOf(IOException.class).hasMessageContaining("checksum");
+    }
+
+    @Test
+    @DisplayName("스냅샷으로 시작하면 스캔 없이 채우고, 백그라운드 검증 후 데이터베이스와 같아짐")
+    void warmStart() throws Exception {
+
+        Path path = dir.resolve("members.snapshot");
+
+        // 1. 스냅샷 없이 시작 (전체 스캔) 후 종료하면서 저장
+        try (MemberChangeFeed feed = new MemberChangeFeed(dataSource, 500, Duration.ofSeconds(1));
+             BalanceAggregateService aggregateService = new BalanceAggregateService(dataSource, feed)) {
+
+            WarmStart cold = new WarmStart(dataSource, memberRepository, aggregateService, path);
+
+            long start = System.nanoTime();
+
+            cold.start(POOL_SIZE, 4);
+
+            log.info("cold start = {}ms", (System.nanoTime() - start) / 1_000_000);
+
+            assertThat(cold.isWarm()).isFalse();
+            assertThat(aggregateService.getMemberCount()).isEqualTo(MEMBER_COUNT);
+
+            memberRepository.findById("W1");
+            memberRepository.findByIds(List.of("W1", "W2"));
+
+            assertThat(cold.shutdown()).isEqualTo(MEMBER_COUNT);
+        }
+
+        // 2. 종료된 동안 다른 노드가 변경
+        memberRepository.update("W1", 777);
+        memberRepository.delete("W2");
+        memberRepository.save(new Member("Wnew", 5));
+
+        dataSource.close();
+
+        // 3. 재시작 - 새 풀, 새 리포지토리
+        dataSource = new HikariDataSource();
+
+        dataSource.setJdbcUrl(WARM_URL);
+        dataSource.setUsername("sa");
+        dataSource.setMaximumPoolSize(POOL_SIZE);
+
+        memberRepository = new MemberRepositoryV3(dataSource);
+
+        try (MemberChangeFeed feed = new MemberChangeFeed(dataSource, 500, Duration.ofSeconds(1));
+             BalanceAggregateService aggregateService = new BalanceAggregateService(dataSource, feed)) {
+
+            WarmStart warm = new WarmStart(dataSource, memberRepository, aggregateService, path);
+
+            long start = System.nanoTime();
+
+            warm.start(POOL_SIZE, 4);
+
+            log.info("warm start = {}ms", (System.nanoTime() - start) / 1_000_000);
+
+            assertThat(warm.isWarm()).isTrue();
+
+            // 요청을 받기 전에 풀이 채워짐
+            assertThat(dataSource.getHikariPoolMXBean().getTotalConnections()).isEqualTo(POOL_SIZE);
+
+            warm.getValidation().get(10, TimeUnit.SECONDS);
+
+            assertThat(aggregateService.getMemberCount()).isEqualTo(MEMBER_COUNT);
+            assertThat(aggregateService.topN(MEMBER_COUNT)).extracting(Member::getMemberId).contains("Wnew").doesNotContain("W2");
+            assertThat(aggregateService.verify()).isTrue();
+
+            // 이번 실행에서 SQL 을 실행하지 않았어도 지난 스냅샷의 SQL 모양은 유지
+            warm.shutdown();
+        }
+
+        assertThat(WarmStartSnapshot.map(path).getStatementShapes())
+                .contains("SELECT money FROM member WHERE memberId = ?")
+                .anyMatch(sql -> sql.contains("memberId IN"));
+    }
+
+    @Test
+    @DisplayName("애플리케이션 URL 의 쿼리 캐시는 H2 기본값(8)보다 많은 SQL 을 닫은 뒤에도 재사용")
+    void queryCache() throws Exception {
+
+        List<String> shapes = new ArrayList<>();
+
+        for (int i = 0; i < 20; i++) {
+
+            shapes.add("SELECT money FROM member WHERE memberId = ? AND money > " + i);
+        }
+
+        try (Connection conn = DriverManager.getConnection(URL, USERNAME, PASSWORD)) {
+
+            // 웜 스타트처럼 준비하고 바로 닫음
+            List<Object> commands = new ArrayList<>();
+
+            for (String sql : shapes) {
+
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+                    commands.add(command(pstmt));
+                }
+            }
+
+            // 요청이 같은 SQL 을 준비하면 파싱하지 않고 캐시의 명령을 재사용
+            for (int i = 0; i < shapes.size(); i++) {
+
+                try (PreparedStatement pstmt = conn.prepareStatement(shapes.get(i))) {
+
+                    assertThat(command(pstmt)).isSameAs(commands.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * H2 가 파싱한 명령 (세션 쿼리 캐시에서 꺼냈으면 이전과 같은 인스턴스)
+     */
+    private static Object command(PreparedStatement pstmt) throws ReflectiveOperationException, SQLException {
+
+        Field command = JdbcPreparedStatement.class.getDeclaredField("command");
+
+        command.setAccessible(true);
+
+        return command.get(pstmt.unwrap(JdbcPreparedStatement.class));
+    }
+
+    private void execute(String sql) throws SQLException {
+
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+
+            stmt.execute(sql);
+        }
+    }
+}